@@ -0,0 +1,259 @@
+package uk.ac.newcastle.enterprisemiddleware.area;
+
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.WebApplicationException;
+
+import uk.ac.newcastle.enterprisemiddleware.util.CircuitBreaker;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * <p>Calls the {@link AreaService} from behind a bulkhead and a {@link CircuitBreaker}, so that a slow or failing
+ * area API costs callers a bounded wait rather than a blocked worker thread each.</p>
+ *
+ * <p>At most {@code area.bulkhead.max-concurrent} calls are in flight at once; a caller finding them all taken waits
+ * up to {@code area.bulkhead.wait-ms} for one to finish. After {@code area.circuit.failure-threshold} failed calls in
+ * a row the breaker opens and calls are refused outright for {@code area.circuit.open-ms}. Each call is itself
+ * bounded by the connect and read timeouts of the {@code area-api} REST client.</p>
+ *
+ * <p>A refused, timed out or failed call throws an {@link AreaUnavailableException}. A 4xx answer, 404 NOT_FOUND for
+ * an unknown area code in particular, shows the API is up: it is passed on to the caller unchanged and does not count
+ * towards opening the breaker.</p>
+ *
+ * <p>Lookups of one area code are coalesced: a lookup arriving while another for the same code is in flight waits for
+ * that call and shares its answer, or its exception, instead of making a call of its own. A burst of creates sharing
+ * an area code therefore costs one call, and a slow API is not asked the same question many times over. The counters
+ * of {@link #stats()} show the calls saved.</p>
+ *
+ * <p>{@link #getAreaByIdAsync(int)} does the same without blocking, through the {@link ReactiveAreaService}. It shares
+ * the bulkhead, breaker and lookups in flight with the blocking calls, but never waits for a place in the bulkhead.</p>
+ */
+@ApplicationScoped
+public class AreaClient {
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    @RestClient
+    AreaService areaService;
+
+    @Inject
+    @RestClient
+    ReactiveAreaService reactiveAreaService;
+
+    @ConfigProperty(name = "area.bulkhead.max-concurrent", defaultValue = "10")
+    int maxConcurrent;
+
+    @ConfigProperty(name = "area.bulkhead.wait-ms", defaultValue = "100")
+    long waitMs;
+
+    @ConfigProperty(name = "area.circuit.failure-threshold", defaultValue = "5")
+    int failureThreshold;
+
+    @ConfigProperty(name = "area.circuit.open-ms", defaultValue = "30000")
+    long openMs;
+
+    private Semaphore bulkhead;
+
+    private CircuitBreaker breaker;
+
+    // The lookup in flight for each area code, completed by the caller that started it
+    private final ConcurrentMap<Integer, CompletableFuture<Area>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        bulkhead = new Semaphore(maxConcurrent);
+        breaker = new CircuitBreaker(failureThreshold, openMs);
+    }
+
+    /**
+     * @return The whole area code table
+     * @throws AreaUnavailableException If the AreaService cannot be called or does not answer in time
+     */
+    public List<Area> getAreas() {
+        return call("getAreas()", () -> areaService.getAreas());
+    }
+
+    /**
+     * @param id The three digit area code
+     * @return The Area of the code
+     * @throws WebApplicationException If the AreaService answers with a 4xx status, 404 NOT_FOUND if it does not know
+     * the code
+     * @throws AreaUnavailableException If the AreaService cannot be called or does not answer in time
+     */
+    public Area getAreaById(int id) {
+        lookups.increment();
+        CompletableFuture<Area> lookup = new CompletableFuture<>();
+        CompletableFuture<Area> existing = inFlight.putIfAbsent(id, lookup);
+        if (existing != null) {
+            coalesced.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                // Rethrow what the call that was joined threw
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        try {
+            Area area = call("getAreaById(" + id + ")", () -> areaService.getAreaById(id));
+            lookup.complete(area);
+            return area;
+        } catch (RuntimeException e) {
+            lookup.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, lookup);
+        }
+    }
+
+    /**
+     * <p>Looks an area code up without blocking the calling thread.</p>
+     *
+     * @param id The three digit area code
+     * @return The Area of the code, or a failure: a {@link WebApplicationException} if the AreaService answers with a
+     * 4xx status, an {@link AreaUnavailableException} if it cannot be called or does not answer in time
+     */
+    public Uni<Area> getAreaByIdAsync(int id) {
+        lookups.increment();
+        CompletableFuture<Area> lookup = new CompletableFuture<>();
+        CompletableFuture<Area> existing = inFlight.putIfAbsent(id, lookup);
+        if (existing != null) {
+            coalesced.increment();
+            return Uni.createFrom().completionStage(existing);
+        }
+
+        // Started now rather than on subscription, so that lookups joining it are answered whoever subscribes
+        callAsync("getAreaById(" + id + ")", () -> reactiveAreaService.getAreaById(id))
+                .subscribe().with(area -> {
+                    inFlight.remove(id, lookup);
+                    lookup.complete(area);
+                }, failure -> {
+                    inFlight.remove(id, lookup);
+                    lookup.completeExceptionally(failure);
+                });
+        return Uni.createFrom().completionStage(lookup);
+    }
+
+    /**
+     * @return The state of the circuit breaker
+     */
+    public CircuitBreaker.State getState() {
+        return breaker.getState();
+    }
+
+    /**
+     * @return The counters of lookups and calls since the application started
+     */
+    public AreaClientStats stats() {
+        return new AreaClientStats(lookups.sum(), coalesced.sum(), calls.sum(), failures.sum(), refused.sum(),
+                breaker.getState(), breaker.getOpened());
+    }
+
+    private <T> T call(String what, Supplier<T> request) {
+        try {
+            if (!bulkhead.tryAcquire(waitMs, TimeUnit.MILLISECONDS)) {
+                refused.increment();
+                throw new AreaUnavailableException("Too many calls to the area API in progress for " + what);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AreaUnavailableException("Interrupted waiting to call the area API for " + what, e);
+        }
+        try {
+            if (!breaker.tryAcquire()) {
+                refused.increment();
+                throw new AreaUnavailableException("The area API is failing, not calling it for " + what);
+            }
+            T result;
+            calls.increment();
+            try {
+                result = request.get();
+            } catch (WebApplicationException e) {
+                int status = e.getResponse().getStatus();
+                if (status >= 400 && status < 500) {
+                    breaker.onSuccess();
+                    throw e;
+                }
+                throw failed(what, e);
+            } catch (RuntimeException e) {
+                throw failed(what, e);
+            }
+            breaker.onSuccess();
+            return result;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private <T> Uni<T> callAsync(String what, Supplier<Uni<T>> request) {
+        if (!bulkhead.tryAcquire()) {
+            refused.increment();
+            return Uni.createFrom().failure(
+                    new AreaUnavailableException("Too many calls to the area API in progress for " + what));
+        }
+        if (!breaker.tryAcquire()) {
+            bulkhead.release();
+            refused.increment();
+            return Uni.createFrom().failure(
+                    new AreaUnavailableException("The area API is failing, not calling it for " + what));
+        }
+        calls.increment();
+        Uni<T> response;
+        try {
+            response = request.get();
+        } catch (RuntimeException e) {
+            bulkhead.release();
+            return Uni.createFrom().failure(failed(what, e));
+        }
+        return response
+                .onItem().invoke(item -> breaker.onSuccess())
+                .onFailure().transform(e -> {
+                    if (e instanceof WebApplicationException) {
+                        int status = ((WebApplicationException) e).getResponse().getStatus();
+                        if (status >= 400 && status < 500) {
+                            breaker.onSuccess();
+                            return e;
+                        }
+                    }
+                    return failed(what, e);
+                })
+                .onTermination().invoke(bulkhead::release);
+    }
+
+    private AreaUnavailableException failed(String what, Throwable e) {
+        failures.increment();
+        breaker.onFailure();
+        if (breaker.getState() == CircuitBreaker.State.OPEN) {
+            log.warning("AreaClient.call() - " + what + " failed, circuit is open for " + openMs + " ms: " + e);
+        }
+        return new AreaUnavailableException("The area API failed for " + what, e);
+    }
+}
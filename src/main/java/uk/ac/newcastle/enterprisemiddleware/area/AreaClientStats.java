@@ -0,0 +1,88 @@
+package uk.ac.newcastle.enterprisemiddleware.area;
+
+import uk.ac.newcastle.enterprisemiddleware.util.CircuitBreaker;
+
+import java.io.Serializable;
+
+/**
+ * <p>Simple immutable snapshot of the counters of the {@link AreaClient}, counted since the application started.</p>
+ */
+public final class AreaClientStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long lookups;
+    private final long coalesced;
+    private final long calls;
+    private final long failures;
+    private final long refused;
+    private final CircuitBreaker.State circuit;
+    private final long circuitOpened;
+
+    public AreaClientStats(long lookups, long coalesced, long calls, long failures, long refused,
+                           CircuitBreaker.State circuit, long circuitOpened) {
+        this.lookups = lookups;
+        this.coalesced = coalesced;
+        this.calls = calls;
+        this.failures = failures;
+        this.refused = refused;
+        this.circuit = circuit;
+        this.circuitOpened = circuitOpened;
+    }
+
+    /**
+     * @return The number of area codes asked for, whether or not they cost a call
+     */
+    public long getLookups() {
+        return lookups;
+    }
+
+    /**
+     * @return The number of lookups that shared the call of an identical lookup already in flight
+     */
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * @return The number of calls made to the area API, for single area codes and whole tables alike
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return The number of calls that timed out or failed with anything but a 4xx status
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return The number of calls not made because the bulkhead was full or the circuit open
+     */
+    public long getRefused() {
+        return refused;
+    }
+
+    public CircuitBreaker.State getCircuit() {
+        return circuit;
+    }
+
+    public long getCircuitOpened() {
+        return circuitOpened;
+    }
+
+    @Override
+    public String toString() {
+        return "AreaClientStats{" +
+                "lookups=" + lookups +
+                ", coalesced=" + coalesced +
+                ", calls=" + calls +
+                ", failures=" + failures +
+                ", refused=" + refused +
+                ", circuit=" + circuit +
+                ", circuitOpened=" + circuitOpened +
+                '}';
+    }
+}
@@ -0,0 +1,181 @@
+package uk.ac.newcastle.enterprisemiddleware.area;
+
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+import uk.ac.newcastle.enterprisemiddleware.util.ScheduledJob;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>An in-memory copy of the area code table of the {@link AreaService}, so that resolving the state of a phone
+ * number does not cost a remote call.</p>
+ *
+ * <p>The whole table is fetched with one {@link AreaService#getAreas()} call shortly after startup and again every
+ * {@code area.table.refresh-minutes} in the background, or only once if that is 0. Area codes have three digits, so
+ * the table is an array indexed by the code itself and a lookup is a single array read. Each fetch builds a new array
+ * and publishes it whole; the array is never changed once published.</p>
+ *
+ * <p>A code missing from the table, or asked for before the first fetch has finished, is looked up with
+ * {@link AreaService#getAreaById(int)} and the answer, found or not, is added to a copy of the table, so each code
+ * costs at most one remote call between fetches. Calls go through the {@link AreaClient}, so an unavailable area API
+ * fails only lookups of codes that have not been seen.</p>
+ *
+ * @see AreaService
+ * @see AreaClient
+ */
+@ApplicationScoped
+public class AreaCodeTable {
+
+    /** Area codes run from 000 to 999. */
+    static final int SIZE = 1000;
+
+    /** Marks a code the AreaService has answered 404 NOT_FOUND for. */
+    private static final Area MISSING = new Area();
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    AreaClient areaClient;
+
+    @ConfigProperty(name = "area.table.refresh-minutes", defaultValue = "60")
+    long refreshMinutes;
+
+    private volatile Area[] table = new Area[SIZE];
+
+    private ScheduledJob job;
+
+    void onStart(@Observes StartupEvent event) {
+        // Fetched in the background so that a slow area API cannot hold up startup; lookups fall back until then
+        job = ScheduledJob.start("area-code-table", 0, refreshMinutes, this::refreshQuietly, log);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (job != null) {
+            job.stop();
+        }
+    }
+
+    /**
+     * <p>Returns the Area of an area code, from the table if it has been seen before, otherwise from the
+     * AreaService.</p>
+     *
+     * @param code The three digit area code
+     * @return The Area of the code
+     * @throws InvalidAreaCodeException If the code is out of range or the AreaService does not know it
+     * @throws AreaUnavailableException If the code has not been seen and the AreaService cannot be asked about it
+     * @throws WebApplicationException If the AreaService answers with any other 4xx status than 404 NOT_FOUND
+     */
+    public Area get(int code) {
+        if (code < 0 || code >= SIZE) {
+            throw new InvalidAreaCodeException("The area code provided does not exist");
+        }
+        Area area = table[code];
+        if (area == null) {
+            area = fetch(code);
+        }
+        if (area == MISSING) {
+            throw new InvalidAreaCodeException("The area code provided does not exist");
+        }
+        return area;
+    }
+
+    /**
+     * <p>Returns the Area of an area code like {@link #get(int)}, without blocking the calling thread if it has to ask
+     * the AreaService.</p>
+     *
+     * @param code The three digit area code
+     * @return The Area of the code, or a failure with any of the exceptions {@link #get(int)} throws
+     */
+    public Uni<Area> getAsync(int code) {
+        if (code < 0 || code >= SIZE) {
+            return Uni.createFrom().failure(new InvalidAreaCodeException("The area code provided does not exist"));
+        }
+        Area area = table[code];
+        if (area != null) {
+            return area == MISSING
+                    ? Uni.createFrom().failure(new InvalidAreaCodeException("The area code provided does not exist"))
+                    : Uni.createFrom().item(area);
+        }
+        return areaClient.getAreaByIdAsync(code)
+                .onItem().invoke(found -> remember(code, found))
+                .onFailure(AreaCodeTable::isNotFound).transform(e -> {
+                    remember(code, MISSING);
+                    return new InvalidAreaCodeException("The area code provided does not exist", e);
+                });
+    }
+
+    /**
+     * <p>Replaces the table with a fresh copy of the whole area code table of the AreaService.</p>
+     *
+     * @return The number of area codes in the new table
+     * @throws AreaUnavailableException If the AreaService cannot be asked for the table, which is then kept as it is
+     */
+    public int refresh() {
+        long start = System.nanoTime();
+        List<Area> areas = areaClient.getAreas();
+        Area[] fresh = new Area[SIZE];
+        int loaded = 0;
+        for (Area area : areas) {
+            if (area != null && area.getId() >= 0 && area.getId() < SIZE) {
+                fresh[area.getId()] = area;
+                loaded++;
+            }
+        }
+        synchronized (this) {
+            table = fresh;
+        }
+        log.info("AreaCodeTable.refresh() - Loaded " + loaded + " area codes in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return loaded;
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "AreaCodeTable.refresh() - Loading the area codes failed, falling back to the"
+                    + " AreaService until the next refresh", e);
+        }
+    }
+
+    private Area fetch(int code) {
+        Area area;
+        try {
+            area = areaClient.getAreaById(code);
+        } catch (WebApplicationException e) {
+            if (!isNotFound(e)) {
+                throw e;
+            }
+            area = MISSING;
+        }
+        remember(code, area);
+        return area;
+    }
+
+    private static boolean isNotFound(Throwable e) {
+        return e instanceof WebApplicationException
+                && ((WebApplicationException) e).getResponse().getStatus() == Response.Status.NOT_FOUND.getStatusCode();
+    }
+
+    private synchronized void remember(int code, Area area) {
+        // Copy on write, so that readers never see a table that is being changed
+        Area[] copy = table.clone();
+        copy[code] = area;
+        table = copy;
+    }
+}
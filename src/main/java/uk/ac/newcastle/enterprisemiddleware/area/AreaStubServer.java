@@ -0,0 +1,179 @@
+package uk.ac.newcastle.enterprisemiddleware.area;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.quarkus.runtime.StartupEvent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * <p>A stand-in for the area API, for tests and load tests that must not depend on it. It is off unless
+ * {@code area.stub.port} is set, and is then used by pointing {@code quarkus.rest-client.area-api.url} at
+ * {@code http://localhost:<port>/}.</p>
+ *
+ * <p>It answers {@code GET /areas} and {@code GET /areas/{id}} for every code a Contact phone number may have, 200 to
+ * 989 with a middle digit below 9, with made-up states, and 404 NOT_FOUND for any other code. The codes in
+ * {@code area.stub.unlisted-codes} are left out of {@code GET /areas} but still answered one by one, like codes added
+ * after the table was fetched. Each answer is delayed by {@code area.stub.latency-ms}, and the requests answered are
+ * counted, so that tests can tell how many calls reached the area API.</p>
+ *
+ * <p>{@code area.stub.failure-percent} of the answers are 503 SERVICE_UNAVAILABLE instead, so that the timeouts,
+ * bulkhead and circuit breaker of the {@link AreaClient} can be exercised.</p>
+ */
+@ApplicationScoped
+public class AreaStubServer {
+
+    // Picked by the last digit of the code, which gives 201, the code of the examples, its real state
+    private static final List<String> STATES = Arrays.asList("Alabama", "New Jersey", "California", "Florida",
+            "Illinois", "New York", "Ohio", "Pennsylvania", "Texas", "Washington");
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    ObjectMapper mapper;
+
+    @ConfigProperty(name = "area.stub.port", defaultValue = "0")
+    int port;
+
+    @ConfigProperty(name = "area.stub.threads", defaultValue = "16")
+    int threads;
+
+    @ConfigProperty(name = "area.stub.latency-ms", defaultValue = "0")
+    long latencyMs;
+
+    @ConfigProperty(name = "area.stub.failure-percent", defaultValue = "0")
+    int failurePercent;
+
+    @ConfigProperty(name = "area.stub.unlisted-codes")
+    Optional<List<Integer>> unlistedCodes;
+
+    private final LongAdder requests = new LongAdder();
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    void onStart(@Observes StartupEvent event) throws IOException {
+        if (port <= 0) {
+            return;
+        }
+        executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "area-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/areas", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        log.info("AreaStubServer.onStart() - Serving stub area codes on port " + port + " with " + latencyMs
+                + " ms latency and " + failurePercent + "% failures");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return The number of requests answered since startup
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        try {
+            if (latencyMs > 0) {
+                TimeUnit.MILLISECONDS.sleep(latencyMs);
+            }
+            if (ThreadLocalRandom.current().nextInt(100) < failurePercent) {
+                send(exchange, 503, null);
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, null);
+            } else if (path.equals("/areas") || path.equals("/areas/")) {
+                List<Integer> unlisted = unlistedCodes.orElse(Collections.emptyList());
+                List<Area> areas = new ArrayList<>();
+                for (int code = 200; code < 1000; code++) {
+                    if (exists(code) && !unlisted.contains(code)) {
+                        areas.add(area(code));
+                    }
+                }
+                send(exchange, 200, areas);
+            } else {
+                int code;
+                try {
+                    code = Integer.parseInt(path.substring("/areas/".length()));
+                } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                    send(exchange, 404, null);
+                    return;
+                }
+                if (exists(code)) {
+                    send(exchange, 200, area(code));
+                } else {
+                    send(exchange, 404, null);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(exchange, 503, null);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, Object body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] json = mapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, json.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(json);
+        }
+    }
+
+    private static boolean exists(int code) {
+        return code >= 200 && code < 1000 && code / 10 % 10 != 9;
+    }
+
+    private static Area area(int code) {
+        Area area = new Area();
+        area.setId(code);
+        area.setState(STATES.get(code % STATES.size()));
+        area.setAbbr(area.getState().substring(0, 2).toUpperCase());
+        return area;
+    }
+}
@@ -0,0 +1,26 @@
+package uk.ac.newcastle.enterprisemiddleware.area;
+
+import javax.validation.ValidationException;
+
+/**
+ * <p>ValidationException which should be thrown if the AreaService could not be asked about an area code because it
+ * is failing, too slow, or already busy with as many calls as it is allowed.</p>
+ *
+ * <p>It says nothing about the area code itself, so REST services should map it to 503 SERVICE_UNAVAILABLE.</p>
+ *
+ * @see AreaClient
+ */
+public class AreaUnavailableException extends ValidationException {
+
+    public AreaUnavailableException(String message) {
+        super(message);
+    }
+
+    public AreaUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public AreaUnavailableException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,30 @@
+package uk.ac.newcastle.enterprisemiddleware.area;
+
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import java.util.List;
+
+/**
+ * <p>Non-blocking variant of the {@link AreaService} client, for callers that must not wait on a thread for the
+ * answer.</p>
+ *
+ * <p>It shares the {@code area-api} configuration, URL and timeouts included, with the {@link AreaService}.</p>
+ *
+ * @see AreaClient#getAreaByIdAsync(int)
+ */
+@Path("/areas")
+@RegisterRestClient(configKey = "area-api")
+public interface ReactiveAreaService {
+
+    @GET
+    Uni<List<Area>> getAreas();
+
+
+    @GET
+    @Path("/{id:[0-9]+}")
+    Uni<Area> getAreaById(@PathParam("id") int id);
+}
@@ -0,0 +1,152 @@
+package uk.ac.newcastle.enterprisemiddleware.area;
+
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Works out the US state of a phone number from its area code, for Contacts and Customers alike.</p>
+ *
+ * <p>Phone numbers must have the "(XXX) XXX-XXXX" form both models accept. Area codes are answered from the
+ * {@link AreaCodeTable}, which only asks the area API about codes it has not seen. If the area API is unavailable and
+ * {@code area.degraded-mode} is on, the state is left unresolved, to be filled in later, instead of failing the
+ * caller.</p>
+ *
+ * @see AreaCodeTable
+ */
+@ApplicationScoped
+public class StateResolver {
+
+    // The area code of a phone number the Contact and Customer models accept, in the first group
+    private static final Pattern PHONE_NUMBER = Pattern.compile("^\\(([2-9][0-8][0-9])\\)\\s?[0-9]{3}\\-[0-9]{4}$");
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    AreaCodeTable areaCodes;
+
+    @ConfigProperty(name = "area.degraded-mode", defaultValue = "true")
+    boolean degradedMode;
+
+    /**
+     * <p>Returns the state of a phone number, refusing an area code the area API does not know.</p>
+     *
+     * @param phoneNumber The phone number
+     * @return The state, or null if the area API is unavailable and degraded mode is on
+     * @throws InvalidAreaCodeException If the phone number is malformed or its area code does not exist
+     * @throws AreaUnavailableException If the area API is unavailable and degraded mode is off
+     */
+    public String resolve(String phoneNumber) {
+        int code = areaCode(phoneNumber);
+        if (code < 0) {
+            throw new InvalidAreaCodeException("The phone number provided has no area code");
+        }
+        try {
+            return areaCodes.get(code).getState();
+        } catch (AreaUnavailableException e) {
+            return unavailable(e);
+        }
+    }
+
+    /**
+     * <p>Returns the state of a phone number like {@link #resolve(String)}, without blocking the calling thread.</p>
+     *
+     * <p>A malformed phone number yields no state rather than a failure, as it is meant for numbers that are being
+     * validated alongside.</p>
+     *
+     * @param phoneNumber The phone number
+     * @return The state, or null; or a failure with the exceptions {@link #resolve(String)} throws for known codes
+     */
+    public Uni<String> resolveAsync(String phoneNumber) {
+        int code = areaCode(phoneNumber);
+        if (code < 0) {
+            return Uni.createFrom().nullItem();
+        }
+        return areaCodes.getAsync(code)
+                .map(Area::getState)
+                .onFailure(AreaUnavailableException.class)
+                .recoverWithUni(e -> Uni.createFrom().item(() -> unavailable((AreaUnavailableException) e)));
+    }
+
+    /**
+     * <p>Returns the state of a phone number if it can be worked out, and null otherwise, for records such as
+     * Customers that are accepted whatever their area code.</p>
+     *
+     * @param phoneNumber The phone number
+     * @return The state, or null if the phone number is malformed, its area code does not exist, or the area API is
+     * unavailable and degraded mode is on
+     * @throws AreaUnavailableException If the area API is unavailable and degraded mode is off
+     */
+    public String resolveIfKnown(String phoneNumber) {
+        int code = areaCode(phoneNumber);
+        return code < 0 ? null : stateOf(code);
+    }
+
+    /**
+     * <p>Returns the states of many phone numbers at once, as for a bulk import, asking about each distinct area code
+     * only once.</p>
+     *
+     * @param phoneNumbers The phone numbers
+     * @return The state of each phone number that has one, by phone number; numbers {@link #resolveIfKnown(String)}
+     * gives null for are left out
+     * @throws AreaUnavailableException If the area API is unavailable and degraded mode is off
+     */
+    public Map<String, String> resolveAll(Collection<String> phoneNumbers) {
+        Map<Integer, String> byCode = new HashMap<>();
+        Map<String, String> states = new HashMap<>();
+        for (String phoneNumber : phoneNumbers) {
+            int code = areaCode(phoneNumber);
+            if (code < 0) {
+                continue;
+            }
+            String state = byCode.containsKey(code) ? byCode.get(code) : stateOf(code);
+            byCode.put(code, state);
+            if (state != null) {
+                states.put(phoneNumber, state);
+            }
+        }
+        return states;
+    }
+
+    private String stateOf(int code) {
+        try {
+            return areaCodes.get(code).getState();
+        } catch (InvalidAreaCodeException e) {
+            return null;
+        } catch (AreaUnavailableException e) {
+            return unavailable(e);
+        }
+    }
+
+    private String unavailable(AreaUnavailableException e) {
+        if (!degradedMode) {
+            throw e;
+        }
+        log.warning("StateResolver.unavailable() - Leaving the state unresolved, the area API is unavailable: "
+                + e.getMessage());
+        return null;
+    }
+
+    /**
+     * @return The area code of the phone number, or -1 if it is malformed
+     */
+    private static int areaCode(String phoneNumber) {
+        if (phoneNumber == null) {
+            return -1;
+        }
+        Matcher matcher = PHONE_NUMBER.matcher(phoneNumber);
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+}
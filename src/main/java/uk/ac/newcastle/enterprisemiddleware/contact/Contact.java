@@ -26,7 +26,8 @@ import java.util.Objects;
         @NamedQuery(name = Contact.FIND_BY_EMAIL, query = "SELECT c FROM Contact c WHERE c.email = :email")
 })
 @XmlRootElement
-@Table(name = "contact", uniqueConstraints = @UniqueConstraint(columnNames = "email"))
+@Table(name = "contact", uniqueConstraints = @UniqueConstraint(columnNames = "email"),
+        indexes = @Index(name = "contact_name", columnList = "last_name, first_name, id"))
 public class Contact implements Serializable {
     /** Default value included to remove warning. Remove or modify at will. **/
     private static final long serialVersionUID = 1L;
@@ -0,0 +1,52 @@
+package uk.ac.newcastle.enterprisemiddleware.contact;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.control.ActivateRequestContext;
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+import javax.validation.ConstraintViolationException;
+import javax.validation.ValidationException;
+
+/**
+ * <p>The two blocking steps of {@link ContactService#createAsync(Contact)}, which it runs on a worker thread: checking
+ * the new Contact, and writing it once its state is known.</p>
+ *
+ * <p>The worker threads carry no request of their own, so each step activates a request context for the
+ * {@link ContactRepository} and ends it when it returns.</p>
+ *
+ * @see ContactService#createAsync(Contact)
+ */
+@ApplicationScoped
+public class ContactCreateProcessor {
+
+    @Inject
+    ContactValidator validator;
+
+    @Inject
+    ContactRepository crud;
+
+    /**
+     * <p>Bean validates the Contact and checks its email address is not registered yet.</p>
+     *
+     * @param contact The Contact to check
+     * @throws ConstraintViolationException If Bean Validation errors exist
+     * @throws ValidationException If a Contact with the same email already exists
+     */
+    @ActivateRequestContext
+    public void validate(Contact contact) {
+        validator.validateContact(contact);
+    }
+
+    /**
+     * <p>Writes a validated Contact to the database in a transaction of its own.</p>
+     *
+     * @param contact The Contact to write
+     * @return The Contact written
+     * @throws Exception If the Contact cannot be written
+     */
+    @Transactional
+    @ActivateRequestContext
+    public Contact create(Contact contact) throws Exception {
+        return crud.create(contact);
+    }
+}
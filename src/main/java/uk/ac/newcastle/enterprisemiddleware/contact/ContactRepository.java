@@ -7,8 +7,12 @@ import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import javax.validation.ConstraintViolationException;
+import uk.ac.newcastle.enterprisemiddleware.util.PageCursor;
+
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -43,6 +47,26 @@ public class ContactRepository {
         return query.getResultList();
     }
 
+    /**
+     * <p>Returns one page of the persisted {@link Contact} objects, sorted alphabetically by last name, then first
+     * name, then id.<p/>
+     *
+     * @param after The cursor of the previous page, or null for the first page
+     * @param limit The maximum number of Contacts to return
+     * @return List of Contact objects
+     */
+    List<Contact> findPageOrderedByName(PageCursor after, int limit) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Contact> criteria = cb.createQuery(Contact.class);
+        Root<Contact> contact = criteria.from(Contact.class);
+        criteria.select(contact)
+                .orderBy(cb.asc(contact.get("lastName")), cb.asc(contact.get("firstName")), cb.asc(contact.get("id")));
+        if (after != null) {
+            criteria.where(after.after(cb, contact.get("lastName"), contact.get("firstName"), contact.get("id")));
+        }
+        return em.createQuery(criteria).setMaxResults(limit).getResultList();
+    }
+
     /**
      * <p>Returns a single Contact object, specified by a Long id.<p/>
      *
@@ -98,6 +122,30 @@ public class ContactRepository {
         return em.createQuery(criteria).getResultList();
     }
 
+    /**
+     * <p>Returns a list of Contact objects matching every name that is given, in a single query served by the
+     * (last_name, first_name) index, sorted alphabetically by last name.<p/>
+     *
+     * @param firstName The firstName field of the Contacts to be returned, or null for any
+     * @param lastName The lastName field of the Contacts to be returned, or null for any
+     * @return The Contacts with the specified names
+     */
+    List<Contact> findAllByName(String firstName, String lastName) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Contact> criteria = cb.createQuery(Contact.class);
+        Root<Contact> contact = criteria.from(Contact.class);
+        List<Predicate> predicates = new ArrayList<>();
+        if (lastName != null) {
+            predicates.add(cb.equal(contact.get("lastName"), lastName));
+        }
+        if (firstName != null) {
+            predicates.add(cb.equal(contact.get("firstName"), firstName));
+        }
+        criteria.select(contact).where(predicates.toArray(new Predicate[0]))
+                .orderBy(cb.asc(contact.get("lastName")), cb.asc(contact.get("firstName")));
+        return em.createQuery(criteria).getResultList();
+    }
+
     /**
      * <p>Persists the provided Contact object to the application database using the EntityManager.</p>
      *
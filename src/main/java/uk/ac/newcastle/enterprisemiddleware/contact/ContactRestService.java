@@ -1,5 +1,6 @@
 package uk.ac.newcastle.enterprisemiddleware.contact;
 
+import io.smallrye.mutiny.Uni;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
@@ -8,7 +9,11 @@ import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import org.jboss.resteasy.reactive.Cache;
 
 import uk.ac.newcastle.enterprisemiddleware.Unique.UniqueEmailException;
+import uk.ac.newcastle.enterprisemiddleware.area.AreaClient;
+import uk.ac.newcastle.enterprisemiddleware.area.AreaUnavailableException;
 import uk.ac.newcastle.enterprisemiddleware.area.InvalidAreaCodeException;
+import uk.ac.newcastle.enterprisemiddleware.util.PageCursor;
+import uk.ac.newcastle.enterprisemiddleware.util.Pagination;
 import uk.ac.newcastle.enterprisemiddleware.util.RestServiceException;
 
 import javax.inject.Inject;
@@ -18,8 +23,10 @@ import javax.transaction.Transactional;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -54,6 +61,12 @@ public class ContactRestService {
     @Inject
     ContactService service;
 
+    @Inject
+    Pagination pagination;
+
+    @Inject
+    AreaClient areaClient;
+
     /**
      * <p>Return all the Contacts.  They are sorted alphabetically by name.</p>
      *
@@ -61,28 +74,43 @@ public class ContactRestService {
      *
      * <p>Examples: <pre>GET api/contacts?firstname=John</pre>, <pre>GET api/contacts?firstname=John&lastname=Smith</pre></p>
      *
+     * <p>Without a name the Contacts are returned a page at a time; see {@link Pagination}.</p>
+     *
      * @return A Response containing a list of Contacts
      */
     @GET
     @Operation(summary = "Fetch all Contacts", description = "Returns a JSON array of all stored Contact objects.")
-    public Response retrieveAllContacts(@QueryParam("firstname") String firstname, @QueryParam("lastname") String lastname) {
-        //Create an empty collection to contain the intersection of Contacts to be returned
+    public Response retrieveAllContacts(@QueryParam("firstname") String firstname, @QueryParam("lastname") String lastname,
+            @QueryParam(Pagination.LIMIT) Integer limit, @QueryParam(Pagination.CURSOR) String cursor,
+            @Context UriInfo uriInfo) {
         List<Contact> contacts;
 
         if(firstname == null && lastname == null) {
-            contacts = service.findAllOrderedByName();
-        } else if(lastname == null) {
-            contacts = service.findAllByFirstName(firstname);
-        } else if(firstname == null) {
-            contacts = service.findAllByLastName(lastname);
+            int size = pagination.limit(limit);
+            contacts = service.findPageOrderedByName(pagination.cursor(cursor, String.class, String.class, Long.class), size + 1);
+            return pagination.page(contacts, size,
+                    contact -> PageCursor.of(contact.getLastName(), contact.getFirstName(), contact.getId()), uriInfo);
         } else {
-            contacts = service.findAllByFirstName(firstname);
-            contacts.retainAll(service.findAllByLastName(lastname));
+            // Both names, if given, are matched by one query rather than intersecting two result lists
+            contacts = service.findAllByName(firstname, lastname);
         }
 
         return Response.ok(contacts).build();
     }
 
+    /**
+     * <p>Return the counters of the area API client: area codes looked up, lookups coalesced with an identical one in
+     * flight, calls actually made, and calls that failed or were refused.</p>
+     *
+     * @return A Response containing the counters
+     */
+    @GET
+    @Path("/area-stats")
+    @Operation(summary = "Area API statistics", description = "Returns the lookup and call counters of the area API client.")
+    public Response retrieveAreaStats() {
+        return Response.ok(areaClient.stats()).build();
+    }
+
     /**
      * <p>Search for and return a Contact identified by email address.<p/>
      *
@@ -167,7 +195,8 @@ public class ContactRestService {
             @APIResponse(responseCode = "201", description = "Contact created successfully."),
             @APIResponse(responseCode = "400", description = "Invalid Contact supplied in request body"),
             @APIResponse(responseCode = "409", description = "Contact supplied in request body conflicts with an existing Contact"),
-            @APIResponse(responseCode = "500", description = "An unexpected error occurred whilst processing the request")
+            @APIResponse(responseCode = "500", description = "An unexpected error occurred whilst processing the request"),
+            @APIResponse(responseCode = "503", description = "The area API is unavailable and degraded mode is off")
     })
     @Transactional
     public Response createContact(
@@ -209,6 +238,8 @@ public class ContactRestService {
             Map<String, String> responseObj = new HashMap<>();
             responseObj.put("area_code", "The telephone area code provided is not recognised, please provide another");
             throw new RestServiceException("Bad Request", responseObj, Response.Status.BAD_REQUEST, e);
+        } catch (AreaUnavailableException e) {
+            throw new RestServiceException(e.getMessage(), Response.Status.SERVICE_UNAVAILABLE, e);
         } catch (Exception e) {
             // Handle generic exceptions
             throw new RestServiceException(e);
@@ -218,6 +249,45 @@ public class ContactRestService {
         return builder.build();
     }
 
+    /**
+     * <p>Creates a new contact like {@link #createContact(Contact)}, without blocking the event loop.</p>
+     *
+     * <p>The area code is looked up while the Contact is validated, so the response waits for the slower of the two
+     * rather than both one after the other.</p>
+     *
+     * @param contact The Contact object, constructed automatically from JSON input, to be <i>created</i> via
+     * {@link ContactService#createAsync(Contact)}
+     * @return A Uni of the Response indicating the outcome of the create operation
+     */
+    @POST
+    @Path("/reactive")
+    @Operation(description = "Add a new Contact to the database without blocking while the area code is looked up")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "201", description = "Contact created successfully."),
+            @APIResponse(responseCode = "400", description = "Invalid Contact supplied in request body"),
+            @APIResponse(responseCode = "409", description = "Contact supplied in request body conflicts with an existing Contact"),
+            @APIResponse(responseCode = "500", description = "An unexpected error occurred whilst processing the request"),
+            @APIResponse(responseCode = "503", description = "The area API is unavailable and degraded mode is off")
+    })
+    public Uni<Response> createContactReactive(
+            @Parameter(description = "JSON representation of Contact object to be added to the database", required = true)
+            Contact contact) {
+
+        if (contact == null) {
+            return Uni.createFrom().failure(new RestServiceException("Bad Request", Response.Status.BAD_REQUEST));
+        }
+
+        // Clear the ID if accidentally set
+        contact.setId(null);
+
+        return service.createAsync(contact)
+                .map(created -> {
+                    log.info("createContactReactive completed. Contact = " + created);
+                    return Response.status(Response.Status.CREATED).entity(created).build();
+                })
+                .onFailure(Exception.class).transform(e -> toRestServiceException((Exception) e));
+    }
+
     /**
      * <p>Updates the contact with the ID provided in the database. Performs validation, and will return a JAX-RS response
      * with either 200 (ok), or with a map of fields, and related errors.</p>
@@ -235,7 +305,8 @@ public class ContactRestService {
             @APIResponse(responseCode = "400", description = "Invalid Contact supplied in request body"),
             @APIResponse(responseCode = "404", description = "Contact with id not found"),
             @APIResponse(responseCode = "409", description = "Contact details supplied in request body conflict with another existing Contact"),
-            @APIResponse(responseCode = "500", description = "An unexpected error occurred whilst processing the request")
+            @APIResponse(responseCode = "500", description = "An unexpected error occurred whilst processing the request"),
+            @APIResponse(responseCode = "503", description = "The area API is unavailable and degraded mode is off")
     })
     @Transactional
     public Response updateContact(
@@ -291,6 +362,8 @@ public class ContactRestService {
             Map<String, String> responseObj = new HashMap<>();
             responseObj.put("area_code", "The telephone area code provided is not recognised, please provide another");
             throw new RestServiceException("Bad Request", responseObj, Response.Status.BAD_REQUEST, e);
+        } catch (AreaUnavailableException e) {
+            throw new RestServiceException(e.getMessage(), Response.Status.SERVICE_UNAVAILABLE, e);
         } catch (Exception e) {
             // Handle generic exceptions
             throw new RestServiceException(e);
@@ -344,4 +417,31 @@ public class ContactRestService {
         log.info("deleteContact completed. Contact = " + contact);
         return builder.build();
     }
-}
\ No newline at end of file
+
+    /**
+     * <p>Maps the failure of a non-blocking create to the Response {@link #createContact(Contact)} gives for the same
+     * exception.</p>
+     */
+    private static RestServiceException toRestServiceException(Exception failure) {
+        if (failure instanceof ConstraintViolationException) {
+            Map<String, String> responseObj = new HashMap<>();
+            for (ConstraintViolation<?> violation : ((ConstraintViolationException) failure).getConstraintViolations()) {
+                responseObj.put(violation.getPropertyPath().toString(), violation.getMessage());
+            }
+            return new RestServiceException("Bad Request", responseObj, Response.Status.BAD_REQUEST, failure);
+        } else if (failure instanceof UniqueEmailException) {
+            Map<String, String> responseObj = new HashMap<>();
+            responseObj.put("email", "That email is already used, please use a unique email");
+            return new RestServiceException("Bad Request", responseObj, Response.Status.CONFLICT, failure);
+        } else if (failure instanceof InvalidAreaCodeException) {
+            Map<String, String> responseObj = new HashMap<>();
+            responseObj.put("area_code", "The telephone area code provided is not recognised, please provide another");
+            return new RestServiceException("Bad Request", responseObj, Response.Status.BAD_REQUEST, failure);
+        } else if (failure instanceof AreaUnavailableException) {
+            return new RestServiceException(failure.getMessage(), Response.Status.SERVICE_UNAVAILABLE, failure);
+        } else if (failure instanceof RestServiceException) {
+            return (RestServiceException) failure;
+        }
+        return new RestServiceException(failure);
+    }
+}
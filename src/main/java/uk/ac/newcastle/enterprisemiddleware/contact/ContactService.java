@@ -1,17 +1,17 @@
 package uk.ac.newcastle.enterprisemiddleware.contact;
 
 
-import org.eclipse.microprofile.rest.client.inject.RestClient;
-import uk.ac.newcastle.enterprisemiddleware.area.Area;
-import uk.ac.newcastle.enterprisemiddleware.area.AreaService;
-import uk.ac.newcastle.enterprisemiddleware.area.InvalidAreaCodeException;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.unchecked.Unchecked;
+import uk.ac.newcastle.enterprisemiddleware.area.StateResolver;
 
 import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.validation.ConstraintViolationException;
-import javax.ws.rs.ClientErrorException;
-import javax.ws.rs.core.Response;
+import uk.ac.newcastle.enterprisemiddleware.util.PageCursor;
+
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -42,9 +42,11 @@ public class ContactService {
     @Inject
     ContactRepository crud;
 
-    //Removed temporarily due to non-existing AreaService
-    @RestClient
-    AreaService areaService;
+    @Inject
+    StateResolver states;
+
+    @Inject
+    ContactCreateProcessor processor;
 
     /**
      * <p>Returns a List of all persisted {@link Contact} objects, sorted alphabetically by last name.<p/>
@@ -55,6 +57,17 @@ public class ContactService {
         return crud.findAllOrderedByName();
     }
 
+    /**
+     * <p>Returns one page of Contacts, sorted alphabetically by last name, then first name, then id.<p/>
+     *
+     * @param after The cursor of the previous page, or null for the first page
+     * @param limit The maximum number of Contacts to return
+     * @return List of Contact objects
+     */
+    List<Contact> findPageOrderedByName(PageCursor after, int limit) {
+        return crud.findPageOrderedByName(after, limit);
+    }
+
     /**
      * <p>Returns a single Contact object, specified by a Long id.<p/>
      *
@@ -97,6 +110,17 @@ public class ContactService {
         return crud.findAllByLastName(lastName);
     }
 
+    /**
+     * <p>Returns the Contacts with the given first and last names, found in a single query.<p/>
+     *
+     * @param firstName The firstName field of the Contacts to be returned, or null for any
+     * @param lastName The lastName field of the Contacts to be returned, or null for any
+     * @return The Contacts with the specified names
+     */
+    List<Contact> findAllByName(String firstName, String lastName) {
+        return crud.findAllByName(firstName, lastName);
+    }
+
     /**
      * <p>Writes the provided Contact object to the application database.<p/>
      *
@@ -114,23 +138,40 @@ public class ContactService {
 
 
 
-        //Create client service instance to make REST requests to upstream service
-        try {
-            //Removed temporarily due to non-existing AreaService
-             Area area = areaService.getAreaById(Integer.parseInt(contact.getPhoneNumber().substring(1, 4)));
-             contact.setState(area.getState());
-        } catch (ClientErrorException e) {
-            if (e.getResponse().getStatusInfo() == Response.Status.NOT_FOUND) {
-                throw new InvalidAreaCodeException("The area code provided does not exist", e);
-            } else {
-                throw e;
-            }
-        }
+        // Resolve the state from the area code, through the in-memory table rather than a remote call per contact
+        contact.setState(states.resolve(contact.getPhoneNumber()));
 
         // Write the contact to the database.
         return crud.create(contact);
     }
 
+    /**
+     * <p>Writes the provided Contact object to the application database like {@link #create(Contact)}, without
+     * blocking the calling thread.<p/>
+     *
+     * <p>The state is looked up from the area code while the Contact is validated and its email address checked on a
+     * worker thread, so the two waits overlap instead of adding up. The Contact is written on a worker thread once both
+     * are done.<p/>
+     *
+     * @param contact The Contact object to be written to the database
+     * @return The Contact object once written, or a failure with any of the exceptions {@link #create(Contact)} throws
+     */
+    Uni<Contact> createAsync(Contact contact) {
+        log.info("ContactService.createAsync() - Creating " + contact.getFirstName() + " " + contact.getLastName());
+
+        Uni<Contact> validated = Uni.createFrom().item(contact)
+                .emitOn(Infrastructure.getDefaultWorkerPool())
+                .invoke(processor::validate);
+
+        return Uni.combine().all().unis(validated, states.resolveAsync(contact.getPhoneNumber()))
+                .combinedWith((valid, state) -> {
+                    valid.setState(state);
+                    return valid;
+                })
+                .emitOn(Infrastructure.getDefaultWorkerPool())
+                .map(Unchecked.function(processor::create));
+    }
+
     /**
      * <p>Updates an existing Contact object in the application database with the provided Contact object.<p/>
      *
@@ -146,17 +187,7 @@ public class ContactService {
         // Check to make sure the data fits with the parameters in the Contact model and passes validation.
         validator.validateContact(contact);
 
-        try {
-            //Removed temporarily due to non-existing AreaService
-            Area area = areaService.getAreaById(Integer.parseInt(contact.getPhoneNumber().substring(1, 4)));
-            contact.setState(area.getState());
-        } catch (ClientErrorException e) {
-            if (e.getResponse().getStatusInfo() == Response.Status.NOT_FOUND) {
-                throw new InvalidAreaCodeException("The area code provided does not exist", e);
-            } else {
-                throw e;
-            }
-        }
+        contact.setState(states.resolve(contact.getPhoneNumber()));
 
         // Either update the contact or add it if it can't be found.
         return crud.update(contact);
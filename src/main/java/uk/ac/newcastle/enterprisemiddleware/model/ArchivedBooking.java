@@ -0,0 +1,91 @@
+package uk.ac.newcastle.enterprisemiddleware.model;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * <p>This is the Domain object for a {@link Booking} whose stay ended long ago and which has been moved out of the
+ * {@code booking} table into the {@code booking_archive} table.</p>
+ *
+ * <p>Rows keep the id they had as Bookings and are only ever written by the archival job's INSERT ... SELECT, so the
+ * entity is read-only. Its JSON has the same fields as a Booking, plus the time it was archived.</p>
+ */
+@Entity
+@NamedQueries({
+        @NamedQuery(name = ArchivedBooking.FIND_ALL, query = "SELECT a FROM ArchivedBooking a ORDER BY a.bookingDate ASC"),
+        @NamedQuery(name = ArchivedBooking.FIND_BY_CUSTOMER, query = "SELECT a FROM ArchivedBooking a WHERE a.customer.id = :customerId"),
+        @NamedQuery(name = ArchivedBooking.FIND_BY_HOTEL, query = "SELECT a FROM ArchivedBooking a WHERE a.hotel.id = :hotelId"),
+        @NamedQuery(name = ArchivedBooking.DELETE_BY_CUSTOMER, query = "DELETE FROM ArchivedBooking a WHERE a.customer.id = :customerId"),
+        @NamedQuery(name = ArchivedBooking.DELETE_BY_HOTEL, query = "DELETE FROM ArchivedBooking a WHERE a.hotel.id = :hotelId")
+})
+@Table(name = "booking_archive", indexes = {
+        @Index(name = "booking_archive_customer", columnList = "customer_id"),
+        @Index(name = "booking_archive_hotel", columnList = "hotel_id")
+})
+public class ArchivedBooking implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String FIND_ALL = "ArchivedBooking.findAll";
+    public static final String FIND_BY_CUSTOMER = "ArchivedBooking.findByCustomer";
+    public static final String FIND_BY_HOTEL = "ArchivedBooking.findByHotel";
+    public static final String DELETE_BY_CUSTOMER = "ArchivedBooking.deleteByCustomer";
+    public static final String DELETE_BY_HOTEL = "ArchivedBooking.deleteByHotel";
+
+    @Id
+    private Long id;
+
+    @ManyToOne()
+    @JoinColumn(name = "customer_id", nullable = false)
+    private Customer customer;
+
+    @ManyToOne()
+    @JoinColumn(name = "hotel_id", nullable = false)
+    private Hotel hotel;
+
+    @Column(name = "booking_date")
+    private LocalDate bookingDate;
+
+    @Column(name = "check_out_date")
+    private LocalDate checkOutDate;
+
+    @Column(name = "status")
+    private String status;
+
+    @Column(name = "archived_at")
+    private Instant archivedAt;
+
+    // Default constructor
+    public ArchivedBooking() {}
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    public Hotel getHotel() {
+        return hotel;
+    }
+
+    public LocalDate getBookingDate() {
+        return bookingDate;
+    }
+
+    public LocalDate getCheckOutDate() {
+        return checkOutDate;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public Instant getArchivedAt() {
+        return archivedAt;
+    }
+}
@@ -1,10 +1,14 @@
 package uk.ac.newcastle.enterprisemiddleware.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
 import javax.persistence.*;
 import javax.validation.constraints.*;
 import javax.xml.bind.annotation.XmlRootElement;
 import java.io.Serializable;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -12,16 +16,25 @@ import java.util.Objects;
  *
  * <p>It specifies how Bookings are retrieved from the database (with @NamedQueries) and includes constraints on fields
  * (using annotations like @NotNull, @Pattern, etc.).</p>
+ *
+ * <p>The {@link #SUMMARY} entity graph fetches the customer and hotel in the same statement as the Bookings, rather
+ * than with one further query for each distinct customer and hotel. Their JSON leaves out their own bookings, which
+ * would otherwise lead back to this Booking.</p>
  */
 
 @Entity
 @NamedQueries({
      @NamedQuery(name = Booking.FIND_ALL, query = "SELECT b FROM Booking b ORDER BY b.bookingDate ASC"),
      @NamedQuery(name = Booking.FIND_BY_CUSTOMER, query = "SELECT b FROM Booking b WHERE b.customer.id = :customerId"),
-     @NamedQuery(name = Booking.FIND_BY_HOTEL, query = "SELECT b FROM Booking b WHERE b.hotel.id = :hotelId")
+     @NamedQuery(name = Booking.FIND_BY_HOTEL, query = "SELECT b FROM Booking b WHERE b.hotel.id = :hotelId"),
+     @NamedQuery(name = Booking.DELETE_BY_CUSTOMER, query = "DELETE FROM Booking b WHERE b.customer.id = :customerId"),
+     @NamedQuery(name = Booking.DELETE_BY_HOTEL, query = "DELETE FROM Booking b WHERE b.hotel.id = :hotelId")
 })
+@NamedEntityGraph(name = Booking.SUMMARY,
+        attributeNodes = {@NamedAttributeNode("customer"), @NamedAttributeNode("hotel")})
 @XmlRootElement
-@Table(name = "booking", uniqueConstraints = @UniqueConstraint(columnNames = {"customer_id", "hotel_id", "booking_date"}))
+@Table(name = "booking", uniqueConstraints = @UniqueConstraint(columnNames = {"customer_id", "hotel_id", "booking_date"}),
+        indexes = @Index(name = "booking_booking_date", columnList = "booking_date, id"))
 public class Booking implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -29,23 +42,34 @@ public class Booking implements Serializable {
     public static final String FIND_ALL = "Booking.findAll";
     public static final String FIND_BY_CUSTOMER = "Booking.findByCustomer";
     public static final String FIND_BY_HOTEL = "Booking.findByHotel";
+    public static final String DELETE_BY_CUSTOMER = "Booking.deleteByCustomer";
+    public static final String DELETE_BY_HOTEL = "Booking.deleteByHotel";
+    public static final String SUMMARY = "Booking.summary";
 
+    // Pooled sequence ids are allocated 50 at a time, so inserts can be grouped into JDBC batches
     @Id
-    @GeneratedValue(strategy = GenerationType.TABLE)
+    @SequenceGenerator(name = "booking_seq", sequenceName = "booking_seq", allocationSize = 50)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "booking_seq")
     private Long id;
 
     @ManyToOne()
     @JoinColumn(name = "customer_id", nullable = false)
+    @JsonIgnoreProperties("bookings")
     private Customer customer;
 
     @ManyToOne()
     @JoinColumn(name = "hotel_id", nullable = false)
+    @JsonIgnoreProperties("bookings")
     private Hotel hotel;
 
     @NotNull(message = "Booking date cannot be null")
     @Column(name = "booking_date")
     private LocalDate bookingDate;
 
+    // Exclusive end of a multi-night stay; null for a single night on the booking date
+    @Column(name = "check_out_date")
+    private LocalDate checkOutDate;
+
     @NotNull
     @Size(min = 5, max = 20, message = "Status should be between 5 and 20 characters")
     @Column(name = "status")
@@ -91,6 +115,37 @@ public class Booking implements Serializable {
         this.bookingDate = bookingDate;
     }
 
+    public LocalDate getCheckOutDate() {
+        return checkOutDate;
+    }
+
+    public void setCheckOutDate(LocalDate checkOutDate) {
+        this.checkOutDate = checkOutDate;
+    }
+
+    /**
+     * <p>Returns the exclusive end of the stay: the check-out date, or the day after the booking date for a single
+     * night.</p>
+     *
+     * @return The date the stay ends
+     */
+    public LocalDate stayEnd() {
+        return checkOutDate != null ? checkOutDate : bookingDate.plusDays(1);
+    }
+
+    /**
+     * <p>Returns every night of the stay, from the booking date up to but excluding the check-out date.</p>
+     *
+     * @return The nights occupied by this booking
+     */
+    public List<LocalDate> nights() {
+        List<LocalDate> nights = new ArrayList<>();
+        for (LocalDate night = bookingDate; night.isBefore(stayEnd()); night = night.plusDays(1)) {
+            nights.add(night);
+        }
+        return nights;
+    }
+
     public String getStatus() {
         return status;
     }
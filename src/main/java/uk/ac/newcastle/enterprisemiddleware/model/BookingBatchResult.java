@@ -0,0 +1,56 @@
+package uk.ac.newcastle.enterprisemiddleware.model;
+
+/**
+ * <p>Simple POJO reporting the outcome of one item of a batch booking request.</p>
+ *
+ * <p>{@code status} uses the HTTP status the item would have received as a single request: 201 when the booking was
+ * created, 400 when it was invalid and 409 when it was a duplicate or the hotel was full.</p>
+ */
+public class BookingBatchResult {
+    private int index;
+    private int status;
+    private Long bookingId;
+    private String error;
+
+    public BookingBatchResult() {}
+
+    public BookingBatchResult(int index, int status, Long bookingId, String error) {
+        this.index = index;
+        this.status = status;
+        this.bookingId = bookingId;
+        this.error = error;
+    }
+
+    // Getters and Setters
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public Long getBookingId() {
+        return bookingId;
+    }
+
+    public void setBookingId(Long bookingId) {
+        this.bookingId = bookingId;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
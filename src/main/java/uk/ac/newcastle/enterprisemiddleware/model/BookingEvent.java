@@ -0,0 +1,87 @@
+package uk.ac.newcastle.enterprisemiddleware.model;
+
+import java.time.Instant;
+
+/**
+ * <p>Simple immutable record of a committed change to the bookings, as kept in the booking journal.</p>
+ *
+ * <p>{@code CREATED} and {@code UPDATED} events carry the whole {@link Stay} of the booking afterwards,
+ * {@code CANCELLED} only the booking id and {@code HOTEL_REMOVED}, which cancels every booking of a deleted hotel,
+ * only the hotel id. {@code ARCHIVED} also carries only the booking id: the booking was moved to the archive and
+ * is no longer live.</p>
+ */
+public final class BookingEvent {
+
+    public enum Type {
+        CREATED, UPDATED, CANCELLED, HOTEL_REMOVED, ARCHIVED
+    }
+
+    private final Type type;
+    private final Instant at;
+    private final Long bookingId;
+    private final Long hotelId;
+    private final Stay stay;
+
+    private BookingEvent(Type type, Instant at, Long bookingId, Long hotelId, Stay stay) {
+        this.type = type;
+        this.at = at;
+        this.bookingId = bookingId;
+        this.hotelId = hotelId;
+        this.stay = stay;
+    }
+
+    public static BookingEvent created(Stay stay, Instant at) {
+        return new BookingEvent(Type.CREATED, at, stay.getBookingId(), stay.getHotelId(), stay);
+    }
+
+    public static BookingEvent updated(Stay stay, Instant at) {
+        return new BookingEvent(Type.UPDATED, at, stay.getBookingId(), stay.getHotelId(), stay);
+    }
+
+    public static BookingEvent cancelled(Long bookingId, Instant at) {
+        return new BookingEvent(Type.CANCELLED, at, bookingId, null, null);
+    }
+
+    public static BookingEvent archived(Long bookingId, Instant at) {
+        return new BookingEvent(Type.ARCHIVED, at, bookingId, null, null);
+    }
+
+    public static BookingEvent hotelRemoved(Long hotelId, Instant at) {
+        return new BookingEvent(Type.HOTEL_REMOVED, at, null, hotelId, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Instant getAt() {
+        return at;
+    }
+
+    public Long getBookingId() {
+        return bookingId;
+    }
+
+    public Long getHotelId() {
+        return hotelId;
+    }
+
+    public Stay getStay() {
+        return stay;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder().append(at).append(' ').append(type);
+        if (stay != null) {
+            text.append(" booking=").append(bookingId).append(" customer=").append(stay.getCustomerId())
+                    .append(" hotel=").append(hotelId).append(' ').append(stay.getCheckIn())
+                    .append("..").append(stay.getCheckOut());
+        } else if (bookingId != null) {
+            text.append(" booking=").append(bookingId);
+        } else {
+            text.append(" hotel=").append(hotelId);
+        }
+        return text.toString();
+    }
+}
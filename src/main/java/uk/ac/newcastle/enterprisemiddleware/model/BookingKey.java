@@ -0,0 +1,72 @@
+package uk.ac.newcastle.enterprisemiddleware.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * <p>Simple immutable value holding the natural key of a {@link Booking}: the customer, the hotel and the booking
+ * date, as covered by the unique constraint on the {@code booking} table.</p>
+ *
+ * <p>It is used to check many bookings for duplicates at once without loading whole entities.</p>
+ */
+public final class BookingKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long customerId;
+    private final Long hotelId;
+    private final LocalDate bookingDate;
+
+    public BookingKey(Long customerId, Long hotelId, LocalDate bookingDate) {
+        this.customerId = customerId;
+        this.hotelId = hotelId;
+        this.bookingDate = bookingDate;
+    }
+
+    /**
+     * <p>Returns the key of a booking.</p>
+     *
+     * @param booking The booking, with its customer and hotel ids set
+     * @return The BookingKey of the booking
+     */
+    public static BookingKey of(Booking booking) {
+        return new BookingKey(booking.getCustomer().getId(), booking.getHotel().getId(), booking.getBookingDate());
+    }
+
+    public Long getCustomerId() {
+        return customerId;
+    }
+
+    public Long getHotelId() {
+        return hotelId;
+    }
+
+    public LocalDate getBookingDate() {
+        return bookingDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BookingKey)) return false;
+        BookingKey that = (BookingKey) o;
+        return Objects.equals(customerId, that.customerId) &&
+               Objects.equals(hotelId, that.hotelId) &&
+               Objects.equals(bookingDate, that.bookingDate);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(customerId, hotelId, bookingDate);
+    }
+
+    @Override
+    public String toString() {
+        return "BookingKey{" +
+                "customerId=" + customerId +
+                ", hotelId=" + hotelId +
+                ", bookingDate=" + bookingDate +
+                '}';
+    }
+}
@@ -0,0 +1,97 @@
+package uk.ac.newcastle.enterprisemiddleware.model;
+
+import java.time.Instant;
+
+/**
+ * <p>Simple POJO describing the progress of a booking request accepted for asynchronous processing.</p>
+ *
+ * <p>A request is {@code QUEUED} until a consumer has tried to create its Booking. It then becomes {@code CREATED}
+ * with the {@code bookingId}, {@code REJECTED} if the Booking is a duplicate, overlaps another stay or finds the hotel
+ * full, or {@code FAILED} if it could not be processed at all. {@code code} is the matching HTTP status: 201, 400,
+ * 409 or 500.</p>
+ */
+public class BookingRequestStatus {
+
+    public static final String QUEUED = "QUEUED";
+    public static final String CREATED = "CREATED";
+    public static final String REJECTED = "REJECTED";
+    public static final String FAILED = "FAILED";
+
+    private String requestId;
+    private String status;
+    private Integer code;
+    private Instant submittedAt;
+    private Instant completedAt;
+    private Long bookingId;
+    private String reason;
+
+    public BookingRequestStatus() {}
+
+    public BookingRequestStatus(String requestId, String status, Integer code, Instant submittedAt,
+                                Instant completedAt, Long bookingId, String reason) {
+        this.requestId = requestId;
+        this.status = status;
+        this.code = code;
+        this.submittedAt = submittedAt;
+        this.completedAt = completedAt;
+        this.bookingId = bookingId;
+        this.reason = reason;
+    }
+
+    // Getters and Setters
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(String requestId) {
+        this.requestId = requestId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Integer getCode() {
+        return code;
+    }
+
+    public void setCode(Integer code) {
+        this.code = code;
+    }
+
+    public Instant getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public void setSubmittedAt(Instant submittedAt) {
+        this.submittedAt = submittedAt;
+    }
+
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(Instant completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    public Long getBookingId() {
+        return bookingId;
+    }
+
+    public void setBookingId(Long bookingId) {
+        this.bookingId = bookingId;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+}
@@ -0,0 +1,65 @@
+package uk.ac.newcastle.enterprisemiddleware.model;
+
+import java.io.Serializable;
+
+/**
+ * <p>Simple immutable snapshot of the counters of an in-memory cache, counted since the application started.</p>
+ */
+public final class CacheStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+    private final int size;
+    private final int maxSize;
+
+    public CacheStats(long hits, long misses, long evictions, long invalidations, int size, int maxSize) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return The share of lookups answered from the cache, from 0 to 1, or 0 before the first lookup
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                + ", invalidations=" + invalidations + ", size=" + size + "/" + maxSize + "}";
+    }
+}
@@ -1,8 +1,13 @@
 package uk.ac.newcastle.enterprisemiddleware.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import javax.persistence.*;
 import javax.validation.constraints.*;
 import javax.xml.bind.annotation.XmlRootElement;
+
+import uk.ac.newcastle.enterprisemiddleware.util.UnloadedFilter;
+
 import java.io.Serializable;
 import java.util.Date;
 import java.util.List;
@@ -14,23 +19,33 @@ import java.util.Objects;
  *
  * <p>The class specifies how customers are retrieved from the database (with @NamedQueries) and defines acceptable values
  * for Customer fields (with @NotNull, @Pattern, etc.)</p>
+ *
+ * <p>The bookings are lazy and only appear in the JSON when they have been loaded, which the
+ * {@link #WITH_BOOKINGS} entity graph does for a list of Customers in one statement.</p>
  */
 @Entity
 @NamedQueries({
         @NamedQuery(name = Customer.FIND_ALL, query = "SELECT c FROM Customer c ORDER BY c.lastName ASC, c.firstName ASC"),
         @NamedQuery(name = Customer.FIND_BY_EMAIL, query = "SELECT c FROM Customer c WHERE c.email = :email")
 })
+@NamedEntityGraph(name = Customer.WITH_BOOKINGS,
+        attributeNodes = @NamedAttributeNode(value = "bookings", subgraph = "bookings"),
+        subgraphs = @NamedSubgraph(name = "bookings", attributeNodes = @NamedAttributeNode("hotel")))
 @XmlRootElement
-@Table(name = "customer", uniqueConstraints = @UniqueConstraint(columnNames = "email"))
+@Table(name = "customer", uniqueConstraints = @UniqueConstraint(columnNames = "email"),
+        indexes = @Index(name = "customer_name", columnList = "last_name, first_name, id"))
 public class Customer implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
     public static final String FIND_ALL = "Customer.findAll";
     public static final String FIND_BY_EMAIL = "Customer.findByEmail";
+    public static final String WITH_BOOKINGS = "Customer.withBookings";
 
+    // Pooled sequence ids are allocated 50 at a time, so bulk imports can group their inserts into JDBC batches
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SequenceGenerator(name = "customer_seq", sequenceName = "customer_seq", allocationSize = 50)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_seq")
     private Long id;
 
     @NotNull
@@ -66,6 +81,7 @@ public class Customer implements Serializable {
 
     // New cascading relationship with Booking
     @OneToMany(mappedBy = "customer", cascade = CascadeType.ALL, orphanRemoval = true)
+    @JsonInclude(value = JsonInclude.Include.CUSTOM, valueFilter = UnloadedFilter.class)
     private List<Booking> bookings;
 
     // Getters and Setters...
@@ -0,0 +1,97 @@
+package uk.ac.newcastle.enterprisemiddleware.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Simple POJO summarising a bulk customer import: how many rows were imported and rejected, and why each rejected
+ * row was refused.</p>
+ *
+ * <p>Rows are numbered from 1 by line of the uploaded file, so for CSV the header is line 1. Only the first
+ * {@code customer.import.max-reported-rejections} rejections are listed; {@code rejectionsTruncated} says whether
+ * there were more.</p>
+ */
+public class CustomerImportReport {
+
+    private long imported;
+    private long rejected;
+    private boolean rejectionsTruncated;
+    private List<Rejection> rejections = new ArrayList<>();
+
+    public CustomerImportReport() {}
+
+    // Getters and Setters
+    public long getImported() {
+        return imported;
+    }
+
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    public boolean isRejectionsTruncated() {
+        return rejectionsTruncated;
+    }
+
+    public void setRejectionsTruncated(boolean rejectionsTruncated) {
+        this.rejectionsTruncated = rejectionsTruncated;
+    }
+
+    public List<Rejection> getRejections() {
+        return rejections;
+    }
+
+    public void setRejections(List<Rejection> rejections) {
+        this.rejections = rejections;
+    }
+
+    /**
+     * <p>A row of the import that was not imported.</p>
+     */
+    public static class Rejection {
+
+        private long line;
+        private String email;
+        private String reason;
+
+        public Rejection() {}
+
+        public Rejection(long line, String email, String reason) {
+            this.line = line;
+            this.email = email;
+            this.reason = reason;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public void setLine(long line) {
+            this.line = line;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public void setEmail(String email) {
+            this.email = email;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public void setReason(String reason) {
+            this.reason = reason;
+        }
+    }
+}
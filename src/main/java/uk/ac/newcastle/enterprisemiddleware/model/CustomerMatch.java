@@ -0,0 +1,58 @@
+package uk.ac.newcastle.enterprisemiddleware.model;
+
+import java.io.Serializable;
+
+/**
+ * <p>Simple immutable summary of a {@link Customer} returned by the type-ahead customer search: just enough to show
+ * and pick the customer.</p>
+ *
+ * <p>It is the value kept in the in-memory search index, and is loaded with a projection query rather than as whole
+ * entities.</p>
+ */
+public final class CustomerMatch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+    private final String firstName;
+    private final String lastName;
+    private final String email;
+
+    public CustomerMatch(Long id, String firstName, String lastName, String email) {
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.email = email;
+    }
+
+    /**
+     * <p>Returns the summary of a customer.</p>
+     *
+     * @param customer The customer, with its id set
+     * @return The CustomerMatch of the customer
+     */
+    public static CustomerMatch of(Customer customer) {
+        return new CustomerMatch(customer.getId(), customer.getFirstName(), customer.getLastName(), customer.getEmail());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    @Override
+    public String toString() {
+        return "CustomerMatch{id=" + id + ", " + firstName + " " + lastName + " <" + email + ">}";
+    }
+}
@@ -1,13 +1,25 @@
 package uk.ac.newcastle.enterprisemiddleware.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Size;
+
+import uk.ac.newcastle.enterprisemiddleware.util.UnloadedFilter;
+
 import java.util.List;
 
 @Entity
+@NamedEntityGraph(name = Hotel.WITH_BOOKINGS,
+        attributeNodes = @NamedAttributeNode(value = "bookings", subgraph = "bookings"),
+        subgraphs = @NamedSubgraph(name = "bookings", attributeNodes = @NamedAttributeNode("customer")))
+@Table(indexes = @Index(name = "hotel_name", columnList = "name, id"))
 public class Hotel {
 
+    // Loads the bookings, and the customer of each, with the hotels
+    public static final String WITH_BOOKINGS = "Hotel.withBookings";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -23,11 +35,16 @@ public class Hotel {
     @Size(max = 500, message = "Description cannot be more than 500 characters")
     private String description;
 
+    // Capacity of the per-date room inventory; zero or less leaves bookings unlimited
     private int totalRooms;
+
+    // Static figure supplied by the client; per-date availability is kept by the room inventory
     private int availableRooms;
 
     // New cascading relationship with Booking
+    // Only written to JSON when the bookings have been loaded
     @OneToMany(mappedBy = "hotel", cascade = CascadeType.ALL, orphanRemoval = true)
+    @JsonInclude(value = JsonInclude.Include.CUSTOM, valueFilter = UnloadedFilter.class)
     private List<Booking> bookings;
 
     // Getters and setters
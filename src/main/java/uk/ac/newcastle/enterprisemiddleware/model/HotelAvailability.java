@@ -0,0 +1,90 @@
+package uk.ac.newcastle.enterprisemiddleware.model;
+
+import java.time.LocalDate;
+
+/**
+ * <p>Simple POJO describing a hotel that has space over a date range, as returned by an availability search.</p>
+ *
+ * <p>{@code availableRooms} is the number of rooms free on every night of the range, the fewest free on any one
+ * night. A hotel with no {@code totalRooms} configured does not have its inventory limited, in which case it is
+ * null.</p>
+ */
+public class HotelAvailability {
+    private Long hotelId;
+    private String name;
+    private String location;
+    private LocalDate from;
+    private LocalDate to;
+    private int totalRooms;
+    private Integer availableRooms;
+
+    public HotelAvailability() {}
+
+    public HotelAvailability(Long hotelId, String name, String location, LocalDate from, LocalDate to,
+                             int totalRooms, Integer availableRooms) {
+        this.hotelId = hotelId;
+        this.name = name;
+        this.location = location;
+        this.from = from;
+        this.to = to;
+        this.totalRooms = totalRooms;
+        this.availableRooms = availableRooms;
+    }
+
+    // Getters and Setters
+    public Long getHotelId() {
+        return hotelId;
+    }
+
+    public void setHotelId(Long hotelId) {
+        this.hotelId = hotelId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDate from) {
+        this.from = from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDate to) {
+        this.to = to;
+    }
+
+    public int getTotalRooms() {
+        return totalRooms;
+    }
+
+    public void setTotalRooms(int totalRooms) {
+        this.totalRooms = totalRooms;
+    }
+
+    public Integer getAvailableRooms() {
+        return availableRooms;
+    }
+
+    public void setAvailableRooms(Integer availableRooms) {
+        this.availableRooms = availableRooms;
+    }
+}
@@ -0,0 +1,59 @@
+package uk.ac.newcastle.enterprisemiddleware.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * <p>Simple immutable value identifying one date at one hotel.</p>
+ *
+ * <p>It is the key used wherever bookings for the same hotel-date have to be grouped or serialised, such as lock
+ * striping and room inventory.</p>
+ */
+public final class HotelDate implements Serializable, Comparable<HotelDate> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long hotelId;
+    private final LocalDate date;
+
+    public HotelDate(Long hotelId, LocalDate date) {
+        this.hotelId = Objects.requireNonNull(hotelId, "hotelId");
+        this.date = Objects.requireNonNull(date, "date");
+    }
+
+    public Long getHotelId() {
+        return hotelId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    @Override
+    public int compareTo(HotelDate other) {
+        int byHotel = hotelId.compareTo(other.hotelId);
+        return byHotel != 0 ? byHotel : date.compareTo(other.date);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof HotelDate)) return false;
+        HotelDate that = (HotelDate) o;
+        return hotelId.equals(that.hotelId) && date.equals(that.date);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * hotelId.hashCode() + date.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "HotelDate{" +
+                "hotelId=" + hotelId +
+                ", date=" + date +
+                '}';
+    }
+}
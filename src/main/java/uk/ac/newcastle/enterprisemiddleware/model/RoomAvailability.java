@@ -0,0 +1,68 @@
+package uk.ac.newcastle.enterprisemiddleware.model;
+
+import java.time.LocalDate;
+
+/**
+ * <p>Simple POJO describing how many rooms of a hotel are free on a given date.</p>
+ *
+ * <p>A hotel with no {@code totalRooms} configured does not have its inventory limited, in which case
+ * {@code availableRooms} is null.</p>
+ */
+public class RoomAvailability {
+    private Long hotelId;
+    private LocalDate date;
+    private int totalRooms;
+    private int bookedRooms;
+    private Integer availableRooms;
+
+    public RoomAvailability() {}
+
+    public RoomAvailability(Long hotelId, LocalDate date, int totalRooms, int bookedRooms) {
+        this.hotelId = hotelId;
+        this.date = date;
+        this.totalRooms = totalRooms;
+        this.bookedRooms = bookedRooms;
+        this.availableRooms = totalRooms > 0 ? Math.max(totalRooms - bookedRooms, 0) : null;
+    }
+
+    // Getters and Setters
+    public Long getHotelId() {
+        return hotelId;
+    }
+
+    public void setHotelId(Long hotelId) {
+        this.hotelId = hotelId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+
+    public int getTotalRooms() {
+        return totalRooms;
+    }
+
+    public void setTotalRooms(int totalRooms) {
+        this.totalRooms = totalRooms;
+    }
+
+    public int getBookedRooms() {
+        return bookedRooms;
+    }
+
+    public void setBookedRooms(int bookedRooms) {
+        this.bookedRooms = bookedRooms;
+    }
+
+    public Integer getAvailableRooms() {
+        return availableRooms;
+    }
+
+    public void setAvailableRooms(Integer availableRooms) {
+        this.availableRooms = availableRooms;
+    }
+}
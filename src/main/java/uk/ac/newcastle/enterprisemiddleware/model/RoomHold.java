@@ -0,0 +1,81 @@
+package uk.ac.newcastle.enterprisemiddleware.model;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * <p>Simple POJO describing a room held for a customer while they check out.</p>
+ *
+ * <p>A hold takes the rooms of its nights in the in-memory inventory only. It never creates a {@link Booking} row:
+ * confirming it before {@code expiresAt} creates the Booking, and otherwise the rooms are given back
+ * automatically.</p>
+ */
+public class RoomHold {
+    private String holdId;
+    private Long customerId;
+    private Long hotelId;
+    private LocalDate bookingDate;
+    private LocalDate checkOutDate;
+    private Instant expiresAt;
+
+    public RoomHold() {}
+
+    public RoomHold(String holdId, Long customerId, Long hotelId, LocalDate bookingDate, LocalDate checkOutDate,
+                    Instant expiresAt) {
+        this.holdId = holdId;
+        this.customerId = customerId;
+        this.hotelId = hotelId;
+        this.bookingDate = bookingDate;
+        this.checkOutDate = checkOutDate;
+        this.expiresAt = expiresAt;
+    }
+
+    // Getters and Setters
+    public String getHoldId() {
+        return holdId;
+    }
+
+    public void setHoldId(String holdId) {
+        this.holdId = holdId;
+    }
+
+    public Long getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(Long customerId) {
+        this.customerId = customerId;
+    }
+
+    public Long getHotelId() {
+        return hotelId;
+    }
+
+    public void setHotelId(Long hotelId) {
+        this.hotelId = hotelId;
+    }
+
+    public LocalDate getBookingDate() {
+        return bookingDate;
+    }
+
+    public void setBookingDate(LocalDate bookingDate) {
+        this.bookingDate = bookingDate;
+    }
+
+    public LocalDate getCheckOutDate() {
+        return checkOutDate;
+    }
+
+    public void setCheckOutDate(LocalDate checkOutDate) {
+        this.checkOutDate = checkOutDate;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
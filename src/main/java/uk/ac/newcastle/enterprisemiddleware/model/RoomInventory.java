@@ -0,0 +1,89 @@
+package uk.ac.newcastle.enterprisemiddleware.model;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * <p>This is the Domain object for the per-date room inventory of a {@link Hotel}.</p>
+ *
+ * <p>Each row records how many rooms of a hotel are booked on one date. Rows are created on the first booking for a
+ * hotel-date and are adjusted in place afterwards, so the table only holds dates that have ever been booked. The
+ * in-memory calendar is rebuilt from this table on startup, after the rows of hotel-dates booked before the table was
+ * kept have been filled in from their bookings.</p>
+ */
+@Entity
+@NamedQueries({
+        @NamedQuery(name = RoomInventory.FIND_ALL, query = "SELECT r FROM RoomInventory r"),
+        @NamedQuery(name = RoomInventory.ADJUST, query = "UPDATE RoomInventory r SET r.bookedRooms = r.bookedRooms + :delta " +
+                "WHERE r.hotelId = :hotelId AND r.stayDate = :stayDate"),
+        @NamedQuery(name = RoomInventory.DELETE_BY_HOTEL, query = "DELETE FROM RoomInventory r WHERE r.hotelId = :hotelId"),
+        @NamedQuery(name = RoomInventory.COUNT_UNRECORDED, query = "SELECT b.hotel.id, b.bookingDate, COUNT(b) " +
+                "FROM Booking b WHERE NOT EXISTS (SELECT r.id FROM RoomInventory r " +
+                "WHERE r.hotelId = b.hotel.id AND r.stayDate = b.bookingDate) GROUP BY b.hotel.id, b.bookingDate")
+})
+@Table(name = "room_inventory", uniqueConstraints = @UniqueConstraint(columnNames = {"hotel_id", "stay_date"}))
+public class RoomInventory implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String FIND_ALL = "RoomInventory.findAll";
+    public static final String ADJUST = "RoomInventory.adjust";
+    public static final String DELETE_BY_HOTEL = "RoomInventory.deleteByHotel";
+    public static final String COUNT_UNRECORDED = "RoomInventory.countUnrecorded";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    @Column(name = "hotel_id", nullable = false)
+    private Long hotelId;
+
+    @NotNull
+    @Column(name = "stay_date", nullable = false)
+    private LocalDate stayDate;
+
+    @Column(name = "booked_rooms", nullable = false)
+    private int bookedRooms;
+
+    // Default constructor
+    public RoomInventory() {}
+
+    // Constructor with parameters
+    public RoomInventory(Long hotelId, LocalDate stayDate, int bookedRooms) {
+        this.hotelId = hotelId;
+        this.stayDate = stayDate;
+        this.bookedRooms = bookedRooms;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public Long getHotelId() {
+        return hotelId;
+    }
+
+    public void setHotelId(Long hotelId) {
+        this.hotelId = hotelId;
+    }
+
+    public LocalDate getStayDate() {
+        return stayDate;
+    }
+
+    public void setStayDate(LocalDate stayDate) {
+        this.stayDate = stayDate;
+    }
+
+    public int getBookedRooms() {
+        return bookedRooms;
+    }
+
+    public void setBookedRooms(int bookedRooms) {
+        this.bookedRooms = bookedRooms;
+    }
+}
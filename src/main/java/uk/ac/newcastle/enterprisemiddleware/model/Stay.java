@@ -0,0 +1,72 @@
+package uk.ac.newcastle.enterprisemiddleware.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * <p>Simple immutable value describing the nights a {@link Booking} occupies: its check-in date and the exclusive
+ * check-out date, which for a single-night booking is the day after the booking date.</p>
+ *
+ * <p>It is the entry kept in the per-hotel interval index of stays, and is loaded with a projection query rather than
+ * as whole entities.</p>
+ */
+public final class Stay implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long bookingId;
+    private final Long customerId;
+    private final Long hotelId;
+    private final LocalDate checkIn;
+    private final LocalDate checkOut;
+
+    public Stay(Long bookingId, Long customerId, Long hotelId, LocalDate checkIn, LocalDate checkOut) {
+        this.bookingId = bookingId;
+        this.customerId = customerId;
+        this.hotelId = hotelId;
+        this.checkIn = checkIn;
+        this.checkOut = checkOut != null ? checkOut : checkIn.plusDays(1);
+    }
+
+    /**
+     * <p>Returns the stay of a booking.</p>
+     *
+     * @param booking The booking, with its customer and hotel ids set
+     * @return The Stay of the booking
+     */
+    public static Stay of(Booking booking) {
+        return new Stay(booking.getId(), booking.getCustomer().getId(), booking.getHotel().getId(),
+                booking.getBookingDate(), booking.getCheckOutDate());
+    }
+
+    public Long getBookingId() {
+        return bookingId;
+    }
+
+    public Long getCustomerId() {
+        return customerId;
+    }
+
+    public Long getHotelId() {
+        return hotelId;
+    }
+
+    public LocalDate getCheckIn() {
+        return checkIn;
+    }
+
+    public LocalDate getCheckOut() {
+        return checkOut;
+    }
+
+    @Override
+    public String toString() {
+        return "Stay{" +
+                "bookingId=" + bookingId +
+                ", customerId=" + customerId +
+                ", hotelId=" + hotelId +
+                ", checkIn=" + checkIn +
+                ", checkOut=" + checkOut +
+                '}';
+    }
+}
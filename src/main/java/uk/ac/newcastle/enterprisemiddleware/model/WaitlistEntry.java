@@ -0,0 +1,107 @@
+package uk.ac.newcastle.enterprisemiddleware.model;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * <p>Simple POJO describing a customer's place on the waitlist of a sold-out hotel-date.</p>
+ *
+ * <p>An entry is {@code WAITING} until a room is freed and it reaches the head of the queue, when it is turned into
+ * a Booking and becomes {@code PROMOTED} with its {@code bookingId}. It becomes {@code FAILED}, with a
+ * {@code reason}, if the Booking could not be created, or {@code CANCELLED} if the customer leaves the waitlist.</p>
+ */
+public class WaitlistEntry {
+
+    public static final String WAITING = "WAITING";
+    public static final String PROMOTED = "PROMOTED";
+    public static final String FAILED = "FAILED";
+    public static final String CANCELLED = "CANCELLED";
+
+    private String entryId;
+    private Long customerId;
+    private Long hotelId;
+    private LocalDate bookingDate;
+    private Instant joinedAt;
+    private String status;
+    private Long bookingId;
+    private String reason;
+
+    public WaitlistEntry() {}
+
+    public WaitlistEntry(String entryId, Long customerId, Long hotelId, LocalDate bookingDate, Instant joinedAt,
+                         String status, Long bookingId, String reason) {
+        this.entryId = entryId;
+        this.customerId = customerId;
+        this.hotelId = hotelId;
+        this.bookingDate = bookingDate;
+        this.joinedAt = joinedAt;
+        this.status = status;
+        this.bookingId = bookingId;
+        this.reason = reason;
+    }
+
+    // Getters and Setters
+    public String getEntryId() {
+        return entryId;
+    }
+
+    public void setEntryId(String entryId) {
+        this.entryId = entryId;
+    }
+
+    public Long getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(Long customerId) {
+        this.customerId = customerId;
+    }
+
+    public Long getHotelId() {
+        return hotelId;
+    }
+
+    public void setHotelId(Long hotelId) {
+        this.hotelId = hotelId;
+    }
+
+    public LocalDate getBookingDate() {
+        return bookingDate;
+    }
+
+    public void setBookingDate(LocalDate bookingDate) {
+        this.bookingDate = bookingDate;
+    }
+
+    public Instant getJoinedAt() {
+        return joinedAt;
+    }
+
+    public void setJoinedAt(Instant joinedAt) {
+        this.joinedAt = joinedAt;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Long getBookingId() {
+        return bookingId;
+    }
+
+    public void setBookingId(Long bookingId) {
+        this.bookingId = bookingId;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+}
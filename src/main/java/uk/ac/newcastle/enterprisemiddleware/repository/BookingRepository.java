@@ -4,17 +4,27 @@ import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.persistence.NoResultException;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 
+import uk.ac.newcastle.enterprisemiddleware.model.ArchivedBooking;
 import uk.ac.newcastle.enterprisemiddleware.model.Booking;
+import uk.ac.newcastle.enterprisemiddleware.model.BookingKey;
+import uk.ac.newcastle.enterprisemiddleware.model.Stay;
+import uk.ac.newcastle.enterprisemiddleware.util.PageCursor;
 
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * <p>This is a Repository class and connects the Service/Control layer (see {@link BookingService}) with the
@@ -36,15 +46,55 @@ public class BookingRepository {
     EntityManager em;
 
     /**
-     * <p>Returns a list of all persisted {@link Booking} objects.</p>
+     * <p>Returns a list of all persisted {@link Booking} objects, with their customers and hotels.</p>
      *
      * @return List of Booking objects
      */
     public List<Booking> findAll() {
-        TypedQuery<Booking> query = em.createNamedQuery(Booking.FIND_ALL, Booking.class);
+        TypedQuery<Booking> query = em.createNamedQuery(Booking.FIND_ALL, Booking.class)
+                .setHint("javax.persistence.fetchgraph", em.getEntityGraph(Booking.SUMMARY));
         return query.getResultList();
     }
 
+    /**
+     * <p>Returns one page of the persisted {@link Booking} objects, sorted by booking date and then id, with their
+     * customers and hotels.</p>
+     *
+     * @param after The cursor of the previous page, or null for the first page
+     * @param limit The maximum number of Bookings to return
+     * @return List of Booking objects
+     */
+    public List<Booking> findPage(PageCursor after, int limit) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Booking> criteria = cb.createQuery(Booking.class);
+        Root<Booking> booking = criteria.from(Booking.class);
+        criteria.select(booking).orderBy(cb.asc(booking.get("bookingDate")), cb.asc(booking.get("id")));
+        if (after != null) {
+            criteria.where(after.after(cb, booking.get("bookingDate"), booking.get("id")));
+        }
+        return em.createQuery(criteria)
+                .setHint("javax.persistence.fetchgraph", em.getEntityGraph(Booking.SUMMARY))
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * <p>Streams every persisted {@link Booking}, sorted by id, reading the rows from the database fetchSize at a time
+     * instead of loading them all. The customer and hotel are fetched in the same statement rather than one query per
+     * Booking. Everything stays managed, so a caller reading many Bookings should clear the EntityManager as it
+     * goes.</p>
+     *
+     * @param fetchSize The number of rows to fetch from the database at a time
+     * @return Stream of Booking objects, which must be closed
+     */
+    public Stream<Booking> streamAll(int fetchSize) {
+        return em.createQuery("SELECT b FROM Booking b ORDER BY b.id", Booking.class)
+                .setHint("javax.persistence.fetchgraph", em.getEntityGraph(Booking.SUMMARY))
+                .setHint("org.hibernate.fetchSize", fetchSize)
+                .setHint("org.hibernate.readOnly", true)
+                .getResultStream();
+    }
+
     /**
      * <p>Returns a single Booking object specified by a Long id.</p>
      *
@@ -56,7 +106,7 @@ public class BookingRepository {
     }
 
     /**
-     * <p>Returns all Booking objects associated with a specific customer.</p>
+     * <p>Returns all Booking objects associated with a specific customer, with their customers and hotels.</p>
      *
      * @param customerId The id of the customer
      * @return List of Booking objects associated with the customer
@@ -64,11 +114,12 @@ public class BookingRepository {
     public List<Booking> findByCustomerId(Long customerId) {
         TypedQuery<Booking> query = em.createQuery("SELECT b FROM Booking b WHERE b.customer.id = :customerId", Booking.class);
         query.setParameter("customerId", customerId);
+        query.setHint("javax.persistence.fetchgraph", em.getEntityGraph(Booking.SUMMARY));
         return query.getResultList();
     }
 
     /**
-     * <p>Returns all Booking objects associated with a specific hotel.</p>
+     * <p>Returns all Booking objects associated with a specific hotel, with their customers and hotels.</p>
      *
      * @param hotelId The id of the hotel
      * @return List of Booking objects associated with the hotel
@@ -76,6 +127,7 @@ public class BookingRepository {
     public List<Booking> findByHotelId(Long hotelId) {
         TypedQuery<Booking> query = em.createQuery("SELECT b FROM Booking b WHERE b.hotel.id = :hotelId", Booking.class);
         query.setParameter("hotelId", hotelId);
+        query.setHint("javax.persistence.fetchgraph", em.getEntityGraph(Booking.SUMMARY));
         return query.getResultList();
     }
 
@@ -85,14 +137,256 @@ public class BookingRepository {
      * @param customerId The id of the customer
      * @param hotelId The id of the hotel
      * @param bookingDate The date of the booking
-     * @return The Booking object with the specified customer, hotel, and booking date
+     * @return The Booking object with the specified customer, hotel, and booking date, or null if there is none
      */
     public Booking findByCustomerAndHotelAndDate(Long customerId, Long hotelId, LocalDate bookingDate) {
         TypedQuery<Booking> query = em.createQuery("SELECT b FROM Booking b WHERE b.customer.id = :customerId AND b.hotel.id = :hotelId AND b.bookingDate = :bookingDate", Booking.class);
         query.setParameter("customerId", customerId);
         query.setParameter("hotelId", hotelId);
         query.setParameter("bookingDate", bookingDate);
-        return query.getSingleResult();
+        query.setMaxResults(1);
+        // A miss is the common case, so report it with null rather than a NoResultException
+        List<Booking> bookings = query.getResultList();
+        return bookings.isEmpty() ? null : bookings.get(0);
+    }
+
+    /**
+     * <p>Returns the keys of every persisted Booking whose customer, hotel and booking date are each among the given
+     * values, in a single query.</p>
+     *
+     * <p>The result is a superset of the exact key combinations being checked; callers match it against the keys they
+     * hold.</p>
+     *
+     * @param customerIds The ids of the customers
+     * @param hotelIds The ids of the hotels
+     * @param bookingDates The booking dates
+     * @return The keys of the matching bookings
+     */
+    public List<BookingKey> findKeys(Collection<Long> customerIds, Collection<Long> hotelIds, Collection<LocalDate> bookingDates) {
+        if (customerIds.isEmpty() || hotelIds.isEmpty() || bookingDates.isEmpty()) {
+            return new ArrayList<>();
+        }
+        TypedQuery<BookingKey> query = em.createQuery("SELECT NEW uk.ac.newcastle.enterprisemiddleware.model.BookingKey(" +
+                "b.customer.id, b.hotel.id, b.bookingDate) FROM Booking b " +
+                "WHERE b.customer.id IN :customerIds AND b.hotel.id IN :hotelIds AND b.bookingDate IN :bookingDates", BookingKey.class);
+        query.setParameter("customerIds", customerIds);
+        query.setParameter("hotelIds", hotelIds);
+        query.setParameter("bookingDates", bookingDates);
+        return query.getResultList();
+    }
+
+    /**
+     * <p>Returns the {@link Stay} of every persisted Booking, without loading the entities themselves.</p>
+     *
+     * @return List of Stay objects
+     */
+    public List<Stay> findAllStays() {
+        TypedQuery<Stay> query = em.createQuery("SELECT NEW uk.ac.newcastle.enterprisemiddleware.model.Stay(" +
+                "b.id, b.customer.id, b.hotel.id, b.bookingDate, b.checkOutDate) FROM Booking b", Stay.class);
+        return query.getResultList();
+    }
+
+    /**
+     * @return The number of persisted Booking objects
+     */
+    public long count() {
+        return em.createQuery("SELECT COUNT(b) FROM Booking b", Long.class).getSingleResult();
+    }
+
+    /**
+     * @return The highest id of any persisted Booking, or null if there are none
+     */
+    public Long findMaxId() {
+        return em.createQuery("SELECT MAX(b.id) FROM Booking b", Long.class).getSingleResult();
+    }
+
+    /**
+     * <p>Returns the {@link BookingKey} of every persisted Booking, without loading the entities themselves.</p>
+     *
+     * @return List of BookingKey objects
+     */
+    public List<BookingKey> findAllKeys() {
+        TypedQuery<BookingKey> query = em.createQuery("SELECT NEW uk.ac.newcastle.enterprisemiddleware.model.BookingKey(" +
+                "b.customer.id, b.hotel.id, b.bookingDate) FROM Booking b", BookingKey.class);
+        return query.getResultList();
+    }
+
+    /**
+     * <p>Returns the {@link Stay} of up to limit Bookings whose stay ended on or before the cutoff date, locking their
+     * rows until the transaction completes so they cannot be changed before they are archived.</p>
+     *
+     * @param cutoff The date by which the stays must have ended
+     * @param limit The maximum number of stays to return
+     * @return List of Stay objects, in id order
+     */
+    public List<Stay> findStaysEndedBy(LocalDate cutoff, int limit) {
+        TypedQuery<Stay> query = em.createQuery("SELECT NEW uk.ac.newcastle.enterprisemiddleware.model.Stay(" +
+                "b.id, b.customer.id, b.hotel.id, b.bookingDate, b.checkOutDate) FROM Booking b " +
+                "WHERE b.bookingDate < :cutoff AND (b.checkOutDate IS NULL OR b.checkOutDate <= :cutoff) " +
+                "ORDER BY b.id", Stay.class);
+        query.setParameter("cutoff", cutoff);
+        query.setMaxResults(limit);
+        query.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+        return query.getResultList();
+    }
+
+    /**
+     * <p>Moves the Bookings with the given ids into the {@code booking_archive} table with one INSERT ... SELECT and
+     * one DELETE, without loading them.</p>
+     *
+     * @param ids The ids of the Bookings to archive, whose rows the transaction has locked
+     * @param archivedAt The time to record as the time of archiving
+     * @return The number of Bookings archived
+     */
+    public int archive(Collection<Long> ids, Instant archivedAt) {
+        int copied = em.createNativeQuery("INSERT INTO booking_archive " +
+                        "(id, customer_id, hotel_id, booking_date, check_out_date, status, archived_at) " +
+                        "SELECT id, customer_id, hotel_id, booking_date, check_out_date, status, :archivedAt " +
+                        "FROM booking WHERE id IN (:ids)")
+                .setParameter("archivedAt", Timestamp.from(archivedAt))
+                .setParameter("ids", ids)
+                .executeUpdate();
+        int deleted = em.createQuery("DELETE FROM Booking b WHERE b.id IN :ids")
+                .setParameter("ids", ids)
+                .executeUpdate();
+        if (copied != deleted) {
+            throw new IllegalStateException("Archived " + copied + " bookings but deleted " + deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * <p>Returns a list of all archived Bookings, ordered by booking date.</p>
+     *
+     * @return List of ArchivedBooking objects
+     */
+    public List<ArchivedBooking> findAllArchived() {
+        return em.createNamedQuery(ArchivedBooking.FIND_ALL, ArchivedBooking.class).getResultList();
+    }
+
+    /**
+     * <p>Returns a list of the archived Bookings of a customer.</p>
+     *
+     * @param customerId The ID of the customer
+     * @return List of ArchivedBooking objects
+     */
+    public List<ArchivedBooking> findArchivedByCustomerId(Long customerId) {
+        return em.createNamedQuery(ArchivedBooking.FIND_BY_CUSTOMER, ArchivedBooking.class)
+                .setParameter("customerId", customerId)
+                .getResultList();
+    }
+
+    /**
+     * <p>Returns a list of the archived Bookings of a hotel.</p>
+     *
+     * @param hotelId The ID of the hotel
+     * @return List of ArchivedBooking objects
+     */
+    public List<ArchivedBooking> findArchivedByHotelId(Long hotelId) {
+        return em.createNamedQuery(ArchivedBooking.FIND_BY_HOTEL, ArchivedBooking.class)
+                .setParameter("hotelId", hotelId)
+                .getResultList();
+    }
+
+    /**
+     * @param id The ID of the archived Booking
+     * @return The ArchivedBooking with that ID, or null if there is none
+     */
+    public ArchivedBooking findArchivedById(Long id) {
+        return em.find(ArchivedBooking.class, id);
+    }
+
+    /**
+     * <p>Returns the {@link Stay} of every Booking of a customer, without loading the Bookings themselves.</p>
+     *
+     * @param customerId The ID of the customer
+     * @return List of Stay objects
+     */
+    public List<Stay> findStaysByCustomerId(Long customerId) {
+        TypedQuery<Stay> query = em.createQuery("SELECT NEW uk.ac.newcastle.enterprisemiddleware.model.Stay(" +
+                "b.id, b.customer.id, b.hotel.id, b.bookingDate, b.checkOutDate) FROM Booking b " +
+                "WHERE b.customer.id = :customerId", Stay.class);
+        query.setParameter("customerId", customerId);
+        return query.getResultList();
+    }
+
+    /**
+     * <p>Removes every Booking of a customer with one DELETE statement, without loading them, before the customer
+     * itself is removed.</p>
+     *
+     * @param customerId The ID of the customer
+     * @return The number of Bookings removed
+     */
+    public int deleteByCustomer(Long customerId) {
+        log.info("BookingRepository.deleteByCustomer() - Deleting bookings of customer: " + customerId);
+        return em.createNamedQuery(Booking.DELETE_BY_CUSTOMER)
+                .setParameter("customerId", customerId)
+                .executeUpdate();
+    }
+
+    /**
+     * <p>Removes every Booking of a hotel with one DELETE statement, without loading them, before the hotel itself is
+     * removed.</p>
+     *
+     * @param hotelId The ID of the hotel
+     * @return The number of Bookings removed
+     */
+    public int deleteByHotel(Long hotelId) {
+        log.info("BookingRepository.deleteByHotel() - Deleting bookings of hotel: " + hotelId);
+        return em.createNamedQuery(Booking.DELETE_BY_HOTEL)
+                .setParameter("hotelId", hotelId)
+                .executeUpdate();
+    }
+
+    /**
+     * <p>Removes the archived Bookings of a customer, which must go before the customer itself.</p>
+     *
+     * @param customerId The ID of the customer
+     * @return The number of archived Bookings removed
+     */
+    public int deleteArchivedByCustomer(Long customerId) {
+        return em.createNamedQuery(ArchivedBooking.DELETE_BY_CUSTOMER)
+                .setParameter("customerId", customerId)
+                .executeUpdate();
+    }
+
+    /**
+     * <p>Removes the archived Bookings of a hotel, which must go before the hotel itself.</p>
+     *
+     * @param hotelId The ID of the hotel
+     * @return The number of archived Bookings removed
+     */
+    public int deleteArchivedByHotel(Long hotelId) {
+        return em.createNamedQuery(ArchivedBooking.DELETE_BY_HOTEL)
+                .setParameter("hotelId", hotelId)
+                .executeUpdate();
+    }
+
+    /**
+     * <p>Persists the provided Booking objects, flushing and clearing the persistence context every flushSize rows so
+     * the inserts are sent as JDBC batches and the context does not grow with the size of the list.</p>
+     *
+     * @param bookings The Booking objects to be persisted
+     * @param flushSize The number of rows sent per JDBC batch
+     * @return The persisted Booking objects, detached
+     * @throws Exception If there are issues during persistence
+     */
+    public List<Booking> createAll(List<Booking> bookings, int flushSize) throws Exception {
+        log.info("BookingRepository.createAll() - Creating " + bookings.size() + " bookings");
+
+        int pending = 0;
+        for (Booking booking : bookings) {
+            em.persist(booking);
+            if (++pending == flushSize) {
+                em.flush();
+                em.clear();
+                pending = 0;
+            }
+        }
+        em.flush();
+        em.clear();
+
+        return bookings;
     }
 
     /**
@@ -7,13 +7,21 @@ import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import javax.validation.ConstraintViolationException;
 
 import uk.ac.newcastle.enterprisemiddleware.model.Customer;
+import uk.ac.newcastle.enterprisemiddleware.model.CustomerMatch;
+import uk.ac.newcastle.enterprisemiddleware.util.PageCursor;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * <p>This is a Repository class and connects the Service/Control layer (see {@link CustomerService}) with the
@@ -44,6 +52,41 @@ public class CustomerRepository {
         return query.getResultList();
     }
 
+    /**
+     * <p>Returns one page of the persisted {@link Customer} objects, sorted alphabetically by last name, then first
+     * name, then id.</p>
+     *
+     * @param after The cursor of the previous page, or null for the first page
+     * @param limit The maximum number of Customers to return
+     * @return List of Customer objects
+     */
+    public List<Customer> findPageOrderedByName(PageCursor after, int limit) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Customer> criteria = cb.createQuery(Customer.class);
+        Root<Customer> customer = criteria.from(Customer.class);
+        criteria.select(customer)
+                .orderBy(cb.asc(customer.get("lastName")), cb.asc(customer.get("firstName")), cb.asc(customer.get("id")));
+        if (after != null) {
+            criteria.where(after.after(cb, customer.get("lastName"), customer.get("firstName"), customer.get("id")));
+        }
+        return em.createQuery(criteria).setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * <p>Streams every persisted {@link Customer}, sorted by id, reading the rows from the database fetchSize at a
+     * time instead of loading them all. The Customers stay managed, so a caller reading many of them should clear the
+     * EntityManager as it goes.</p>
+     *
+     * @param fetchSize The number of rows to fetch from the database at a time
+     * @return Stream of Customer objects, which must be closed
+     */
+    public Stream<Customer> streamAll(int fetchSize) {
+        return em.createQuery("SELECT c FROM Customer c ORDER BY c.id", Customer.class)
+                .setHint("org.hibernate.fetchSize", fetchSize)
+                .setHint("org.hibernate.readOnly", true)
+                .getResultStream();
+    }
+
     /**
      * <p>Returns a single Customer object, specified by a Long id.</p>
      *
@@ -54,6 +97,41 @@ public class CustomerRepository {
         return em.find(Customer.class, id);
     }
 
+    /**
+     * <p>Returns a single Customer object, specified by a Long id, with its bookings and their hotels loaded in the
+     * same statement through the {@link Customer#WITH_BOOKINGS} entity graph.</p>
+     *
+     * @param id The id field of the Customer to be returned
+     * @return The Customer with the specified id
+     */
+    public Customer findByIdWithBookings(Long id) {
+        return em.find(Customer.class, id, Map.of("javax.persistence.fetchgraph", em.getEntityGraph(Customer.WITH_BOOKINGS)));
+    }
+
+    /**
+     * <p>Loads the bookings, and their hotels, of Customers already read by another query, with one further statement
+     * through the {@link Customer#WITH_BOOKINGS} entity graph. The bookings are not fetched by the first query
+     * itself, because joining a collection would make the database return one row per booking and break its
+     * limit.</p>
+     *
+     * @param customers Customers read in the current persistence context
+     */
+    public void loadBookings(List<Customer> customers) {
+        if (customers.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            ids.add(customer.getId());
+        }
+        // The Customers are already managed, so the result is the same instances with their bookings now loaded
+        em.createQuery("SELECT DISTINCT c FROM Customer c WHERE c.id IN :ids", Customer.class)
+                .setParameter("ids", ids)
+                .setHint("javax.persistence.fetchgraph", em.getEntityGraph(Customer.WITH_BOOKINGS))
+                .setHint("hibernate.query.passDistinctThrough", false)
+                .getResultList();
+    }
+
     /**
      * <p>Returns a single Customer object, specified by a String email.</p>
      *
@@ -66,6 +144,58 @@ public class CustomerRepository {
         return query.getSingleResult();
     }
 
+    /**
+     * <p>Returns which of the given email addresses already belong to a Customer, with a single query.</p>
+     *
+     * @param emails The email addresses to check
+     * @return The email addresses that are already registered
+     */
+    public List<String> findExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return em.createQuery("SELECT c.email FROM Customer c WHERE c.email IN :emails", String.class)
+                .setParameter("emails", emails)
+                .getResultList();
+    }
+
+    /**
+     * <p>Returns the phone numbers of Customers that have no state yet, by id, in ascending id order.</p>
+     *
+     * @param afterId Only Customers with a greater id are returned, 0 for the first chunk
+     * @param limit The maximum number of Customers to return
+     * @return The phone number of each Customer, by id
+     */
+    public Map<Long, String> findPhoneNumbersWithoutState(long afterId, int limit) {
+        List<Object[]> rows = em.createQuery("SELECT c.id, c.phoneNumber FROM Customer c " +
+                        "WHERE c.state IS NULL AND c.id > :afterId ORDER BY c.id", Object[].class)
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit)
+                .getResultList();
+        Map<Long, String> phoneNumbers = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            phoneNumbers.put((Long) row[0], (String) row[1]);
+        }
+        return phoneNumbers;
+    }
+
+    /**
+     * <p>Sets the state of Customers that still have none with one UPDATE statement, without loading them.</p>
+     *
+     * @param ids The ids of the Customers
+     * @param state The state to set
+     * @return The number of Customers updated
+     */
+    public int updateMissingStates(Collection<Long> ids, String state) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return em.createQuery("UPDATE Customer c SET c.state = :state WHERE c.id IN :ids AND c.state IS NULL")
+                .setParameter("state", state)
+                .setParameter("ids", ids)
+                .executeUpdate();
+    }
+
     /**
      * <p>Returns a list of Customer objects filtered by a String firstName.</p>
      *
@@ -94,6 +224,42 @@ public class CustomerRepository {
         return em.createQuery(criteria).getResultList();
     }
 
+    /**
+     * <p>Returns a list of Customer objects matching every name that is given, in a single query served by the
+     * (last_name, first_name) index, sorted alphabetically by last name.</p>
+     *
+     * @param firstName The firstName field of the Customers to be returned, or null for any
+     * @param lastName The lastName field of the Customers to be returned, or null for any
+     * @return The Customers with the specified names
+     */
+    public List<Customer> findAllByName(String firstName, String lastName) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Customer> criteria = cb.createQuery(Customer.class);
+        Root<Customer> customer = criteria.from(Customer.class);
+        List<Predicate> predicates = new ArrayList<>();
+        if (lastName != null) {
+            predicates.add(cb.equal(customer.get("lastName"), lastName));
+        }
+        if (firstName != null) {
+            predicates.add(cb.equal(customer.get("firstName"), firstName));
+        }
+        criteria.select(customer).where(predicates.toArray(new Predicate[0]))
+                .orderBy(cb.asc(customer.get("lastName")), cb.asc(customer.get("firstName")));
+        return em.createQuery(criteria).getResultList();
+    }
+
+    /**
+     * <p>Returns the {@link CustomerMatch} summary of every persisted Customer, without loading the entities
+     * themselves.</p>
+     *
+     * @return List of CustomerMatch objects
+     */
+    public List<CustomerMatch> findAllMatches() {
+        TypedQuery<CustomerMatch> query = em.createQuery("SELECT NEW uk.ac.newcastle.enterprisemiddleware.model.CustomerMatch(" +
+                "c.id, c.firstName, c.lastName, c.email) FROM Customer c", CustomerMatch.class);
+        return query.getResultList();
+    }
+
     /**
      * <p>Persists the provided Customer object to the database using the EntityManager.</p>
      *
@@ -125,6 +291,10 @@ public class CustomerRepository {
     /**
      * <p>Deletes the provided Customer object from the database if found.</p>
      *
+     * <p>The row is removed with a JPQL DELETE rather than {@code em.remove}, whose cascade would load every booking
+     * of the Customer and delete them one at a time; the bookings must already have been deleted in bulk. The
+     * persistence context is cleared afterwards, as it may still hold the deleted rows.</p>
+     *
      * @param customer The Customer object to be deleted
      * @return The deleted Customer object; or null if not found
      * @throws Exception
@@ -133,7 +303,11 @@ public class CustomerRepository {
         log.info("CustomerRepository.delete() - Deleting " + customer.getFirstName() + " " + customer.getLastName());
 
         if (customer.getId() != null) {
-            em.remove(em.merge(customer));
+            em.flush();
+            em.createQuery("DELETE FROM Customer c WHERE c.id = :id")
+                    .setParameter("id", customer.getId())
+                    .executeUpdate();
+            em.clear();
         } else {
             log.info("CustomerRepository.delete() - No ID was found, so deletion is not possible.");
         }
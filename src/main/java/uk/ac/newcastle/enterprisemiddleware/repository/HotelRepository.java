@@ -11,8 +11,12 @@ import javax.persistence.criteria.Root;
 
 import uk.ac.newcastle.enterprisemiddleware.model.Hotel;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 @RequestScoped
 public class HotelRepository {
@@ -37,6 +41,21 @@ public class HotelRepository {
         return em.createQuery(criteria).getResultList();
     }
 
+    /**
+     * Streams every persisted Hotel, sorted by id, reading the rows from the database fetchSize at a time instead of
+     * loading them all. The Hotels stay managed, so a caller reading many of them should clear the EntityManager as it
+     * goes.
+     *
+     * @param fetchSize The number of rows to fetch from the database at a time
+     * @return Stream of Hotel objects, which must be closed
+     */
+    public Stream<Hotel> streamAll(int fetchSize) {
+        return em.createQuery("SELECT h FROM Hotel h ORDER BY h.id", Hotel.class)
+                .setHint("org.hibernate.fetchSize", fetchSize)
+                .setHint("org.hibernate.readOnly", true)
+                .getResultStream();
+    }
+
     /**
      * Finds a Hotel by its ID.
      *
@@ -47,6 +66,65 @@ public class HotelRepository {
         return em.find(Hotel.class, id);
     }
 
+    /**
+     * Returns every persisted Hotel detached from the persistence context, so they can be cached beyond the current
+     * request.
+     *
+     * @return List of detached Hotel objects
+     */
+    public List<Hotel> listAllDetached() {
+        List<Hotel> hotels = listAll();
+        for (Hotel hotel : hotels) {
+            em.detach(hotel);
+        }
+        return hotels;
+    }
+
+    /**
+     * Finds a Hotel by its ID and detaches it from the persistence context, so it can be cached beyond the current
+     * request.
+     *
+     * @param id The ID of the hotel
+     * @return The detached Hotel object with the specified ID, or null if not found
+     */
+    public Hotel findDetachedById(Long id) {
+        Hotel hotel = em.find(Hotel.class, id);
+        if (hotel != null) {
+            em.detach(hotel);
+        }
+        return hotel;
+    }
+
+    /**
+     * Finds a Hotel by its ID, with its bookings and their customers loaded in the same statement through the
+     * {@link Hotel#WITH_BOOKINGS} entity graph.
+     *
+     * @param id The ID of the hotel
+     * @return The Hotel object with the specified ID, or null if not found
+     */
+    public Hotel findByIdWithBookings(Long id) {
+        return em.find(Hotel.class, id, Map.of("javax.persistence.fetchgraph", em.getEntityGraph(Hotel.WITH_BOOKINGS)));
+    }
+
+    /**
+     * Finds the Hotels with the given IDs, with their bookings and their customers loaded in the same statement through
+     * the {@link Hotel#WITH_BOOKINGS} entity graph. There is no limit on the statement, so fetching the bookings by a
+     * join cannot cut the result short.
+     *
+     * @param ids The IDs of the hotels
+     * @return The Hotel objects found, in no particular order
+     */
+    public List<Hotel> findByIdsWithBookings(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return em.createQuery("SELECT DISTINCT h FROM Hotel h WHERE h.id IN :ids", Hotel.class)
+                .setParameter("ids", ids)
+                .setHint("javax.persistence.fetchgraph", em.getEntityGraph(Hotel.WITH_BOOKINGS))
+                .setHint("hibernate.query.passDistinctThrough", false)
+                .getResultList();
+    }
+
     /**
      * Finds a Hotel by its name and location (for uniqueness validation).
      *
@@ -89,7 +167,9 @@ public class HotelRepository {
 
     /**
      * Deletes a Hotel object from the database if found.
-     * Cascade deletion of associated entities like Bookings is handled automatically.
+     * The row is removed with a JPQL DELETE rather than em.remove, whose cascade would load every booking of the hotel
+     * and delete them one at a time; the bookings must already have been deleted in bulk. The persistence context is
+     * cleared afterwards, as it may still hold the deleted rows.
      *
      * @param hotel The Hotel object to delete
      * @return The deleted Hotel object
@@ -98,7 +178,11 @@ public class HotelRepository {
     public Hotel delete(Hotel hotel) throws Exception {
         log.info("HotelRepository.delete() - Deleting Hotel: " + hotel.getName());
         if (hotel.getId() != null) {
-            em.remove(em.merge(hotel)); // Cascade deletes bookings associated with this hotel
+            em.flush();
+            em.createQuery("DELETE FROM Hotel h WHERE h.id = :id")
+                    .setParameter("id", hotel.getId())
+                    .executeUpdate();
+            em.clear();
         } else {
             log.info("HotelRepository.delete() - No ID was found, cannot delete.");
         }
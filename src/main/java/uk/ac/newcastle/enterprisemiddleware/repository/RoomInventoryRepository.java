@@ -0,0 +1,98 @@
+package uk.ac.newcastle.enterprisemiddleware.repository;
+
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+import uk.ac.newcastle.enterprisemiddleware.model.RoomInventory;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * <p>This is a Repository class and connects the inventory services with the Domain/Entity Object
+ * (see {@link RoomInventory}).</p>
+ *
+ * <p>Counts are adjusted with a single UPDATE statement rather than read-modify-write, so concurrent adjustments of
+ * the same hotel-date never lose an update.</p>
+ *
+ * @see RoomInventory
+ * @see javax.persistence.EntityManager
+ */
+@RequestScoped
+public class RoomInventoryRepository {
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    EntityManager em;
+
+    /**
+     * <p>Returns a list of all persisted {@link RoomInventory} rows.</p>
+     *
+     * @return List of RoomInventory objects
+     */
+    public List<RoomInventory> findAll() {
+        TypedQuery<RoomInventory> query = em.createNamedQuery(RoomInventory.FIND_ALL, RoomInventory.class);
+        return query.getResultList();
+    }
+
+    /**
+     * <p>Adds delta to the booked room count of a hotel on a date, creating the row on the first booking.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param stayDate The date the rooms are booked for
+     * @param delta The number of rooms booked (positive) or released (negative)
+     */
+    public void adjust(Long hotelId, LocalDate stayDate, int delta) {
+        int updated = em.createNamedQuery(RoomInventory.ADJUST)
+                .setParameter("delta", delta)
+                .setParameter("hotelId", hotelId)
+                .setParameter("stayDate", stayDate)
+                .executeUpdate();
+
+        if (updated == 0 && delta > 0) {
+            log.info("RoomInventoryRepository.adjust() - Opening inventory for hotel: " + hotelId + ", on date: " + stayDate);
+            em.persist(new RoomInventory(hotelId, stayDate, delta));
+        }
+    }
+
+    /**
+     * <p>Creates the missing rows of hotel-dates that have Bookings but no inventory row, as those booked before the
+     * inventory was kept do, with one booked room per Booking.</p>
+     *
+     * <p>Once a hotel-date has a row every Booking of it is counted there, so the rows of hotel-dates that already
+     * have one are left alone and running this again creates nothing.</p>
+     *
+     * @return The number of rows created
+     */
+    public int createMissing() {
+        List<Object[]> counts = em.createNamedQuery(RoomInventory.COUNT_UNRECORDED, Object[].class).getResultList();
+        for (Object[] count : counts) {
+            em.persist(new RoomInventory((Long) count[0], (LocalDate) count[1], ((Long) count[2]).intValue()));
+        }
+        if (!counts.isEmpty()) {
+            log.info("RoomInventoryRepository.createMissing() - Created inventory for " + counts.size()
+                    + " hotel-dates booked before it was kept");
+        }
+        return counts.size();
+    }
+
+    /**
+     * <p>Deletes every inventory row of a hotel.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @return The number of rows deleted
+     */
+    public int deleteByHotel(Long hotelId) {
+        log.info("RoomInventoryRepository.deleteByHotel() - Deleting inventory for hotel: " + hotelId);
+        return em.createNamedQuery(RoomInventory.DELETE_BY_HOTEL)
+                .setParameter("hotelId", hotelId)
+                .executeUpdate();
+    }
+}
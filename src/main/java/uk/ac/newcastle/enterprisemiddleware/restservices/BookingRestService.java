@@ -7,17 +7,47 @@ import javax.persistence.NoResultException;
 import javax.transaction.Transactional;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
+import javax.validation.ValidationException;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 
+import uk.ac.newcastle.enterprisemiddleware.model.ArchivedBooking;
 import uk.ac.newcastle.enterprisemiddleware.model.Booking;
+import uk.ac.newcastle.enterprisemiddleware.model.BookingBatchResult;
+import uk.ac.newcastle.enterprisemiddleware.model.BookingRequestStatus;
+import uk.ac.newcastle.enterprisemiddleware.model.RoomHold;
+import uk.ac.newcastle.enterprisemiddleware.model.WaitlistEntry;
+import uk.ac.newcastle.enterprisemiddleware.model.Stay;
+import uk.ac.newcastle.enterprisemiddleware.services.BookingArchiver;
+import uk.ac.newcastle.enterprisemiddleware.services.BookingCreateProcessor;
+import uk.ac.newcastle.enterprisemiddleware.services.BookingQueueFullException;
+import uk.ac.newcastle.enterprisemiddleware.services.BookingRequestQueue;
 import uk.ac.newcastle.enterprisemiddleware.services.BookingService;
+import uk.ac.newcastle.enterprisemiddleware.services.DataExporter;
+import uk.ac.newcastle.enterprisemiddleware.services.HoldLimitException;
+import uk.ac.newcastle.enterprisemiddleware.services.HoldService;
+import uk.ac.newcastle.enterprisemiddleware.services.RoomUnavailableException;
+import uk.ac.newcastle.enterprisemiddleware.services.Waitlist;
+import uk.ac.newcastle.enterprisemiddleware.util.IdempotencyCache;
+import uk.ac.newcastle.enterprisemiddleware.util.PageCursor;
+import uk.ac.newcastle.enterprisemiddleware.util.Pagination;
 import uk.ac.newcastle.enterprisemiddleware.util.RestServiceException;
+import uk.ac.newcastle.enterprisemiddleware.validator.InvalidStayException;
 
+import java.net.URI;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,48 +65,213 @@ public class BookingRestService {
     @Inject
     BookingService service;
 
+    @Inject
+    HoldService holdService;
+
+    @Inject
+    Waitlist waitlist;
+
+    @Inject
+    BookingRequestQueue requestQueue;
+
+    @Inject
+    BookingArchiver archiver;
+
+    @Inject
+    IdempotencyCache idempotency;
+
+    @Inject
+    BookingCreateProcessor creator;
+
+    @Inject
+    Pagination pagination;
+
+    @Inject
+    DataExporter exporter;
+
+    @ConfigProperty(name = "booking.batch.max-size", defaultValue = "5000")
+    int maxBatchSize;
+
     /**
      * <p>Retrieve all Bookings or filter by customer or hotel if provided.</p>
+     *
+     * <p>Bookings moved to the archive are only included if {@code includeArchived} is true, listed before the
+     * current ones.</p>
+     *
+     * <p>Without a filter, and without the archive, the Bookings are returned a page at a time, sorted by booking
+     * date; see {@link Pagination}.</p>
      */
     @GET
     @Operation(summary = "Fetch all Bookings", description = "Returns a JSON array of all stored Booking objects.")
-    public Response retrieveAllBookings(@QueryParam("customerId") Long customerId, @QueryParam("hotelId") Long hotelId) {
+    public Response retrieveAllBookings(@QueryParam("customerId") Long customerId, @QueryParam("hotelId") Long hotelId,
+            @Parameter(description = "Whether to include archived Bookings")
+            @QueryParam("includeArchived") @DefaultValue("false") boolean includeArchived,
+            @QueryParam(Pagination.LIMIT) Integer limit, @QueryParam(Pagination.CURSOR) String cursor,
+            @Context UriInfo uriInfo) {
         List<Booking> bookings;
 
         if (customerId != null) {
             bookings = service.findByCustomerId(customerId);
         } else if (hotelId != null) {
             bookings = service.findByHotelId(hotelId);
+        } else if (!includeArchived) {
+            int size = pagination.limit(limit);
+            bookings = service.findPage(pagination.cursor(cursor, LocalDate.class, Long.class), size + 1);
+            return pagination.page(bookings, size,
+                    booking -> PageCursor.of(booking.getBookingDate(), booking.getId()), uriInfo);
         } else {
             bookings = service.findAll();
         }
 
-        return Response.ok(bookings).build();
+        if (!includeArchived) {
+            return Response.ok(bookings).build();
+        }
+        List<ArchivedBooking> archived;
+        if (customerId != null) {
+            archived = service.findArchivedByCustomerId(customerId);
+        } else if (hotelId != null) {
+            archived = service.findArchivedByHotelId(hotelId);
+        } else {
+            archived = service.findAllArchived();
+        }
+        List<Object> all = new ArrayList<>(archived.size() + bookings.size());
+        all.addAll(archived);
+        all.addAll(bookings);
+        return Response.ok(all).build();
+    }
+
+    /**
+     * <p>Stream every Booking as newline-delimited JSON, one object per line, without loading them all into memory;
+     * see {@link DataExporter}.</p>
+     */
+    @GET
+    @Path("/export")
+    @Produces(DataExporter.NDJSON)
+    @Operation(summary = "Export all Bookings", description = "Streams every Booking as newline-delimited JSON.")
+    public StreamingOutput exportBookings() {
+        return out -> exporter.exportBookings(out);
     }
 
     /**
-     * <p>Retrieve a Booking by its ID.</p>
+     * <p>Retrieve a Booking by its ID, looking in the archive too if {@code includeArchived} is true.</p>
      */
     @GET
     @Path("/{id:[0-9]+}")
     @Operation(summary = "Fetch a Booking by ID", description = "Returns a JSON representation of the Booking object with the provided ID.")
     public Response retrieveBookingById(
             @Parameter(description = "ID of Booking to be fetched", required = true)
-            @PathParam("id") Long id) {
+            @PathParam("id") Long id,
+            @Parameter(description = "Whether to look for an archived Booking too")
+            @QueryParam("includeArchived") @DefaultValue("false") boolean includeArchived) {
         Booking booking = service.findById(id);
-        if (booking == null) {
+        if (booking != null) {
+            return Response.ok(booking).build();
+        }
+        ArchivedBooking archived = includeArchived ? service.findArchivedById(id) : null;
+        if (archived == null) {
             throw new RestServiceException("No Booking with the ID " + id + " was found!", Response.Status.NOT_FOUND);
         }
-        return Response.ok(booking).build();
+        return Response.ok(archived).build();
+    }
+
+    /**
+     * <p>Archive every Booking whose stay ended more than {@code booking.archive.horizon-days} ago now, rather than
+     * waiting for the next scheduled run.</p>
+     *
+     * <p>The Bookings are moved in chunks, each in its own transaction, so the call may archive part of them before
+     * failing.</p>
+     */
+    @POST
+    @Path("/archive")
+    @Operation(summary = "Archive past Bookings", description = "Moves Bookings whose stay ended before the archive horizon into the archive.")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "The number of Bookings archived and the cutoff date used")
+    })
+    public Response archiveBookings() {
+        LocalDate cutoff = archiver.cutoff();
+        int archived = archiver.archive();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("archived", archived);
+        result.put("cutoff", cutoff.toString());
+        log.info("archiveBookings completed. Archived = " + archived);
+        return Response.ok(result).build();
+    }
+
+    /**
+     * <p>Retrieve the stays at a hotel that occupy at least one night from {@code from} up to but excluding
+     * {@code to}.</p>
+     *
+     * <p>Single-night bookings are stays of one night, so this covers every booking of the hotel in the range. The
+     * answer comes from an in-memory interval index rather than a query per night.</p>
+     */
+    @GET
+    @Path("/stays")
+    @Operation(summary = "Fetch the stays at a Hotel overlapping a date range", description = "Returns a JSON array of the stays occupying any night of the range, in check-in order.")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "The overlapping stays"),
+            @APIResponse(responseCode = "400", description = "Missing hotel or invalid date range")
+    })
+    public Response retrieveStays(
+            @Parameter(description = "ID of the Hotel", required = true)
+            @QueryParam("hotelId") Long hotelId,
+            @Parameter(description = "First night of the range (yyyy-MM-dd)", required = true)
+            @QueryParam("from") String from,
+            @Parameter(description = "Exclusive end of the range (yyyy-MM-dd)", required = true)
+            @QueryParam("to") String to) {
+        LocalDate start = parseDate("from", from);
+        LocalDate end = parseDate("to", to);
+        checkRange(hotelId, start, end);
+
+        List<Stay> stays = service.findStays(hotelId, start, end);
+        return Response.ok(stays).build();
+    }
+
+    /**
+     * <p>Count the stays at a hotel that occupy at least one night from {@code from} up to but excluding
+     * {@code to}.</p>
+     */
+    @GET
+    @Path("/stays/count")
+    @Operation(summary = "Count the stays at a Hotel overlapping a date range", description = "Returns the number of stays occupying any night of the range.")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "The number of overlapping stays"),
+            @APIResponse(responseCode = "400", description = "Missing hotel or invalid date range")
+    })
+    public Response countStays(
+            @Parameter(description = "ID of the Hotel", required = true)
+            @QueryParam("hotelId") Long hotelId,
+            @Parameter(description = "First night of the range (yyyy-MM-dd)", required = true)
+            @QueryParam("from") String from,
+            @Parameter(description = "Exclusive end of the range (yyyy-MM-dd)", required = true)
+            @QueryParam("to") String to) {
+        LocalDate start = parseDate("from", from);
+        LocalDate end = parseDate("to", to);
+        checkRange(hotelId, start, end);
+
+        Map<String, Object> responseObj = new HashMap<>();
+        responseObj.put("hotelId", hotelId);
+        responseObj.put("from", start.toString());
+        responseObj.put("to", end.toString());
+        responseObj.put("stays", service.countStays(hotelId, start, end));
+        return Response.ok(responseObj).build();
     }
 
     /**
      * <p>Create a new Booking from the JSON input.</p>
+     *
+     * <p>A Booking with a {@code checkOutDate} is a stay of every night from its {@code bookingDate} up to but
+     * excluding the check-out date; without one it is a single night.</p>
+     *
+     * <p>If the request carries an {@code Idempotency-Key} header, a retry with the same key is answered with the
+     * stored response of the first request instead of booking again. The key is claimed before the transaction
+     * starts, so a retry waiting for the first request holds no transaction or connection meanwhile.</p>
      */
     @POST
     @Operation(description = "Add a new Booking to the database")
-    @Transactional
     public Response createBooking(
+            @Parameter(description = "Optional key making retries of the same request safe")
+            @HeaderParam(IdempotencyCache.HEADER) String idempotencyKey,
             @Parameter(description = "JSON representation of Booking object to be added to the database", required = true)
             Booking booking) {
 
@@ -84,12 +279,23 @@ public class BookingRestService {
             throw new RestServiceException("Bad Request", Response.Status.BAD_REQUEST);
         }
 
+        // A retry gets the response of the first request with its key, once that has committed
+        IdempotencyCache.Claim claim = null;
+        if (idempotencyKey != null && !idempotencyKey.isBlank()) {
+            claim = idempotency.begin("POST /bookings", idempotencyKey, booking);
+            if (claim.replay() != null) {
+                return claim.replay();
+            }
+        }
+
         Response.ResponseBuilder builder;
+        boolean created = false;
 
         try {
         	
-            // Go add the new Booking.
-            service.create(booking);
+            // Go add the new Booking, in a transaction that has committed once this returns.
+            creator.create(booking);
+            created = true;
 
             // Create a "Resource Created" 201 Response and pass the booking back in case it is needed.
             builder = Response.status(Response.Status.CREATED).entity(booking);
@@ -103,13 +309,344 @@ public class BookingRestService {
             }
             throw new RestServiceException("Bad Request", responseObj, Response.Status.BAD_REQUEST, ce);
 
+        } catch (InvalidStayException e) {
+            // The check-out date does not describe a valid stay
+            Map<String, String> responseObj = new HashMap<>();
+            responseObj.put("checkOutDate", e.getMessage());
+            throw new RestServiceException("Bad Request", responseObj, Response.Status.BAD_REQUEST, e);
+
+        } catch (RoomUnavailableException e) {
+            // The hotel is full on the requested date
+            Map<String, String> responseObj = new HashMap<>();
+            responseObj.put("bookingDate", e.getMessage());
+            throw new RestServiceException("Conflict", responseObj, Response.Status.CONFLICT, e);
+
+        } catch (ValidationException e) {
+            // The customer has already booked this hotel on one of the requested nights
+            Map<String, String> responseObj = new HashMap<>();
+            responseObj.put("bookingDate", e.getMessage());
+            throw new RestServiceException("Conflict", responseObj, Response.Status.CONFLICT, e);
+
         } catch (Exception e) {
             // Handle generic exceptions
             throw new RestServiceException(e);
+        } finally {
+            if (claim != null && !created) {
+                // Nothing was committed, so a retry must run again
+                claim.abandon();
+            }
         }
 
         log.info("createBooking completed. Booking = " + booking);
-        return builder.build();
+        Response response = builder.build();
+        if (claim != null) {
+            claim.complete(response);
+        }
+        return response;
+    }
+
+    /**
+     * <p>Create many Bookings from a JSON array in a single transaction.</p>
+     *
+     * <p>Each item is validated on its own and the response lists the outcome of every item in request order, so one
+     * invalid or duplicate booking does not prevent the others from being created.</p>
+     */
+    @POST
+    @Path("/batch")
+    @Operation(summary = "Add a batch of Bookings", description = "Creates every valid Booking of the array and returns one result per item.")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "Batch processed, see the status of each item"),
+            @APIResponse(responseCode = "400", description = "Empty or oversized batch"),
+            @APIResponse(responseCode = "500", description = "An unexpected error occurred whilst processing the request")
+    })
+    @Transactional
+    public Response createBookings(
+            @Parameter(description = "JSON array of Booking objects to be added to the database", required = true)
+            List<Booking> bookings) {
+
+        if (bookings == null || bookings.isEmpty()) {
+            throw new RestServiceException("Bad Request", Response.Status.BAD_REQUEST);
+        }
+        if (bookings.size() > maxBatchSize) {
+            Map<String, String> responseObj = new HashMap<>();
+            responseObj.put("bookings", "A batch may contain at most " + maxBatchSize + " bookings");
+            throw new RestServiceException("Bad Request", responseObj, Response.Status.BAD_REQUEST);
+        }
+
+        List<BookingBatchResult> results;
+        try {
+            results = service.createBatch(bookings);
+        } catch (Exception e) {
+            // Handle generic exceptions
+            throw new RestServiceException(e);
+        }
+
+        log.info("createBookings completed. Batch size = " + bookings.size());
+        return Response.ok(results).build();
+    }
+
+    /**
+     * <p>Accept a new Booking for asynchronous processing.</p>
+     *
+     * <p>The Booking is validated and queued without waiting for the database, and the response points at
+     * {@code GET /bookings/requests/{requestId}}, which reports the outcome once the Booking has been created or
+     * rejected.</p>
+     */
+    @POST
+    @Path("/async")
+    @Operation(summary = "Queue a new Booking", description = "Validates a Booking and queues it to be created in the background.")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "202", description = "Booking queued, poll the Location for its outcome"),
+            @APIResponse(responseCode = "400", description = "Invalid Booking supplied in request body"),
+            @APIResponse(responseCode = "429", description = "Too many bookings are waiting to be processed")
+    })
+    public Response createBookingAsync(
+            @Parameter(description = "JSON representation of Booking object to be added to the database", required = true)
+            Booking booking) {
+
+        if (booking == null || booking.getCustomer() == null || booking.getCustomer().getId() == null
+                || booking.getHotel() == null || booking.getHotel().getId() == null) {
+            throw new RestServiceException("Bad Request", Response.Status.BAD_REQUEST);
+        }
+
+        BookingRequestStatus status;
+        try {
+            status = requestQueue.submit(booking);
+
+        } catch (ConstraintViolationException ce) {
+            // Handle bean validation issues
+            Map<String, String> responseObj = new HashMap<>();
+            for (ConstraintViolation<?> violation : ce.getConstraintViolations()) {
+                responseObj.put(violation.getPropertyPath().toString(), violation.getMessage());
+            }
+            throw new RestServiceException("Bad Request", responseObj, Response.Status.BAD_REQUEST, ce);
+
+        } catch (InvalidStayException e) {
+            Map<String, String> responseObj = new HashMap<>();
+            responseObj.put("checkOutDate", e.getMessage());
+            throw new RestServiceException("Bad Request", responseObj, Response.Status.BAD_REQUEST, e);
+
+        } catch (BookingQueueFullException e) {
+            throw new RestServiceException(e.getMessage(), Response.Status.TOO_MANY_REQUESTS, e);
+        }
+
+        log.info("createBookingAsync completed. Request = " + status.getRequestId());
+        return Response.accepted(status)
+                .location(URI.create("bookings/requests/" + status.getRequestId()))
+                .build();
+    }
+
+    /**
+     * <p>Retrieve the status of a Booking accepted for asynchronous processing.</p>
+     */
+    @GET
+    @Path("/requests/{requestId}")
+    @Operation(summary = "Fetch the status of a queued Booking", description = "Returns whether the Booking is still queued, or was created or rejected.")
+    public Response retrieveBookingRequest(
+            @Parameter(description = "ID of the booking request", required = true)
+            @PathParam("requestId") String requestId) {
+        BookingRequestStatus status = requestQueue.findById(requestId);
+        if (status == null) {
+            throw new RestServiceException("No booking request with the ID " + requestId + " was found!", Response.Status.NOT_FOUND);
+        }
+        return Response.ok(status).build();
+    }
+
+    /**
+     * <p>Hold the rooms of a Booking for a few minutes while the customer checks out, without creating it.</p>
+     *
+     * <p>The hold expires automatically unless it is confirmed with {@code POST /bookings/holds/{id}/confirm} or
+     * released earlier with {@code DELETE /bookings/holds/{id}}.</p>
+     */
+    @POST
+    @Path("/holds")
+    @Operation(summary = "Hold rooms for a Booking", description = "Takes the rooms of a Booking for a limited time and returns the hold id.")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "201", description = "Rooms held"),
+            @APIResponse(responseCode = "400", description = "Invalid Booking supplied in request body"),
+            @APIResponse(responseCode = "409", description = "No rooms are available, or the customer already has this booking or an overlapping stay"),
+            @APIResponse(responseCode = "429", description = "Too many rooms are being held")
+    })
+    public Response createHold(
+            @Parameter(description = "JSON representation of the Booking to hold rooms for", required = true)
+            Booking booking) {
+
+        if (booking == null || booking.getCustomer() == null || booking.getCustomer().getId() == null
+                || booking.getHotel() == null || booking.getHotel().getId() == null) {
+            throw new RestServiceException("Bad Request", Response.Status.BAD_REQUEST);
+        }
+
+        RoomHold hold;
+        try {
+            hold = holdService.create(booking);
+
+        } catch (ConstraintViolationException ce) {
+            // Handle bean validation issues
+            Map<String, String> responseObj = new HashMap<>();
+            for (ConstraintViolation<?> violation : ce.getConstraintViolations()) {
+                responseObj.put(violation.getPropertyPath().toString(), violation.getMessage());
+            }
+            throw new RestServiceException("Bad Request", responseObj, Response.Status.BAD_REQUEST, ce);
+
+        } catch (InvalidStayException e) {
+            Map<String, String> responseObj = new HashMap<>();
+            responseObj.put("checkOutDate", e.getMessage());
+            throw new RestServiceException("Bad Request", responseObj, Response.Status.BAD_REQUEST, e);
+
+        } catch (HoldLimitException e) {
+            throw new RestServiceException(e.getMessage(), Response.Status.TOO_MANY_REQUESTS, e);
+
+        } catch (RoomUnavailableException e) {
+            Map<String, String> responseObj = new HashMap<>();
+            responseObj.put("bookingDate", e.getMessage());
+            throw new RestServiceException("Conflict", responseObj, Response.Status.CONFLICT, e);
+
+        } catch (ValidationException e) {
+            // Unknown hotel, or a duplicate booking or overlapping stay of the same customer
+            throw new RestServiceException(e.getMessage(), Response.Status.CONFLICT, e);
+        }
+
+        log.info("createHold completed. Hold = " + hold.getHoldId());
+        return Response.status(Response.Status.CREATED).entity(hold).build();
+    }
+
+    /**
+     * <p>Retrieve an active hold by its ID.</p>
+     */
+    @GET
+    @Path("/holds/{holdId}")
+    @Operation(summary = "Fetch a room hold by ID", description = "Returns the hold if it is still active.")
+    public Response retrieveHold(
+            @Parameter(description = "ID of the hold to be fetched", required = true)
+            @PathParam("holdId") String holdId) {
+        RoomHold hold = holdService.findById(holdId);
+        if (hold == null) {
+            throw new RestServiceException("No active hold with the ID " + holdId + " was found!", Response.Status.NOT_FOUND);
+        }
+        return Response.ok(hold).build();
+    }
+
+    /**
+     * <p>Turn an active hold into a Booking.</p>
+     */
+    @POST
+    @Path("/holds/{holdId}/confirm")
+    @Operation(summary = "Confirm a room hold", description = "Creates the Booking of an active hold. A failed confirmation releases the hold.")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "201", description = "Booking created"),
+            @APIResponse(responseCode = "404", description = "The hold does not exist or has expired"),
+            @APIResponse(responseCode = "500", description = "An unexpected error occurred whilst processing the request")
+    })
+    @Transactional
+    public Response confirmHold(
+            @Parameter(description = "ID of the hold to be confirmed", required = true)
+            @PathParam("holdId") String holdId) {
+
+        Booking booking;
+        try {
+            booking = holdService.confirm(holdId);
+        } catch (ConstraintViolationException ce) {
+            Map<String, String> responseObj = new HashMap<>();
+            for (ConstraintViolation<?> violation : ce.getConstraintViolations()) {
+                responseObj.put(violation.getPropertyPath().toString(), violation.getMessage());
+            }
+            throw new RestServiceException("Bad Request", responseObj, Response.Status.BAD_REQUEST, ce);
+        } catch (Exception e) {
+            throw new RestServiceException(e);
+        }
+
+        if (booking == null) {
+            throw new RestServiceException("No active hold with the ID " + holdId + " was found!", Response.Status.NOT_FOUND);
+        }
+
+        log.info("confirmHold completed. Booking = " + booking);
+        return Response.status(Response.Status.CREATED).entity(booking).build();
+    }
+
+    /**
+     * <p>Release an active hold before it expires.</p>
+     */
+    @DELETE
+    @Path("/holds/{holdId}")
+    @Operation(summary = "Release a room hold", description = "Gives the rooms of an active hold back straight away.")
+    public Response releaseHold(
+            @Parameter(description = "ID of the hold to be released", required = true)
+            @PathParam("holdId") String holdId) {
+        if (!holdService.cancel(holdId)) {
+            throw new RestServiceException("No active hold with the ID " + holdId + " was found!", Response.Status.NOT_FOUND);
+        }
+        return Response.noContent().build();
+    }
+
+    /**
+     * <p>Join the waitlist of a sold-out hotel-date.</p>
+     *
+     * <p>When a room of that hotel-date is freed, the customers at the head of the waitlist are booked into it in
+     * the background. The outcome can be followed with {@code GET /bookings/waitlist/{id}}.</p>
+     */
+    @POST
+    @Path("/waitlist")
+    @Operation(summary = "Join the waitlist of a hotel-date", description = "Queues a single-night Booking to be created when a room is freed.")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "201", description = "Waitlist joined"),
+            @APIResponse(responseCode = "400", description = "Invalid Booking supplied in request body"),
+            @APIResponse(responseCode = "409", description = "The customer is already waiting for this hotel-date")
+    })
+    public Response joinWaitlist(
+            @Parameter(description = "JSON representation of the single-night Booking wanted", required = true)
+            Booking booking) {
+
+        if (booking == null || booking.getCustomer() == null || booking.getCustomer().getId() == null
+                || booking.getHotel() == null || booking.getHotel().getId() == null) {
+            throw new RestServiceException("Bad Request", Response.Status.BAD_REQUEST);
+        }
+
+        WaitlistEntry entry;
+        try {
+            entry = waitlist.join(booking);
+        } catch (ConstraintViolationException ce) {
+            Map<String, String> responseObj = new HashMap<>();
+            for (ConstraintViolation<?> violation : ce.getConstraintViolations()) {
+                responseObj.put(violation.getPropertyPath().toString(), violation.getMessage());
+            }
+            throw new RestServiceException("Bad Request", responseObj, Response.Status.BAD_REQUEST, ce);
+        } catch (ValidationException e) {
+            throw new RestServiceException(e.getMessage(), Response.Status.CONFLICT, e);
+        }
+
+        log.info("joinWaitlist completed. Entry = " + entry.getEntryId());
+        return Response.status(Response.Status.CREATED).entity(entry).build();
+    }
+
+    /**
+     * <p>Retrieve a waitlist entry, to see whether it has been promoted to a Booking.</p>
+     */
+    @GET
+    @Path("/waitlist/{entryId}")
+    @Operation(summary = "Fetch a waitlist entry by ID", description = "Returns the entry with its status and, once promoted, its booking id.")
+    public Response retrieveWaitlistEntry(
+            @Parameter(description = "ID of the waitlist entry to be fetched", required = true)
+            @PathParam("entryId") String entryId) {
+        WaitlistEntry entry = waitlist.findById(entryId);
+        if (entry == null) {
+            throw new RestServiceException("No waitlist entry with the ID " + entryId + " was found!", Response.Status.NOT_FOUND);
+        }
+        return Response.ok(entry).build();
+    }
+
+    /**
+     * <p>Leave a waitlist.</p>
+     */
+    @DELETE
+    @Path("/waitlist/{entryId}")
+    @Operation(summary = "Leave a waitlist", description = "Cancels a waitlist entry that has not been promoted yet.")
+    public Response leaveWaitlist(
+            @Parameter(description = "ID of the waitlist entry to be cancelled", required = true)
+            @PathParam("entryId") String entryId) {
+        if (!waitlist.leave(entryId)) {
+            throw new RestServiceException("No waiting entry with the ID " + entryId + " was found!", Response.Status.NOT_FOUND);
+        }
+        return Response.noContent().build();
     }
 
     /**
@@ -185,6 +722,18 @@ public class BookingRestService {
                 responseObj.put(violation.getPropertyPath().toString(), violation.getMessage());
             }
             throw new RestServiceException("Bad Request", responseObj, Response.Status.BAD_REQUEST, ce);
+        } catch (InvalidStayException e) {
+            Map<String, String> responseObj = new HashMap<>();
+            responseObj.put("checkOutDate", e.getMessage());
+            throw new RestServiceException("Bad Request", responseObj, Response.Status.BAD_REQUEST, e);
+        } catch (RoomUnavailableException e) {
+            Map<String, String> responseObj = new HashMap<>();
+            responseObj.put("bookingDate", e.getMessage());
+            throw new RestServiceException("Conflict", responseObj, Response.Status.CONFLICT, e);
+        } catch (ValidationException e) {
+            Map<String, String> responseObj = new HashMap<>();
+            responseObj.put("bookingDate", e.getMessage());
+            throw new RestServiceException("Conflict", responseObj, Response.Status.CONFLICT, e);
         } catch (Exception e) {
             throw new RestServiceException(e);
         }
@@ -192,4 +741,27 @@ public class BookingRestService {
         log.info("updateBooking completed. Booking = " + booking);
         return builder.build();
     }
+
+    private static LocalDate parseDate(String name, String value) {
+        try {
+            return LocalDate.parse(value);
+        } catch (NullPointerException | DateTimeParseException e) {
+            Map<String, String> responseObj = new HashMap<>();
+            responseObj.put(name, "A date in the format yyyy-MM-dd is required");
+            throw new RestServiceException("Bad Request", responseObj, Response.Status.BAD_REQUEST);
+        }
+    }
+
+    private static void checkRange(Long hotelId, LocalDate from, LocalDate to) {
+        Map<String, String> responseObj = new HashMap<>();
+        if (hotelId == null) {
+            responseObj.put("hotelId", "A hotel ID is required");
+        }
+        if (!to.isAfter(from)) {
+            responseObj.put("to", "The end of the range must be after its start");
+        }
+        if (!responseObj.isEmpty()) {
+            throw new RestServiceException("Bad Request", responseObj, Response.Status.BAD_REQUEST);
+        }
+    }
 }
@@ -1,21 +1,38 @@
 package uk.ac.newcastle.enterprisemiddleware.restservices;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 
+import uk.ac.newcastle.enterprisemiddleware.area.AreaUnavailableException;
 import uk.ac.newcastle.enterprisemiddleware.model.Customer;
+import uk.ac.newcastle.enterprisemiddleware.model.CustomerImportReport;
+import uk.ac.newcastle.enterprisemiddleware.model.CustomerMatch;
+import uk.ac.newcastle.enterprisemiddleware.services.CustomerImporter;
 import uk.ac.newcastle.enterprisemiddleware.services.CustomerService;
+import uk.ac.newcastle.enterprisemiddleware.services.CustomerStateBackfill;
+import uk.ac.newcastle.enterprisemiddleware.services.DataExporter;
+import uk.ac.newcastle.enterprisemiddleware.util.FetchView;
+import uk.ac.newcastle.enterprisemiddleware.util.PageCursor;
+import uk.ac.newcastle.enterprisemiddleware.util.Pagination;
 import uk.ac.newcastle.enterprisemiddleware.util.RestServiceException;
 
 import javax.inject.Inject;
 import javax.transaction.Transactional;
 import javax.validation.ConstraintViolationException;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -33,33 +50,104 @@ public class CustomerRestService {
     @Inject
     CustomerService service;
 
+    @Inject
+    Pagination pagination;
+
+    @Inject
+    CustomerImporter importer;
+
+    @Inject
+    DataExporter exporter;
+
+    @Inject
+    CustomerStateBackfill backfill;
+
+    @ConfigProperty(name = "customer.search.max-results", defaultValue = "50")
+    int maxSearchResults;
+
     /**
      * Retrieves all customers, with optional filtering by first name and last name.
+     * Without a filter the customers are returned a page at a time, sorted by name; see {@link Pagination}.
      * @param firstname The first name to filter by.
      * @param lastname The last name to filter by.
+     * @param view summary for the customers alone, or bookings to include their bookings; see {@link FetchView}.
+     * @param limit The page size.
+     * @param cursor The cursor from the next link of the previous page.
      * @return A JSON array of Customer objects.
      */
     @GET
     @Operation(summary = "Fetch all Customers", description = "Returns a JSON array of all stored Customer objects.")
-    public Response retrieveAllCustomers(@QueryParam("firstname") String firstname, @QueryParam("lastname") String lastname) {
+    public Response retrieveAllCustomers(@QueryParam("firstname") String firstname, @QueryParam("lastname") String lastname,
+            @QueryParam(FetchView.PARAM) String view, @QueryParam(Pagination.LIMIT) Integer limit, @QueryParam(Pagination.CURSOR) String cursor,
+            @Context UriInfo uriInfo) {
         List<Customer> customers;
+        boolean withBookings = FetchView.parse(view) == FetchView.BOOKINGS;
 
         if (firstname == null && lastname == null) {
-            customers = service.findAllOrderedByName();
-        } else if (lastname == null) {
-            customers = service.findAllByFirstName(firstname);
-        } else if (firstname == null) {
-            customers = service.findAllByLastName(lastname);
+            int size = pagination.limit(limit);
+            customers = service.findPageOrderedByName(pagination.cursor(cursor, String.class, String.class, Long.class), size + 1);
+            if (withBookings) {
+                service.loadBookings(customers);
+            }
+            return pagination.page(customers, size,
+                    customer -> PageCursor.of(customer.getLastName(), customer.getFirstName(), customer.getId()),
+                    uriInfo);
         } else {
-            customers = service.findAllByFirstName(firstname);
-            customers.retainAll(service.findAllByLastName(lastname));
+            customers = service.findAllByName(firstname, lastname);
+        }
+        if (withBookings) {
+            service.loadBookings(customers);
         }
         return Response.ok(customers).build();
     }
 
+    /**
+     * Streams every customer as newline-delimited JSON, one object per line, without loading them all into memory;
+     * see {@link DataExporter}.
+     * @return The customers, written to the response as they are read.
+     */
+    @GET
+    @Path("/export")
+    @Produces(DataExporter.NDJSON)
+    @Operation(summary = "Export all Customers", description = "Streams every Customer as newline-delimited JSON.")
+    public StreamingOutput exportCustomers() {
+        return out -> exporter.exportCustomers(out);
+    }
+
+    /**
+     * Finds customers for a type-ahead lookup by name or email, from an in-memory index.
+     * @param query The words to look for; a customer matches if a name or the email starts with, or for three or
+     *              more characters contains, each of them.
+     * @param limit The maximum number of customers to return.
+     * @return A JSON array of at most limit customer summaries, those starting with the query first.
+     */
+    @GET
+    @Path("/search")
+    @Operation(summary = "Search customers", description = "Returns the first customers whose names or email match the query.")
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "The matching customers"),
+            @APIResponse(responseCode = "400", description = "No query, or an invalid limit")
+    })
+    public Response searchCustomers(
+            @Parameter(description = "Words to look for in customer names and emails", required = true)
+            @QueryParam("q") String query,
+            @Parameter(description = "Maximum number of customers to return")
+            @QueryParam("limit") @DefaultValue("10") int limit) {
+        if (query == null || query.isBlank()) {
+            throw new RestServiceException("The query parameter q is required", Response.Status.BAD_REQUEST);
+        }
+        if (limit < 1 || limit > maxSearchResults) {
+            throw new RestServiceException("The limit must be between 1 and " + maxSearchResults,
+                    Response.Status.BAD_REQUEST);
+        }
+        List<CustomerMatch> customers = service.search(query, limit);
+        return Response.ok(customers).build();
+    }
+
     /**
      * Retrieves a specific customer by their ID.
      * @param id The ID of the customer to retrieve.
+     * @param view summary for the customer alone, or bookings to include its bookings; see {@link FetchView}.
      * @return The customer with the specified ID, or 404 error if not found.
      */
     @GET
@@ -71,8 +159,9 @@ public class CustomerRestService {
     })
     public Response getCustomer(
             @Parameter(description = "ID of the customer to retrieve", required = true)
-            @PathParam("id") Long id) {
-        Customer customer = service.findById(id);
+            @PathParam("id") Long id, @QueryParam(FetchView.PARAM) String view) {
+        Customer customer = FetchView.parse(view) == FetchView.BOOKINGS
+                ? service.findByIdWithBookings(id) : service.findById(id);
         if (customer == null) {
             return Response.status(Response.Status.NOT_FOUND).build();
         }
@@ -99,6 +188,59 @@ public class CustomerRestService {
         }
     }
 
+    /**
+     * Imports customers in bulk from newline-delimited JSON, one customer object per line, or from CSV with a header
+     * row. The body is streamed in chunks, each inserted in its own transaction, so rows are rejected individually
+     * rather than failing the whole import; see {@link CustomerImporter}.
+     * @param contentType The media type of the body.
+     * @param body The rows to import.
+     * @return A report of the number of customers imported and the rows rejected, with the reasons.
+     */
+    @POST
+    @Path("/import")
+    @Consumes({CustomerImporter.NDJSON, CustomerImporter.CSV})
+    @Operation(summary = "Import customers in bulk", description = "Streams NDJSON or CSV rows into new customers.")
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "The import report"),
+            @APIResponse(responseCode = "400", description = "The CSV header is missing or invalid")
+    })
+    public Response importCustomers(@HeaderParam("Content-Type") String contentType, InputStream body) {
+        boolean csv = contentType != null && contentType.toLowerCase().startsWith(CustomerImporter.CSV);
+        try {
+            CustomerImportReport report = importer.importCustomers(body, csv);
+            return Response.ok(report).build();
+        } catch (IllegalArgumentException e) {
+            throw new RestServiceException(e.getMessage(), Response.Status.BAD_REQUEST);
+        } catch (IOException e) {
+            throw new RestServiceException("Failed to read the import", Response.Status.BAD_REQUEST, e);
+        }
+    }
+
+    /**
+     * Fills in the state of every customer without one from the area code of their phone number now, rather than
+     * waiting for the next scheduled run. Customers are updated in chunks, each in its own transaction, so the call may
+     * update part of them before failing; see {@link CustomerStateBackfill}.
+     * @return The number of customers given a state.
+     */
+    @POST
+    @Path("/state-backfill")
+    @Operation(summary = "Backfill customer states", description = "Resolves the state of customers that have none from their area codes.")
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "The number of customers given a state"),
+            @APIResponse(responseCode = "503", description = "The area API is unavailable and degraded mode is off")
+    })
+    public Response backfillStates() {
+        try {
+            int updated = backfill.backfill();
+            Map<String, Object> result = new HashMap<>();
+            result.put("updated", updated);
+            log.info("backfillStates completed. Updated = " + updated);
+            return Response.ok(result).build();
+        } catch (AreaUnavailableException e) {
+            throw new RestServiceException(e.getMessage(), Response.Status.SERVICE_UNAVAILABLE, e);
+        }
+    }
+
     /**
      * Updates an existing customer based on their ID.
      * @param id The ID of the customer to update.
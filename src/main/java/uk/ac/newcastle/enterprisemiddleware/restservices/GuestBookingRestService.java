@@ -5,6 +5,7 @@ import uk.ac.newcastle.enterprisemiddleware.model.Booking;
 import uk.ac.newcastle.enterprisemiddleware.model.Customer;
 import uk.ac.newcastle.enterprisemiddleware.services.BookingService;
 import uk.ac.newcastle.enterprisemiddleware.services.CustomerService;
+import uk.ac.newcastle.enterprisemiddleware.util.IdempotencyCache;
 
 import javax.inject.Inject;
 import javax.transaction.UserTransaction;
@@ -26,8 +27,21 @@ public class GuestBookingRestService {
     @Inject
     UserTransaction userTransaction;
 
+    @Inject
+    IdempotencyCache idempotency;
+
     @POST
-    public Response createGuestBooking(GuestBooking guestBooking) {
+    public Response createGuestBooking(@HeaderParam(IdempotencyCache.HEADER) String idempotencyKey,
+                                       GuestBooking guestBooking) {
+        // A retry gets the response of the first request with its key, once that has committed
+        IdempotencyCache.Claim claim = null;
+        if (idempotencyKey != null && !idempotencyKey.isBlank()) {
+            claim = idempotency.begin("POST /guestbooking", idempotencyKey, guestBooking);
+            if (claim.replay() != null) {
+                return claim.replay();
+            }
+        }
+
         try {
             // Start the transaction manually
             userTransaction.begin();
@@ -45,7 +59,11 @@ public class GuestBookingRestService {
             userTransaction.commit();
 
             // Return response with Booking and status 201 Created
-            return Response.status(Response.Status.CREATED).entity(booking).build();
+            Response response = Response.status(Response.Status.CREATED).entity(booking).build();
+            if (claim != null) {
+                claim.complete(response);
+            }
+            return response;
 
         } catch (Exception e) {
             try {
@@ -55,6 +73,9 @@ public class GuestBookingRestService {
                 // Handle rollback failure
                 e.addSuppressed(rollbackEx);
             }
+            if (claim != null) {
+                claim.abandon();
+            }
             // Return error response with status 500
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                            .entity("Error creating GuestBooking: " + e.getMessage())
@@ -1,19 +1,34 @@
 package uk.ac.newcastle.enterprisemiddleware.restservices;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 
 import uk.ac.newcastle.enterprisemiddleware.model.Hotel;
+import uk.ac.newcastle.enterprisemiddleware.model.HotelAvailability;
+import uk.ac.newcastle.enterprisemiddleware.model.RoomAvailability;
+import uk.ac.newcastle.enterprisemiddleware.services.DataExporter;
+import uk.ac.newcastle.enterprisemiddleware.services.HotelCatalogue;
 import uk.ac.newcastle.enterprisemiddleware.services.HotelService;
+import uk.ac.newcastle.enterprisemiddleware.services.InventoryService;
+import uk.ac.newcastle.enterprisemiddleware.util.FetchView;
+import uk.ac.newcastle.enterprisemiddleware.util.PageCursor;
+import uk.ac.newcastle.enterprisemiddleware.util.Pagination;
 
 import javax.inject.Inject;
 import javax.transaction.Transactional;
 import javax.validation.ConstraintViolationException;
+import javax.validation.ValidationException;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 
 /**
@@ -29,19 +44,115 @@ public class HotelRestService {
     @Inject
     HotelService hotelService;
 
+    // Answers per-date availability from the in-memory inventory calendar
+    @Inject
+    InventoryService inventoryService;
+
+    // Reads the limit and cursor of the paged hotel list
+    @Inject
+    Pagination pagination;
+
+    // Reports the counters of the hotel catalogue cache
+    @Inject
+    HotelCatalogue catalogue;
+
+    // Streams every hotel for the export endpoint
+    @Inject
+    DataExporter exporter;
+
+    // Longest range an availability search may cover, the same as the longest bookable stay
+    @ConfigProperty(name = "booking.stay.max-nights", defaultValue = "30")
+    int maxNights;
+
     /**
-     * Lists all hotels in the system.
-     * @return List of all hotels.
+     * Lists the hotels in the system a page at a time, sorted by name; see {@link Pagination}.
+     * @param view summary for the hotels alone, or bookings to include their bookings; see {@link FetchView}.
+     * @param limit The page size.
+     * @param cursor The cursor from the next link of the previous page.
+     * @return A page of hotels.
      */
     @GET
     @Operation(summary = "List all hotels", description = "Retrieves a list of all hotels.")
-    public List<Hotel> listHotels() {
-        return hotelService.listAllHotels();
+    public Response listHotels(@QueryParam(FetchView.PARAM) String view, @QueryParam(Pagination.LIMIT) Integer limit,
+            @QueryParam(Pagination.CURSOR) String cursor, @Context UriInfo uriInfo) {
+        boolean withBookings = FetchView.parse(view) == FetchView.BOOKINGS;
+        int size = pagination.limit(limit);
+        PageCursor after = pagination.cursor(cursor, String.class, Long.class);
+        List<Hotel> hotels = withBookings
+                ? hotelService.listHotelPageWithBookings(after, size + 1) : hotelService.listHotelPage(after, size + 1);
+        return pagination.page(hotels, size, hotel -> PageCursor.of(hotel.getName(), hotel.getId()), uriInfo);
+    }
+
+    /**
+     * Streams every hotel as newline-delimited JSON, one object per line, without loading them all into memory;
+     * see {@link DataExporter}.
+     * @return The hotels, written to the response as they are read.
+     */
+    @GET
+    @Path("/export")
+    @Produces(DataExporter.NDJSON)
+    @Operation(summary = "Export all Hotels", description = "Streams every Hotel as newline-delimited JSON.")
+    public StreamingOutput exportHotels() {
+        return out -> exporter.exportHotels(out);
+    }
+
+    /**
+     * Returns the hit, miss, eviction and invalidation counts of the hotel catalogue cache.
+     * @return The cache statistics.
+     */
+    @GET
+    @Path("/cache")
+    @Operation(summary = "Hotel cache statistics", description = "Returns the counters of the in-memory hotel catalogue cache.")
+    public Response getCacheStats() {
+        return Response.ok(catalogue.stats()).build();
+    }
+
+    /**
+     * Searches the hotels that have rooms free on every night of a stay, answered from the in-memory occupancy index.
+     * @param location The location to search, ignoring case; every location if omitted.
+     * @param from The first night of the stay, in ISO format (yyyy-MM-dd).
+     * @param to The check-out date, in ISO format (yyyy-MM-dd).
+     * @param rooms The number of rooms needed each night, 1 if omitted.
+     * @return The matching hotels, or a 400 error if the range or room count is invalid.
+     */
+    @GET
+    @Path("/availability")
+    @Operation(summary = "Search hotel availability", description = "Lists the hotels with enough rooms free on every night of a stay.")
+    @APIResponses({
+        @APIResponse(responseCode = "200", description = "The hotels with space, ordered by id"),
+        @APIResponse(responseCode = "400", description = "Missing or invalid dates or room count")
+    })
+    public Response searchAvailability(
+        @Parameter(description = "Location of the hotels")
+        @QueryParam("location") String location,
+        @Parameter(description = "First night of the stay (yyyy-MM-dd)", required = true)
+        @QueryParam("from") String from,
+        @Parameter(description = "Check-out date (yyyy-MM-dd)", required = true)
+        @QueryParam("to") String to,
+        @Parameter(description = "Rooms needed each night")
+        @QueryParam("rooms") @DefaultValue("1") int rooms) {
+        LocalDate start;
+        LocalDate end;
+        try {
+            start = LocalDate.parse(from);
+            end = LocalDate.parse(to);
+        } catch (NullPointerException | DateTimeParseException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("From and to dates in the format yyyy-MM-dd are required").build();
+        }
+        if (!end.isAfter(start) || end.toEpochDay() - start.toEpochDay() > maxNights) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("The to date must be 1 to " + maxNights + " days after the from date").build();
+        }
+        if (rooms < 1) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("At least one room must be requested").build();
+        }
+        List<HotelAvailability> hotels = inventoryService.search(location, start, end, rooms);
+        return Response.ok(hotels).build();
     }
 
     /**
      * Retrieves a specific hotel by its ID.
      * @param id The ID of the hotel to retrieve.
+     * @param view summary for the hotel alone, or bookings to include its bookings; see {@link FetchView}.
      * @return The hotel with the specified ID or a 404 error if not found.
      */
     @GET
@@ -53,14 +164,48 @@ public class HotelRestService {
     })
     public Response getHotel(
         @Parameter(description = "ID of the hotel to retrieve", required = true)
-        @PathParam("id") Long id) {
-        Hotel hotel = hotelService.findHotelById(id);
+        @PathParam("id") Long id, @QueryParam(FetchView.PARAM) String view) {
+        Hotel hotel = FetchView.parse(view) == FetchView.BOOKINGS
+                ? hotelService.findHotelByIdWithBookings(id) : hotelService.findHotelById(id);
         if (hotel == null) {
             return Response.status(Response.Status.NOT_FOUND).build();
         }
         return Response.ok(hotel).build();
     }
 
+    /**
+     * Retrieves how many rooms of a hotel are free on a given date.
+     * @param id The ID of the hotel.
+     * @param date The date to check, in ISO format (yyyy-MM-dd).
+     * @return The room availability of the hotel, or a 404 error if the hotel is not found.
+     */
+    @GET
+    @Path("/{id:[0-9]+}/inventory")
+    @Operation(summary = "Retrieve room availability", description = "Returns the booked and free rooms of a hotel on a date.")
+    @APIResponses({
+        @APIResponse(responseCode = "200", description = "The room availability"),
+        @APIResponse(responseCode = "400", description = "Missing or invalid date"),
+        @APIResponse(responseCode = "404", description = "Hotel not found")
+    })
+    public Response getRoomAvailability(
+        @Parameter(description = "ID of the hotel", required = true)
+        @PathParam("id") Long id,
+        @Parameter(description = "Date to check (yyyy-MM-dd)", required = true)
+        @QueryParam("date") String date) {
+        LocalDate day;
+        try {
+            day = LocalDate.parse(date);
+        } catch (NullPointerException | DateTimeParseException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("A date in the format yyyy-MM-dd is required").build();
+        }
+        try {
+            RoomAvailability availability = inventoryService.availability(id, day);
+            return Response.ok(availability).build();
+        } catch (ValidationException e) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+    }
+
     /**
      * Creates a new hotel in the system.
      * @param hotel The hotel to create.
@@ -0,0 +1,37 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.control.ActivateRequestContext;
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+
+import java.time.LocalDate;
+
+/**
+ * <p>Copies up to a chunk of ended Bookings into {@code booking_archive} and deletes them from {@code booking}, for one
+ * step of a {@link BookingArchiver} run.</p>
+ *
+ * <p>Each chunk commits or rolls back on its own, so a long archival run never holds more than one chunk's row locks
+ * or undo at a time, and a failure only loses the chunk in progress.</p>
+ *
+ * @see BookingArchiver
+ */
+@ApplicationScoped
+public class BookingArchiveProcessor {
+
+    @Inject
+    BookingService bookingService;
+
+    /**
+     * <p>Moves up to chunkSize Bookings whose stay ended on or before the cutoff date into the archive.</p>
+     *
+     * @param cutoff The date by which the stays must have ended
+     * @param chunkSize The maximum number of Bookings to archive
+     * @return The number of Bookings archived
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    @ActivateRequestContext
+    public int archiveChunk(LocalDate cutoff, int chunkSize) {
+        return bookingService.archive(cutoff, chunkSize);
+    }
+}
@@ -0,0 +1,88 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import io.quarkus.runtime.StartupEvent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import uk.ac.newcastle.enterprisemiddleware.util.ScheduledJob;
+
+import java.time.LocalDate;
+import java.util.logging.Logger;
+
+/**
+ * <p>Moves Bookings whose stay ended more than {@code booking.archive.horizon-days} ago out of the {@code booking}
+ * table and into {@code booking_archive}, keeping the table that every booking write and validation reads small.</p>
+ *
+ * <p>A run archives {@code booking.archive.chunk-size} Bookings at a time, each chunk in its own transaction through
+ * the {@link BookingArchiveProcessor}, until a chunk comes back short. Runs happen every
+ * {@code booking.archive.interval-minutes} in the background, or never if that is 0, and on demand through
+ * {@link #archive()}; only one runs at a time.</p>
+ *
+ * @see BookingArchiveProcessor
+ * @see uk.ac.newcastle.enterprisemiddleware.model.ArchivedBooking
+ */
+@ApplicationScoped
+public class BookingArchiver {
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    BookingArchiveProcessor processor;
+
+    @ConfigProperty(name = "booking.archive.horizon-days", defaultValue = "365")
+    int horizonDays;
+
+    @ConfigProperty(name = "booking.archive.chunk-size", defaultValue = "500")
+    int chunkSize;
+
+    @ConfigProperty(name = "booking.archive.interval-minutes", defaultValue = "60")
+    long intervalMinutes;
+
+    private ScheduledJob job;
+
+    void onStart(@Observes StartupEvent event) {
+        if (intervalMinutes > 0) {
+            job = ScheduledJob.start("booking-archiver", intervalMinutes, intervalMinutes, this::archive, log);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (job != null) {
+            job.stop();
+        }
+    }
+
+    /**
+     * @return The date by which a stay must have ended to be archived by a run starting now
+     */
+    public LocalDate cutoff() {
+        return LocalDate.now().minusDays(horizonDays);
+    }
+
+    /**
+     * <p>Archives every Booking whose stay ended on or before {@link #cutoff()}, one chunk per transaction.</p>
+     *
+     * @return The number of Bookings archived
+     */
+    public synchronized int archive() {
+        LocalDate cutoff = cutoff();
+        long start = System.nanoTime();
+        int total = 0;
+        int archived;
+        do {
+            archived = processor.archiveChunk(cutoff, chunkSize);
+            total += archived;
+        } while (archived == chunkSize);
+        log.info("BookingArchiver.archive() - Archived " + total + " bookings that ended by " + cutoff + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return total;
+    }
+}
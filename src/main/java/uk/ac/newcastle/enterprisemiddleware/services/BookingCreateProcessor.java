@@ -0,0 +1,35 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+
+import uk.ac.newcastle.enterprisemiddleware.model.Booking;
+
+/**
+ * <p>Creates a single Booking in a transaction that has committed, or rolled back, by the time the call returns.</p>
+ *
+ * <p>{@code POST /bookings} claims its idempotency key before calling this, so that a duplicate request waiting for
+ * the first one's outcome does so without holding a transaction or a database connection, and the key can be
+ * completed or abandoned knowing the outcome is final.</p>
+ *
+ * @see uk.ac.newcastle.enterprisemiddleware.util.IdempotencyCache
+ */
+@ApplicationScoped
+public class BookingCreateProcessor {
+
+    @Inject
+    BookingService bookingService;
+
+    /**
+     * <p>Creates the Booking, rolling back on any exception, checked ones included.</p>
+     *
+     * @param booking The Booking to create
+     * @return The Booking created
+     * @throws Exception Whatever {@link BookingService#create(Booking)} throws
+     */
+    @Transactional(rollbackOn = Exception.class)
+    public Booking create(Booking booking) throws Exception {
+        return bookingService.create(booking);
+    }
+}
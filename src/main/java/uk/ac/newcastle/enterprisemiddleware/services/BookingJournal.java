@@ -0,0 +1,277 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import io.quarkus.runtime.StartupEvent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Priority;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.interceptor.Interceptor;
+
+import uk.ac.newcastle.enterprisemiddleware.model.BookingEvent;
+import uk.ac.newcastle.enterprisemiddleware.model.Stay;
+import uk.ac.newcastle.enterprisemiddleware.repository.BookingRepository;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Append-only journal of committed booking events, kept in memory-mapped segment files next to the database
+ * rather than in it.</p>
+ *
+ * <p>{@link BookingService} records an event once each booking write has committed. Every
+ * {@code booking.journal.snapshot-every} events, a background thread folds the log into a snapshot of the live stays
+ * and deletes the segments it covers.</p>
+ *
+ * <p>On startup the {@link StayIndex} and the {@link BookingKeyFilter} take their stays from
+ * {@link #startupStays()}, which reads one snapshot and a short log tail instead of querying every booking. The
+ * journal is only trusted if the previous run closed it cleanly with every event recorded, and it describes as many
+ * bookings as the database holds, with the same highest id; otherwise the stays are loaded from the database and the
+ * journal is restarted from them. A crash between a commit and its event, or an event that could not be written,
+ * therefore costs one reload from the database rather than stale read models.</p>
+ *
+ * <p>The journal is off unless {@code booking.journal.enabled} is set. Events are written to the page cache, so they
+ * survive the process crashing; {@code booking.journal.sync} also flushes each one to the device.</p>
+ *
+ * @see BookingJournalStore
+ * @see BookingJournalTool
+ */
+@ApplicationScoped
+public class BookingJournal {
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    BookingRepository bookingRepository;
+
+    @ConfigProperty(name = "booking.journal.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "booking.journal.dir", defaultValue = "booking-journal")
+    String dir;
+
+    @ConfigProperty(name = "booking.journal.segment-bytes", defaultValue = "67108864")
+    int segmentBytes;
+
+    @ConfigProperty(name = "booking.journal.snapshot-every", defaultValue = "100000")
+    long snapshotEvery;
+
+    @ConfigProperty(name = "booking.journal.sync", defaultValue = "false")
+    boolean sync;
+
+    private final AtomicLong sinceSnapshot = new AtomicLong();
+
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    // Set once an event of this run could not be recorded, so the journal must not be marked clean
+    private volatile boolean lost;
+
+    private boolean cleanStart;
+
+    private volatile BookingJournalStore store;
+
+    private ExecutorService compactor;
+
+    private List<Stay> startupStays;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            store = new BookingJournalStore(Paths.get(dir), segmentBytes);
+            cleanStart = store.takeCleanMark();
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "BookingJournal.init() - Cannot open the journal in " + dir + ", it is disabled", e);
+            return;
+        }
+        compactor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "booking-journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (store == null) {
+            return;
+        }
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!lost) {
+            try {
+                store.markClean();
+            } catch (IOException e) {
+                log.log(Level.WARNING, "BookingJournal.shutdown() - Cannot mark the journal clean, the next startup"
+                        + " reloads from the database", e);
+            }
+        }
+        store.close();
+    }
+
+    /**
+     * <p>Returns the stays of every booking for the in-memory read models to start from, recovered from the journal
+     * when it matches the database. Must be called in a transaction during startup.</p>
+     *
+     * @return The stays of every booking, or null if the journal is disabled
+     */
+    public synchronized List<Stay> startupStays() {
+        if (store == null) {
+            return null;
+        }
+        if (startupStays != null) {
+            return startupStays;
+        }
+
+        try {
+            if (!cleanStart) {
+                throw new IOException("The journal was not closed cleanly and may be missing events");
+            }
+            BookingJournalStore.State state = store.recover();
+            long count = bookingRepository.count();
+            Long maxId = bookingRepository.findMaxId();
+            long journalMaxId = state.getStays().keySet().stream().mapToLong(Long::longValue).max().orElse(0);
+            if (state.getStays().size() == count && (maxId == null ? 0 : maxId) == journalMaxId) {
+                startupStays = new ArrayList<>(state.getStays().values());
+                log.info("BookingJournal.startupStays() - Recovered " + startupStays.size() + " stays up to event "
+                        + state.getSequence());
+                return startupStays;
+            }
+            log.warning("BookingJournal.startupStays() - The journal holds " + state.getStays().size()
+                    + " bookings but the database " + count + ", reloading from the database");
+        } catch (IOException e) {
+            log.log(Level.WARNING, "BookingJournal.startupStays() - The journal cannot be recovered, reloading from the database", e);
+        }
+
+        startupStays = bookingRepository.findAllStays();
+        try {
+            store.reset(startupStays);
+            sinceSnapshot.set(0);
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "BookingJournal.startupStays() - Cannot restart the journal, it is disabled", e);
+            store = null;
+        }
+        return startupStays;
+    }
+
+    /**
+     * <p>Drops the recovered stays once every read model has taken them.</p>
+     */
+    synchronized void onStarted(@Observes @Priority(Interceptor.Priority.APPLICATION + 2000) StartupEvent event) {
+        startupStays = null;
+    }
+
+    /**
+     * <p>Records a committed new booking.</p>
+     *
+     * @param stay The stay of the booking
+     */
+    public void created(Stay stay) {
+        append(BookingEvent.created(stay, Instant.now()));
+    }
+
+    /**
+     * <p>Records a committed update of a booking.</p>
+     *
+     * @param stay The stay of the booking after the update
+     */
+    public void updated(Stay stay) {
+        append(BookingEvent.updated(stay, Instant.now()));
+    }
+
+    /**
+     * <p>Records a committed cancellation of a booking.</p>
+     *
+     * @param bookingId The id of the booking
+     */
+    public void cancelled(Long bookingId) {
+        append(BookingEvent.cancelled(bookingId, Instant.now()));
+    }
+
+    /**
+     * <p>Records that a committed booking was moved to the archive.</p>
+     *
+     * @param bookingId The id of the archived booking
+     */
+    public void archived(Long bookingId) {
+        append(BookingEvent.archived(bookingId, Instant.now()));
+    }
+
+    /**
+     * <p>Records the committed deletion of a hotel, and with it all of its bookings.</p>
+     *
+     * @param hotelId The id of the hotel
+     */
+    public void hotelRemoved(Long hotelId) {
+        append(BookingEvent.hotelRemoved(hotelId, Instant.now()));
+    }
+
+    /**
+     * <p>Folds the log into a new snapshot now, rather than waiting for {@code booking.journal.snapshot-every}
+     * events.</p>
+     *
+     * @return The number of live bookings in the snapshot, or -1 if the journal is disabled
+     * @throws IOException If the journal cannot be read or the snapshot written
+     */
+    public int compact() throws IOException {
+        BookingJournalStore current = store;
+        if (current == null) {
+            return -1;
+        }
+        sinceSnapshot.set(0);
+        return current.compact();
+    }
+
+    private void append(BookingEvent event) {
+        BookingJournalStore current = store;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.append(event);
+            if (sync) {
+                current.force();
+            }
+        } catch (IOException | RuntimeException e) {
+            // The booking has committed regardless; without the clean mark the next startup reloads from the database
+            lost = true;
+            log.log(Level.SEVERE, "BookingJournal.append() - Cannot record a booking event", e);
+            return;
+        }
+
+        if (sinceSnapshot.incrementAndGet() >= snapshotEvery && compacting.compareAndSet(false, true)) {
+            compactor.execute(() -> {
+                try {
+                    int live = compact();
+                    log.info("BookingJournal.compact() - Snapshot of " + live + " bookings written");
+                } catch (IOException | RuntimeException e) {
+                    log.log(Level.WARNING, "BookingJournal.compact() - Compaction failed", e);
+                } finally {
+                    compacting.set(false);
+                }
+            });
+        }
+    }
+}
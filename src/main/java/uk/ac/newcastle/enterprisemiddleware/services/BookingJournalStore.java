@@ -0,0 +1,318 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import uk.ac.newcastle.enterprisemiddleware.model.BookingEvent;
+import uk.ac.newcastle.enterprisemiddleware.model.Stay;
+import uk.ac.newcastle.enterprisemiddleware.util.MappedLog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * <p>The files of the booking journal: a {@link MappedLog} of {@link BookingEvent}s and a snapshot of the stays the
+ * log described up to some sequence number.</p>
+ *
+ * <p>The state of the bookings is the snapshot with every event from its sequence number onwards applied to it.
+ * Compacting writes a new snapshot of that state and deletes the log segments it covers, so recovery reads one
+ * snapshot file and a short tail of events however long the journal has been running.</p>
+ *
+ * <p>This class does no CDI and is shared by the {@link BookingJournal} and the offline {@link BookingJournalTool}.
+ * Only one process may have a journal directory open at a time.</p>
+ */
+public class BookingJournalStore implements Closeable {
+
+    static final String SNAPSHOT = "snapshot.dat";
+
+    static final String CLEAN = "clean";
+
+    private static final int MAGIC = 0x424B4A53;
+
+    private static final int VERSION = 1;
+
+    private final Path dir;
+    private final MappedLog log;
+    private final Object compactLock = new Object();
+
+    /**
+     * <p>Opens the journal in a directory, creating it if needed.</p>
+     *
+     * @param dir The journal directory
+     * @param segmentBytes The size of new log segments
+     * @throws IOException If the journal cannot be opened
+     */
+    public BookingJournalStore(Path dir, int segmentBytes) throws IOException {
+        this.dir = dir;
+        this.log = new MappedLog(dir, segmentBytes);
+    }
+
+    /**
+     * <p>Appends an event to the log.</p>
+     *
+     * @param event The event
+     * @return The sequence number of the event
+     * @throws IOException If a new log segment cannot be created
+     */
+    public long append(BookingEvent event) throws IOException {
+        return log.append(encode(event));
+    }
+
+    /**
+     * @return The sequence number the next event will get
+     */
+    public long nextSequence() {
+        return log.nextSequence();
+    }
+
+    /**
+     * <p>Rebuilds the stays of every live booking from the snapshot and the whole log.</p>
+     *
+     * @return The stays by booking id, and the sequence number they are current up to
+     * @throws IOException If the snapshot is corrupt or the log does not continue from it
+     */
+    public State recover() throws IOException {
+        return recover(log.nextSequence());
+    }
+
+    /**
+     * <p>Passes every event in the log after the snapshot to a consumer, in order.</p>
+     *
+     * @param consumer Receives each event
+     * @return The sequence number the snapshot covers up to, where the replay started
+     * @throws IOException If the snapshot is corrupt
+     */
+    public long replay(Consumer<BookingEvent> consumer) throws IOException {
+        long from = readSnapshot().sequence;
+        log.replay(from, log.nextSequence(), payload -> consumer.accept(decode(payload)));
+        return from;
+    }
+
+    /**
+     * <p>Writes a snapshot of the current state and deletes the log segments it makes redundant. Events may be
+     * appended meanwhile; they stay in the log.</p>
+     *
+     * @return The number of live bookings in the new snapshot
+     * @throws IOException If the journal cannot be read or the snapshot written
+     */
+    public int compact() throws IOException {
+        synchronized (compactLock) {
+            State state = recover(log.nextSequence());
+            writeSnapshot(state.stays.values(), state.sequence);
+            log.deleteBefore(state.sequence);
+            log.force();
+            return state.stays.size();
+        }
+    }
+
+    /**
+     * <p>Replaces the whole journal with a snapshot of the given stays, for when it no longer matches the database.
+     * No events may be appended meanwhile.</p>
+     *
+     * @param stays The stays of every live booking
+     * @throws IOException If the snapshot cannot be written or the log reset
+     */
+    public void reset(Collection<Stay> stays) throws IOException {
+        synchronized (compactLock) {
+            long sequence = log.nextSequence();
+            writeSnapshot(stays, sequence);
+            log.reset(sequence);
+        }
+    }
+
+    /**
+     * <p>Records that the journal holds every event of the process that is closing it, by forcing the log to the
+     * device and then creating a marker file. Must be the last write before {@link #close()}.</p>
+     *
+     * @throws IOException If the marker cannot be written
+     */
+    public void markClean() throws IOException {
+        log.force();
+        Files.write(dir.resolve(CLEAN), new byte[0]);
+    }
+
+    /**
+     * <p>Removes the marker left by {@link #markClean()}, so that it only vouches for one run.</p>
+     *
+     * @return true if the journal was closed cleanly, with every event recorded, when it was last opened
+     * @throws IOException If the marker cannot be removed
+     */
+    public boolean takeCleanMark() throws IOException {
+        return Files.deleteIfExists(dir.resolve(CLEAN));
+    }
+
+    /**
+     * <p>Waits until every event appended so far is on the storage device.</p>
+     */
+    public void force() {
+        log.force();
+    }
+
+    @Override
+    public void close() {
+        log.close();
+    }
+
+    private State recover(long to) throws IOException {
+        State state = readSnapshot();
+        if (state.sequence > log.nextSequence() || state.sequence < log.firstSequence()) {
+            throw new IOException("The journal log in " + dir + " does not continue from its snapshot at "
+                    + state.sequence);
+        }
+        log.replay(state.sequence, to, payload -> apply(state.stays, decode(payload)));
+        state.sequence = Math.max(state.sequence, to);
+        return state;
+    }
+
+    private static void apply(Map<Long, Stay> stays, BookingEvent event) {
+        switch (event.getType()) {
+            case CREATED:
+            case UPDATED:
+                stays.put(event.getBookingId(), event.getStay());
+                break;
+            case CANCELLED:
+            case ARCHIVED:
+                stays.remove(event.getBookingId());
+                break;
+            case HOTEL_REMOVED:
+                stays.values().removeIf(stay -> stay.getHotelId().equals(event.getHotelId()));
+                break;
+            default:
+                throw new IllegalStateException("Unknown booking event " + event.getType());
+        }
+    }
+
+    private State readSnapshot() throws IOException {
+        Path file = dir.resolve(SNAPSHOT);
+        CRC32 crc = new CRC32();
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file));
+             DataInputStream in = new DataInputStream(new CheckedInputStream(raw, crc))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not a booking journal snapshot");
+            }
+            long sequence = in.readLong();
+            int count = in.readInt();
+            Map<Long, Stay> stays = new HashMap<>(Math.max(16, (int) (count / 0.75f) + 1));
+            for (int i = 0; i < count; i++) {
+                Stay stay = new Stay(in.readLong(), in.readLong(), in.readLong(), LocalDate.ofEpochDay(in.readLong()),
+                        LocalDate.ofEpochDay(in.readLong()));
+                stays.put(stay.getBookingId(), stay);
+            }
+            long expected = crc.getValue();
+            if (new DataInputStream(raw).readLong() != expected) {
+                throw new IOException(file + " is corrupt");
+            }
+            return new State(stays, sequence);
+        } catch (NoSuchFileException e) {
+            // A new journal: nothing before the first event
+            return new State(new HashMap<>(), 0);
+        }
+    }
+
+    private void writeSnapshot(Collection<Stay> stays, long sequence) throws IOException {
+        Path tmp = dir.resolve(SNAPSHOT + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream raw = new BufferedOutputStream(Channels.newOutputStream(channel));
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(raw, crc));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sequence);
+            out.writeInt(stays.size());
+            for (Stay stay : stays) {
+                out.writeLong(stay.getBookingId());
+                out.writeLong(stay.getCustomerId());
+                out.writeLong(stay.getHotelId());
+                out.writeLong(stay.getCheckIn().toEpochDay());
+                out.writeLong(stay.getCheckOut().toEpochDay());
+            }
+            out.flush();
+            DataOutputStream trailer = new DataOutputStream(raw);
+            trailer.writeLong(crc.getValue());
+            trailer.flush();
+            channel.force(true);
+        }
+        // Readers see either the old snapshot or the complete new one
+        Files.move(tmp, dir.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static byte[] encode(BookingEvent event) {
+        Stay stay = event.getStay();
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 8 + (stay != null ? 5 * 8 : 8));
+        buffer.put((byte) event.getType().ordinal());
+        buffer.putLong(event.getAt().toEpochMilli());
+        if (stay != null) {
+            buffer.putLong(stay.getBookingId());
+            buffer.putLong(stay.getCustomerId());
+            buffer.putLong(stay.getHotelId());
+            buffer.putLong(stay.getCheckIn().toEpochDay());
+            buffer.putLong(stay.getCheckOut().toEpochDay());
+        } else if (event.getBookingId() != null) {
+            buffer.putLong(event.getBookingId());
+        } else {
+            buffer.putLong(event.getHotelId());
+        }
+        return buffer.array();
+    }
+
+    private static BookingEvent decode(ByteBuffer buffer) {
+        BookingEvent.Type type = BookingEvent.Type.values()[buffer.get()];
+        Instant at = Instant.ofEpochMilli(buffer.getLong());
+        switch (type) {
+            case CREATED:
+            case UPDATED:
+                Stay stay = new Stay(buffer.getLong(), buffer.getLong(), buffer.getLong(),
+                        LocalDate.ofEpochDay(buffer.getLong()), LocalDate.ofEpochDay(buffer.getLong()));
+                return type == BookingEvent.Type.CREATED ? BookingEvent.created(stay, at) : BookingEvent.updated(stay, at);
+            case CANCELLED:
+                return BookingEvent.cancelled(buffer.getLong(), at);
+            case ARCHIVED:
+                return BookingEvent.archived(buffer.getLong(), at);
+            default:
+                return BookingEvent.hotelRemoved(buffer.getLong(), at);
+        }
+    }
+
+    /**
+     * <p>The stays of every live booking by booking id, as of a sequence number of the log.</p>
+     */
+    public static final class State {
+
+        private final Map<Long, Stay> stays;
+        private long sequence;
+
+        private State(Map<Long, Stay> stays, long sequence) {
+            this.stays = stays;
+            this.sequence = sequence;
+        }
+
+        public Map<Long, Stay> getStays() {
+            return stays;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import io.quarkus.runtime.StartupEvent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.control.ActivateRequestContext;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.transaction.Transactional;
+
+import uk.ac.newcastle.enterprisemiddleware.model.BookingKey;
+import uk.ac.newcastle.enterprisemiddleware.model.Stay;
+import uk.ac.newcastle.enterprisemiddleware.repository.BookingRepository;
+import uk.ac.newcastle.enterprisemiddleware.util.BloomFilter;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * <p>In-memory {@link BloomFilter} over the (customer, hotel, booking date) key of every Booking, so the duplicate
+ * booking check only queries the database when the key may already be taken.</p>
+ *
+ * <p>The filter is rebuilt from the {@code booking} table, or the {@link BookingJournal}, on startup.
+ * {@link BookingService} adds the key of every Booking it writes before the transaction commits, so a committed key is
+ * always in the filter. Keys of rolled back, updated or deleted bookings stay in it and only cost a query that finds
+ * nothing.</p>
+ *
+ * @see uk.ac.newcastle.enterprisemiddleware.validator.BookingValidator
+ */
+@ApplicationScoped
+public class BookingKeyFilter {
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    BookingRepository bookingRepository;
+
+    @Inject
+    BookingJournal journal;
+
+    @ConfigProperty(name = "booking.duplicate-filter.expected-keys", defaultValue = "1000000")
+    long expectedKeys;
+
+    @ConfigProperty(name = "booking.duplicate-filter.false-positive-rate", defaultValue = "0.01")
+    double falsePositiveRate;
+
+    private final AtomicBoolean saturationReported = new AtomicBoolean();
+
+    private final LongAdder lookups = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private BloomFilter filter;
+
+    @PostConstruct
+    void init() {
+        filter = new BloomFilter(expectedKeys, falsePositiveRate);
+    }
+
+    /**
+     * <p>Loads every booking key when the application starts, from the stays recovered by the {@link BookingJournal}
+     * if it is enabled or else from the database.</p>
+     */
+    @Transactional
+    @ActivateRequestContext
+    void onStart(@Observes StartupEvent event) {
+        List<Stay> stays = journal.startupStays();
+        if (stays != null) {
+            for (Stay stay : stays) {
+                put(new BookingKey(stay.getCustomerId(), stay.getHotelId(), stay.getCheckIn()));
+            }
+            log.info("BookingKeyFilter.onStart() - Loaded " + stays.size() + " booking keys from the startup stays");
+            return;
+        }
+        List<BookingKey> keys = bookingRepository.findAllKeys();
+        for (BookingKey key : keys) {
+            put(key);
+        }
+        log.info("BookingKeyFilter.onStart() - Loaded " + keys.size() + " booking keys");
+    }
+
+    /**
+     * <p>Records that a Booking with the given key may exist.</p>
+     *
+     * @param key The key of the Booking
+     */
+    public void put(BookingKey key) {
+        filter.put(hash(key));
+        if (filter.isSaturated() && saturationReported.compareAndSet(false, true)) {
+            log.warning("BookingKeyFilter.put() - More than " + expectedKeys + " booking keys recorded, duplicate " +
+                    "checks will query the database more often; raise booking.duplicate-filter.expected-keys");
+        }
+    }
+
+    /**
+     * <p>Returns false if no Booking with the given key has been recorded, true if one may have been.</p>
+     *
+     * @param key The key to look up
+     * @return boolean indicating whether a Booking with the key may exist
+     */
+    public boolean mightContain(BookingKey key) {
+        boolean found = filter.mightContain(hash(key));
+        lookups.increment();
+        if (!found) {
+            misses.increment();
+        }
+        return found;
+    }
+
+    /**
+     * @return The number of keys looked up since startup
+     */
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    /**
+     * @return The number of keys looked up since startup that the filter ruled out, each sparing a database query
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private static long hash(BookingKey key) {
+        return BloomFilter.hash(key.getCustomerId(), key.getHotelId(), key.getBookingDate().toEpochDay());
+    }
+}
@@ -0,0 +1,127 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.persistence.LockTimeoutException;
+
+import uk.ac.newcastle.enterprisemiddleware.model.HotelDate;
+import uk.ac.newcastle.enterprisemiddleware.util.StripedLock;
+import uk.ac.newcastle.enterprisemiddleware.util.TransactionCallbacks;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * <p>Serialises booking writes that target the same hotel-date, in-process.</p>
+ *
+ * <p>{@link BookingService} takes the lock before it validates a booking and holds it until the surrounding
+ * transaction has completed. A competing request for the same hotel-date therefore waits for the first one to commit
+ * and then sees its row, instead of passing the duplicate check and failing on the unique constraint at commit.
+ * Requests for different hotel-dates hash to different stripes and proceed in parallel.</p>
+ *
+ * <p>Stripes already held by the current transaction are remembered, so one transaction may lock the same or a
+ * colliding hotel-date several times. Several hotel-dates are always acquired in ascending stripe order.</p>
+ *
+ * @see StripedLock
+ */
+@ApplicationScoped
+public class BookingLockManager {
+
+    private static final Object HELD_STRIPES = BookingLockManager.class;
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    TransactionCallbacks callbacks;
+
+    @ConfigProperty(name = "booking.lock.stripes", defaultValue = "1024")
+    int stripeCount;
+
+    @ConfigProperty(name = "booking.lock.timeout-ms", defaultValue = "5000")
+    long timeoutMs;
+
+    private StripedLock locks;
+
+    @PostConstruct
+    void init() {
+        locks = new StripedLock(stripeCount);
+    }
+
+    /**
+     * <p>Locks one hotel-date until the current transaction completes.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param date The booked date
+     * @throws LockTimeoutException If the lock could not be acquired in time
+     */
+    public void lock(Long hotelId, LocalDate date) throws LockTimeoutException {
+        lockAll(Collections.singleton(new HotelDate(hotelId, date)));
+    }
+
+    /**
+     * <p>Locks several hotel-dates until the current transaction completes, in deadlock-free order.</p>
+     *
+     * @param keys The hotel-dates to lock
+     * @throws LockTimeoutException If any lock could not be acquired in time
+     * @throws IllegalStateException If no transaction is active
+     */
+    public void lockAll(Collection<HotelDate> keys) throws LockTimeoutException {
+        Set<Integer> held = heldStripes();
+
+        Set<Integer> wanted = new TreeSet<>();
+        for (HotelDate key : keys) {
+            int stripe = locks.stripeFor(key);
+            if (!held.contains(stripe)) {
+                wanted.add(stripe);
+            }
+        }
+
+        for (int stripe : wanted) {
+            boolean acquired;
+            try {
+                acquired = locks.tryLock(stripe, timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LockTimeoutException("Interrupted while waiting for a booking lock", e);
+            }
+            if (!acquired) {
+                // Stripes taken so far are released when the transaction completes
+                log.warning("BookingLockManager.lockAll() - Timed out after " + timeoutMs + "ms waiting for stripe " + stripe);
+                throw new LockTimeoutException("Timed out waiting for concurrent bookings of the same hotel and date");
+            }
+            held.add(stripe);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<Integer> heldStripes() {
+        if (!callbacks.isTransactionActive()) {
+            throw new IllegalStateException("Booking locks can only be taken inside a transaction");
+        }
+        Set<Integer> held = (Set<Integer>) callbacks.getResource(HELD_STRIPES);
+        if (held == null) {
+            Set<Integer> stripes = new HashSet<>();
+            callbacks.putResource(HELD_STRIPES, stripes);
+            callbacks.onCompletion(() -> {
+                for (int stripe : stripes) {
+                    locks.unlock(stripe);
+                }
+                stripes.clear();
+            });
+            held = stripes;
+        }
+        return held;
+    }
+}
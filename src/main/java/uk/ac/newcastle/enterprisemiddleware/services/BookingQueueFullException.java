@@ -0,0 +1,27 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import javax.validation.ValidationException;
+
+/**
+ * <p>ValidationException which should be thrown if a booking request is submitted for asynchronous processing while
+ * the queue of pending requests is full.</p>
+ *
+ * <p>It signals load rather than a problem with the request, so REST services should map it to 429 TOO MANY
+ * REQUESTS.</p>
+ *
+ * @see BookingRequestQueue
+ */
+public class BookingQueueFullException extends ValidationException {
+
+    public BookingQueueFullException(String message) {
+        super(message);
+    }
+
+    public BookingQueueFullException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public BookingQueueFullException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,96 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.control.ActivateRequestContext;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.transaction.Transactional;
+import javax.validation.ConstraintViolationException;
+import javax.validation.ValidationException;
+
+import uk.ac.newcastle.enterprisemiddleware.model.Booking;
+import uk.ac.newcastle.enterprisemiddleware.model.BookingKey;
+import uk.ac.newcastle.enterprisemiddleware.model.HotelDate;
+import uk.ac.newcastle.enterprisemiddleware.validator.InvalidStayException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * <p>Turns the booking requests accepted by {@code POST /bookings/async} into Bookings, as many per transaction as a
+ * {@link BookingRequestQueue} consumer thread takes in one go.</p>
+ *
+ * <p>The hotel-dates of the whole batch are locked first, in the same deadlock-free order as other multi-date
+ * writers, and each request then goes through {@link BookingService#create(Booking)}, so it is validated and takes its
+ * rooms exactly like a booking made synchronously. The outcome of each request is recorded on the request itself; the
+ * queue only reports it once this method has returned and the transaction has committed.</p>
+ *
+ * @see BookingRequestQueue
+ */
+@ApplicationScoped
+public class BookingRequestProcessor {
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    BookingService bookingService;
+
+    @Inject
+    BookingLockManager locks;
+
+    /**
+     * <p>Creates the Booking of every request that is still valid.</p>
+     *
+     * @param requests The requests taken from the queue
+     * @throws Exception If there are persistence issues or the locks cannot be taken, in which case none of the
+     * requests is created
+     */
+    @Transactional
+    @ActivateRequestContext
+    public void process(List<BookingRequestQueue.Request> requests) throws Exception {
+        List<Booking> bookings = new ArrayList<>();
+        Set<HotelDate> hotelDates = new HashSet<>();
+        for (BookingRequestQueue.Request request : requests) {
+            Booking booking = request.newBooking();
+            bookings.add(booking);
+            for (LocalDate night : booking.nights()) {
+                hotelDates.add(new HotelDate(booking.getHotel().getId(), night));
+            }
+        }
+        locks.lockAll(hotelDates);
+
+        // Stays created earlier in this transaction are not in the StayIndex yet, so overlaps within the batch are
+        // tracked here, as one key per night
+        Set<BookingKey> seenNights = new HashSet<>();
+        for (int i = 0; i < requests.size(); i++) {
+            BookingRequestQueue.Request request = requests.get(i);
+            Booking booking = bookings.get(i);
+            List<BookingKey> nights = new ArrayList<>();
+            for (LocalDate night : booking.nights()) {
+                nights.add(new BookingKey(booking.getCustomer().getId(), booking.getHotel().getId(), night));
+            }
+            if (nights.stream().anyMatch(seenNights::contains)) {
+                request.rejected(409, "Overlapping Stay Violation: Customer already has a stay at this hotel on some of the requested nights.");
+                continue;
+            }
+
+            try {
+                bookingService.create(booking);
+                seenNights.addAll(nights);
+                request.created(booking.getId());
+            } catch (ConstraintViolationException | InvalidStayException e) {
+                request.rejected(400, e.getMessage());
+            } catch (ValidationException e) {
+                // Duplicate or overlapping booking, or the hotel is full
+                request.rejected(409, e.getMessage());
+            }
+        }
+        log.info("BookingRequestProcessor.process() - Processing a batch of " + requests.size() + " booking requests");
+    }
+}
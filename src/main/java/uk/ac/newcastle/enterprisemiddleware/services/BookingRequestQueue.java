@@ -0,0 +1,267 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.validation.ConstraintViolationException;
+import javax.validation.ValidationException;
+
+import uk.ac.newcastle.enterprisemiddleware.model.Booking;
+import uk.ac.newcastle.enterprisemiddleware.model.BookingRequestStatus;
+import uk.ac.newcastle.enterprisemiddleware.validator.BookingValidator;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Bounded in-process queue of booking requests accepted for asynchronous processing.</p>
+ *
+ * <p>{@link #submit(Booking)} runs the bean validation and stay checks, which need no database, and queues the
+ * request; it never waits for a lock or a transaction. If {@code booking.async.queue-capacity} requests are already
+ * waiting it refuses the request instead, so a burst turns into 429 responses rather than an ever longer queue.</p>
+ *
+ * <p>{@code booking.async.consumers} threads each take up to {@code booking.async.batch-size} requests at a time and
+ * create their Bookings in one transaction through the {@link BookingRequestProcessor}. If that transaction fails as a
+ * whole, its requests are retried one per transaction, so one bad request cannot fail the others.</p>
+ *
+ * <p>Queued requests live in memory only and are lost if the application stops before they are processed.</p>
+ *
+ * @see BookingRequestProcessor
+ * @see BookingRequestStatus
+ */
+@ApplicationScoped
+public class BookingRequestQueue {
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    BookingValidator validator;
+
+    @Inject
+    BookingRequestProcessor processor;
+
+    @ConfigProperty(name = "booking.async.queue-capacity", defaultValue = "10000")
+    int capacity;
+
+    @ConfigProperty(name = "booking.async.consumers", defaultValue = "4")
+    int consumers;
+
+    @ConfigProperty(name = "booking.async.batch-size", defaultValue = "50")
+    int batchSize;
+
+    @ConfigProperty(name = "booking.async.retain-finished", defaultValue = "10000")
+    int retainFinished;
+
+    private final ConcurrentMap<String, Request> pending = new ConcurrentHashMap<>();
+
+    private BlockingQueue<Request> queue;
+
+    private Map<String, Request> finished;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void init() {
+        queue = new ArrayBlockingQueue<>(capacity);
+        finished = Collections.synchronizedMap(new LinkedHashMap<String, Request>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Request> eldest) {
+                return size() > retainFinished;
+            }
+        });
+        AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(consumers, task -> {
+            Thread thread = new Thread(task, "booking-request-consumer-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < consumers; i++) {
+            executor.execute(this::consume);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            log.warning("BookingRequestQueue.shutdown() - " + queue.size() + " booking requests were not processed");
+        }
+    }
+
+    /**
+     * <p>Validates a Booking and queues it to be created in the background.</p>
+     *
+     * @param booking The Booking to create, with customer and hotel ids set
+     * @return The status of the queued request, including its id
+     * @throws ConstraintViolationException If Bean Validation errors exist
+     * @throws InvalidStayException If the check-out date does not describe a valid stay
+     * @throws BookingQueueFullException If the queue is full
+     */
+    public BookingRequestStatus submit(Booking booking) throws ConstraintViolationException, ValidationException {
+        validator.validateConstraints(booking);
+        validator.validateStay(booking);
+
+        Request request = new Request(UUID.randomUUID().toString(), booking, Instant.now());
+        pending.put(request.requestId, request);
+        if (!queue.offer(request)) {
+            pending.remove(request.requestId);
+            throw new BookingQueueFullException("Too many bookings are waiting to be processed, please try again shortly");
+        }
+        return request.toView();
+    }
+
+    /**
+     * <p>Returns the status of a booking request, queued or recently processed.</p>
+     *
+     * @param requestId The id of the request
+     * @return The BookingRequestStatus, or null if it is unknown
+     */
+    public BookingRequestStatus findById(String requestId) {
+        Request request = pending.get(requestId);
+        if (request == null) {
+            request = finished.get(requestId);
+        }
+        return request == null ? null : request.toView();
+    }
+
+    /**
+     * @return The number of requests waiting to be taken by a consumer
+     */
+    public int queued() {
+        return queue.size();
+    }
+
+    /**
+     * Runs on each consumer thread until the application stops.
+     */
+    private void consume() {
+        List<Request> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            try {
+                process(batch);
+            } catch (RuntimeException e) {
+                log.log(Level.WARNING, "BookingRequestQueue.consume() - Processing failed", e);
+            }
+            batch.clear();
+        }
+    }
+
+    private void process(List<Request> batch) {
+        try {
+            processor.process(batch);
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                batch.get(0).failed(e);
+            } else {
+                // Nothing of the batch was committed; find the request at fault by giving each its own transaction
+                log.log(Level.WARNING, "BookingRequestQueue.process() - Batch of " + batch.size()
+                        + " failed, retrying its requests one by one", e);
+                for (Request request : batch) {
+                    try {
+                        processor.process(Collections.singletonList(request));
+                    } catch (Exception single) {
+                        request.failed(single);
+                    }
+                }
+            }
+        }
+
+        for (Request request : batch) {
+            request.completedAt = Instant.now();
+            finished.put(request.requestId, request);
+            pending.remove(request.requestId);
+        }
+        log.info("BookingRequestQueue.process() - Processed a batch of " + batch.size() + " booking requests");
+    }
+
+    /**
+     * <p>A queued booking request, and the outcome of the last attempt to process it, which the
+     * {@link BookingRequestProcessor} fills in. The outcome is only reported once the attempt has committed.</p>
+     */
+    static final class Request {
+
+        final String requestId;
+        final Booking booking;
+        final Instant submittedAt;
+        volatile Instant completedAt;
+        volatile String status = BookingRequestStatus.QUEUED;
+        volatile Integer code;
+        volatile Long bookingId;
+        volatile String reason;
+
+        private Request(String requestId, Booking booking, Instant submittedAt) {
+            this.requestId = requestId;
+            this.booking = booking;
+            this.submittedAt = submittedAt;
+        }
+
+        /**
+         * A fresh Booking for each attempt, as an insert that was rolled back leaves its generated id behind.
+         */
+        Booking newBooking() {
+            Booking attempt = new Booking(booking.getCustomer(), booking.getHotel(), booking.getBookingDate(),
+                    booking.getStatus());
+            attempt.setCheckOutDate(booking.getCheckOutDate());
+            return attempt;
+        }
+
+        void created(Long bookingId) {
+            outcome(BookingRequestStatus.CREATED, 201, bookingId, null);
+        }
+
+        void rejected(int code, String reason) {
+            outcome(BookingRequestStatus.REJECTED, code, null, reason);
+        }
+
+        void failed(Exception e) {
+            outcome(BookingRequestStatus.FAILED, 500, null, e.getMessage());
+        }
+
+        private void outcome(String status, Integer code, Long bookingId, String reason) {
+            this.code = code;
+            this.bookingId = bookingId;
+            this.reason = reason;
+            this.status = status;
+        }
+
+        private BookingRequestStatus toView() {
+            // A request being processed still reports QUEUED until its transaction has completed
+            boolean done = completedAt != null;
+            return new BookingRequestStatus(requestId, done ? status : BookingRequestStatus.QUEUED,
+                    done ? code : null, submittedAt, completedAt, done ? bookingId : null, done ? reason : null);
+        }
+    }
+}
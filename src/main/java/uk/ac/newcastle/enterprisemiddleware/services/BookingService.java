@@ -1,16 +1,37 @@
 package uk.ac.newcastle.enterprisemiddleware.services;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
 import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityNotFoundException;
+import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
+import javax.validation.ValidationException;
 
+import uk.ac.newcastle.enterprisemiddleware.model.ArchivedBooking;
 import uk.ac.newcastle.enterprisemiddleware.model.Booking;
+import uk.ac.newcastle.enterprisemiddleware.model.BookingBatchResult;
+import uk.ac.newcastle.enterprisemiddleware.model.BookingKey;
+import uk.ac.newcastle.enterprisemiddleware.model.HotelDate;
+import uk.ac.newcastle.enterprisemiddleware.model.Stay;
 import uk.ac.newcastle.enterprisemiddleware.repository.BookingRepository;
+import uk.ac.newcastle.enterprisemiddleware.util.PageCursor;
+import uk.ac.newcastle.enterprisemiddleware.util.TransactionCallbacks;
 import uk.ac.newcastle.enterprisemiddleware.validator.BookingValidator;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 /**
@@ -20,8 +41,19 @@ import java.util.logging.Logger;
  * <p>It assumes responsibility as the Control layer in the ECB pattern, ensuring consistent rules are applied before
  * interacting with the database.</p>
  *
+ * <p>A booking is either a single night on its booking date or, when it has a check-out date, a stay of every night
+ * from the booking date up to the check-out date. It holds one room of its hotel on each of those nights, kept by the
+ * {@link InventoryService}, and its stay is recorded in the {@link StayIndex} once committed. Writes to the same
+ * hotel-date are serialised by the {@link BookingLockManager} from validation until commit, and the key of every
+ * booking written is added to the {@link BookingKeyFilter} before commit. Committed writes are recorded in the
+ * {@link BookingJournal}.</p>
+ *
  * @see BookingValidator
  * @see BookingRepository
+ * @see InventoryService
+ * @see BookingLockManager
+ * @see StayIndex
+ * @see BookingJournal
  */
 @Dependent
 public class BookingService {
@@ -36,6 +68,27 @@ public class BookingService {
     @Inject
     BookingRepository crud;
 
+    @Inject
+    InventoryService inventory;
+
+    @Inject
+    BookingLockManager locks;
+
+    @Inject
+    StayIndex stays;
+
+    @Inject
+    BookingKeyFilter keys;
+
+    @Inject
+    BookingJournal journal;
+
+    @Inject
+    TransactionCallbacks callbacks;
+
+    @ConfigProperty(name = "quarkus.hibernate-orm.jdbc.statement-batch-size", defaultValue = "50")
+    int jdbcBatchSize;
+
     /**
      * <p>Returns a list of all persisted {@link Booking} objects.</p>
      *
@@ -45,6 +98,17 @@ public class BookingService {
         return crud.findAll();
     }
 
+    /**
+     * <p>Returns one page of {@link Booking} objects, sorted by booking date and then id.</p>
+     *
+     * @param after The cursor of the previous page, or null for the first page
+     * @param limit The maximum number of Bookings to return
+     * @return List of Booking objects
+     */
+    public List<Booking> findPage(PageCursor after, int limit) {
+        return crud.findPage(after, limit);
+    }
+
     /**
      * <p>Returns a Booking by its unique ID.</p>
      *
@@ -75,6 +139,32 @@ public class BookingService {
         return crud.findByHotelId(hotelId);
     }
 
+    /**
+     * <p>Returns the stays at a hotel that occupy at least one night of a date range, answered from the
+     * {@link StayIndex}.</p>
+     *
+     * @param hotelId The hotel ID
+     * @param from The first night of the range
+     * @param to The exclusive end of the range
+     * @return List of overlapping Stay objects in check-in order
+     */
+    public List<Stay> findStays(Long hotelId, LocalDate from, LocalDate to) {
+        return stays.overlapping(hotelId, from, to);
+    }
+
+    /**
+     * <p>Returns the number of stays at a hotel that occupy at least one night of a date range, answered from the
+     * {@link StayIndex}.</p>
+     *
+     * @param hotelId The hotel ID
+     * @param from The first night of the range
+     * @param to The exclusive end of the range
+     * @return The number of overlapping stays
+     */
+    public int countStays(Long hotelId, LocalDate from, LocalDate to) {
+        return stays.countOverlapping(hotelId, from, to);
+    }
+
     /**
      * <p>Creates a new Booking in the database after validation.</p>
      *
@@ -87,10 +177,180 @@ public class BookingService {
                  ", hotel: " + booking.getHotel().getId() + ", on date: " + booking.getBookingDate());
 
         // Validate the Booking object using BookingValidator
-        validator.validateBooking(booking);
+        validator.validateConstraints(booking);
+        validator.validateStay(booking);
+
+        // Serialise with concurrent bookings of any night of the stay until this transaction completes
+        Long hotelId = booking.getHotel().getId();
+        List<LocalDate> nights = booking.nights();
+        locks.lockAll(hotelDates(hotelId, nights));
+        validator.validateUniqueness(booking);
+
+        // Take a room for every night, failing if the hotel is full on any of them
+        inventory.reserve(hotelId, nights);
 
         // Persist the Booking
-        return crud.create(booking);
+        Booking created = crud.create(booking);
+        // Before commit, so the key is in the filter by the time the row is visible
+        keys.put(BookingKey.of(created));
+
+        Stay stay = Stay.of(created);
+        callbacks.onCommit(() -> {
+            stays.add(stay);
+            journal.created(stay);
+        });
+        return created;
+    }
+
+    /**
+     * <p>Creates the Booking of a confirmed hold, whose rooms are already taken in the inventory calendar.</p>
+     *
+     * <p>The caller is responsible for giving the held rooms back if this fails or the transaction rolls back.</p>
+     *
+     * @param booking The Booking object built from the hold
+     * @return The persisted Booking object
+     * @throws Exception If there are validation or persistence issues
+     */
+    public Booking createHeld(Booking booking) throws Exception {
+        log.info("BookingService.createHeld() - Confirming hold for customer: " + booking.getCustomer().getId() +
+                 ", hotel: " + booking.getHotel().getId() + ", on date: " + booking.getBookingDate());
+
+        validator.validateConstraints(booking);
+        validator.validateStay(booking);
+
+        // Serialise with concurrent bookings of any night of the stay until this transaction completes
+        Long hotelId = booking.getHotel().getId();
+        List<LocalDate> nights = booking.nights();
+        locks.lockAll(hotelDates(hotelId, nights));
+        validator.validateUniqueness(booking);
+
+        // The rooms are held in memory already, so only the inventory table needs updating
+        inventory.recordHold(hotelId, nights);
+
+        Booking created = crud.create(booking);
+        // Before commit, so the key is in the filter by the time the row is visible
+        keys.put(BookingKey.of(created));
+
+        Stay stay = Stay.of(created);
+        callbacks.onCommit(() -> {
+            stays.add(stay);
+            journal.created(stay);
+        });
+        return created;
+    }
+
+    /**
+     * <p>Creates many Bookings in one transaction, reporting the outcome of each one.</p>
+     *
+     * <p>Invalid items, duplicates, overlapping stays and items for a full hotel-date are rejected individually while
+     * the rest are created. Duplicates are found with one query for the whole batch, every hotel-date involved is
+     * locked up front in a deadlock-free order, and the accepted rows are inserted in hotel-date order as JDBC
+     * batches, followed by one inventory update per hotel-date.</p>
+     *
+     * @param bookings The Booking objects to be created
+     * @return One BookingBatchResult per item, in request order
+     * @throws Exception If there are persistence issues, in which case nothing is created
+     */
+    public List<BookingBatchResult> createBatch(List<Booking> bookings) throws Exception {
+        log.info("BookingService.createBatch() - Creating a batch of " + bookings.size() + " bookings");
+
+        BookingBatchResult[] results = new BookingBatchResult[bookings.size()];
+
+        // Bean validation, item by item
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < bookings.size(); i++) {
+            Booking booking = bookings.get(i);
+            if (booking == null || booking.getCustomer() == null || booking.getCustomer().getId() == null
+                    || booking.getHotel() == null || booking.getHotel().getId() == null) {
+                results[i] = new BookingBatchResult(i, 400, null, "A booking must reference a customer and a hotel by id");
+                continue;
+            }
+            try {
+                validator.validateConstraints(booking);
+                validator.validateStay(booking);
+                candidates.add(i);
+            } catch (ConstraintViolationException ce) {
+                StringBuilder error = new StringBuilder();
+                for (ConstraintViolation<?> violation : ce.getConstraintViolations()) {
+                    error.append(error.length() == 0 ? "" : "; ")
+                            .append(violation.getPropertyPath()).append(": ").append(violation.getMessage());
+                }
+                results[i] = new BookingBatchResult(i, 400, null, error.toString());
+            } catch (ValidationException e) {
+                results[i] = new BookingBatchResult(i, 400, null, e.getMessage());
+            }
+        }
+
+        // Serialise with concurrent writers of any of the hotel-dates in this batch
+        List<Booking> candidateBookings = new ArrayList<>();
+        Set<HotelDate> hotelDates = new HashSet<>();
+        for (int i : candidates) {
+            Booking booking = bookings.get(i);
+            candidateBookings.add(booking);
+            hotelDates.addAll(hotelDates(booking.getHotel().getId(), booking.nights()));
+        }
+        locks.lockAll(hotelDates);
+
+        // One duplicate query for the whole batch, then duplicates and overlapping stays within the batch itself,
+        // tracked as one key per night
+        Set<BookingKey> existing = validator.findExistingKeys(candidateBookings);
+        Set<BookingKey> seenNights = new HashSet<>();
+        Map<HotelDate, Integer> claims = new HashMap<>();
+        List<Integer> accepted = new ArrayList<>();
+        for (int i : candidates) {
+            Booking booking = bookings.get(i);
+            BookingKey key = BookingKey.of(booking);
+            List<LocalDate> nights = booking.nights();
+            if (existing.contains(key) || validator.overlappingStayExists(booking) || !unseen(seenNights, key, nights)) {
+                results[i] = new BookingBatchResult(i, 409, null,
+                        "Duplicate Booking Violation: Customer has already booked this hotel on the specified date.");
+                continue;
+            }
+            try {
+                LocalDate full = inventory.claim(key.getHotelId(), nights);
+                if (full != null) {
+                    results[i] = new BookingBatchResult(i, 409, null,
+                            "No rooms are available at hotel " + key.getHotelId() + " on " + full);
+                    continue;
+                }
+            } catch (ValidationException e) {
+                results[i] = new BookingBatchResult(i, 400, null, e.getMessage());
+                continue;
+            }
+            for (LocalDate night : nights) {
+                seenNights.add(new BookingKey(key.getCustomerId(), key.getHotelId(), night));
+                claims.merge(new HotelDate(key.getHotelId(), night), 1, Integer::sum);
+            }
+            accepted.add(i);
+        }
+
+        // Insert in hotel-date order so consecutive rows land next to each other in the unique index
+        accepted.sort(Comparator.comparing((Integer i) -> bookings.get(i).getHotel().getId())
+                .thenComparing(i -> bookings.get(i).getBookingDate())
+                .thenComparing(i -> bookings.get(i).getCustomer().getId()));
+        List<Booking> toPersist = new ArrayList<>();
+        for (int i : accepted) {
+            toPersist.add(bookings.get(i));
+        }
+        crud.createAll(toPersist, jdbcBatchSize);
+        inventory.recordClaims(claims);
+
+        List<Stay> created = new ArrayList<>();
+        for (Booking booking : toPersist) {
+            keys.put(BookingKey.of(booking));
+            created.add(Stay.of(booking));
+        }
+        callbacks.onCommit(() -> {
+            for (Stay stay : created) {
+                stays.add(stay);
+                journal.created(stay);
+            }
+        });
+
+        for (int i : accepted) {
+            results[i] = new BookingBatchResult(i, 201, bookings.get(i).getId(), null);
+        }
+        return Arrays.asList(results);
     }
 
     /**
@@ -104,11 +364,47 @@ public class BookingService {
         log.info("BookingService.update() - Updating booking for customer: " + booking.getCustomer().getId() +
                  ", hotel: " + booking.getHotel().getId());
 
+        // Remember where rooms are currently held before the update overwrites it
+        Booking existing = crud.findById(booking.getId());
+        Long previousHotelId = existing == null ? null : existing.getHotel().getId();
+        List<LocalDate> previousNights = existing == null ? new ArrayList<>() : existing.nights();
+
         // Validate the updated Booking object
-        validator.validateBooking(booking);
+        validator.validateConstraints(booking);
+        validator.validateStay(booking);
+
+        // Serialise with concurrent bookings of any night of the new stay until this transaction completes
+        Long hotelId = booking.getHotel().getId();
+        List<LocalDate> nights = booking.nights();
+        locks.lockAll(hotelDates(hotelId, nights));
+        validator.validateUniqueness(booking);
+
+        // Move only the rooms of nights that are no longer, or not yet, part of the stay
+        if (existing != null) {
+            List<LocalDate> added = new ArrayList<>(nights);
+            List<LocalDate> removed = new ArrayList<>(previousNights);
+            if (previousHotelId.equals(hotelId)) {
+                added.removeAll(previousNights);
+                removed.removeAll(nights);
+            }
+            if (!added.isEmpty()) {
+                inventory.reserve(hotelId, added);
+            }
+            if (!removed.isEmpty()) {
+                inventory.release(previousHotelId, removed);
+            }
+        }
 
         // Update the Booking
-        return crud.update(booking);
+        Booking updated = crud.update(booking);
+        keys.put(BookingKey.of(updated));
+
+        Stay stay = Stay.of(updated);
+        callbacks.onCommit(() -> {
+            stays.add(stay);
+            journal.updated(stay);
+        });
+        return updated;
     }
 
     /**
@@ -124,6 +420,143 @@ public class BookingService {
         }
         log.info("BookingService.delete() - Deleting booking with ID: " + id);
         crud.delete(booking);
+
+        // Free the rooms once the cancellation commits
+        inventory.release(booking.getHotel().getId(), booking.nights());
+        callbacks.onCommit(() -> {
+            stays.remove(id);
+            journal.cancelled(id);
+        });
+    }
+
+    /**
+     * <p>Deletes every booking of a customer that is about to be deleted, live and archived, with one DELETE statement
+     * each, and frees their rooms and stays.</p>
+     *
+     * <p>The bookings are never loaded: their stays are read with a projection, the rooms are given back with one
+     * inventory update per hotel-date, and the stays leave the in-memory indexes once the transaction commits.</p>
+     *
+     * @param customerId The ID of the customer being deleted
+     */
+    public void releaseCustomer(Long customerId) {
+        List<Stay> released = crud.findStaysByCustomerId(customerId);
+        Map<HotelDate, Integer> rooms = new HashMap<>();
+        for (Stay stay : released) {
+            for (LocalDate night = stay.getCheckIn(); night.isBefore(stay.getCheckOut()); night = night.plusDays(1)) {
+                rooms.merge(new HotelDate(stay.getHotelId(), night), 1, Integer::sum);
+            }
+        }
+        inventory.releaseAll(rooms);
+        crud.deleteByCustomer(customerId);
+        crud.deleteArchivedByCustomer(customerId);
+        callbacks.onCommit(() -> {
+            for (Stay stay : released) {
+                stays.remove(stay.getBookingId());
+                journal.cancelled(stay.getBookingId());
+            }
+        });
+    }
+
+    /**
+     * <p>Deletes every booking of a hotel that is about to be deleted, live and archived, with one DELETE statement
+     * each, and drops the hotel's inventory and stays.</p>
+     *
+     * @param hotelId The ID of the hotel being deleted
+     */
+    public void releaseHotel(Long hotelId) {
+        inventory.removeHotel(hotelId);
+        crud.deleteByHotel(hotelId);
+        crud.deleteArchivedByHotel(hotelId);
+        callbacks.onCommit(() -> {
+            stays.removeHotel(hotelId);
+            journal.hotelRemoved(hotelId);
+        });
+    }
+
+    /**
+     * <p>Moves up to limit Bookings whose stay ended on or before the cutoff date into the archive. Must be called in
+     * a transaction; their rows are locked until it completes.</p>
+     *
+     * <p>The rooms they held are left in the inventory, as those nights are past and are never booked again, but
+     * their stays leave the {@link StayIndex} once the transaction commits.</p>
+     *
+     * @param cutoff The date by which the stays must have ended
+     * @param limit The maximum number of Bookings to archive
+     * @return The number of Bookings archived
+     */
+    public int archive(LocalDate cutoff, int limit) {
+        List<Stay> ended = crud.findStaysEndedBy(cutoff, limit);
+        if (ended.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = new ArrayList<>(ended.size());
+        for (Stay stay : ended) {
+            ids.add(stay.getBookingId());
+        }
+        int archived = crud.archive(ids, Instant.now());
+        callbacks.onCommit(() -> {
+            for (Long id : ids) {
+                stays.remove(id);
+                journal.archived(id);
+            }
+        });
+        return archived;
+    }
+
+    /**
+     * <p>Returns a list of all archived Bookings.</p>
+     *
+     * @return List of ArchivedBooking objects
+     */
+    public List<ArchivedBooking> findAllArchived() {
+        return crud.findAllArchived();
+    }
+
+    /**
+     * <p>Returns a list of the archived Bookings of a customer.</p>
+     *
+     * @param customerId The ID of the customer
+     * @return List of ArchivedBooking objects
+     */
+    public List<ArchivedBooking> findArchivedByCustomerId(Long customerId) {
+        return crud.findArchivedByCustomerId(customerId);
+    }
+
+    /**
+     * <p>Returns a list of the archived Bookings of a hotel.</p>
+     *
+     * @param hotelId The ID of the hotel
+     * @return List of ArchivedBooking objects
+     */
+    public List<ArchivedBooking> findArchivedByHotelId(Long hotelId) {
+        return crud.findArchivedByHotelId(hotelId);
+    }
+
+    /**
+     * <p>Finds an archived Booking by its ID.</p>
+     *
+     * @param id The ID of the archived Booking
+     * @return The ArchivedBooking, or null if there is none
+     */
+    public ArchivedBooking findArchivedById(Long id) {
+        return crud.findArchivedById(id);
+    }
+
+    private static List<HotelDate> hotelDates(Long hotelId, Collection<LocalDate> nights) {
+        List<HotelDate> hotelDates = new ArrayList<>();
+        for (LocalDate night : nights) {
+            hotelDates.add(new HotelDate(hotelId, night));
+        }
+        return hotelDates;
+    }
+
+    private static boolean unseen(Set<BookingKey> seenNights, BookingKey key, List<LocalDate> nights) {
+        for (LocalDate night : nights) {
+            if (seenNights.contains(new BookingKey(key.getCustomerId(), key.getHotelId(), night))) {
+                return false;
+            }
+        }
+        return true;
     }
 
 }
@@ -0,0 +1,84 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+
+import uk.ac.newcastle.enterprisemiddleware.model.CustomerMatch;
+import uk.ac.newcastle.enterprisemiddleware.repository.CustomerRepository;
+import uk.ac.newcastle.enterprisemiddleware.util.TransactionCallbacks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>Writes the valid rows of one chunk of a {@link CustomerImporter} run as new Customers, committing the chunk as a
+ * whole.</p>
+ *
+ * <p>The email addresses of the whole chunk are checked against the database with one query, and the new Customers
+ * are written through a Hibernate {@code StatelessSession}, which sends them as JDBC batch inserts and keeps nothing
+ * in a persistence context. The outcome of each row is recorded on the row itself; the importer only counts it once
+ * this method has returned and the transaction has committed.</p>
+ *
+ * @see CustomerImporter
+ */
+@ApplicationScoped
+public class CustomerImportProcessor {
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @Inject
+    CustomerRepository customerRepository;
+
+    @Inject
+    CustomerSearchIndex searchIndex;
+
+    @Inject
+    TransactionCallbacks callbacks;
+
+    @ConfigProperty(name = "quarkus.hibernate-orm.jdbc.statement-batch-size", defaultValue = "50")
+    int jdbcBatchSize;
+
+    /**
+     * <p>Inserts the Customer of every row whose email address is not registered yet.</p>
+     *
+     * @param rows Rows that passed bean validation, with distinct email addresses
+     */
+    @Transactional
+    public void insert(List<CustomerImporter.Row> rows) {
+        Set<String> emails = new HashSet<>();
+        for (CustomerImporter.Row row : rows) {
+            emails.add(row.customer.getEmail());
+        }
+        Set<String> existing = new HashSet<>(customerRepository.findExistingEmails(emails));
+
+        List<CustomerMatch> imported = new ArrayList<>(rows.size());
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            session.setJdbcBatchSize(jdbcBatchSize);
+            for (CustomerImporter.Row row : rows) {
+                if (existing.contains(row.customer.getEmail())) {
+                    row.rejected("Unique Email Violation");
+                    continue;
+                }
+                session.insert(row.customer);
+                imported.add(CustomerMatch.of(row.customer));
+                row.imported();
+            }
+            // Send the last, partly filled batch while the transaction is still open
+            ((SharedSessionContractImplementor) session).getJdbcCoordinator().executeBatch();
+        } finally {
+            session.close();
+        }
+
+        callbacks.onCommit(() -> imported.forEach(searchIndex::put));
+    }
+}
@@ -0,0 +1,300 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import uk.ac.newcastle.enterprisemiddleware.area.AreaUnavailableException;
+import uk.ac.newcastle.enterprisemiddleware.area.StateResolver;
+import uk.ac.newcastle.enterprisemiddleware.model.Customer;
+import uk.ac.newcastle.enterprisemiddleware.model.CustomerImportReport;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * <p>Imports customers in bulk from a stream of newline-delimited JSON objects or CSV rows, as sent to
+ * {@code POST /customers/import}.</p>
+ *
+ * <p>The stream is read a line at a time and never held in memory as a whole. Rows are gathered into chunks of
+ * {@code customer.import.chunk-size}; each chunk is bean validated, checked for email addresses repeated within the
+ * import, and handed to the {@link CustomerImportProcessor}, which checks the remaining addresses against the database
+ * with one query and inserts the chunk in one transaction. If that transaction fails as a whole, its rows are retried
+ * one per transaction, so one bad row cannot fail the others. The states of a chunk are filled in from the area codes
+ * of its phone numbers by the {@link StateResolver} before it is inserted.</p>
+ *
+ * <p>CSV input must start with a header naming the columns, from {@code firstName}, {@code lastName}, {@code email},
+ * {@code phoneNumber}, {@code birthDate} and {@code state}. Fields may be quoted, but not span lines.</p>
+ *
+ * @see CustomerImportProcessor
+ * @see CustomerImportReport
+ */
+@ApplicationScoped
+public class CustomerImporter {
+
+    public static final String NDJSON = "application/x-ndjson";
+
+    public static final String CSV = "text/csv";
+
+    private static final List<String> CSV_COLUMNS =
+            Arrays.asList("firstName", "lastName", "email", "phoneNumber", "birthDate", "state");
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    ObjectMapper mapper;
+
+    @Inject
+    Validator validator;
+
+    @Inject
+    CustomerImportProcessor processor;
+
+    @Inject
+    StateResolver stateResolver;
+
+    @ConfigProperty(name = "customer.import.chunk-size", defaultValue = "1000")
+    int chunkSize;
+
+    @ConfigProperty(name = "customer.import.max-reported-rejections", defaultValue = "1000")
+    int maxReportedRejections;
+
+    /**
+     * <p>Imports every valid customer of a stream, chunk by chunk. Chunks already imported stay imported if a later
+     * one fails.</p>
+     *
+     * @param body The uploaded rows, UTF-8 encoded
+     * @param csv true for CSV with a header row, false for newline-delimited JSON
+     * @return The report of imported and rejected rows
+     * @throws IOException If the stream cannot be read
+     * @throws IllegalArgumentException If the CSV header is missing or names an unknown column
+     */
+    public CustomerImportReport importCustomers(InputStream body, boolean csv) throws IOException {
+        CustomerImportReport report = new CustomerImportReport();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        List<Row> chunk = new ArrayList<>(chunkSize);
+        List<String> header = null;
+        long line = 0;
+        long start = System.nanoTime();
+
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.isBlank()) {
+                continue;
+            }
+            if (csv && header == null) {
+                header = parseHeader(text);
+                continue;
+            }
+            Customer customer;
+            try {
+                customer = csv ? fromCsv(header, text) : mapper.readValue(text, Customer.class);
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                reject(report, line, null, "Unreadable row: " + e.getMessage());
+                continue;
+            }
+            // Ids are always generated
+            customer.setId(null);
+            chunk.add(new Row(line, customer));
+            if (chunk.size() == chunkSize) {
+                process(chunk, report);
+                chunk.clear();
+            }
+        }
+        if (csv && header == null) {
+            throw new IllegalArgumentException("The CSV has no header row");
+        }
+        if (!chunk.isEmpty()) {
+            process(chunk, report);
+        }
+
+        log.info("CustomerImporter.importCustomers() - Imported " + report.getImported() + " customers and rejected "
+                + report.getRejected() + " rows in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return report;
+    }
+
+    private void process(List<Row> chunk, CustomerImportReport report) {
+        List<Row> valid = new ArrayList<>(chunk.size());
+        Set<String> emails = new HashSet<>();
+        for (Row row : chunk) {
+            Set<ConstraintViolation<Customer>> violations = validator.validate(row.customer);
+            if (!violations.isEmpty()) {
+                reject(report, row.line, row.customer.getEmail(), violations.stream()
+                        .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining("; ")));
+            } else if (!emails.add(row.customer.getEmail())) {
+                reject(report, row.line, row.customer.getEmail(), "Duplicate email within the import");
+            } else {
+                valid.add(row);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+        fillStates(valid);
+
+        try {
+            processor.insert(valid);
+        } catch (RuntimeException e) {
+            if (valid.size() == 1) {
+                valid.get(0).rejected(e.getMessage());
+            } else {
+                // Nothing of the chunk was committed; find the rows at fault by giving each its own transaction
+                log.log(Level.WARNING, "CustomerImporter.process() - Chunk of " + valid.size()
+                        + " failed, retrying its rows one by one", e);
+                for (Row row : valid) {
+                    try {
+                        processor.insert(Collections.singletonList(row));
+                    } catch (RuntimeException single) {
+                        row.rejected(single.getMessage());
+                    }
+                }
+            }
+        }
+
+        for (Row row : valid) {
+            if (row.rejection != null) {
+                reject(report, row.line, row.customer.getEmail(), row.rejection);
+            } else {
+                report.setImported(report.getImported() + 1);
+            }
+        }
+    }
+
+    private void fillStates(List<Row> rows) {
+        List<String> phoneNumbers = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            phoneNumbers.add(row.customer.getPhoneNumber());
+        }
+        Map<String, String> states;
+        try {
+            states = stateResolver.resolveAll(phoneNumbers);
+        } catch (AreaUnavailableException e) {
+            // The rows are imported anyway, keeping the states they were given, and can be backfilled later
+            log.warning("CustomerImporter.fillStates() - Importing " + rows.size()
+                    + " customers without resolving their states: " + e.getMessage());
+            return;
+        }
+        for (Row row : rows) {
+            String state = states.get(row.customer.getPhoneNumber());
+            if (state != null) {
+                row.customer.setState(state);
+            }
+        }
+    }
+
+    private void reject(CustomerImportReport report, long line, String email, String reason) {
+        report.setRejected(report.getRejected() + 1);
+        if (report.getRejections().size() < maxReportedRejections) {
+            report.getRejections().add(new CustomerImportReport.Rejection(line, email, reason));
+        } else {
+            report.setRejectionsTruncated(true);
+        }
+    }
+
+    private static List<String> parseHeader(String text) {
+        List<String> header = parseCsvLine(text);
+        for (String column : header) {
+            if (!CSV_COLUMNS.contains(column)) {
+                throw new IllegalArgumentException("Unknown CSV column '" + column + "', expected some of " + CSV_COLUMNS);
+            }
+        }
+        return header;
+    }
+
+    private Customer fromCsv(List<String> header, String text) {
+        List<String> fields = parseCsvLine(text);
+        if (fields.size() != header.size()) {
+            throw new IllegalArgumentException("Expected " + header.size() + " fields but found " + fields.size());
+        }
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String field = fields.get(i);
+            values.put(header.get(i), field.isEmpty() ? null : field);
+        }
+        // Converts the fields exactly as a JSON body would be, dates included
+        return mapper.convertValue(values, Customer.class);
+    }
+
+    /**
+     * Splits a CSV line on commas, honouring double-quoted fields with doubled quotes inside.
+     */
+    static List<String> parseCsvLine(String text) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    /**
+     * <p>A row of the import and the outcome of the last attempt to insert it, which the
+     * {@link CustomerImportProcessor} fills in. The outcome is only counted once the attempt has committed.</p>
+     */
+    static final class Row {
+
+        final long line;
+        final Customer customer;
+        String rejection;
+
+        private Row(long line, Customer customer) {
+            this.line = line;
+            this.customer = customer;
+        }
+
+        void imported() {
+            rejection = null;
+        }
+
+        void rejected(String reason) {
+            rejection = reason;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import io.quarkus.runtime.StartupEvent;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.control.ActivateRequestContext;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.transaction.Transactional;
+
+import uk.ac.newcastle.enterprisemiddleware.model.CustomerMatch;
+import uk.ac.newcastle.enterprisemiddleware.repository.CustomerRepository;
+import uk.ac.newcastle.enterprisemiddleware.util.TextIndex;
+
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+/**
+ * <p>In-memory type-ahead index of customers by first name, last name and email, kept in a {@link TextIndex}.</p>
+ *
+ * <p>A search finds customers whose names or email start with, or for three or more characters contain, every word of
+ * the query, and stops at the first few matches, so its cost depends on the number of results asked for rather than
+ * the number of customers. Searches share a read lock and only wait for the short write lock of a customer being
+ * added, changed or removed.</p>
+ *
+ * <p>The index is rebuilt from the {@code customer} table on startup. It is kept in step with that table by
+ * {@link CustomerService}, which records changes only once they have committed.</p>
+ *
+ * @see CustomerService
+ * @see CustomerMatch
+ */
+@ApplicationScoped
+public class CustomerSearchIndex {
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    CustomerRepository customerRepository;
+
+    private final TextIndex<CustomerMatch> index = new TextIndex<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * <p>Loads every customer when the application starts.</p>
+     */
+    @Transactional
+    @ActivateRequestContext
+    void onStart(@Observes StartupEvent event) {
+        List<CustomerMatch> customers = customerRepository.findAllMatches();
+        for (CustomerMatch customer : customers) {
+            put(customer);
+        }
+        log.info("CustomerSearchIndex.onStart() - Indexed " + customers.size() + " customers");
+    }
+
+    /**
+     * <p>Adds a customer, replacing any previous entry for the same id.</p>
+     *
+     * @param customer The summary of the customer
+     */
+    public void put(CustomerMatch customer) {
+        lock.writeLock().lock();
+        try {
+            index.put(customer.getId(), customer, customer.getFirstName(), customer.getLastName(), customer.getEmail());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * <p>Removes a customer.</p>
+     *
+     * @param customerId The id of the customer
+     */
+    public void remove(Long customerId) {
+        lock.writeLock().lock();
+        try {
+            index.remove(customerId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * <p>Finds the first customers matching every word of a query, those with a name or email starting with the
+     * query first.</p>
+     *
+     * @param query The words to look for
+     * @param limit The maximum number of customers to return
+     * @return Up to limit matching customers
+     */
+    public List<CustomerMatch> search(String query, int limit) {
+        lock.readLock().lock();
+        try {
+            return index.search(query, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
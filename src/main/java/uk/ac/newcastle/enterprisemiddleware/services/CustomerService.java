@@ -1,7 +1,11 @@
 package uk.ac.newcastle.enterprisemiddleware.services;
 
+import uk.ac.newcastle.enterprisemiddleware.area.StateResolver;
 import uk.ac.newcastle.enterprisemiddleware.model.Customer;
+import uk.ac.newcastle.enterprisemiddleware.model.CustomerMatch;
 import uk.ac.newcastle.enterprisemiddleware.repository.CustomerRepository;
+import uk.ac.newcastle.enterprisemiddleware.util.PageCursor;
+import uk.ac.newcastle.enterprisemiddleware.util.TransactionCallbacks;
 import uk.ac.newcastle.enterprisemiddleware.validator.CustomerValidator;
 
 import javax.enterprise.context.Dependent;
@@ -13,6 +17,9 @@ import java.util.logging.Logger;
 
 /**
  * <p>This Service class performs business logic for Customer operations, including validation and deletion.</p>
+ *
+ * <p>Committed changes are recorded in the {@link CustomerSearchIndex}. The state of a customer is filled in from the
+ * area code of its phone number by the {@link StateResolver}.</p>
  */
 @Dependent
 public class CustomerService {
@@ -27,6 +34,18 @@ public class CustomerService {
     @Inject
     CustomerRepository crud;
 
+    @Inject
+    BookingService bookingService;
+
+    @Inject
+    CustomerSearchIndex searchIndex;
+
+    @Inject
+    TransactionCallbacks callbacks;
+
+    @Inject
+    StateResolver states;
+
     /**
      * Returns a list of all customers, sorted alphabetically by last name.
      * @return List of all Customer objects.
@@ -35,6 +54,16 @@ public class CustomerService {
         return crud.findAllOrderedByName();
     }
 
+    /**
+     * Returns one page of customers, sorted alphabetically by last name, then first name, then id.
+     * @param after The cursor of the previous page, or null for the first page.
+     * @param limit The maximum number of customers to return.
+     * @return List of Customer objects.
+     */
+    public List<Customer> findPageOrderedByName(PageCursor after, int limit) {
+        return crud.findPageOrderedByName(after, limit);
+    }
+
     /**
      * Retrieves a customer by ID.
      * @param id The ID of the customer to retrieve.
@@ -66,6 +95,43 @@ public class CustomerService {
         return crud.findAllByLastName(lastName);
     }
 
+    /**
+     * Retrieves a customer by id with its bookings loaded in the same query.
+     * @param id The id of the customer.
+     * @return The customer, or null if not found.
+     */
+    public Customer findByIdWithBookings(Long id) {
+        return crud.findByIdWithBookings(id);
+    }
+
+    /**
+     * Loads the bookings of customers already retrieved, with one further query for the whole list.
+     * @param customers The customers to load the bookings of.
+     */
+    public void loadBookings(List<Customer> customers) {
+        crud.loadBookings(customers);
+    }
+
+    /**
+     * Retrieves all customers with the given first and last names in one query.
+     * @param firstName The first name to filter by, or null for any.
+     * @param lastName The last name to filter by, or null for any.
+     * @return List of Customers with the specified names, sorted by last name.
+     */
+    public List<Customer> findAllByName(String firstName, String lastName) {
+        return crud.findAllByName(firstName, lastName);
+    }
+
+    /**
+     * Finds the first customers whose names or email start with, or contain, every word of a query.
+     * @param query The words to look for.
+     * @param limit The maximum number of customers to return.
+     * @return Up to limit matching customers, those starting with the query first.
+     */
+    public List<CustomerMatch> search(String query, int limit) {
+        return searchIndex.search(query, limit);
+    }
+
     /**
      * Creates a new customer and validates data using {@link CustomerValidator}.
      * @param customer The Customer object to create.
@@ -75,10 +141,12 @@ public class CustomerService {
     public Customer create(Customer customer) throws Exception {
         log.info("CustomerService.create() - Creating " + customer.getFirstName() + " " + customer.getLastName());
         validator.validateCustomer(customer);
+        fillState(customer);
 
-        // Additional business logic, if needed...
-
-        return crud.create(customer);
+        Customer created = crud.create(customer);
+        CustomerMatch match = CustomerMatch.of(created);
+        callbacks.onCommit(() -> searchIndex.put(match));
+        return created;
     }
 
     /**
@@ -90,14 +158,16 @@ public class CustomerService {
     public Customer update(Customer customer) throws Exception {
         log.info("CustomerService.update() - Updating " + customer.getFirstName() + " " + customer.getLastName());
         validator.validateCustomer(customer);
+        fillState(customer);
 
-        // Additional business logic, if needed...
-
-        return crud.update(customer);
+        Customer updated = crud.update(customer);
+        CustomerMatch match = CustomerMatch.of(updated);
+        callbacks.onCommit(() -> searchIndex.put(match));
+        return updated;
     }
 
     /**
-     * Deletes a customer and cascades deletions to associated bookings.
+     * Deletes a customer along with its bookings, which are removed in bulk rather than one by one.
      * @param customer The Customer object to delete.
      * @return The deleted Customer object, or null if not found.
      */
@@ -105,10 +175,26 @@ public class CustomerService {
         log.info("CustomerService.delete() - Deleting " + customer);
 
         if (customer.getId() != null) {
-            return crud.delete(customer);  // Cascade deletions handled in Customer entity
+            // Delete the bookings in bulk and free their rooms, so removing the customer cascades to nothing
+            bookingService.releaseCustomer(customer.getId());
+            Long id = customer.getId();
+            callbacks.onCommit(() -> searchIndex.remove(id));
+            return crud.delete(customer);
         } else {
             log.info("CustomerService.delete() - No ID found, cannot delete.");
             return null;
         }
     }
+
+    /**
+     * Sets the state of a customer from the area code of its phone number, keeping the state it has if the area code
+     * is unknown or the area API is unavailable.
+     * @param customer The validated Customer object.
+     */
+    private void fillState(Customer customer) {
+        String state = states.resolveIfKnown(customer.getPhoneNumber());
+        if (state != null) {
+            customer.setState(state);
+        }
+    }
 }
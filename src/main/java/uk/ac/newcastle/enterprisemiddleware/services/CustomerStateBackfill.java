@@ -0,0 +1,99 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import io.quarkus.runtime.StartupEvent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import uk.ac.newcastle.enterprisemiddleware.area.StateResolver;
+import uk.ac.newcastle.enterprisemiddleware.util.ScheduledJob;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * <p>Fills in the state of existing Customers that have none, such as those saved before states were resolved or
+ * while the area API was unavailable, from the area codes of their phone numbers.</p>
+ *
+ * <p>A run goes through the Customers without a state {@code customer.state-backfill.chunk-size} at a time, in id
+ * order. The states of each chunk are resolved together by the {@link StateResolver}, asking about each distinct area
+ * code once, and written by the {@link CustomerStateBackfillProcessor} in a transaction of their own. Customers whose
+ * state still cannot be worked out are left for the next run. Runs happen every
+ * {@code customer.state-backfill.interval-minutes} in the background, or never if that is 0, and on demand through
+ * {@link #backfill()}; only one runs at a time.</p>
+ *
+ * @see CustomerStateBackfillProcessor
+ */
+@ApplicationScoped
+public class CustomerStateBackfill {
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    CustomerStateBackfillProcessor processor;
+
+    @Inject
+    StateResolver stateResolver;
+
+    @ConfigProperty(name = "customer.state-backfill.chunk-size", defaultValue = "500")
+    int chunkSize;
+
+    @ConfigProperty(name = "customer.state-backfill.interval-minutes", defaultValue = "60")
+    long intervalMinutes;
+
+    private ScheduledJob job;
+
+    void onStart(@Observes StartupEvent event) {
+        if (intervalMinutes > 0) {
+            job = ScheduledJob.start("customer-state-backfill", intervalMinutes, intervalMinutes, this::backfill, log);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (job != null) {
+            job.stop();
+        }
+    }
+
+    /**
+     * <p>Fills in the state of every Customer without one whose area code can be resolved, one chunk per
+     * transaction.</p>
+     *
+     * @return The number of Customers given a state
+     */
+    public synchronized int backfill() {
+        long start = System.nanoTime();
+        long afterId = 0;
+        int total = 0;
+        Map<Long, String> chunk;
+        do {
+            chunk = processor.findChunk(afterId, chunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            Map<String, String> states = stateResolver.resolveAll(chunk.values());
+            Map<String, List<Long>> idsByState = new HashMap<>();
+            for (Map.Entry<Long, String> customer : chunk.entrySet()) {
+                String state = states.get(customer.getValue());
+                if (state != null) {
+                    idsByState.computeIfAbsent(state, key -> new ArrayList<>()).add(customer.getKey());
+                }
+                afterId = customer.getKey();
+            }
+            total += processor.updateChunk(idsByState);
+        } while (chunk.size() == chunkSize);
+        log.info("CustomerStateBackfill.backfill() - Filled in the state of " + total + " customers in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return total;
+    }
+}
@@ -0,0 +1,57 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.control.ActivateRequestContext;
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+
+import uk.ac.newcastle.enterprisemiddleware.repository.CustomerRepository;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Finds Customers saved without a state, a chunk at a time, and writes the states the {@link CustomerStateBackfill}
+ * resolved for them. Reading a chunk and writing it are separate short transactions.</p>
+ *
+ * <p>The states are resolved between the two steps, outside any transaction, so a slow area API never holds a
+ * transaction or its row locks open.</p>
+ *
+ * @see CustomerStateBackfill
+ */
+@ApplicationScoped
+public class CustomerStateBackfillProcessor {
+
+    @Inject
+    CustomerRepository customerRepository;
+
+    /**
+     * <p>Returns the phone numbers of up to chunkSize Customers without a state, by id, in ascending id order.</p>
+     *
+     * @param afterId Only Customers with a greater id are returned, 0 for the first chunk
+     * @param chunkSize The maximum number of Customers to return
+     * @return The phone number of each Customer, by id
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    @ActivateRequestContext
+    public Map<Long, String> findChunk(long afterId, int chunkSize) {
+        return customerRepository.findPhoneNumbersWithoutState(afterId, chunkSize);
+    }
+
+    /**
+     * <p>Sets the states of a chunk of Customers with one UPDATE per distinct state, skipping any Customer given a
+     * state in the meantime.</p>
+     *
+     * @param idsByState The ids of the Customers to update, by the state to give them
+     * @return The number of Customers updated
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    @ActivateRequestContext
+    public int updateChunk(Map<String, List<Long>> idsByState) {
+        int updated = 0;
+        for (Map.Entry<String, List<Long>> entry : idsByState.entrySet()) {
+            updated += customerRepository.updateMissingStates(entry.getValue(), entry.getKey());
+        }
+        return updated;
+    }
+}
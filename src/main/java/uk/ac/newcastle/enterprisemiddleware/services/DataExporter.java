@@ -0,0 +1,168 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.control.ActivateRequestContext;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import uk.ac.newcastle.enterprisemiddleware.model.Booking;
+import uk.ac.newcastle.enterprisemiddleware.model.Customer;
+import uk.ac.newcastle.enterprisemiddleware.model.Hotel;
+import uk.ac.newcastle.enterprisemiddleware.repository.BookingRepository;
+import uk.ac.newcastle.enterprisemiddleware.repository.CustomerRepository;
+import uk.ac.newcastle.enterprisemiddleware.repository.HotelRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * <p>Writes every Customer, Hotel or Booking to a stream as newline-delimited JSON, one object per line, for the
+ * {@code /export} endpoints.</p>
+ *
+ * <p>Rows are read through a database cursor {@code export.fetch-size} at a time and written to the response as they
+ * arrive, and the persistence context is cleared after each fetch, so memory use does not depend on the size of the
+ * table. The objects are flat: a Booking refers to its customer and hotel by id, and neither a Customer nor a Hotel
+ * includes its bookings.</p>
+ *
+ * <p>The export runs outside a transaction, reading with the request's session, so a long export is not cut short by
+ * the transaction timeout.</p>
+ */
+@ApplicationScoped
+public class DataExporter {
+
+    public static final String NDJSON = CustomerImporter.NDJSON;
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    ObjectMapper mapper;
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    CustomerRepository customerRepository;
+
+    @Inject
+    HotelRepository hotelRepository;
+
+    @Inject
+    BookingRepository bookingRepository;
+
+    @ConfigProperty(name = "export.fetch-size", defaultValue = "500")
+    int fetchSize;
+
+    /**
+     * <p>Writes every Customer, sorted by id.</p>
+     *
+     * @param out The stream to write to, which is left open
+     * @return The number of Customers written
+     * @throws IOException If the stream cannot be written
+     */
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    @ActivateRequestContext
+    public long exportCustomers(OutputStream out) throws IOException {
+        try (Stream<Customer> customers = customerRepository.streamAll(fetchSize)) {
+            return export("customers", customers, out, (customer, json) -> {
+                json.writeNumberField("id", customer.getId());
+                json.writeStringField("firstName", customer.getFirstName());
+                json.writeStringField("lastName", customer.getLastName());
+                json.writeStringField("email", customer.getEmail());
+                json.writeStringField("phoneNumber", customer.getPhoneNumber());
+                json.writeObjectField("birthDate", customer.getBirthDate());
+                json.writeStringField("state", customer.getState());
+            });
+        }
+    }
+
+    /**
+     * <p>Writes every Hotel, sorted by id.</p>
+     *
+     * @param out The stream to write to, which is left open
+     * @return The number of Hotels written
+     * @throws IOException If the stream cannot be written
+     */
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    @ActivateRequestContext
+    public long exportHotels(OutputStream out) throws IOException {
+        try (Stream<Hotel> hotels = hotelRepository.streamAll(fetchSize)) {
+            return export("hotels", hotels, out, (hotel, json) -> {
+                json.writeNumberField("id", hotel.getId());
+                json.writeStringField("name", hotel.getName());
+                json.writeStringField("location", hotel.getLocation());
+                json.writeStringField("description", hotel.getDescription());
+                json.writeNumberField("totalRooms", hotel.getTotalRooms());
+                json.writeNumberField("availableRooms", hotel.getAvailableRooms());
+            });
+        }
+    }
+
+    /**
+     * <p>Writes every live Booking, sorted by id. Archived Bookings are not included.</p>
+     *
+     * @param out The stream to write to, which is left open
+     * @return The number of Bookings written
+     * @throws IOException If the stream cannot be written
+     */
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    @ActivateRequestContext
+    public long exportBookings(OutputStream out) throws IOException {
+        try (Stream<Booking> bookings = bookingRepository.streamAll(fetchSize)) {
+            return export("bookings", bookings, out, (booking, json) -> {
+                json.writeNumberField("id", booking.getId());
+                json.writeNumberField("customerId", booking.getCustomer().getId());
+                json.writeNumberField("hotelId", booking.getHotel().getId());
+                json.writeObjectField("bookingDate", booking.getBookingDate());
+                json.writeObjectField("checkOutDate", booking.getCheckOutDate());
+                json.writeStringField("status", booking.getStatus());
+            });
+        }
+    }
+
+    private <T> long export(String name, Stream<T> rows, OutputStream out, Fields<T> fields) throws IOException {
+        long start = System.nanoTime();
+        long written = 0;
+        JsonGenerator json = mapper.getFactory().createGenerator(out);
+        // Each object ends with its own line feed instead of the space Jackson puts between root values
+        json.setRootValueSeparator(null);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        try {
+            for (Iterator<T> it = rows.iterator(); it.hasNext(); ) {
+                json.writeStartObject();
+                fields.write(it.next(), json);
+                json.writeEndObject();
+                json.writeRaw('\n');
+                if (++written % fetchSize == 0) {
+                    // Send what has been written and let the rows read so far be garbage collected
+                    json.flush();
+                    em.clear();
+                }
+            }
+        } finally {
+            json.close();
+        }
+
+        log.info("DataExporter.export() - Exported " + written + " " + name + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return written;
+    }
+
+    /**
+     * Writes the fields of one row into an object that has already been started.
+     */
+    private interface Fields<T> {
+
+        void write(T row, JsonGenerator json) throws IOException;
+    }
+}
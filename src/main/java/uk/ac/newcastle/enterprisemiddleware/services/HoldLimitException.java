@@ -0,0 +1,27 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import javax.validation.ValidationException;
+
+/**
+ * <p>ValidationException which should be thrown if a room hold is requested while the maximum number of holds is
+ * already active.</p>
+ *
+ * <p>It signals load rather than a problem with the request, so REST services should map it to 429 TOO MANY
+ * REQUESTS.</p>
+ *
+ * @see HoldService
+ */
+public class HoldLimitException extends ValidationException {
+
+    public HoldLimitException(String message) {
+        super(message);
+    }
+
+    public HoldLimitException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public HoldLimitException(Throwable cause) {
+        super(cause);
+    }
+}
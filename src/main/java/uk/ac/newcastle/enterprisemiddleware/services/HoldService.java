@@ -0,0 +1,234 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.validation.ConstraintViolationException;
+import javax.validation.ValidationException;
+
+import uk.ac.newcastle.enterprisemiddleware.model.Booking;
+import uk.ac.newcastle.enterprisemiddleware.model.RoomHold;
+import uk.ac.newcastle.enterprisemiddleware.util.HashedTimerWheel;
+import uk.ac.newcastle.enterprisemiddleware.util.TransactionCallbacks;
+import uk.ac.newcastle.enterprisemiddleware.validator.BookingValidator;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * <p>This Service class holds rooms for customers while they check out, for a limited time.</p>
+ *
+ * <p>A hold takes its rooms in the in-memory inventory calendar only, so creating, cancelling or abandoning a hold
+ * never writes to the database. Confirming a hold creates its {@link Booking} and records the rooms in the inventory
+ * table in the confirming transaction.</p>
+ *
+ * <p>Every hold is scheduled on a {@link HashedTimerWheel} when it is created and its timeout is cancelled when it is
+ * confirmed or cancelled, both in O(1), so expiry never sweeps the active holds. Whichever of confirm, cancel or
+ * expiry removes a hold from the map first owns it; the others find nothing to do.</p>
+ *
+ * @see InventoryService
+ * @see BookingService#createHeld(Booking)
+ */
+@ApplicationScoped
+public class HoldService {
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    InventoryService inventory;
+
+    @Inject
+    BookingService bookingService;
+
+    @Inject
+    BookingValidator validator;
+
+    @Inject
+    TransactionCallbacks callbacks;
+
+    @ConfigProperty(name = "booking.hold.ttl-seconds", defaultValue = "300")
+    long ttlSeconds;
+
+    @ConfigProperty(name = "booking.hold.max-active", defaultValue = "100000")
+    int maxActive;
+
+    @ConfigProperty(name = "booking.hold.tick-ms", defaultValue = "100")
+    long tickMs;
+
+    @ConfigProperty(name = "booking.hold.wheel-size", defaultValue = "512")
+    int wheelSize;
+
+    private final ConcurrentMap<String, Hold> holds = new ConcurrentHashMap<>();
+
+    /** Active holds plus those being created, which have reserved their place under the limit. */
+    private final AtomicInteger active = new AtomicInteger();
+
+    private HashedTimerWheel wheel;
+
+    @PostConstruct
+    void init() {
+        wheel = new HashedTimerWheel("room-hold-expiry", tickMs, TimeUnit.MILLISECONDS, wheelSize);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        wheel.stop();
+    }
+
+    /**
+     * <p>Holds the rooms a Booking would take, without creating it.</p>
+     *
+     * @param booking The Booking to hold rooms for, with customer and hotel ids set
+     * @return The RoomHold, including its id and expiry time
+     * @throws ConstraintViolationException If Bean Validation errors exist
+     * @throws HoldLimitException If too many holds are already active
+     * @throws RoomUnavailableException If the hotel has no room left on any night of the stay
+     * @throws ValidationException If the hotel does not exist or the customer already has this booking or an
+     * overlapping stay
+     */
+    public RoomHold create(Booking booking) throws ConstraintViolationException, ValidationException {
+        // The slot is taken before anything else, so concurrent creates cannot all pass a check of the count
+        if (active.incrementAndGet() > maxActive) {
+            active.decrementAndGet();
+            throw new HoldLimitException("Too many rooms are being held, please try again shortly");
+        }
+        boolean held = false;
+        try {
+            validator.validateConstraints(booking);
+            validator.validateStay(booking);
+            // Refused now rather than at confirmation, so a duplicate never keeps a room from others for the TTL
+            validator.validateUniqueness(booking);
+
+            Long hotelId = booking.getHotel().getId();
+            List<LocalDate> nights = booking.nights();
+            LocalDate full = inventory.hold(hotelId, nights);
+            if (full != null) {
+                throw new RoomUnavailableException("No rooms are available at hotel " + hotelId + " on " + full);
+            }
+
+            String holdId = UUID.randomUUID().toString();
+            RoomHold view = new RoomHold(holdId, booking.getCustomer().getId(), hotelId, booking.getBookingDate(),
+                    booking.getCheckOutDate(), Instant.now().plusSeconds(ttlSeconds));
+            Hold hold = new Hold(view, booking, nights);
+            holds.put(holdId, hold);
+            held = true;
+            hold.timeout = wheel.schedule(() -> expire(holdId, hold), ttlSeconds, TimeUnit.SECONDS);
+
+            log.info("HoldService.create() - Holding hotel: " + hotelId + " for " + nights.size() + " nights from "
+                    + booking.getBookingDate() + " as " + holdId);
+            return view;
+        } finally {
+            if (!held) {
+                active.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * <p>Returns an active hold.</p>
+     *
+     * @param holdId The id of the hold
+     * @return The RoomHold, or null if it does not exist, has expired or has been confirmed
+     */
+    public RoomHold findById(String holdId) {
+        Hold hold = holds.get(holdId);
+        return hold == null ? null : hold.view;
+    }
+
+    /**
+     * <p>Turns an active hold into a Booking in the current transaction.</p>
+     *
+     * <p>The hold is used up by the attempt: if the Booking cannot be created or the transaction rolls back, its
+     * rooms are given back.</p>
+     *
+     * @param holdId The id of the hold
+     * @return The persisted Booking, or null if the hold does not exist or has expired
+     * @throws IllegalStateException If no transaction is active
+     * @throws Exception If there are validation or persistence issues
+     */
+    public Booking confirm(String holdId) throws Exception {
+        if (!callbacks.isTransactionActive()) {
+            throw new IllegalStateException("A hold can only be confirmed inside a transaction");
+        }
+        Hold hold = take(holdId);
+        if (hold == null) {
+            return null;
+        }
+        callbacks.onRollback(() -> inventory.releaseHold(hold.view.getHotelId(), hold.nights));
+
+        log.info("HoldService.confirm() - Confirming hold: " + holdId);
+        return bookingService.createHeld(hold.booking);
+    }
+
+    /**
+     * <p>Cancels an active hold and gives its rooms back straight away.</p>
+     *
+     * @param holdId The id of the hold
+     * @return true if the hold was cancelled, false if it does not exist or has expired
+     */
+    public boolean cancel(String holdId) {
+        Hold hold = take(holdId);
+        if (hold == null) {
+            return false;
+        }
+        inventory.releaseHold(hold.view.getHotelId(), hold.nights);
+        log.info("HoldService.cancel() - Cancelled hold: " + holdId);
+        return true;
+    }
+
+    /**
+     * @return The number of active holds
+     */
+    public int activeHolds() {
+        return holds.size();
+    }
+
+    private Hold take(String holdId) {
+        Hold hold = holds.remove(holdId);
+        if (hold != null) {
+            active.decrementAndGet();
+            if (hold.timeout != null) {
+                hold.timeout.cancel();
+            }
+        }
+        return hold;
+    }
+
+    private void expire(String holdId, Hold hold) {
+        if (holds.remove(holdId, hold)) {
+            active.decrementAndGet();
+            inventory.releaseHold(hold.view.getHotelId(), hold.nights);
+            log.fine("HoldService.expire() - Hold expired: " + holdId);
+        }
+    }
+
+    /**
+     * <p>An active hold: what it was requested for, and its timeout on the wheel.</p>
+     */
+    private static final class Hold {
+
+        private final RoomHold view;
+        private final Booking booking;
+        private final List<LocalDate> nights;
+        private volatile HashedTimerWheel.Timeout timeout;
+
+        private Hold(RoomHold view, Booking booking, List<LocalDate> nights) {
+            this.view = view;
+            this.booking = booking;
+            this.nights = nights;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+
+import uk.ac.newcastle.enterprisemiddleware.model.CacheStats;
+import uk.ac.newcastle.enterprisemiddleware.model.Hotel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * <p>This class is a read-through, in-memory cache of the hotel catalogue, in front of the database reads of
+ * {@link HotelService}. It holds the list of every hotel, sorted by name and then id, and up to
+ * {@code hotel.cache.max-entries} hotels by id, evicting the least recently used.</p>
+ *
+ * <p>The catalogue changes a few times a day and is read far more often, so entries never expire; instead
+ * {@link HotelService} invalidates a hotel and the list once a transaction that creates, updates or deletes a hotel
+ * commits. Every invalidation moves the cache to a new generation, and a value read from the database is only stored
+ * if no invalidation happened while it was being read, so a read racing a commit cannot put a stale hotel back.</p>
+ *
+ * <p>The cached Hotels are detached and shared between requests, and must not be modified; {@link HotelService}
+ * hands out copies of them. Their bookings are not loaded and so are left out of their JSON.</p>
+ */
+@ApplicationScoped
+public class HotelCatalogue {
+
+    private static final Comparator<Hotel> BY_NAME = Comparator.comparing(Hotel::getName).thenComparing(Hotel::getId);
+
+    @ConfigProperty(name = "hotel.cache.max-entries", defaultValue = "10000")
+    int maxEntries;
+
+    // Kept in access order, so the eldest entry is the least recently used
+    private final Map<Long, Hotel> byId = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Hotel> eldest) {
+            if (size() > maxEntries) {
+                evictions++;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private List<Hotel> all;
+
+    private long generation;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * <p>Returns a hotel from the cache, reading it with the loader on a miss. Hotels that do not exist are not
+     * cached.</p>
+     *
+     * @param id The id of the hotel
+     * @param loader Reads a detached hotel from the database, or returns null if there is none
+     * @return The hotel, or null if there is none
+     */
+    public Hotel get(Long id, Function<Long, Hotel> loader) {
+        long loadingGeneration;
+        synchronized (this) {
+            Hotel hotel = byId.get(id);
+            if (hotel != null) {
+                hits++;
+                return hotel;
+            }
+            misses++;
+            loadingGeneration = generation;
+        }
+
+        // Read outside the lock, so a slow query does not hold up hits
+        Hotel hotel = loader.apply(id);
+        if (hotel != null) {
+            synchronized (this) {
+                if (generation == loadingGeneration) {
+                    byId.put(id, hotel);
+                }
+            }
+        }
+        return hotel;
+    }
+
+    /**
+     * <p>Returns every hotel, sorted by name and then id, reading them with the loader if the list is not cached.</p>
+     *
+     * @param loader Reads every hotel from the database, detached
+     * @return The unmodifiable list of hotels
+     */
+    public List<Hotel> all(Supplier<List<Hotel>> loader) {
+        long loadingGeneration;
+        synchronized (this) {
+            if (all != null) {
+                hits++;
+                return all;
+            }
+            misses++;
+            loadingGeneration = generation;
+        }
+
+        List<Hotel> hotels = new ArrayList<>(loader.get());
+        hotels.sort(BY_NAME);
+        hotels = Collections.unmodifiableList(hotels);
+        synchronized (this) {
+            if (generation == loadingGeneration) {
+                all = hotels;
+            }
+        }
+        return hotels;
+    }
+
+    /**
+     * <p>Drops a hotel and the list of every hotel, after a change to the hotel has committed.</p>
+     *
+     * @param id The id of the created, updated or deleted hotel
+     */
+    public synchronized void invalidate(Long id) {
+        generation++;
+        invalidations++;
+        byId.remove(id);
+        all = null;
+    }
+
+    /**
+     * @return The counters of the cache; the size is the number of hotels cached by id
+     */
+    public synchronized CacheStats stats() {
+        return new CacheStats(hits, misses, evictions, invalidations, byId.size(), maxEntries);
+    }
+}
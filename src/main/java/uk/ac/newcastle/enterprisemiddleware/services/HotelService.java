@@ -8,9 +8,14 @@ import javax.ws.rs.core.Response;
 
 import uk.ac.newcastle.enterprisemiddleware.model.Hotel;
 import uk.ac.newcastle.enterprisemiddleware.repository.HotelRepository;
+import uk.ac.newcastle.enterprisemiddleware.util.PageCursor;
+import uk.ac.newcastle.enterprisemiddleware.util.TransactionCallbacks;
 import uk.ac.newcastle.enterprisemiddleware.validator.HotelValidator;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 @Dependent
@@ -25,23 +30,91 @@ public class HotelService {
     @Inject
     HotelRepository hotelRepository;
 
+    @Inject
+    InventoryService inventory;
+
+    @Inject
+    BookingService bookingService;
+
+    @Inject
+    HotelCatalogue catalogue;
+
+    @Inject
+    TransactionCallbacks callbacks;
+
     /**
-     * Returns a list of all hotels.
+     * Returns a list of all hotels, sorted by name and then id, from the {@link HotelCatalogue} cache.
+     * The hotels are copies of the cached ones, so the caller may modify them.
      *
      * @return List of Hotel objects
      */
     public List<Hotel> listAllHotels() {
-        return hotelRepository.listAll();
+        List<Hotel> hotels = new ArrayList<>();
+        for (Hotel hotel : catalogue.all(hotelRepository::listAllDetached)) {
+            hotels.add(copyOf(hotel));
+        }
+        return hotels;
+    }
+
+    /**
+     * Returns one page of hotels, sorted by name and then id, from the {@link HotelCatalogue} cache.
+     * The hotels are copies of the cached ones, so the caller may modify them.
+     *
+     * @param after The cursor of the previous page, or null for the first page
+     * @param limit The maximum number of hotels to return
+     * @return List of Hotel objects
+     */
+    public List<Hotel> listHotelPage(PageCursor after, int limit) {
+        List<Hotel> hotels = new ArrayList<>();
+        for (Hotel hotel : cachedPage(after, limit)) {
+            hotels.add(copyOf(hotel));
+        }
+        return hotels;
+    }
+
+    /**
+     * Returns one page of hotels, sorted by name and then id, with their bookings read from the database by one
+     * query.
+     *
+     * The page is picked from the {@link HotelCatalogue} cache exactly as for {@link #listHotelPage}, not by an
+     * ORDER BY in the database, whose collation may order names differently from Java; so a cursor from either view
+     * continues the other at the same place.
+     *
+     * @param after The cursor of the previous page, or null for the first page
+     * @param limit The maximum number of hotels to return
+     * @return List of Hotel objects
+     */
+    public List<Hotel> listHotelPageWithBookings(PageCursor after, int limit) {
+        List<Hotel> page = cachedPage(after, limit);
+        List<Long> ids = new ArrayList<>(page.size());
+        for (Hotel hotel : page) {
+            ids.add(hotel.getId());
+        }
+        Map<Long, Hotel> loaded = new HashMap<>();
+        for (Hotel hotel : hotelRepository.findByIdsWithBookings(ids)) {
+            loaded.put(hotel.getId(), hotel);
+        }
+        // Put them back in the order of the page, leaving out any hotel deleted since the cache was filled
+        List<Hotel> hotels = new ArrayList<>(page.size());
+        for (Long id : ids) {
+            Hotel hotel = loaded.get(id);
+            if (hotel != null) {
+                hotels.add(hotel);
+            }
+        }
+        return hotels;
     }
 
     /**
-     * Finds a specific Hotel by its ID.
+     * Finds a specific Hotel by its ID, from the {@link HotelCatalogue} cache.
+     * The hotel is a copy of the cached one, so the caller may modify it.
      *
      * @param id The ID of the hotel to be retrieved
      * @return The Hotel with the specified ID, or null if not found
      */
     public Hotel findHotelById(Long id) {
-        return hotelRepository.findById(id);
+        Hotel hotel = catalogue.get(id, hotelRepository::findDetachedById);
+        return hotel == null ? null : copyOf(hotel);
     }
 
     /**
@@ -59,7 +132,13 @@ public class HotelService {
         validator.validateHotel(hotel);
 
         // Persist the hotel to the database
-        return hotelRepository.create(hotel);
+        Hotel created = hotelRepository.create(hotel);
+
+        // Size the per-date inventory of the new hotel
+        inventory.registerHotel(created);
+        Long id = created.getId();
+        callbacks.onCommit(() -> catalogue.invalidate(id));
+        return created;
     }
 
     /**
@@ -77,7 +156,23 @@ public class HotelService {
         validator.validateHotel(hotel);
 
         // Update the hotel information
-        return hotelRepository.update(hotel);
+        Hotel updated = hotelRepository.update(hotel);
+
+        // Resize the per-date inventory in case totalRooms has changed
+        inventory.registerHotel(updated);
+        Long id = updated.getId();
+        callbacks.onCommit(() -> catalogue.invalidate(id));
+        return updated;
+    }
+
+    /**
+     * Finds a specific Hotel by its ID, with its bookings loaded in the same query.
+     *
+     * @param id The ID of the hotel to be retrieved
+     * @return The Hotel with the specified ID, or null if not found
+     */
+    public Hotel findHotelByIdWithBookings(Long id) {
+        return hotelRepository.findByIdWithBookings(id);
     }
 
     /**
@@ -92,7 +187,9 @@ public class HotelService {
 
         Hotel hotel = hotelRepository.findById(hotelId);
         if (hotel != null) {
+            bookingService.releaseHotel(hotelId);
             hotelRepository.delete(hotel);
+            callbacks.onCommit(() -> catalogue.invalidate(hotelId));
             log.info("HotelService.deleteHotel() - Successfully deleted Hotel and associated bookings with ID: " + hotelId);
             return true;
         } else {
@@ -100,4 +197,40 @@ public class HotelService {
             return false;
         }
     }
+
+    /**
+     * Returns one page of the cached, shared hotels, which must not be modified.
+     */
+    private List<Hotel> cachedPage(PageCursor after, int limit) {
+        List<Hotel> hotels = catalogue.all(hotelRepository::listAllDetached);
+        // The list is sorted on the cursor's key, so the page starts at the first hotel after the cursor
+        int from = 0;
+        int to = hotels.size();
+        while (after != null && from < to) {
+            int middle = (from + to) >>> 1;
+            Hotel hotel = hotels.get(middle);
+            if (after.isBefore(hotel.getName(), hotel.getId())) {
+                to = middle;
+            } else {
+                from = middle + 1;
+            }
+        }
+        return hotels.subList(from, Math.min(from + limit, hotels.size()));
+    }
+
+    /**
+     * Copies a cached hotel, so that changes to the copy cannot reach the cache or other requests.
+     */
+    private static Hotel copyOf(Hotel cached) {
+        Hotel hotel = new Hotel();
+        hotel.setId(cached.getId());
+        hotel.setName(cached.getName());
+        hotel.setLocation(cached.getLocation());
+        hotel.setDescription(cached.getDescription());
+        hotel.setTotalRooms(cached.getTotalRooms());
+        hotel.setAvailableRooms(cached.getAvailableRooms());
+        // The cached hotels' bookings were never loaded, so they stay out of the JSON of the copy too
+        hotel.setBookings(cached.getBookings());
+        return hotel;
+    }
 }
@@ -0,0 +1,198 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import io.quarkus.runtime.StartupEvent;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.control.ActivateRequestContext;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.transaction.Transactional;
+
+import uk.ac.newcastle.enterprisemiddleware.model.Hotel;
+import uk.ac.newcastle.enterprisemiddleware.model.RoomInventory;
+import uk.ac.newcastle.enterprisemiddleware.repository.HotelRepository;
+import uk.ac.newcastle.enterprisemiddleware.repository.RoomInventoryRepository;
+
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * <p>In-memory calendar of booked rooms, keyed by hotel id and epoch day.</p>
+ *
+ * <p>Every read and every reservation is a pair of hash lookups followed by an atomic compare-and-set on the day's
+ * counter, so "is there a room on date X" never touches the database and two concurrent reservations can never both
+ * take the last room.</p>
+ *
+ * <p>A hotel whose {@code totalRooms} is zero or less is treated as having no inventory limit: its bookings are still
+ * counted, but reservations always succeed.</p>
+ *
+ * <p>The calendar is rebuilt from the {@code room_inventory} table on startup, once the rows missing for hotel-dates
+ * booked before that table was kept have been counted from the {@code booking} table; otherwise their rooms would
+ * all look free. It is kept in step with that table by {@link InventoryService}, which is the only class that should
+ * change it.</p>
+ *
+ * @see InventoryService
+ * @see RoomInventory
+ */
+@ApplicationScoped
+public class InventoryCalendar {
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    HotelRepository hotelRepository;
+
+    @Inject
+    RoomInventoryRepository inventoryRepository;
+
+    private final ConcurrentMap<Long, HotelDays> hotels = new ConcurrentHashMap<>();
+
+    /**
+     * <p>Loads hotel capacities and booked counts from the database when the application starts, first creating the
+     * inventory rows that Bookings made before it was kept lack.</p>
+     */
+    @Transactional
+    @ActivateRequestContext
+    void onStart(@Observes StartupEvent event) {
+        for (Hotel hotel : hotelRepository.listAll()) {
+            setCapacity(hotel.getId(), hotel.getTotalRooms());
+        }
+        inventoryRepository.createMissing();
+        int days = 0;
+        for (RoomInventory row : inventoryRepository.findAll()) {
+            days(row.getHotelId()).counter(row.getStayDate().toEpochDay()).set(row.getBookedRooms());
+            days++;
+        }
+        log.info("InventoryCalendar.onStart() - Loaded " + hotels.size() + " hotels and " + days + " booked hotel-dates");
+    }
+
+    /**
+     * <p>Returns true if the calendar knows the capacity of the hotel.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @return boolean indicating whether the hotel is registered
+     */
+    public boolean isRegistered(Long hotelId) {
+        return hotels.containsKey(hotelId);
+    }
+
+    /**
+     * <p>Registers or changes the number of rooms a hotel has.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param capacity The total number of rooms; zero or less means unlimited
+     */
+    public void setCapacity(Long hotelId, int capacity) {
+        days(hotelId).capacity = capacity;
+    }
+
+    /**
+     * <p>Returns the total number of rooms of a hotel, or zero if it is unlimited or unknown.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @return The capacity of the hotel
+     */
+    public int capacity(Long hotelId) {
+        HotelDays days = hotels.get(hotelId);
+        return days == null ? 0 : days.capacity;
+    }
+
+    /**
+     * <p>Forgets a hotel and all of its booked dates.</p>
+     *
+     * @param hotelId The id of the hotel
+     */
+    public void removeHotel(Long hotelId) {
+        hotels.remove(hotelId);
+    }
+
+    /**
+     * <p>Returns the number of rooms booked at a hotel on a date.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param date The date to check
+     * @return The number of booked rooms
+     */
+    public int booked(Long hotelId, LocalDate date) {
+        HotelDays days = hotels.get(hotelId);
+        if (days == null) {
+            return 0;
+        }
+        AtomicInteger counter = days.booked.get(date.toEpochDay());
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * <p>Returns true if at least one room is free at a hotel on a date.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param date The date to check
+     * @return boolean indicating whether a room can be reserved
+     */
+    public boolean hasRoom(Long hotelId, LocalDate date) {
+        int capacity = capacity(hotelId);
+        return capacity <= 0 || booked(hotelId, date) < capacity;
+    }
+
+    /**
+     * <p>Atomically takes one room at a hotel on a date, unless the hotel is already full.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param date The date to reserve
+     * @return true if the room was taken, false if the hotel is full on that date
+     */
+    public boolean tryReserve(Long hotelId, LocalDate date) {
+        HotelDays days = days(hotelId);
+        AtomicInteger counter = days.counter(date.toEpochDay());
+        while (true) {
+            int booked = counter.get();
+            int capacity = days.capacity;
+            if (capacity > 0 && booked >= capacity) {
+                return false;
+            }
+            if (counter.compareAndSet(booked, booked + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * <p>Gives back one room at a hotel on a date.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param date The date to release
+     */
+    public void release(Long hotelId, LocalDate date) {
+        HotelDays days = hotels.get(hotelId);
+        if (days == null) {
+            return;
+        }
+        AtomicInteger counter = days.booked.get(date.toEpochDay());
+        if (counter != null) {
+            counter.updateAndGet(booked -> booked > 0 ? booked - 1 : 0);
+        }
+    }
+
+    private HotelDays days(Long hotelId) {
+        return hotels.computeIfAbsent(hotelId, id -> new HotelDays());
+    }
+
+    /**
+     * <p>The booked counters of one hotel, keyed by epoch day.</p>
+     */
+    private static final class HotelDays {
+
+        private volatile int capacity;
+        private final ConcurrentMap<Long, AtomicInteger> booked = new ConcurrentHashMap<>();
+
+        private AtomicInteger counter(long epochDay) {
+            return booked.computeIfAbsent(epochDay, day -> new AtomicInteger());
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.validation.ValidationException;
+
+import uk.ac.newcastle.enterprisemiddleware.model.Hotel;
+import uk.ac.newcastle.enterprisemiddleware.model.HotelAvailability;
+import uk.ac.newcastle.enterprisemiddleware.model.HotelDate;
+import uk.ac.newcastle.enterprisemiddleware.model.RoomAvailability;
+import uk.ac.newcastle.enterprisemiddleware.repository.HotelRepository;
+import uk.ac.newcastle.enterprisemiddleware.repository.RoomInventoryRepository;
+import uk.ac.newcastle.enterprisemiddleware.util.TransactionCallbacks;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * <p>This Service class keeps the per-date room inventory of each hotel: the {@code room_inventory} table and the
+ * {@link InventoryCalendar} that mirrors it in memory.</p>
+ *
+ * <p>A reservation takes the room in the calendar first, so concurrent requests for the last room are decided
+ * in-process without a database round trip, and gives it back if the surrounding transaction rolls back. A release
+ * only frees the room in the calendar once the cancellation has committed, so it can never be resold early. Every
+ * change to the calendar is copied to the {@link OccupancyIndex} used by availability searches, and every room given
+ * back is reported to the {@link Waitlist}.</p>
+ *
+ * @see InventoryCalendar
+ * @see OccupancyIndex
+ * @see RoomInventoryRepository
+ */
+@Dependent
+public class InventoryService {
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    InventoryCalendar calendar;
+
+    @Inject
+    OccupancyIndex occupancy;
+
+    @Inject
+    Waitlist waitlist;
+
+    @Inject
+    RoomInventoryRepository inventoryRepository;
+
+    @Inject
+    HotelRepository hotelRepository;
+
+    @Inject
+    TransactionCallbacks callbacks;
+
+    /**
+     * <p>Takes one room at a hotel on each of the given nights for the current transaction.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param nights The nights to reserve
+     * @throws RoomUnavailableException If the hotel has no room left on any of those nights
+     * @throws ValidationException If the hotel does not exist
+     */
+    public void reserve(Long hotelId, List<LocalDate> nights) throws RoomUnavailableException, ValidationException {
+        LocalDate full = claim(hotelId, nights);
+        if (full != null) {
+            throw new RoomUnavailableException("No rooms are available at hotel " + hotelId + " on " + full);
+        }
+
+        for (LocalDate night : nights) {
+            inventoryRepository.adjust(hotelId, night, 1);
+        }
+    }
+
+    /**
+     * <p>Takes one room at a hotel on each of the given nights in the calendar only, for the current
+     * transaction.</p>
+     *
+     * <p>Either every night is taken or none is: if one night is full, the nights already taken are given back
+     * straight away. Used by bulk writers that claim many rooms first and then record the counts with
+     * {@link #recordClaims(Map)} in one statement per hotel-date, rather than one per booking.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param nights The nights to reserve
+     * @return null if every night was taken, otherwise the first night on which the hotel is full
+     * @throws ValidationException If the hotel does not exist
+     */
+    public LocalDate claim(Long hotelId, List<LocalDate> nights) throws ValidationException {
+        ensureRegistered(hotelId);
+
+        LocalDate full = takeAll(hotelId, nights);
+        if (full != null) {
+            return full;
+        }
+        List<LocalDate> claimed = new ArrayList<>(nights);
+        callbacks.onRollback(() -> {
+            for (LocalDate night : claimed) {
+                giveBack(hotelId, night);
+            }
+        });
+        return null;
+    }
+
+    /**
+     * <p>Takes one room at a hotel on each of the given nights in the calendar only, outside of any transaction, for
+     * a hold that may later be confirmed with {@link #recordHold(Long, List)} or given back with
+     * {@link #releaseHold(Long, List)}.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param nights The nights to hold
+     * @return null if every night was taken, otherwise the first night on which the hotel is full
+     * @throws ValidationException If the hotel does not exist
+     */
+    public LocalDate hold(Long hotelId, List<LocalDate> nights) throws ValidationException {
+        ensureRegistered(hotelId);
+        return takeAll(hotelId, nights);
+    }
+
+    /**
+     * <p>Gives back the rooms of a hold straight away.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param nights The nights that were held
+     */
+    public void releaseHold(Long hotelId, List<LocalDate> nights) {
+        for (LocalDate night : nights) {
+            giveBack(hotelId, night);
+        }
+    }
+
+    /**
+     * <p>Writes the rooms of a confirmed hold to the inventory table. They are already taken in the calendar.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param nights The nights that were held
+     */
+    public void recordHold(Long hotelId, List<LocalDate> nights) {
+        for (LocalDate night : nights) {
+            inventoryRepository.adjust(hotelId, night, 1);
+        }
+    }
+
+    /**
+     * <p>Writes the rooms taken with {@link #claim(Long, List)} to the inventory table.</p>
+     *
+     * @param claims The number of rooms claimed per hotel-date
+     */
+    public void recordClaims(Map<HotelDate, Integer> claims) {
+        for (Map.Entry<HotelDate, Integer> claim : claims.entrySet()) {
+            inventoryRepository.adjust(claim.getKey().getHotelId(), claim.getKey().getDate(), claim.getValue());
+        }
+    }
+
+    /**
+     * <p>Gives back one room at a hotel on each of the given nights once the current transaction commits.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param nights The nights to release
+     */
+    public void release(Long hotelId, List<LocalDate> nights) {
+        for (LocalDate night : nights) {
+            inventoryRepository.adjust(hotelId, night, -1);
+        }
+
+        List<LocalDate> released = new ArrayList<>(nights);
+        callbacks.onCommit(() -> {
+            for (LocalDate night : released) {
+                giveBack(hotelId, night);
+            }
+        });
+    }
+
+    /**
+     * <p>Gives back rooms at many hotel-dates at once, with one inventory update per hotel-date, once the current
+     * transaction commits.</p>
+     *
+     * @param released The number of rooms released per hotel-date
+     */
+    public void releaseAll(Map<HotelDate, Integer> released) {
+        for (Map.Entry<HotelDate, Integer> rooms : released.entrySet()) {
+            inventoryRepository.adjust(rooms.getKey().getHotelId(), rooms.getKey().getDate(), -rooms.getValue());
+        }
+
+        Map<HotelDate, Integer> copy = new HashMap<>(released);
+        callbacks.onCommit(() -> {
+            for (Map.Entry<HotelDate, Integer> rooms : copy.entrySet()) {
+                for (int i = 0; i < rooms.getValue(); i++) {
+                    giveBack(rooms.getKey().getHotelId(), rooms.getKey().getDate());
+                }
+            }
+        });
+    }
+
+    /**
+     * <p>Returns the availability of a hotel on a date, answered from memory.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param date The date to check
+     * @return The RoomAvailability of the hotel on that date
+     * @throws ValidationException If the hotel does not exist
+     */
+    public RoomAvailability availability(Long hotelId, LocalDate date) throws ValidationException {
+        ensureRegistered(hotelId);
+        return new RoomAvailability(hotelId, date, calendar.capacity(hotelId), calendar.booked(hotelId, date));
+    }
+
+    /**
+     * <p>Records the capacity of a created or updated hotel, and indexes its location for availability searches, once
+     * the current transaction commits.</p>
+     *
+     * @param hotel The hotel whose totalRooms should be used as capacity
+     */
+    public void registerHotel(Hotel hotel) {
+        Long hotelId = hotel.getId();
+        int capacity = hotel.getTotalRooms();
+        callbacks.onCommit(() -> {
+            calendar.setCapacity(hotelId, capacity);
+            occupancy.register(hotel);
+        });
+    }
+
+    /**
+     * <p>Deletes the inventory of a hotel that is being deleted.</p>
+     *
+     * @param hotelId The id of the hotel
+     */
+    public void removeHotel(Long hotelId) {
+        inventoryRepository.deleteByHotel(hotelId);
+
+        callbacks.onCommit(() -> {
+            calendar.removeHotel(hotelId);
+            occupancy.remove(hotelId);
+        });
+    }
+
+    private void ensureRegistered(Long hotelId) throws ValidationException {
+        if (calendar.isRegistered(hotelId)) {
+            return;
+        }
+        Hotel hotel = hotelRepository.findById(hotelId);
+        if (hotel == null) {
+            throw new ValidationException("No Hotel with the ID " + hotelId + " was found");
+        }
+        log.info("InventoryService.ensureRegistered() - Registering hotel: " + hotelId + " with " + hotel.getTotalRooms() + " rooms");
+        calendar.setCapacity(hotelId, hotel.getTotalRooms());
+        occupancy.register(hotel);
+    }
+
+    /**
+     * <p>Searches the hotels with rooms free on every night of a stay, answered from memory.</p>
+     *
+     * @param location The location to search, ignoring case, or null for every location
+     * @param from The first night of the stay
+     * @param to The exclusive end of the stay
+     * @param rooms The number of rooms needed each night
+     * @return The matching hotels, ordered by id
+     */
+    public List<HotelAvailability> search(String location, LocalDate from, LocalDate to, int rooms) {
+        return occupancy.search(location, from, to, rooms);
+    }
+
+    private LocalDate takeAll(Long hotelId, List<LocalDate> nights) {
+        for (int i = 0; i < nights.size(); i++) {
+            if (!take(hotelId, nights.get(i))) {
+                for (int j = 0; j < i; j++) {
+                    giveBack(hotelId, nights.get(j));
+                }
+                return nights.get(i);
+            }
+        }
+        return null;
+    }
+
+    private boolean take(Long hotelId, LocalDate night) {
+        if (!calendar.tryReserve(hotelId, night)) {
+            return false;
+        }
+        occupancy.refresh(hotelId, night);
+        return true;
+    }
+
+    private void giveBack(Long hotelId, LocalDate night) {
+        calendar.release(hotelId, night);
+        occupancy.refresh(hotelId, night);
+        waitlist.roomFreed(hotelId, night);
+    }
+}
@@ -0,0 +1,260 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import io.quarkus.runtime.StartupEvent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.Priority;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.control.ActivateRequestContext;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.interceptor.Interceptor;
+import javax.transaction.Transactional;
+
+import uk.ac.newcastle.enterprisemiddleware.model.Hotel;
+import uk.ac.newcastle.enterprisemiddleware.model.HotelAvailability;
+import uk.ac.newcastle.enterprisemiddleware.repository.HotelRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+/**
+ * <p>Compact in-memory occupancy of every hotel over a rolling horizon, used to answer availability searches such as
+ * "which hotels in Newcastle have two rooms free next weekend" without touching the database.</p>
+ *
+ * <p>Each hotel keeps its name, location and capacity, and a {@code short} of booked rooms per day in a ring buffer
+ * covering today and the following {@code hotel.availability.horizon-days} days. The buffer rolls forward lazily as
+ * the date changes, and days beyond the horizon are read from the {@link InventoryCalendar} instead. Hotels are also
+ * indexed by location, so a search only visits the hotels of the requested location.</p>
+ *
+ * <p>The booked counts mirror the {@link InventoryCalendar}: {@link InventoryService} refreshes a day whenever it
+ * changes the calendar, and each refresh re-reads the calendar under the hotel's monitor so concurrent refreshes can
+ * never leave a stale count behind.</p>
+ *
+ * @see InventoryCalendar
+ * @see InventoryService
+ */
+@ApplicationScoped
+public class OccupancyIndex {
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    HotelRepository hotelRepository;
+
+    @Inject
+    InventoryCalendar calendar;
+
+    @ConfigProperty(name = "hotel.availability.horizon-days", defaultValue = "400")
+    int horizonDays;
+
+    private final ConcurrentMap<Long, HotelOccupancy> hotels = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Set<Long>> byLocation = new ConcurrentHashMap<>();
+
+    /**
+     * <p>Indexes every hotel when the application starts, after the {@link InventoryCalendar} has been loaded.</p>
+     */
+    @Transactional
+    @ActivateRequestContext
+    void onStart(@Observes @Priority(Interceptor.Priority.APPLICATION + 1000) StartupEvent event) {
+        for (Hotel hotel : hotelRepository.listAll()) {
+            register(hotel);
+        }
+        log.info("OccupancyIndex.onStart() - Indexed " + hotels.size() + " hotels over " + horizonDays + " days");
+    }
+
+    /**
+     * <p>Adds a hotel, or updates its name, location and capacity if it is already indexed.</p>
+     *
+     * @param hotel The hotel to index
+     */
+    public void register(Hotel hotel) {
+        HotelOccupancy occupancy = hotels.computeIfAbsent(hotel.getId(), id -> new HotelOccupancy(id, horizonDays));
+        synchronized (occupancy) {
+            if (occupancy.baseDay == Long.MIN_VALUE) {
+                fill(occupancy, today());
+            }
+            if (occupancy.location != null) {
+                Set<Long> previous = byLocation.get(occupancy.location);
+                if (previous != null) {
+                    previous.remove(occupancy.hotelId);
+                }
+            }
+            occupancy.name = hotel.getName();
+            occupancy.displayLocation = hotel.getLocation();
+            occupancy.location = normalise(hotel.getLocation());
+            occupancy.capacity = hotel.getTotalRooms();
+            byLocation.computeIfAbsent(occupancy.location, key -> ConcurrentHashMap.newKeySet()).add(occupancy.hotelId);
+        }
+    }
+
+    /**
+     * <p>Forgets a hotel.</p>
+     *
+     * @param hotelId The id of the hotel
+     */
+    public void remove(Long hotelId) {
+        HotelOccupancy occupancy = hotels.remove(hotelId);
+        if (occupancy != null && occupancy.location != null) {
+            Set<Long> ids = byLocation.get(occupancy.location);
+            if (ids != null) {
+                ids.remove(hotelId);
+            }
+        }
+    }
+
+    /**
+     * <p>Copies the booked count of a hotel on a date from the {@link InventoryCalendar}.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param date The date that changed
+     */
+    public void refresh(Long hotelId, LocalDate date) {
+        HotelOccupancy occupancy = hotels.get(hotelId);
+        if (occupancy == null) {
+            return;
+        }
+        synchronized (occupancy) {
+            roll(occupancy, today());
+            long day = date.toEpochDay();
+            if (occupancy.covers(day)) {
+                occupancy.set(day, calendar.booked(hotelId, date));
+            }
+        }
+    }
+
+    /**
+     * <p>Returns the hotels with at least {@code rooms} rooms free on every night from {@code from} up to but
+     * excluding {@code to}, ordered by id.</p>
+     *
+     * @param location The location to search, ignoring case, or null for every location
+     * @param from The first night of the stay
+     * @param to The exclusive end of the stay
+     * @param rooms The number of rooms needed each night
+     * @return The matching hotels and how many rooms each has free
+     */
+    public List<HotelAvailability> search(String location, LocalDate from, LocalDate to, int rooms) {
+        Collection<Long> candidates = location == null
+                ? hotels.keySet()
+                : byLocation.getOrDefault(normalise(location), Collections.emptySet());
+
+        long today = today();
+        List<HotelAvailability> results = new ArrayList<>();
+        for (Long hotelId : candidates) {
+            HotelOccupancy occupancy = hotels.get(hotelId);
+            if (occupancy == null) {
+                continue;
+            }
+            synchronized (occupancy) {
+                if (occupancy.location == null) {
+                    // Still being registered
+                    continue;
+                }
+                roll(occupancy, today);
+                Integer free = freeRooms(occupancy, from.toEpochDay(), to.toEpochDay(), rooms);
+                if (occupancy.capacity <= 0 || free >= rooms) {
+                    results.add(new HotelAvailability(hotelId, occupancy.name, occupancy.displayLocation, from, to,
+                            occupancy.capacity, free));
+                }
+            }
+        }
+        results.sort(Comparator.comparing(HotelAvailability::getHotelId));
+        return results;
+    }
+
+    /**
+     * Returns the fewest rooms free on any night of the range, stopping early once it drops below the number needed,
+     * or null if the hotel is unlimited. Must be called holding the hotel's monitor.
+     */
+    private Integer freeRooms(HotelOccupancy occupancy, long from, long to, int rooms) {
+        if (occupancy.capacity <= 0) {
+            return null;
+        }
+        int fewest = occupancy.capacity;
+        for (long day = from; day < to && fewest >= rooms; day++) {
+            int booked = occupancy.covers(day)
+                    ? occupancy.get(day)
+                    : calendar.booked(occupancy.hotelId, LocalDate.ofEpochDay(day));
+            fewest = Math.min(fewest, occupancy.capacity - booked);
+        }
+        return Math.max(fewest, 0);
+    }
+
+    /**
+     * Moves the window of a hotel forward to start today, loading the days that enter it. Must be called holding the
+     * hotel's monitor.
+     */
+    private void roll(HotelOccupancy occupancy, long today) {
+        if (today <= occupancy.baseDay) {
+            return;
+        }
+        if (occupancy.baseDay == Long.MIN_VALUE || today - occupancy.baseDay >= horizonDays) {
+            fill(occupancy, today);
+            return;
+        }
+        long oldEnd = occupancy.baseDay + horizonDays;
+        occupancy.baseDay = today;
+        for (long day = oldEnd; day < today + horizonDays; day++) {
+            occupancy.set(day, calendar.booked(occupancy.hotelId, LocalDate.ofEpochDay(day)));
+        }
+    }
+
+    private void fill(HotelOccupancy occupancy, long today) {
+        occupancy.baseDay = today;
+        for (long day = today; day < today + horizonDays; day++) {
+            occupancy.set(day, calendar.booked(occupancy.hotelId, LocalDate.ofEpochDay(day)));
+        }
+    }
+
+    private static long today() {
+        return LocalDate.now().toEpochDay();
+    }
+
+    private static String normalise(String location) {
+        return location == null ? "" : location.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * <p>The indexed details and booked counts of one hotel, guarded by its own monitor.</p>
+     */
+    private static final class HotelOccupancy {
+
+        private final Long hotelId;
+        private final short[] booked;
+        private long baseDay = Long.MIN_VALUE;
+        private String name;
+        private String displayLocation;
+        private String location;
+        private int capacity;
+
+        private HotelOccupancy(Long hotelId, int horizonDays) {
+            this.hotelId = hotelId;
+            this.booked = new short[horizonDays];
+        }
+
+        private boolean covers(long day) {
+            return day >= baseDay && day < baseDay + booked.length;
+        }
+
+        private int get(long day) {
+            return booked[(int) Math.floorMod(day, (long) booked.length)];
+        }
+
+        private void set(long day, int count) {
+            booked[(int) Math.floorMod(day, (long) booked.length)] = (short) Math.min(count, Short.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import javax.validation.ValidationException;
+
+/**
+ * <p>ValidationException which should be thrown if a Booking is requested for a hotel that has no free room left on
+ * the requested date.</p>
+ *
+ * <p>It is a business rule violation rather than a bean validation error, so REST services should map it to
+ * 409 CONFLICT.</p>
+ *
+ * @see InventoryService
+ */
+public class RoomUnavailableException extends ValidationException {
+
+    public RoomUnavailableException(String message) {
+        super(message);
+    }
+
+    public RoomUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public RoomUnavailableException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,210 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import io.quarkus.runtime.StartupEvent;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.control.ActivateRequestContext;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.transaction.Transactional;
+
+import uk.ac.newcastle.enterprisemiddleware.model.Stay;
+import uk.ac.newcastle.enterprisemiddleware.repository.BookingRepository;
+import uk.ac.newcastle.enterprisemiddleware.util.IntervalTree;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+/**
+ * <p>In-memory index of committed stays, with one {@link IntervalTree} per hotel keyed by check-in and check-out
+ * epoch day, and one per customer at each hotel.</p>
+ *
+ * <p>Finding or counting the stays at a hotel that overlap a date range costs O(log n + k) for k overlapping stays,
+ * instead of a query per night of the range. Finding those of one customer searches only that customer's tree, so it
+ * costs the same whatever the occupancy of the hotel. Each hotel's trees are guarded by its own read-write lock, so
+ * lookups at one hotel never wait for writes at another.</p>
+ *
+ * <p>The index is rebuilt from the {@code booking} table, or the {@link BookingJournal}, on startup. It is kept in
+ * step with that table by {@link BookingService}, which records stays only once they have committed.</p>
+ *
+ * @see BookingService
+ * @see Stay
+ */
+@ApplicationScoped
+public class StayIndex {
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    BookingRepository bookingRepository;
+
+    @Inject
+    BookingJournal journal;
+
+    private final ConcurrentMap<Long, HotelStays> hotels = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Long, Stay> byBookingId = new ConcurrentHashMap<>();
+
+    /**
+     * <p>Loads every stay when the application starts, from the {@link BookingJournal} if it is enabled or else from
+     * the database.</p>
+     */
+    @Transactional
+    @ActivateRequestContext
+    void onStart(@Observes StartupEvent event) {
+        List<Stay> stays = journal.startupStays();
+        if (stays == null) {
+            stays = bookingRepository.findAllStays();
+        }
+        for (Stay stay : stays) {
+            add(stay);
+        }
+        log.info("StayIndex.onStart() - Indexed " + stays.size() + " stays at " + hotels.size() + " hotels");
+    }
+
+    /**
+     * <p>Adds a stay, replacing any previous stay of the same booking.</p>
+     *
+     * @param stay The stay to add
+     */
+    public void add(Stay stay) {
+        remove(stay.getBookingId());
+
+        HotelStays hotel = hotels.computeIfAbsent(stay.getHotelId(), id -> new HotelStays());
+        hotel.lock.writeLock().lock();
+        try {
+            long checkIn = stay.getCheckIn().toEpochDay();
+            long checkOut = stay.getCheckOut().toEpochDay();
+            hotel.tree.insert(checkIn, checkOut, stay.getBookingId(), stay);
+            hotel.byCustomer.computeIfAbsent(stay.getCustomerId(), id -> new IntervalTree<>())
+                    .insert(checkIn, checkOut, stay.getBookingId(), stay);
+        } finally {
+            hotel.lock.writeLock().unlock();
+        }
+        byBookingId.put(stay.getBookingId(), stay);
+    }
+
+    /**
+     * <p>Removes the stay of a booking, if it is indexed.</p>
+     *
+     * @param bookingId The id of the booking
+     */
+    public void remove(Long bookingId) {
+        Stay stay = byBookingId.remove(bookingId);
+        if (stay == null) {
+            return;
+        }
+        HotelStays hotel = hotels.get(stay.getHotelId());
+        if (hotel == null) {
+            return;
+        }
+        hotel.lock.writeLock().lock();
+        try {
+            hotel.tree.remove(stay.getCheckIn().toEpochDay(), bookingId);
+            IntervalTree<Stay> customer = hotel.byCustomer.get(stay.getCustomerId());
+            if (customer != null) {
+                customer.remove(stay.getCheckIn().toEpochDay(), bookingId);
+                if (customer.size() == 0) {
+                    hotel.byCustomer.remove(stay.getCustomerId());
+                }
+            }
+        } finally {
+            hotel.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * <p>Removes every stay at a hotel that has been deleted.</p>
+     *
+     * @param hotelId The id of the hotel
+     */
+    public void removeHotel(Long hotelId) {
+        hotels.remove(hotelId);
+        byBookingId.values().removeIf(stay -> stay.getHotelId().equals(hotelId));
+    }
+
+    /**
+     * <p>Returns the stays at a hotel that occupy at least one night from {@code from} up to but excluding
+     * {@code to}, in check-in order.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param from The first night of the range
+     * @param to The exclusive end of the range
+     * @return The overlapping stays
+     */
+    public List<Stay> overlapping(Long hotelId, LocalDate from, LocalDate to) {
+        HotelStays hotel = hotels.get(hotelId);
+        if (hotel == null) {
+            return new ArrayList<>();
+        }
+        hotel.lock.readLock().lock();
+        try {
+            return hotel.tree.overlapping(from.toEpochDay(), to.toEpochDay());
+        } finally {
+            hotel.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * <p>Returns the stays of one customer at a hotel that occupy at least one night from {@code from} up to but
+     * excluding {@code to}, in check-in order.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param customerId The id of the customer
+     * @param from The first night of the range
+     * @param to The exclusive end of the range
+     * @return The overlapping stays of the customer
+     */
+    public List<Stay> overlapping(Long hotelId, Long customerId, LocalDate from, LocalDate to) {
+        HotelStays hotel = hotels.get(hotelId);
+        if (hotel == null) {
+            return new ArrayList<>();
+        }
+        hotel.lock.readLock().lock();
+        try {
+            IntervalTree<Stay> customer = hotel.byCustomer.get(customerId);
+            return customer == null ? new ArrayList<>() : customer.overlapping(from.toEpochDay(), to.toEpochDay());
+        } finally {
+            hotel.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * <p>Returns the number of stays at a hotel that occupy at least one night from {@code from} up to but excluding
+     * {@code to}.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param from The first night of the range
+     * @param to The exclusive end of the range
+     * @return The number of overlapping stays
+     */
+    public int countOverlapping(Long hotelId, LocalDate from, LocalDate to) {
+        HotelStays hotel = hotels.get(hotelId);
+        if (hotel == null) {
+            return 0;
+        }
+        hotel.lock.readLock().lock();
+        try {
+            return hotel.tree.countOverlapping(from.toEpochDay(), to.toEpochDay());
+        } finally {
+            hotel.lock.readLock().unlock();
+        }
+    }
+
+    private static final class HotelStays {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final IntervalTree<Stay> tree = new IntervalTree<>();
+        private final Map<Long, IntervalTree<Stay>> byCustomer = new HashMap<>();
+    }
+}
@@ -0,0 +1,390 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.validation.ConstraintViolationException;
+import javax.validation.ValidationException;
+
+import uk.ac.newcastle.enterprisemiddleware.model.Booking;
+import uk.ac.newcastle.enterprisemiddleware.model.BookingKey;
+import uk.ac.newcastle.enterprisemiddleware.model.HotelDate;
+import uk.ac.newcastle.enterprisemiddleware.model.WaitlistEntry;
+import uk.ac.newcastle.enterprisemiddleware.validator.BookingValidator;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>In-memory FIFO waitlists of customers wanting a room at a sold-out hotel-date.</p>
+ *
+ * <p>{@link InventoryService} reports every room it gives back in the calendar, which happens once a cancellation has
+ * committed. If that hotel-date has a waitlist it is marked dirty and a single background promoter thread is woken;
+ * the request that freed the room does no more than that, so its latency does not depend on the length of any
+ * waitlist.</p>
+ *
+ * <p>The promoter takes up to {@code booking.waitlist.batch-size} entries from the heads of the dirty queues, as many
+ * per hotel-date as it has free rooms, and turns them into Bookings in one transaction through the
+ * {@link WaitlistPromoter}. Entries are only marked promoted once that transaction has committed. Entries that lost
+ * the room to a competing booking go back to the head of their queue, and a batch whose transaction fails is put back
+ * as a whole, up to {@code booking.waitlist.max-attempts} times per entry.</p>
+ *
+ * <p>A customer may leave while their entry is in a batch being promoted. The promoter skips an entry that has left
+ * by the time it gets to it, and an entry that leaves after its Booking was made has that Booking cancelled again once
+ * the batch has committed, so a cancelled entry never keeps a room. Leaving and recording the outcome of a promotion
+ * happen under the entry's own lock, so exactly one of them decides how the entry finishes.</p>
+ *
+ * @see WaitlistPromoter
+ * @see WaitlistEntry
+ */
+@ApplicationScoped
+public class Waitlist {
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    InventoryCalendar calendar;
+
+    @Inject
+    BookingValidator validator;
+
+    @Inject
+    WaitlistPromoter promoter;
+
+    @ConfigProperty(name = "booking.waitlist.batch-size", defaultValue = "100")
+    int batchSize;
+
+    @ConfigProperty(name = "booking.waitlist.max-attempts", defaultValue = "3")
+    int maxAttempts;
+
+    @ConfigProperty(name = "booking.waitlist.retain-finished", defaultValue = "10000")
+    int retainFinished;
+
+    private final ConcurrentMap<HotelDate, ConcurrentLinkedDeque<Entry>> queues = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Entry> waiting = new ConcurrentHashMap<>();
+
+    private final Set<BookingKey> waitingKeys = ConcurrentHashMap.newKeySet();
+
+    private final Set<HotelDate> dirty = ConcurrentHashMap.newKeySet();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private Map<String, Entry> finished;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void init() {
+        finished = Collections.synchronizedMap(new LinkedHashMap<String, Entry>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > retainFinished;
+            }
+        });
+        executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "waitlist-promoter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * <p>Adds a customer to the end of the waitlist of a hotel-date.</p>
+     *
+     * @param booking The single-night Booking wanted, with customer and hotel ids set
+     * @return The new WaitlistEntry
+     * @throws ConstraintViolationException If Bean Validation errors exist
+     * @throws ValidationException If the Booking is a multi-night stay, or the customer is already waiting for it
+     */
+    public WaitlistEntry join(Booking booking) throws ConstraintViolationException, ValidationException {
+        validator.validateConstraints(booking);
+        if (booking.getCheckOutDate() != null) {
+            throw new ValidationException("The waitlist is for single nights only");
+        }
+
+        BookingKey key = BookingKey.of(booking);
+        if (!waitingKeys.add(key)) {
+            throw new ValidationException("The customer is already on the waitlist for this hotel and date");
+        }
+        Entry entry = new Entry(UUID.randomUUID().toString(), key, booking.getStatus(), Instant.now());
+        HotelDate hotelDate = entry.hotelDate();
+        waiting.put(entry.entryId, entry);
+        queues.computeIfAbsent(hotelDate, k -> new ConcurrentLinkedDeque<>()).offerLast(entry);
+
+        log.info("Waitlist.join() - Customer: " + key.getCustomerId() + " is waiting for " + hotelDate);
+
+        // A room may have been freed while the customer was deciding to join
+        if (calendar.hasRoom(key.getHotelId(), key.getBookingDate())) {
+            signal(hotelDate);
+        }
+        return entry.toView();
+    }
+
+    /**
+     * <p>Returns a waitlist entry, waiting or recently finished.</p>
+     *
+     * @param entryId The id of the entry
+     * @return The WaitlistEntry, or null if it is unknown
+     */
+    public WaitlistEntry findById(String entryId) {
+        Entry entry = waiting.get(entryId);
+        if (entry == null) {
+            entry = finished.get(entryId);
+        }
+        return entry == null ? null : entry.toView();
+    }
+
+    /**
+     * <p>Takes a customer off the waitlist. The entry is skipped when it reaches the head of its queue.</p>
+     *
+     * @param entryId The id of the entry
+     * @return true if the entry was waiting and is now cancelled
+     */
+    public boolean leave(String entryId) {
+        Entry entry = waiting.get(entryId);
+        if (entry == null) {
+            return false;
+        }
+        synchronized (entry) {
+            // The promoter may have finished the entry since it was looked up
+            if (!WaitlistEntry.WAITING.equals(entry.status)) {
+                return false;
+            }
+            entry.cancelled = true;
+            finish(entry, WaitlistEntry.CANCELLED, null, null);
+        }
+        return true;
+    }
+
+    /**
+     * <p>Called whenever a room is given back in the calendar, to wake the promoter if anyone is waiting for it.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param date The date of the freed room
+     */
+    public void roomFreed(Long hotelId, LocalDate date) {
+        HotelDate hotelDate = new HotelDate(hotelId, date);
+        ConcurrentLinkedDeque<Entry> queue = queues.get(hotelDate);
+        if (queue != null && !queue.isEmpty()) {
+            signal(hotelDate);
+        }
+    }
+
+    private void signal(HotelDate hotelDate) {
+        dirty.add(hotelDate);
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Runs on the promoter thread until no hotel-date is dirty.
+     */
+    private void drain() {
+        try {
+            List<Entry> batch;
+            while (!(batch = nextBatch()).isEmpty()) {
+                promote(batch);
+            }
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Waitlist.drain() - Promotion failed", e);
+        } finally {
+            scheduled.set(false);
+            // Pick up hotel-dates signalled after the last batch was taken
+            if (!dirty.isEmpty() && scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+    }
+
+    private List<Entry> nextBatch() {
+        List<Entry> batch = new ArrayList<>();
+        Iterator<HotelDate> keys = dirty.iterator();
+        while (keys.hasNext() && batch.size() < batchSize) {
+            HotelDate hotelDate = keys.next();
+            keys.remove();
+            ConcurrentLinkedDeque<Entry> queue = queues.get(hotelDate);
+            if (queue == null) {
+                continue;
+            }
+
+            int capacity = calendar.capacity(hotelDate.getHotelId());
+            int free = capacity <= 0 ? Integer.MAX_VALUE : capacity - calendar.booked(hotelDate.getHotelId(), hotelDate.getDate());
+            while (free > 0 && batch.size() < batchSize) {
+                Entry entry = queue.pollFirst();
+                if (entry == null) {
+                    break;
+                }
+                if (waiting.containsKey(entry.entryId)) {
+                    batch.add(entry);
+                    free--;
+                }
+            }
+            if (free > 0 && !queue.isEmpty()) {
+                // Stopped because the batch is full, not because the hotel-date is
+                dirty.add(hotelDate);
+            }
+        }
+        return batch;
+    }
+
+    private void promote(List<Entry> batch) {
+        try {
+            promoter.promote(batch, maxAttempts);
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Waitlist.promote() - Batch of " + batch.size() + " failed, putting it back", e);
+            for (Entry entry : batch) {
+                entry.retry = ++entry.attempts < maxAttempts;
+                if (!entry.retry) {
+                    entry.reason = "Could not be promoted: " + e.getMessage();
+                }
+                entry.bookingId = null;
+            }
+        }
+
+        // Walk backwards so entries put back keep their order at the head of the queue
+        Set<HotelDate> requeued = new HashSet<>();
+        List<Long> unwanted = new ArrayList<>();
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            Entry entry = batch.get(i);
+            synchronized (entry) {
+                if (entry.cancelled) {
+                    // Left while the batch was in flight, and already finished as cancelled
+                    if (entry.bookingId != null) {
+                        unwanted.add(entry.bookingId);
+                    }
+                } else if (entry.bookingId != null) {
+                    finish(entry, WaitlistEntry.PROMOTED, entry.bookingId, null);
+                } else if (entry.retry) {
+                    queues.computeIfAbsent(entry.hotelDate(), k -> new ConcurrentLinkedDeque<>()).offerFirst(entry);
+                    requeued.add(entry.hotelDate());
+                } else {
+                    finish(entry, WaitlistEntry.FAILED, null, entry.reason);
+                }
+            }
+        }
+        if (!unwanted.isEmpty()) {
+            cancel(unwanted);
+        }
+        // Try again straight away where the room is still free, e.g. after a lock timeout
+        for (HotelDate hotelDate : requeued) {
+            if (calendar.hasRoom(hotelDate.getHotelId(), hotelDate.getDate())) {
+                dirty.add(hotelDate);
+            }
+        }
+        log.info("Waitlist.promote() - Processed a batch of " + batch.size() + " waitlist entries");
+    }
+
+    private void cancel(List<Long> bookingIds) {
+        try {
+            promoter.cancel(bookingIds);
+            log.info("Waitlist.cancel() - Cancelled " + bookingIds.size()
+                    + " bookings of entries that left the waitlist while being promoted");
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Waitlist.cancel() - Could not cancel the bookings " + bookingIds
+                    + " of entries that left the waitlist", e);
+        }
+    }
+
+    private void finish(Entry entry, String status, Long bookingId, String reason) {
+        waiting.remove(entry.entryId);
+        waitingKeys.remove(entry.key);
+        entry.status = status;
+        entry.bookingId = bookingId;
+        entry.reason = reason;
+        finished.put(entry.entryId, entry);
+    }
+
+    /**
+     * <p>A waiting customer, and the outcome of the last attempt to promote them, which the
+     * {@link WaitlistPromoter} fills in.</p>
+     */
+    static final class Entry {
+
+        final String entryId;
+        final BookingKey key;
+        final String bookingStatus;
+        final Instant joinedAt;
+        volatile String status = WaitlistEntry.WAITING;
+        volatile Long bookingId;
+        volatile String reason;
+        volatile boolean retry;
+        // Set under the entry's lock by leave(), once the entry has finished as cancelled
+        volatile boolean cancelled;
+        int attempts;
+
+        private Entry(String entryId, BookingKey key, String bookingStatus, Instant joinedAt) {
+            this.entryId = entryId;
+            this.key = key;
+            this.bookingStatus = bookingStatus;
+            this.joinedAt = joinedAt;
+        }
+
+        HotelDate hotelDate() {
+            return new HotelDate(key.getHotelId(), key.getBookingDate());
+        }
+
+        void promoted(Long bookingId) {
+            this.bookingId = bookingId;
+            this.reason = null;
+            this.retry = false;
+        }
+
+        void failed(String reason) {
+            this.bookingId = null;
+            this.reason = reason;
+            this.retry = false;
+        }
+
+        void lostRoom() {
+            this.bookingId = null;
+            this.retry = true;
+        }
+
+        void timedOut(int maxAttempts) {
+            this.bookingId = null;
+            this.retry = ++attempts < maxAttempts;
+            this.reason = retry ? null : "Timed out waiting for concurrent bookings of the same hotel and date";
+        }
+
+        private WaitlistEntry toView() {
+            return new WaitlistEntry(entryId, key.getCustomerId(), key.getHotelId(), key.getBookingDate(), joinedAt,
+                    status, bookingId, reason);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package uk.ac.newcastle.enterprisemiddleware.services;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.control.ActivateRequestContext;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.LockTimeoutException;
+import javax.transaction.Transactional;
+import javax.validation.ValidationException;
+
+import uk.ac.newcastle.enterprisemiddleware.model.Booking;
+import uk.ac.newcastle.enterprisemiddleware.model.Customer;
+import uk.ac.newcastle.enterprisemiddleware.model.Hotel;
+import uk.ac.newcastle.enterprisemiddleware.model.HotelDate;
+import uk.ac.newcastle.enterprisemiddleware.repository.CustomerRepository;
+import uk.ac.newcastle.enterprisemiddleware.repository.HotelRepository;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * <p>Books the rooms freed at sold-out hotel-dates for the customers at the heads of their {@link Waitlist} queues, a
+ * batch of entries per transaction.</p>
+ *
+ * <p>The hotel-dates of the whole batch are locked first, and each entry then goes through
+ * {@link BookingService#create(Booking)}, so it is validated and takes its room exactly like a booking made over
+ * REST. The outcome of each entry is recorded on the entry itself; the {@link Waitlist} only acts on it once this
+ * method has returned and the transaction has committed.</p>
+ *
+ * @see Waitlist
+ */
+@ApplicationScoped
+public class WaitlistPromoter {
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    BookingService bookingService;
+
+    @Inject
+    BookingLockManager locks;
+
+    @Inject
+    CustomerRepository customerRepository;
+
+    @Inject
+    HotelRepository hotelRepository;
+
+    /**
+     * <p>Creates the Booking of every entry that can still be promoted.</p>
+     *
+     * @param entries The entries taken from the heads of their queues
+     * @param maxAttempts The number of lock timeouts after which an entry fails
+     * @throws Exception If there are persistence issues, in which case none of the entries is promoted
+     */
+    @Transactional
+    @ActivateRequestContext
+    public void promote(List<Waitlist.Entry> entries, int maxAttempts) throws Exception {
+        // Take every hotel-date of the batch up front, in the same deadlock-free order as other multi-date writers
+        Set<HotelDate> hotelDates = new HashSet<>();
+        for (Waitlist.Entry entry : entries) {
+            hotelDates.add(entry.hotelDate());
+        }
+        try {
+            locks.lockAll(hotelDates);
+        } catch (LockTimeoutException e) {
+            for (Waitlist.Entry entry : entries) {
+                entry.timedOut(maxAttempts);
+            }
+            return;
+        }
+
+        for (Waitlist.Entry entry : entries) {
+            if (entry.cancelled) {
+                // Left the waitlist since the batch was taken
+                continue;
+            }
+            Customer customer = customerRepository.findById(entry.key.getCustomerId());
+            if (customer == null) {
+                entry.failed("Customer " + entry.key.getCustomerId() + " no longer exists");
+                continue;
+            }
+            Hotel hotel = hotelRepository.findById(entry.key.getHotelId());
+            if (hotel == null) {
+                entry.failed("Hotel " + entry.key.getHotelId() + " no longer exists");
+                continue;
+            }
+
+            Booking booking = new Booking(customer, hotel, entry.key.getBookingDate(), entry.bookingStatus);
+            try {
+                bookingService.create(booking);
+                entry.promoted(booking.getId());
+            } catch (RoomUnavailableException e) {
+                // Someone else booked the freed room first
+                entry.lostRoom();
+            } catch (LockTimeoutException e) {
+                entry.timedOut(maxAttempts);
+            } catch (ValidationException e) {
+                // Duplicate or overlapping booking, or invalid details
+                entry.failed(e.getMessage());
+            }
+        }
+        log.info("WaitlistPromoter.promote() - Promoting a batch of " + entries.size() + " waitlist entries");
+    }
+
+    /**
+     * <p>Cancels the Bookings made for entries that left the waitlist while their batch was being promoted, freeing
+     * their rooms for whoever is waiting next.</p>
+     *
+     * @param bookingIds The ids of the Bookings to cancel
+     * @throws Exception If there are persistence issues, in which case none of the Bookings is cancelled
+     */
+    @Transactional
+    @ActivateRequestContext
+    public void cancel(List<Long> bookingIds) throws Exception {
+        for (Long bookingId : bookingIds) {
+            try {
+                bookingService.delete(bookingId);
+            } catch (EntityNotFoundException e) {
+                // Already cancelled by the customer
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>A thread-safe Bloom filter over 64-bit key hashes.</p>
+ *
+ * <p>{@link #mightContain(long)} never returns false for a hash that has been {@link #put(long) put}, and returns true
+ * for a hash that has not with roughly the false positive probability the filter was sized for, as long as no more
+ * than the expected number of hashes have been put. Entries cannot be removed; a removed key only costs a false
+ * positive.</p>
+ *
+ * <p>The bits live in an {@link AtomicLongArray}, so puts and lookups from any number of threads need no locking. The
+ * {@code k} bit positions of a hash are derived from its two halves by double hashing.</p>
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashFunctions;
+    private final AtomicLong insertions = new AtomicLong();
+    private final long expectedInsertions;
+
+    /**
+     * @param expectedInsertions The number of distinct hashes the filter is sized for
+     * @param falsePositiveRate The wanted false positive probability at that size, between 0 and 1
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Expected insertions must be positive and the false positive rate between 0 and 1");
+        }
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE, (bits + 63) / 64);
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount * 64;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        this.expectedInsertions = expectedInsertions;
+    }
+
+    /**
+     * <p>Adds a hash to the filter.</p>
+     *
+     * @param hash The 64-bit hash of the key
+     */
+    public void put(long hash) {
+        long step = step(hash);
+        boolean changed = false;
+        for (int i = 1; i <= hashFunctions; i++) {
+            long bit = index(hash + i * step);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = words.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+                changed = true;
+            } while (!words.compareAndSet(word, current, current | mask));
+        }
+        if (changed) {
+            insertions.incrementAndGet();
+        }
+    }
+
+    /**
+     * <p>Returns false if the hash has definitely never been put, true if it may have been.</p>
+     *
+     * @param hash The 64-bit hash of the key
+     * @return boolean indicating whether the key may be present
+     */
+    public boolean mightContain(long hash) {
+        long step = step(hash);
+        for (int i = 1; i <= hashFunctions; i++) {
+            long bit = index(hash + i * step);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true once more hashes have been put than the filter was sized for, so its false positive rate is above
+     * the one requested
+     */
+    public boolean isSaturated() {
+        return insertions.get() > expectedInsertions;
+    }
+
+    /**
+     * @return The approximate number of distinct hashes put so far
+     */
+    public long approximateInsertions() {
+        return insertions.get();
+    }
+
+    /**
+     * <p>Mixes several longs into one well distributed 64-bit hash, suitable for {@link #put(long)}.</p>
+     *
+     * @param parts The values making up the key
+     * @return The hash of the key
+     */
+    public static long hash(long... parts) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (long part : parts) {
+            h = mix(h ^ mix(part));
+        }
+        return h;
+    }
+
+    private static long step(long hash) {
+        // An odd step from the high half, so successive positions never repeat early
+        return (hash >>> 32) | 1L;
+    }
+
+    private long index(long combined) {
+        return (combined & Long.MAX_VALUE) % bitCount;
+    }
+
+    /**
+     * The finaliser of MurmurHash3, which spreads every input bit across the whole output.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93FE1A85B87L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
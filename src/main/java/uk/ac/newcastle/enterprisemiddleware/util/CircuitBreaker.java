@@ -0,0 +1,100 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+/**
+ * <p>A circuit breaker for calls to a remote service, which stops calling it for a while once it keeps failing.</p>
+ *
+ * <p>The breaker starts CLOSED and lets every call through. After {@code failureThreshold} failures in a row it
+ * OPENs and refuses every call for {@code openMillis}, so callers fail at once instead of each waiting for a timeout.
+ * After that it is HALF_OPEN and lets a single trial call through: if it succeeds the breaker closes again, if it
+ * fails the breaker opens for another {@code openMillis}.</p>
+ *
+ * <p>Callers must report the outcome of every call they were let through with {@link #onSuccess()} or
+ * {@link #onFailure()}.</p>
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+    private long opened;
+
+    /**
+     * @param failureThreshold The number of failures in a row that opens the breaker
+     * @param openMillis How long the breaker stays open before letting a trial call through
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openMillis * 1_000_000;
+    }
+
+    /**
+     * @return true if a call may be made now, which must then be reported; false if it must not be made
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                // Only one trial at a time while half open
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    /**
+     * <p>Reports that a call which was let through succeeded, or failed in a way that says nothing about the health of
+     * the remote service, such as 404 NOT_FOUND.</p>
+     */
+    public synchronized void onSuccess() {
+        failures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+
+    /**
+     * <p>Reports that a call which was let through failed.</p>
+     */
+    public synchronized void onFailure() {
+        trialInFlight = false;
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            if (state != State.OPEN) {
+                opened++;
+            }
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * @return The number of times the breaker has opened
+     */
+    public synchronized long getOpened() {
+        return opened;
+    }
+}
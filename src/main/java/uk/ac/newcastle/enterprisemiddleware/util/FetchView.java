@@ -0,0 +1,36 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import javax.ws.rs.core.Response;
+import java.util.Locale;
+
+/**
+ * <p>The fetch plan a client picks for a Customer or Hotel with the {@code view} query parameter.</p>
+ *
+ * <p>Each view is served with a fixed number of statements however many rows are returned: {@link #SUMMARY} reads
+ * the rows alone and leaves their bookings out of the JSON, and {@link #BOOKINGS} loads the bookings of every row
+ * through an entity graph with one further statement.</p>
+ */
+public enum FetchView {
+
+    SUMMARY,
+    BOOKINGS;
+
+    public static final String PARAM = "view";
+
+    /**
+     * @param value The {@code view} parameter, or null for the summary
+     * @return The view
+     * @throws RestServiceException With 400 if the value names no view
+     */
+    public static FetchView parse(String value) {
+        if (value == null || value.isEmpty()) {
+            return SUMMARY;
+        }
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new RestServiceException("Invalid " + PARAM + ", expected summary or bookings",
+                    Response.Status.BAD_REQUEST, e);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>A hashed timer wheel for large numbers of short, mostly cancelled timeouts.</p>
+ *
+ * <p>The wheel is a ring of buckets, one per tick. A timeout is placed in the bucket of the tick it expires on,
+ * together with the number of full turns of the wheel still to go, so scheduling and cancelling are both O(1) and no
+ * sweep ever looks at timeouts that are not due. Expiry is accurate to one tick.</p>
+ *
+ * <p>New timeouts are handed to a single worker thread through a lock-free queue and cancelled ones are only marked,
+ * so callers never contend on the buckets; the worker unlinks cancelled timeouts the next time it visits their bucket.
+ * Tasks run on the worker thread and must therefore be short.</p>
+ */
+public class HashedTimerWheel {
+
+    private static final Logger LOG = Logger.getLogger(HashedTimerWheel.class.getName());
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger state = new AtomicInteger(INIT);
+    private final Thread worker;
+    private volatile long startNanos;
+    private long tick;
+
+    private static final int INIT = 0;
+    private static final int STARTED = 1;
+    private static final int STOPPED = 2;
+
+    /**
+     * @param name The name of the worker thread
+     * @param tickDuration The length of one tick
+     * @param unit The unit of tickDuration
+     * @param ticksPerWheel The minimum number of buckets, rounded up to a power of two
+     */
+    public HashedTimerWheel(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0 || ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("Tick duration and ticks per wheel must be positive");
+        }
+        int size = Integer.highestOneBit(ticksPerWheel);
+        if (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.wheel = new Bucket[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+    }
+
+    /**
+     * <p>Schedules a task to run once after a delay, starting the worker thread on first use.</p>
+     *
+     * @param task The task to run
+     * @param delay The delay before it runs
+     * @param unit The unit of delay
+     * @return A handle that can cancel the task
+     * @throws IllegalStateException If the wheel has been stopped
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        start();
+        Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(Math.max(delay, 0)));
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * <p>Stops the worker thread. Timeouts that have not expired yet never run.</p>
+     */
+    public void stop() {
+        if (state.getAndSet(STOPPED) == STARTED) {
+            worker.interrupt();
+            try {
+                worker.join(TimeUnit.NANOSECONDS.toMillis(tickNanos) * 10 + 100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void start() {
+        int current = state.get();
+        if (current == STARTED) {
+            return;
+        }
+        if (current == INIT && state.compareAndSet(INIT, STARTED)) {
+            startNanos = System.nanoTime();
+            worker.start();
+            return;
+        }
+        if (state.get() == STOPPED) {
+            throw new IllegalStateException("The timer wheel has been stopped");
+        }
+    }
+
+    private void run() {
+        while (state.get() == STARTED) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long sleepNanos = deadline - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    // Interrupted by stop()
+                    continue;
+                }
+            }
+            transferPending();
+            wheel[(int) (tick & mask)].expire(System.nanoTime());
+            tick++;
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.state.get() != Timeout.WAITING) {
+                continue;
+            }
+            long dueTick = Math.max((timeout.deadline - startNanos) / tickNanos, tick);
+            timeout.remainingRounds = (dueTick - tick) / wheel.length;
+            wheel[(int) (dueTick & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * <p>Handle of a scheduled task.</p>
+     */
+    public static final class Timeout {
+
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private long remainingRounds;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * <p>Cancels the task unless it has already run or started running.</p>
+         *
+         * @return true if the task was cancelled by this call
+         */
+        public boolean cancel() {
+            return state.compareAndSet(WAITING, CANCELLED);
+        }
+
+        /**
+         * @return true if the task has been cancelled
+         */
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        /**
+         * @return true if the task has run or started running
+         */
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(WAITING, EXPIRED)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Throwable t) {
+                LOG.log(Level.WARNING, "HashedTimerWheel - A timeout task failed", t);
+            }
+        }
+    }
+
+    /**
+     * <p>Doubly linked list of the timeouts of one tick, only ever touched by the worker thread.</p>
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.prev = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        private void expire(long now) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.state.get() != Timeout.WAITING) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0 && timeout.deadline <= now) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.remainingRounds > 0) {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+        }
+    }
+}
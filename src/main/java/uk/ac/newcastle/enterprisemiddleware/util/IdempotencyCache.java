@@ -0,0 +1,221 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.core.Response;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+/**
+ * <p>Size- and time-bounded cache of the responses to POST requests carrying an {@code Idempotency-Key} header, so a
+ * client can safely retry a request whose response it never received.</p>
+ *
+ * <p>A REST service calls {@link #begin} before doing any work. The first request with a key claims it; it must then
+ * {@link Claim#complete complete} the claim once its work has committed, or {@link Claim#abandon abandon} it if
+ * nothing was committed. A later request with the same key gets the stored response to {@link Claim#replay replay}
+ * straight away, marked with an {@code Idempotent-Replayed} header, and one arriving while the first is still running
+ * waits for its outcome instead of running again. If the first request is abandoned, one of the waiting requests
+ * claims the key in its place.</p>
+ *
+ * <p>Keys are scoped by endpoint and remembered with a fingerprint of the request body: reusing a key for a different
+ * request is refused with 400. At most {@code idempotency.max-entries} keys of finished requests are kept, each for at
+ * most {@code idempotency.ttl-seconds}, the oldest being dropped first; keys of requests still running are never
+ * dropped.</p>
+ */
+@ApplicationScoped
+public class IdempotencyCache {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    ObjectMapper mapper;
+
+    @ConfigProperty(name = "idempotency.max-entries", defaultValue = "10000")
+    int maxEntries;
+
+    @ConfigProperty(name = "idempotency.ttl-seconds", defaultValue = "86400")
+    long ttlSeconds;
+
+    @ConfigProperty(name = "idempotency.wait-ms", defaultValue = "10000")
+    long waitMs;
+
+    // Insertion order is age order, so the eldest entries are both the first to expire and the first to evict
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * <p>Claims an idempotency key for a request, or finds the response stored for an earlier request with the same
+     * key, waiting for it if that request is still running.</p>
+     *
+     * @param scope The endpoint the key belongs to, e.g. {@code "POST /bookings"}
+     * @param key The value of the {@code Idempotency-Key} header
+     * @param request The deserialised request body
+     * @return The Claim; its {@link Claim#replay()} is the response to send again, or null if the caller now owns
+     * the key and must do the work
+     * @throws RestServiceException With 400 if the key is too long or was used for a different request, or 409 if
+     * the earlier request is still running after {@code idempotency.wait-ms}
+     */
+    public Claim begin(String scope, String key, Object request) {
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new RestServiceException("The " + HEADER + " header must be at most " + MAX_KEY_LENGTH + " characters",
+                    Response.Status.BAD_REQUEST);
+        }
+        byte[] fingerprint = fingerprint(request);
+        String id = scope + " " + key;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs);
+
+        while (true) {
+            Entry entry;
+            synchronized (entries) {
+                evict(System.nanoTime());
+                entry = entries.get(id);
+                if (entry == null) {
+                    entry = new Entry(fingerprint, System.nanoTime());
+                    entries.put(id, entry);
+                    return new Claim(id, entry, null);
+                }
+            }
+            if (!Arrays.equals(entry.fingerprint, fingerprint)) {
+                throw new RestServiceException("The " + HEADER + " " + key + " was already used for a different request",
+                        Response.Status.BAD_REQUEST);
+            }
+
+            StoredResponse stored;
+            try {
+                stored = entry.outcome.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                throw new RestServiceException("A request with the " + HEADER + " " + key + " is still being processed",
+                        Response.Status.CONFLICT, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RestServiceException(e);
+            } catch (ExecutionException e) {
+                throw new RestServiceException(e);
+            }
+            if (stored != null) {
+                log.fine("IdempotencyCache.begin() - Replaying the response to " + id);
+                return new Claim(id, entry,
+                        Response.status(stored.status).entity(stored.entity).header(REPLAYED_HEADER, "true").build());
+            }
+            // The earlier request was abandoned; try to claim the key
+        }
+    }
+
+    private void evict(long now) {
+        long ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (eldest.hasNext()) {
+            Entry entry = eldest.next().getValue();
+            if (entries.size() < maxEntries && now - entry.createdAt < ttlNanos) {
+                break;
+            }
+            // A request still running keeps its key, so duplicates waiting on it never run again; its owner
+            // completes or abandons it soon enough, and it is evicted on a later call
+            if (entry.outcome.isDone()) {
+                eldest.remove();
+            }
+        }
+    }
+
+    private byte[] fingerprint(Object request) {
+        try {
+            byte[] body = request == null ? new byte[0] : mapper.writeValueAsBytes(request);
+            return MessageDigest.getInstance("SHA-256").digest(body);
+        } catch (JsonProcessingException e) {
+            // Fall back to the type, which still tells the endpoints' request bodies apart
+            return String.valueOf(request.getClass()).getBytes(StandardCharsets.UTF_8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * <p>The outcome of {@link #begin}: either a stored response to replay, or ownership of the key.</p>
+     */
+    public final class Claim {
+
+        private final String id;
+        private final Entry entry;
+        private final Response replay;
+
+        private Claim(String id, Entry entry, Response replay) {
+            this.id = id;
+            this.entry = entry;
+            this.replay = replay;
+        }
+
+        /**
+         * @return The response stored for an earlier request with the same key, or null if this request owns the key
+         */
+        public Response replay() {
+            return replay;
+        }
+
+        /**
+         * <p>Stores the response of the owning request, once its work has committed, and releases any request
+         * waiting for it.</p>
+         *
+         * @param response The response being sent
+         */
+        public void complete(Response response) {
+            entry.outcome.complete(new StoredResponse(response.getStatus(), response.getEntity()));
+        }
+
+        /**
+         * <p>Forgets the key of an owning request that committed nothing, so that a retry runs it again.</p>
+         */
+        public void abandon() {
+            synchronized (entries) {
+                // Only if the entry is still ours, and not one claimed since this one was evicted
+                entries.remove(id, entry);
+            }
+            entry.outcome.complete(null);
+        }
+    }
+
+    private static final class Entry {
+
+        private final byte[] fingerprint;
+        private final long createdAt;
+        private final CompletableFuture<StoredResponse> outcome = new CompletableFuture<>();
+
+        private Entry(byte[] fingerprint, long createdAt) {
+            this.fingerprint = fingerprint;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private static final class StoredResponse {
+
+        private final int status;
+        private final Object entity;
+
+        private StoredResponse(int status, Object entity) {
+            this.status = status;
+            this.entity = entity;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * <p>A balanced (AVL) interval tree of half-open intervals {@code [start, end)} over long coordinates.</p>
+ *
+ * <p>Nodes are ordered by start and then by a caller supplied unique id, and each node also records the greatest end
+ * in its subtree. An overlap query can therefore skip every subtree that ends before the query range, so it costs
+ * O(log n + k) for k results instead of a scan of all n intervals.</p>
+ *
+ * <p>The tree is not thread safe; callers must synchronise access.</p>
+ *
+ * @param <T> The type of value stored with each interval
+ */
+public class IntervalTree<T> {
+
+    private Node<T> root;
+    private int size;
+
+    /**
+     * <p>Adds an interval. Its id must not already be in the tree with the same start.</p>
+     *
+     * @param start The inclusive start of the interval
+     * @param end The exclusive end of the interval, greater than start
+     * @param id A unique id for the interval
+     * @param value The value to store with it
+     */
+    public void insert(long start, long end, long id, T value) {
+        if (end <= start) {
+            throw new IllegalArgumentException("Interval end " + end + " must be after its start " + start);
+        }
+        root = insert(root, new Node<>(start, end, id, value));
+        size++;
+    }
+
+    /**
+     * <p>Removes the interval with the given start and id.</p>
+     *
+     * @param start The start the interval was inserted with
+     * @param id The id the interval was inserted with
+     * @return true if an interval was removed
+     */
+    public boolean remove(long start, long id) {
+        int before = size;
+        root = remove(root, start, id);
+        return size < before;
+    }
+
+    /**
+     * <p>Passes the value of every interval overlapping {@code [from, to)} to the consumer, in start order.</p>
+     *
+     * @param from The inclusive start of the query range
+     * @param to The exclusive end of the query range
+     * @param consumer Receives each overlapping value
+     */
+    public void overlapping(long from, long to, Consumer<T> consumer) {
+        overlapping(root, from, to, consumer);
+    }
+
+    /**
+     * <p>Returns the values of every interval overlapping {@code [from, to)}, in start order.</p>
+     *
+     * @param from The inclusive start of the query range
+     * @param to The exclusive end of the query range
+     * @return The overlapping values
+     */
+    public List<T> overlapping(long from, long to) {
+        List<T> result = new ArrayList<>();
+        overlapping(root, from, to, result::add);
+        return result;
+    }
+
+    /**
+     * <p>Returns the number of intervals overlapping {@code [from, to)}.</p>
+     *
+     * @param from The inclusive start of the query range
+     * @param to The exclusive end of the query range
+     * @return The number of overlapping intervals
+     */
+    public int countOverlapping(long from, long to) {
+        int[] count = new int[1];
+        overlapping(root, from, to, value -> count[0]++);
+        return count[0];
+    }
+
+    /**
+     * @return The number of intervals in the tree
+     */
+    public int size() {
+        return size;
+    }
+
+    private void overlapping(Node<T> node, long from, long to, Consumer<T> consumer) {
+        // Nothing in this subtree ends after the range starts
+        if (node == null || node.maxEnd <= from) {
+            return;
+        }
+        overlapping(node.left, from, to, consumer);
+        // Nodes to the right start even later, so stop once this one starts after the range
+        if (node.start >= to) {
+            return;
+        }
+        if (node.end > from) {
+            consumer.accept(node.value);
+        }
+        overlapping(node.right, from, to, consumer);
+    }
+
+    private Node<T> insert(Node<T> node, Node<T> added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added.start, added.id, node) < 0) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+        return rebalance(node);
+    }
+
+    private Node<T> remove(Node<T> node, long start, long id) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(start, id, node);
+        if (cmp < 0) {
+            node.left = remove(node.left, start, id);
+        } else if (cmp > 0) {
+            node.right = remove(node.right, start, id);
+        } else {
+            size--;
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            // Replace the node with its in-order successor
+            Node<T> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            size++;
+            node.right = remove(node.right, successor.start, successor.id);
+            successor.left = node.left;
+            successor.right = node.right;
+            node = successor;
+        }
+        return rebalance(node);
+    }
+
+    private static int compare(long start, long id, Node<?> node) {
+        int byStart = Long.compare(start, node.start);
+        return byStart != 0 ? byStart : Long.compare(id, node.id);
+    }
+
+    private Node<T> rebalance(Node<T> node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private Node<T> rotateRight(Node<T> node) {
+        Node<T> pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private Node<T> rotateLeft(Node<T> node) {
+        Node<T> pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static void update(Node<?> node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long maxEnd = node.end;
+        if (node.left != null) {
+            maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static final class Node<T> {
+        private final long start;
+        private final long end;
+        private final long id;
+        private final T value;
+        private long maxEnd;
+        private int height = 1;
+        private Node<T> left;
+        private Node<T> right;
+
+        private Node(long start, long end, long id, T value) {
+            this.start = start;
+            this.end = end;
+            this.id = id;
+            this.value = value;
+            this.maxEnd = end;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * <p>An append-only log of binary records kept in fixed-size, memory-mapped segment files.</p>
+ *
+ * <p>Every record gets the next sequence number, starting from 0. A segment is named after the sequence number of its
+ * first record and holds records framed as {@code [length][crc32][payload]}, followed by a zero length marking the
+ * end of what has been written. Appending is a copy into the mapped segment, so it never makes a system call; the
+ * operating system writes the pages back, and {@link #force()} waits for it.</p>
+ *
+ * <p>When a log is opened, the last segment is scanned up to its first incomplete or corrupt record, which is where
+ * the next append goes, so a record torn by a crash is dropped rather than read back. Appends are serialised; records
+ * below {@link #nextSequence()} can be replayed by other threads while appends continue.</p>
+ */
+public class MappedLog implements Closeable {
+
+    private static final String SUFFIX = ".log";
+
+    private static final int HEADER_BYTES = 8;
+
+    private static final int END_MARK_BYTES = 4;
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private Segment active;
+    private int position;
+    private long nextSequence;
+
+    /**
+     * <p>Opens the log in a directory, creating the directory if needed.</p>
+     *
+     * @param dir The directory holding the segment files
+     * @param segmentBytes The size of new segment files
+     * @throws IOException If the segments cannot be opened
+     */
+    public MappedLog(Path dir, int segmentBytes) throws IOException {
+        if (segmentBytes < 64) {
+            throw new IllegalArgumentException("Segments must be at least 64 bytes");
+        }
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(dir);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long firstSequence = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+                segments.put(firstSequence, new Segment(firstSequence, file, map(file, 0)));
+            }
+        }
+
+        if (!segments.isEmpty()) {
+            active = segments.lastEntry().getValue();
+            int[] end = new int[1];
+            long count = scan(active, Long.MAX_VALUE, end, null);
+            position = end[0];
+            nextSequence = active.firstSequence + count;
+        }
+    }
+
+    /**
+     * <p>Appends a record.</p>
+     *
+     * @param payload The bytes of the record
+     * @return The sequence number of the record
+     * @throws IOException If a new segment cannot be created
+     */
+    public synchronized long append(byte[] payload) throws IOException {
+        int length = HEADER_BYTES + payload.length;
+        if (payload.length == 0) {
+            // A zero length is the end mark
+            throw new IllegalArgumentException("A record cannot be empty");
+        }
+        if (length + END_MARK_BYTES > segmentBytes) {
+            throw new IllegalArgumentException("A record of " + payload.length + " bytes does not fit in a segment");
+        }
+        if (active == null || position + length + END_MARK_BYTES > active.buffer.capacity()) {
+            roll();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        MappedByteBuffer buffer = active.buffer;
+        // The end mark goes first and the length last, so the record only becomes readable once it is complete
+        buffer.putInt(position + length, 0);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        ByteBuffer body = buffer.duplicate();
+        body.position(position + HEADER_BYTES);
+        body.put(payload);
+        buffer.putInt(position, payload.length);
+        position += length;
+        return nextSequence++;
+    }
+
+    /**
+     * @return The sequence number of the oldest record still in the log, or {@link #nextSequence()} if it is empty
+     */
+    public synchronized long firstSequence() {
+        return segments.isEmpty() ? nextSequence : segments.firstKey();
+    }
+
+    /**
+     * @return The sequence number the next record will get
+     */
+    public synchronized long nextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * <p>Passes the payload of every record with a sequence number in {@code [from, to)} to a consumer, in order.</p>
+     *
+     * @param from The first sequence number to replay
+     * @param to The sequence number to stop at, at most {@link #nextSequence()} when the replay starts
+     * @param consumer Receives a read-only buffer over each payload, valid only during the call
+     */
+    public void replay(long from, long to, Consumer<ByteBuffer> consumer) {
+        Long start = segments.floorKey(from);
+        Map<Long, Segment> tail = start == null ? segments : segments.tailMap(start);
+        for (Segment segment : tail.values()) {
+            if (segment.firstSequence >= to) {
+                break;
+            }
+            long skip = Math.max(0, from - segment.firstSequence);
+            long[] seen = new long[1];
+            scan(segment, to - segment.firstSequence, null, payload -> {
+                if (seen[0]++ >= skip) {
+                    consumer.accept(payload);
+                }
+            });
+        }
+    }
+
+    /**
+     * <p>Deletes every segment whose records all have a sequence number below the given one. The segment being
+     * appended to is always kept.</p>
+     *
+     * @param sequence The sequence number of the first record to keep
+     * @return The number of segments deleted
+     * @throws IOException If a segment file cannot be deleted
+     */
+    public synchronized int deleteBefore(long sequence) throws IOException {
+        int deleted = 0;
+        Iterator<Map.Entry<Long, Segment>> iterator = segments.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next().getValue();
+            Long next = segments.higherKey(segment.firstSequence);
+            if (segment == active || next == null || next > sequence) {
+                break;
+            }
+            iterator.remove();
+            // The mapping itself is released when the buffer is garbage collected
+            Files.deleteIfExists(segment.file);
+            deleted++;
+        }
+        return deleted;
+    }
+
+    /**
+     * <p>Deletes every segment and starts an empty log whose next record gets the given sequence number.</p>
+     *
+     * @param sequence The sequence number of the next record
+     * @throws IOException If the segments cannot be deleted or created
+     */
+    public synchronized void reset(long sequence) throws IOException {
+        for (Segment segment : segments.values()) {
+            Files.deleteIfExists(segment.file);
+        }
+        segments.clear();
+        active = null;
+        nextSequence = sequence;
+        roll();
+    }
+
+    /**
+     * <p>Waits until everything appended to the current segment has been written to the storage device.</p>
+     */
+    public synchronized void force() {
+        if (active != null) {
+            active.buffer.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        force();
+    }
+
+    private void roll() throws IOException {
+        if (active != null) {
+            active.buffer.force();
+        }
+        Path file = dir.resolve(String.format("%020d%s", nextSequence, SUFFIX));
+        active = new Segment(nextSequence, file, map(file, segmentBytes));
+        active.buffer.putInt(0, 0);
+        segments.put(nextSequence, active);
+        position = 0;
+    }
+
+    private static MappedByteBuffer map(Path file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // A mapping stays valid after its channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+        }
+    }
+
+    /**
+     * Reads up to {@code limit} valid records from the start of a segment, returning how many there were and,
+     * if asked, the offset just past the last of them.
+     */
+    private static long scan(Segment segment, long limit, int[] end, Consumer<ByteBuffer> consumer) {
+        ByteBuffer buffer = segment.buffer.asReadOnlyBuffer();
+        int offset = 0;
+        long count = 0;
+        CRC32 crc = new CRC32();
+        while (count < limit && offset + HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || length > buffer.capacity() - offset - HEADER_BYTES) {
+                break;
+            }
+            ByteBuffer payload = buffer.duplicate();
+            payload.limit(offset + HEADER_BYTES + length).position(offset + HEADER_BYTES);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                break;
+            }
+            if (consumer != null) {
+                consumer.accept(payload.slice());
+            }
+            offset += HEADER_BYTES + length;
+            count++;
+        }
+        if (end != null) {
+            end[0] = offset;
+        }
+        return count;
+    }
+
+    private static final class Segment {
+
+        private final long firstSequence;
+        private final Path file;
+        private final MappedByteBuffer buffer;
+
+        private Segment(long firstSequence, Path file, MappedByteBuffer buffer) {
+            this.firstSequence = firstSequence;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>The position of a page in a list sorted on a unique key, such as (last name, first name, id): the key of the
+ * last item of the previous page.</p>
+ *
+ * <p>A query for the next page asks for the rows after this key with {@link #after}, rather than skipping the rows
+ * before it with an OFFSET, so an index on the sort key takes it straight to the page and a deep page costs the same
+ * as the first. Rows added or removed between pages do not shift the pages that follow.</p>
+ *
+ * <p>Cursors are handed to clients as opaque URL-safe tokens. A token only holds the key values, so it stays valid
+ * however long the client keeps it.</p>
+ */
+public final class PageCursor {
+
+    private static final byte VERSION = 1;
+
+    private final List<Object> values;
+
+    private PageCursor(List<Object> values) {
+        this.values = values;
+    }
+
+    /**
+     * @param values The sort key of the last item of a page: Strings, Longs or LocalDates
+     * @return A cursor positioned after that item
+     */
+    public static PageCursor of(Object... values) {
+        for (Object value : values) {
+            if (!(value instanceof String || value instanceof Long || value instanceof LocalDate)) {
+                throw new IllegalArgumentException("Unsupported cursor value " + value);
+            }
+        }
+        return new PageCursor(Collections.unmodifiableList(Arrays.asList(values)));
+    }
+
+    /**
+     * <p>Reads a cursor from a token made by {@link #toToken()}.</p>
+     *
+     * @param token The token
+     * @return The cursor
+     * @throws IllegalArgumentException If the token is not a valid cursor
+     */
+    public static PageCursor parse(String token) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            if (in.readByte() != VERSION) {
+                throw new IllegalArgumentException("Unknown cursor version");
+            }
+            int count = in.readUnsignedByte();
+            List<Object> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                char type = (char) in.readByte();
+                switch (type) {
+                    case 'S':
+                        values.add(in.readUTF());
+                        break;
+                    case 'L':
+                        values.add(in.readLong());
+                        break;
+                    case 'D':
+                        values.add(LocalDate.ofEpochDay(in.readLong()));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown cursor value type " + type);
+                }
+            }
+            if (in.read() != -1) {
+                throw new IllegalArgumentException("Trailing bytes after the cursor");
+            }
+            return new PageCursor(Collections.unmodifiableList(values));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Truncated cursor", e);
+        }
+    }
+
+    /**
+     * @return The cursor as an opaque URL-safe token
+     */
+    public String toToken() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeByte(values.size());
+            for (Object value : values) {
+                if (value instanceof String) {
+                    out.writeByte('S');
+                    out.writeUTF((String) value);
+                } else if (value instanceof Long) {
+                    out.writeByte('L');
+                    out.writeLong((Long) value);
+                } else {
+                    out.writeByte('D');
+                    out.writeLong(((LocalDate) value).toEpochDay());
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * @param types The types of a list's sort key, in order
+     * @return true if the cursor holds a key of exactly those types, so it can be used with that list
+     */
+    public boolean hasTypes(Class<?>... types) {
+        if (types.length != values.size()) {
+            return false;
+        }
+        for (int i = 0; i < types.length; i++) {
+            if (!types[i].isInstance(values.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * <p>Builds the criteria predicate selecting the rows that sort after this cursor, as
+     * {@code k1 > v1 OR (k1 = v1 AND (k2 > v2 OR (k2 = v2 AND ...)))}.</p>
+     *
+     * @param cb The CriteriaBuilder of the query
+     * @param keys The sort key of the query, ascending, in the order the cursor's values were given
+     * @return The predicate
+     * @throws IllegalArgumentException If the cursor was made for a different sort key
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Predicate after(CriteriaBuilder cb, Expression<?>... keys) {
+        if (keys.length != values.size()) {
+            throw new IllegalArgumentException("The cursor does not belong to this list");
+        }
+        Predicate after = null;
+        for (int i = keys.length - 1; i >= 0; i--) {
+            Expression key = keys[i];
+            Comparable value = (Comparable) values.get(i);
+            if (!key.getJavaType().isInstance(value)) {
+                throw new IllegalArgumentException("The cursor does not belong to this list");
+            }
+            Predicate greater = cb.greaterThan(key, value);
+            after = after == null ? greater : cb.or(greater, cb.and(cb.equal(key, value), after));
+        }
+        return after;
+    }
+
+    /**
+     * <p>Tells whether a row sorts after this cursor, for lists paged in memory rather than by a query.</p>
+     *
+     * @param keys The sort key of the row, in the order the cursor's values were given
+     * @return true if the row belongs on a later page
+     * @throws IllegalArgumentException If the cursor was made for a different sort key
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public boolean isBefore(Object... keys) {
+        if (keys.length != values.size()) {
+            throw new IllegalArgumentException("The cursor does not belong to this list");
+        }
+        for (int i = 0; i < keys.length; i++) {
+            Comparable value = (Comparable) values.get(i);
+            if (!value.getClass().isInstance(keys[i])) {
+                throw new IllegalArgumentException("The cursor does not belong to this list");
+            }
+            int order = value.compareTo(keys[i]);
+            if (order != 0) {
+                return order < 0;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "PageCursor" + values;
+    }
+}
@@ -0,0 +1,101 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.ws.rs.core.Link;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * <p>Shared handling of the {@code limit} and {@code cursor} query parameters of the paged list endpoints.</p>
+ *
+ * <p>A page is returned as the usual JSON array. When more items follow, the response has a {@code Link} header with
+ * {@code rel="next"} giving the URL of the next page, which is the same request with a {@code cursor} parameter; the
+ * last page has no such link. Pages hold {@code pagination.default-limit} items unless the request asks for a
+ * different {@code limit}, which may be at most {@code pagination.max-limit}.</p>
+ *
+ * @see PageCursor
+ */
+@ApplicationScoped
+public class Pagination {
+
+    public static final String LIMIT = "limit";
+
+    public static final String CURSOR = "cursor";
+
+    @ConfigProperty(name = "pagination.default-limit", defaultValue = "100")
+    int defaultLimit;
+
+    @ConfigProperty(name = "pagination.max-limit", defaultValue = "1000")
+    int maxLimit;
+
+    /**
+     * @param limit The requested page size, or null for the default
+     * @return The page size to use
+     * @throws RestServiceException With 400 if the limit is out of range
+     */
+    public int limit(Integer limit) {
+        if (limit == null) {
+            return defaultLimit;
+        }
+        if (limit < 1 || limit > maxLimit) {
+            throw new RestServiceException("The " + LIMIT + " must be between 1 and " + maxLimit,
+                    Response.Status.BAD_REQUEST);
+        }
+        return limit;
+    }
+
+    /**
+     * <p>Reads the {@code cursor} parameter of a list sorted on a key of the given types, refusing a cursor that was
+     * handed out by a different list, such as a customer cursor sent to the bookings.</p>
+     *
+     * @param token The {@code cursor} parameter, or null for the first page
+     * @param keyTypes The types of the list's sort key, in order
+     * @return The cursor, or null for the first page
+     * @throws RestServiceException With 400 if the token is not a valid cursor for this list
+     */
+    public PageCursor cursor(String token, Class<?>... keyTypes) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        PageCursor cursor;
+        try {
+            cursor = PageCursor.parse(token);
+        } catch (IllegalArgumentException e) {
+            throw new RestServiceException("Invalid " + CURSOR, Response.Status.BAD_REQUEST, e);
+        }
+        if (!cursor.hasTypes(keyTypes)) {
+            throw new RestServiceException("The " + CURSOR + " does not belong to this list",
+                    Response.Status.BAD_REQUEST);
+        }
+        return cursor;
+    }
+
+    /**
+     * <p>Builds the response for a page fetched with one row more than the page size, the extra row only showing
+     * whether there is a next page.</p>
+     *
+     * @param rows Up to limit + 1 rows, in sort order
+     * @param limit The page size
+     * @param keyOf Gives the cursor positioned after a row
+     * @param uriInfo The request URI, from which the next page's URL is built
+     * @param <T> The type of the rows
+     * @return A 200 response with the page, and a next link if there are more rows
+     */
+    public <T> Response page(List<T> rows, int limit, Function<T, PageCursor> keyOf, UriInfo uriInfo) {
+        if (rows.size() <= limit) {
+            return Response.ok(rows).build();
+        }
+        List<T> page = rows.subList(0, limit);
+        String next = keyOf.apply(page.get(limit - 1)).toToken();
+        return Response.ok(page)
+                .links(Link.fromUriBuilder(uriInfo.getRequestUriBuilder()
+                        .replaceQueryParam(CURSOR, next)
+                        .replaceQueryParam(LIMIT, limit)).rel("next").build())
+                .build();
+    }
+}
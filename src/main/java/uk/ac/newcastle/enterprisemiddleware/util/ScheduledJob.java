@@ -0,0 +1,60 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>A background task run on a daemon thread of its own, every so many minutes or just once, for the jobs beans
+ * start when the application starts and stop when it shuts down.</p>
+ *
+ * <p>A run that throws is logged and does not stop the runs that follow; runs never overlap.</p>
+ */
+public final class ScheduledJob {
+
+    private final ScheduledExecutorService scheduler;
+
+    private ScheduledJob(String name) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param name The name of the job and its thread
+     * @param initialDelayMinutes How long to wait before the first run
+     * @param intervalMinutes How long to wait after a run ends before starting the next, or 0 to run only once
+     * @param task The task to run
+     * @param log Where to report runs that fail
+     * @return The started job, to be stopped when its bean is destroyed
+     */
+    public static ScheduledJob start(String name, long initialDelayMinutes, long intervalMinutes, Runnable task,
+            Logger log) {
+        ScheduledJob job = new ScheduledJob(name);
+        Runnable run = () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.log(Level.WARNING, "ScheduledJob.run() - " + name + " failed"
+                        + (intervalMinutes > 0 ? ", retrying in " + intervalMinutes + " minutes" : ""), e);
+            }
+        };
+        if (intervalMinutes > 0) {
+            job.scheduler.scheduleWithFixedDelay(run, initialDelayMinutes, intervalMinutes, TimeUnit.MINUTES);
+        } else {
+            job.scheduler.schedule(run, initialDelayMinutes, TimeUnit.MINUTES);
+        }
+        return job;
+    }
+
+    /**
+     * <p>Cancels the runs to come and interrupts one in progress.</p>
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,78 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A fixed array of binary locks that keys are hashed onto.</p>
+ *
+ * <p>Memory stays constant however many keys exist, unrelated keys almost always land on different stripes and can
+ * proceed in parallel, and equal keys always share a stripe and so are serialised.</p>
+ *
+ * <p>Stripes are semaphores rather than {@link java.util.concurrent.locks.ReentrantLock}s because they are released
+ * when a transaction completes, which is not guaranteed to happen on the thread that acquired them. They are
+ * therefore not reentrant: callers must remember which stripes they already hold, and must acquire several stripes
+ * in ascending order to avoid deadlock.</p>
+ */
+public class StripedLock {
+
+    private final Semaphore[] stripes;
+    private final int mask;
+
+    /**
+     * @param minimumStripes The minimum number of stripes, rounded up to a power of two
+     */
+    public StripedLock(int minimumStripes) {
+        int size = Integer.highestOneBit(Math.max(1, minimumStripes - 1)) << 1;
+        if (minimumStripes <= 1) {
+            size = 1;
+        }
+        this.stripes = new Semaphore[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Semaphore(1);
+        }
+    }
+
+    /**
+     * <p>Returns the stripe a key is guarded by.</p>
+     *
+     * @param key The key to hash
+     * @return The stripe index
+     */
+    public int stripeFor(Object key) {
+        int h = key.hashCode();
+        // Spread the high bits down, as HashMap does, so keys differing only in high bits do not collide
+        h ^= (h >>> 16);
+        return h & mask;
+    }
+
+    /**
+     * <p>Acquires a stripe, waiting up to the given timeout.</p>
+     *
+     * @param stripe The stripe index
+     * @param timeout The maximum time to wait
+     * @param unit The unit of the timeout
+     * @return true if the stripe was acquired, false if the timeout elapsed
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    public boolean tryLock(int stripe, long timeout, TimeUnit unit) throws InterruptedException {
+        return stripes[stripe].tryAcquire(timeout, unit);
+    }
+
+    /**
+     * <p>Releases a stripe previously acquired with {@link #tryLock(int, long, TimeUnit)}.</p>
+     *
+     * @param stripe The stripe index
+     */
+    public void unlock(int stripe) {
+        stripes[stripe].release();
+    }
+
+    /**
+     * @return The number of stripes
+     */
+    public int size() {
+        return stripes.length;
+    }
+}
@@ -0,0 +1,353 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * <p>An in-memory type-ahead index of short text fields, such as names and email addresses, answering prefix and
+ * substring queries for the first few matches without scanning every document.</p>
+ *
+ * <p>Each word of each field is a term in a sorted term dictionary, which serves as the prefix tree: the terms
+ * starting with a prefix are a contiguous range of it, found in O(log n). Every three-character sequence (trigram) of
+ * each field also has a posting list of the documents containing it, so a substring of three or more characters only
+ * has to be checked against the documents in the intersection of its trigrams' postings.</p>
+ *
+ * <p>A query is split into words and a document matches if, for every word, one of its terms starts with the word or,
+ * for words of three or more characters, one of its fields contains it. Prefix matches come first, in term order,
+ * followed by substring matches in the order the documents were added. Matching is case-insensitive.</p>
+ *
+ * <p>Postings hold dense int ordinals rather than ids, so a document that is added again gets a new ordinal at the end
+ * of every posting list and additions never shift them. The index is not thread safe; callers must synchronise
+ * access.</p>
+ *
+ * @param <T> The type of value returned for each matching document
+ */
+public class TextIndex<T> {
+
+    private static final int GRAM = 3;
+
+    private static final int MAX_TERMS_COUNTED = 256;
+
+    private final Map<Long, Doc<T>> byId = new HashMap<>();
+
+    private final List<Doc<T>> byOrdinal = new ArrayList<>();
+
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+
+    private final Map<Long, Postings> grams = new HashMap<>();
+
+    /**
+     * <p>Adds a document, replacing any previous document with the same id.</p>
+     *
+     * @param id The unique id of the document
+     * @param value The value to return when the document matches
+     * @param fields The text of the document; null fields are ignored
+     */
+    public void put(long id, T value, String... fields) {
+        remove(id);
+        int ordinal = byOrdinal.size();
+        List<String> normalised = new ArrayList<>(fields.length);
+        for (String field : fields) {
+            if (field != null && !field.isBlank()) {
+                normalised.add(normalise(field));
+            }
+        }
+        Doc<T> doc = new Doc<>(ordinal, value, normalised.toArray(new String[0]));
+        byOrdinal.add(doc);
+        byId.put(id, doc);
+
+        for (String term : doc.terms()) {
+            terms.computeIfAbsent(term, key -> new Postings()).add(ordinal);
+        }
+        for (long gram : doc.grams()) {
+            grams.computeIfAbsent(gram, key -> new Postings()).add(ordinal);
+        }
+    }
+
+    /**
+     * <p>Removes the document with the given id.</p>
+     *
+     * @param id The id the document was added with
+     * @return true if a document was removed
+     */
+    public boolean remove(long id) {
+        Doc<T> doc = byId.remove(id);
+        if (doc == null) {
+            return false;
+        }
+        byOrdinal.set(doc.ordinal, null);
+        for (String term : doc.terms()) {
+            Postings postings = terms.get(term);
+            if (postings.remove(doc.ordinal)) {
+                terms.remove(term);
+            }
+        }
+        for (long gram : doc.grams()) {
+            Postings postings = grams.get(gram);
+            if (postings.remove(doc.ordinal)) {
+                grams.remove(gram);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of documents in the index
+     */
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * <p>Returns the values of the first documents matching every word of a query.</p>
+     *
+     * @param query The words to look for
+     * @param limit The maximum number of values to return
+     * @return The values of up to limit matching documents, prefix matches first
+     */
+    public List<T> search(String query, int limit) {
+        String[] words = new LinkedHashSet<>(Arrays.asList(normalise(query).split("\\s+"))).stream()
+                .filter(word -> !word.isEmpty())
+                .toArray(String[]::new);
+        if (words.length == 0 || limit <= 0) {
+            return new ArrayList<>();
+        }
+        // Drive the search with the word that has the fewest candidates, and check the others per document
+        String driver = words[0];
+        long fewest = Long.MAX_VALUE;
+        for (int i = 0; i < words.length && words.length > 1; i++) {
+            String word = words[i];
+            long candidates = candidates(word, fewest);
+            if (candidates < fewest) {
+                driver = word;
+                fewest = candidates;
+            }
+        }
+        if (fewest == 0) {
+            return new ArrayList<>();
+        }
+
+        Set<Doc<T>> found = new LinkedHashSet<>();
+        SortedMap<String, Postings> prefixed = terms.tailMap(driver);
+        for (Map.Entry<String, Postings> term : prefixed.entrySet()) {
+            if (!term.getKey().startsWith(driver)) {
+                break;
+            }
+            Postings postings = term.getValue();
+            for (int i = 0; i < postings.size && found.size() < limit; i++) {
+                Doc<T> doc = byOrdinal.get(postings.ordinals[i]);
+                if (doc.matchesAll(words)) {
+                    found.add(doc);
+                }
+            }
+            if (found.size() == limit) {
+                return values(found);
+            }
+        }
+
+        if (driver.length() >= GRAM) {
+            substringMatches(driver, words, limit, found);
+        }
+        return values(found);
+    }
+
+    /**
+     * An upper bound on the number of documents matching a word, or Long.MAX_VALUE if that is more than cap or too
+     * costly to work out.
+     */
+    private long candidates(String word, long cap) {
+        if (word.length() >= GRAM) {
+            // Every match contains the word, so none can be missing from the postings of its rarest trigram
+            long rarest = Long.MAX_VALUE;
+            for (long gram : grams(word)) {
+                Postings postings = grams.get(gram);
+                rarest = Math.min(rarest, postings == null ? 0 : postings.size);
+            }
+            return rarest;
+        }
+        long count = 0;
+        int seen = 0;
+        for (Map.Entry<String, Postings> term : terms.tailMap(word).entrySet()) {
+            if (!term.getKey().startsWith(word)) {
+                return count;
+            }
+            count += term.getValue().size;
+            if (count >= cap || ++seen == MAX_TERMS_COUNTED) {
+                return Long.MAX_VALUE;
+            }
+        }
+        return count;
+    }
+
+    private void substringMatches(String driver, String[] words, int limit, Set<Doc<T>> found) {
+        long[] driverGrams = grams(driver);
+        Postings[] lists = new Postings[driverGrams.length];
+        for (int i = 0; i < driverGrams.length; i++) {
+            lists[i] = grams.get(driverGrams[i]);
+            if (lists[i] == null) {
+                return;
+            }
+        }
+        // Walk the shortest posting list and probe the others
+        Arrays.sort(lists, Comparator.comparingInt(postings -> postings.size));
+        Postings shortest = lists[0];
+        for (int i = 0; i < shortest.size && found.size() < limit; i++) {
+            int ordinal = shortest.ordinals[i];
+            boolean inAll = true;
+            for (int j = 1; j < lists.length && inAll; j++) {
+                inAll = lists[j].contains(ordinal);
+            }
+            if (!inAll) {
+                continue;
+            }
+            // Trigrams can match across separate parts of a field, so confirm the substring itself
+            Doc<T> doc = byOrdinal.get(ordinal);
+            if (doc.contains(driver) && doc.matchesAll(words)) {
+                found.add(doc);
+            }
+        }
+    }
+
+    private List<T> values(Set<Doc<T>> docs) {
+        List<T> values = new ArrayList<>(docs.size());
+        for (Doc<T> doc : docs) {
+            values.add(doc.value);
+        }
+        return values;
+    }
+
+    private static String normalise(String text) {
+        return text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static long[] grams(String text) {
+        if (text.length() < GRAM) {
+            return new long[0];
+        }
+        long[] grams = new long[text.length() - GRAM + 1];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        return grams;
+    }
+
+    private static final class Doc<T> {
+
+        private final int ordinal;
+        private final T value;
+        private final String[] fields;
+
+        private Doc(int ordinal, T value, String[] fields) {
+            this.ordinal = ordinal;
+            this.value = value;
+            this.fields = fields;
+        }
+
+        private Set<String> terms() {
+            Set<String> terms = new LinkedHashSet<>();
+            for (String field : fields) {
+                for (String word : field.split("\\s+")) {
+                    if (!word.isEmpty()) {
+                        terms.add(word);
+                    }
+                }
+            }
+            return terms;
+        }
+
+        private Set<Long> grams() {
+            Set<Long> grams = new LinkedHashSet<>();
+            for (String field : fields) {
+                for (long gram : TextIndex.grams(field)) {
+                    grams.add(gram);
+                }
+            }
+            return grams;
+        }
+
+        private boolean contains(String text) {
+            for (String field : fields) {
+                if (field.contains(text)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean matches(String word) {
+            if (word.length() >= GRAM) {
+                return contains(word);
+            }
+            // Words too short for the trigrams only match the start of a term
+            for (String field : fields) {
+                for (int at = field.indexOf(word); at >= 0; at = field.indexOf(word, at + 1)) {
+                    if (at == 0 || Character.isWhitespace(field.charAt(at - 1))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean matchesAll(String[] words) {
+            for (String word : words) {
+                if (!matches(word)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A sorted set of ordinals, which are almost always added in increasing order.
+     */
+    private static final class Postings {
+
+        private int[] ordinals = new int[4];
+        private int size;
+
+        private void add(int ordinal) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            if (size == 0 || ordinals[size - 1] < ordinal) {
+                ordinals[size++] = ordinal;
+                return;
+            }
+            int at = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (at >= 0) {
+                return;
+            }
+            at = -at - 1;
+            System.arraycopy(ordinals, at, ordinals, at + 1, size - at);
+            ordinals[at] = ordinal;
+            size++;
+        }
+
+        /**
+         * @return true if the postings are now empty
+         */
+        private boolean remove(int ordinal) {
+            int at = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (at >= 0) {
+                System.arraycopy(ordinals, at + 1, ordinals, at, size - at - 1);
+                size--;
+            }
+            return size == 0;
+        }
+
+        private boolean contains(int ordinal) {
+            return Arrays.binarySearch(ordinals, 0, size, ordinal) >= 0;
+        }
+    }
+}
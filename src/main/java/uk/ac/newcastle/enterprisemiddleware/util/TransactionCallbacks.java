@@ -0,0 +1,150 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Registers work to be run once the current JTA transaction has completed.</p>
+ *
+ * <p>In-memory structures (calendars, indexes, caches) must only reflect what the database has actually committed, so
+ * services use this class to defer their updates until commit, or to undo an optimistic change on rollback.</p>
+ *
+ * <p>All callbacks of one transaction share a single interposed {@link Synchronization}. Commit and rollback callbacks
+ * run first, in registration order, followed by the completion callbacks that run regardless of the outcome. When no
+ * transaction is active, commit and completion callbacks run immediately and rollback callbacks are discarded.</p>
+ */
+@ApplicationScoped
+public class TransactionCallbacks {
+
+    private static final Object KEY = TransactionCallbacks.class;
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    TransactionSynchronizationRegistry registry;
+
+    /**
+     * <p>Runs the action once the current transaction has committed.</p>
+     *
+     * @param action The work to run after commit
+     */
+    public void onCommit(Runnable action) {
+        Callbacks callbacks = current();
+        if (callbacks == null) {
+            action.run();
+        } else {
+            callbacks.commit.add(action);
+        }
+    }
+
+    /**
+     * <p>Runs the action if the current transaction rolls back.</p>
+     *
+     * @param action The compensating work to run after a rollback
+     */
+    public void onRollback(Runnable action) {
+        Callbacks callbacks = current();
+        if (callbacks != null) {
+            callbacks.rollback.add(action);
+        }
+    }
+
+    /**
+     * <p>Runs the action once the current transaction has completed, whatever its outcome. Completion callbacks run
+     * after all commit and rollback callbacks, which makes them the right place to release locks.</p>
+     *
+     * @param action The work to run after completion
+     */
+    public void onCompletion(Runnable action) {
+        Callbacks callbacks = current();
+        if (callbacks == null) {
+            action.run();
+        } else {
+            callbacks.completion.add(action);
+        }
+    }
+
+    /**
+     * <p>Returns true if a transaction is active on the calling thread.</p>
+     *
+     * @return boolean indicating whether callbacks will be deferred
+     */
+    public boolean isTransactionActive() {
+        int status = registry.getTransactionStatus();
+        return status == Status.STATUS_ACTIVE || status == Status.STATUS_MARKED_ROLLBACK;
+    }
+
+    /**
+     * <p>Stores a value against the current transaction, or does nothing if no transaction is active.</p>
+     *
+     * @param key The resource key
+     * @param value The value to store
+     */
+    public void putResource(Object key, Object value) {
+        if (isTransactionActive()) {
+            registry.putResource(key, value);
+        }
+    }
+
+    /**
+     * <p>Returns a value previously stored against the current transaction.</p>
+     *
+     * @param key The resource key
+     * @return The stored value, or null if there is none or no transaction is active
+     */
+    public Object getResource(Object key) {
+        return isTransactionActive() ? registry.getResource(key) : null;
+    }
+
+    private Callbacks current() {
+        if (!isTransactionActive()) {
+            return null;
+        }
+        Callbacks callbacks = (Callbacks) registry.getResource(KEY);
+        if (callbacks == null) {
+            callbacks = new Callbacks();
+            registry.putResource(KEY, callbacks);
+            registry.registerInterposedSynchronization(callbacks);
+        }
+        return callbacks;
+    }
+
+    private final class Callbacks implements Synchronization {
+
+        private final List<Runnable> commit = new ArrayList<>();
+        private final List<Runnable> rollback = new ArrayList<>();
+        private final List<Runnable> completion = new ArrayList<>();
+
+        @Override
+        public void beforeCompletion() {
+            // Nothing to do until the outcome is known
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            runAll(status == Status.STATUS_COMMITTED ? commit : rollback);
+            runAll(completion);
+        }
+
+        private void runAll(List<Runnable> actions) {
+            for (Runnable action : actions) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    // One failing callback must not stop the others from running
+                    log.log(Level.SEVERE, "TransactionCallbacks - callback failed after completion", e);
+                }
+            }
+        }
+    }
+}
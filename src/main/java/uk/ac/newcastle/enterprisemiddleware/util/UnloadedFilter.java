@@ -0,0 +1,27 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import org.hibernate.Hibernate;
+
+/**
+ * <p>A Jackson value filter, for {@code @JsonInclude(value = JsonInclude.Include.CUSTOM, valueFilter = ...)}, that
+ * leaves a lazy association out of the JSON unless it has already been loaded.</p>
+ *
+ * <p>Serialising an association that was not loaded would otherwise run one query per entity being written. With this
+ * filter the shape of the JSON follows the fetch plan of the query that loaded the entities: an association fetched
+ * through an entity graph is written, and one that was left lazy is omitted.</p>
+ */
+public class UnloadedFilter {
+
+    /**
+     * @return true, meaning exclude, for an association that has not been loaded
+     */
+    @Override
+    public boolean equals(Object value) {
+        return value != null && !Hibernate.isInitialized(value);
+    }
+
+    @Override
+    public int hashCode() {
+        return UnloadedFilter.class.hashCode();
+    }
+}
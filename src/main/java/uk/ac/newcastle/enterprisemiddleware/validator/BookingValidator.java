@@ -1,16 +1,24 @@
 package uk.ac.newcastle.enterprisemiddleware.validator;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
-import javax.persistence.NoResultException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 import javax.validation.Validator;
 
 import uk.ac.newcastle.enterprisemiddleware.model.Booking;
+import uk.ac.newcastle.enterprisemiddleware.model.BookingKey;
+import uk.ac.newcastle.enterprisemiddleware.model.Stay;
 import uk.ac.newcastle.enterprisemiddleware.repository.BookingRepository;
+import uk.ac.newcastle.enterprisemiddleware.services.BookingKeyFilter;
+import uk.ac.newcastle.enterprisemiddleware.services.StayIndex;
 
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -32,6 +40,15 @@ public class BookingValidator {
     @Inject
     BookingRepository crud;
 
+    @Inject
+    StayIndex stays;
+
+    @Inject
+    BookingKeyFilter keys;
+
+    @ConfigProperty(name = "booking.stay.max-nights", defaultValue = "30")
+    int maxNights;
+
     /**
      * <p>Validates the given Booking object and throws validation exceptions based on the type of error.</p>
      *
@@ -39,24 +56,129 @@ public class BookingValidator {
      * constraints violated.</p>
      *
      * <p>If the error is caused because a booking with the same customer, hotel, and booking date already exists,
-     * it throws a regular ValidationException to distinguish it as a business rule violation.</p>
+     * it throws a regular ValidationException to distinguish it as a business rule violation. The same applies if the
+     * customer already has a stay at the hotel covering any night of a multi-night booking.</p>
      *
      * @param booking The Booking object to be validated
      * @throws ConstraintViolationException If Bean Validation errors exist
-     * @throws ValidationException If a duplicate booking (same customer, hotel, date) exists
+     * @throws InvalidStayException If the check-out date does not describe a valid stay
+     * @throws ValidationException If a duplicate or overlapping booking of the same customer and hotel exists
      */
     public void validateBooking(Booking booking) throws ConstraintViolationException, ValidationException {
         // Perform bean validation
+        validateConstraints(booking);
+
+        // Check the check-out date against the booking date
+        validateStay(booking);
+
+        validateUniqueness(booking);
+    }
+
+    /**
+     * <p>Checks that neither a duplicate nor an overlapping booking of the same customer and hotel exists.</p>
+     *
+     * <p>Callers that serialise concurrent writers run the bean validation first and this check once the writers are
+     * serialised, so that a competing booking cannot commit between the check and the insert.</p>
+     *
+     * @param booking The Booking object to be validated
+     * @throws ValidationException If a duplicate or overlapping booking of the same customer and hotel exists
+     */
+    public void validateUniqueness(Booking booking) throws ValidationException {
+        // Check for duplicate booking
+        if (duplicateBookingExists(booking)) {
+            throw new ValidationException("Duplicate Booking Violation: Customer has already booked this hotel on the specified date.");
+        }
+
+        // Check for an overlapping stay of the same customer
+        if (overlappingStayExists(booking)) {
+            throw new ValidationException("Overlapping Stay Violation: Customer already has a stay at this hotel on some of the requested nights.");
+        }
+    }
+
+    /**
+     * <p>Checks that the check-out date of a multi-night Booking is after its booking date and within the longest
+     * stay allowed. A booking without a check-out date is a single night and always valid.</p>
+     *
+     * @param booking The Booking object to be validated
+     * @throws InvalidStayException If the check-out date does not describe a valid stay
+     */
+    public void validateStay(Booking booking) throws InvalidStayException {
+        if (booking.getCheckOutDate() == null) {
+            return;
+        }
+        if (!booking.getCheckOutDate().isAfter(booking.getBookingDate())) {
+            throw new InvalidStayException("Check-out date must be after the booking date");
+        }
+        if (ChronoUnit.DAYS.between(booking.getBookingDate(), booking.getCheckOutDate()) > maxNights) {
+            throw new InvalidStayException("A stay cannot be longer than " + maxNights + " nights");
+        }
+    }
+
+    /**
+     * <p>Checks if the customer already has a stay at the same hotel that shares at least one night with the given
+     * booking, searching only that customer's stays at the hotel in the in-memory {@link StayIndex} rather than
+     * querying per night.</p>
+     *
+     * <p>If updating an existing booking, it ignores the current booking's own stay.</p>
+     *
+     * @param booking The booking to check
+     * @return boolean indicating if an overlapping stay exists
+     */
+    public boolean overlappingStayExists(Booking booking) {
+        for (Stay stay : stays.overlapping(booking.getHotel().getId(), booking.getCustomer().getId(),
+                booking.getBookingDate(), booking.stayEnd())) {
+            if (!stay.getBookingId().equals(booking.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * <p>Validates the given Booking object against its bean validation constraints only.</p>
+     *
+     * @param booking The Booking object to be validated
+     * @throws ConstraintViolationException If Bean Validation errors exist
+     */
+    public void validateConstraints(Booking booking) throws ConstraintViolationException {
         Set<ConstraintViolation<Booking>> violations = validator.validate(booking);
 
         if (!violations.isEmpty()) {
             throw new ConstraintViolationException(new HashSet<ConstraintViolation<?>>(violations));
         }
+    }
 
-        // Check for duplicate booking
-        if (duplicateBookingExists(booking)) {
-            throw new ValidationException("Duplicate Booking Violation: Customer has already booked this hotel on the specified date.");
+    /**
+     * <p>Returns the keys of the given bookings that already exist in the database, using one query for the whole
+     * collection rather than one per booking. Keys the {@link BookingKeyFilter} has never seen are left out of the
+     * query, which is skipped altogether if none are left.</p>
+     *
+     * @param bookings The new bookings to check, with customer and hotel ids set
+     * @return The subset of their keys that are already booked
+     */
+    public Set<BookingKey> findExistingKeys(Collection<Booking> bookings) {
+        Set<BookingKey> wanted = new HashSet<>();
+        Set<Long> customerIds = new HashSet<>();
+        Set<Long> hotelIds = new HashSet<>();
+        Set<LocalDate> dates = new HashSet<>();
+        for (Booking booking : bookings) {
+            BookingKey key = BookingKey.of(booking);
+            if (!keys.mightContain(key)) {
+                // Definitely not booked yet
+                continue;
+            }
+            wanted.add(key);
+            customerIds.add(key.getCustomerId());
+            hotelIds.add(key.getHotelId());
+            dates.add(key.getBookingDate());
+        }
+
+        if (wanted.isEmpty()) {
+            return wanted;
         }
+        Set<BookingKey> existing = new HashSet<>(crud.findKeys(customerIds, hotelIds, dates));
+        existing.retainAll(wanted);
+        return existing;
     }
 
     /**
@@ -65,22 +187,24 @@ public class BookingValidator {
      *
      * <p>If updating an existing booking, it ignores the current booking's ID to prevent self-conflict.</p>
      *
+     * <p>The database is only queried if the {@link BookingKeyFilter} reports that the key may have been booked.</p>
+     *
      * @param booking The booking to check for duplication
      * @return boolean indicating if a duplicate booking exists
      */
     boolean duplicateBookingExists(Booking booking) {
-        try {
-            Booking existingBooking = crud.findByCustomerAndHotelAndDate(
-                    booking.getCustomer().getId(),
-                    booking.getHotel().getId(),
-                    booking.getBookingDate()
-            );
-
-            // If a booking is found with the same details but a different ID, it's a duplicate
-            return existingBooking != null && !existingBooking.getId().equals(booking.getId());
-        } catch (NoResultException e) {
-            // No existing booking found, so it's not a duplicate
+        // Most keys have never been booked, which the filter answers without a query
+        if (!keys.mightContain(BookingKey.of(booking))) {
             return false;
         }
+
+        Booking existingBooking = crud.findByCustomerAndHotelAndDate(
+                booking.getCustomer().getId(),
+                booking.getHotel().getId(),
+                booking.getBookingDate()
+        );
+
+        // If a booking is found with the same details but a different ID, it's a duplicate
+        return existingBooking != null && !existingBooking.getId().equals(booking.getId());
     }
 }
@@ -0,0 +1,26 @@
+package uk.ac.newcastle.enterprisemiddleware.validator;
+
+import javax.validation.ValidationException;
+
+/**
+ * <p>ValidationException which should be thrown if the check-out date of a Booking does not describe a valid stay:
+ * it is not after the booking date, or the stay is longer than allowed.</p>
+ *
+ * <p>REST services should map it to 400 BAD REQUEST against the {@code checkOutDate} field.</p>
+ *
+ * @see BookingValidator
+ */
+public class InvalidStayException extends ValidationException {
+
+    public InvalidStayException(String message) {
+        super(message);
+    }
+
+    public InvalidStayException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public InvalidStayException(Throwable cause) {
+        super(cause);
+    }
+}
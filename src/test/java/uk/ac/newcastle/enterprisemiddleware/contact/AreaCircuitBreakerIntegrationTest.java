@@ -0,0 +1,114 @@
+package uk.ac.newcastle.enterprisemiddleware.contact;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.*;
+import uk.ac.newcastle.enterprisemiddleware.area.AreaClient;
+import uk.ac.newcastle.enterprisemiddleware.area.AreaStubServer;
+import uk.ac.newcastle.enterprisemiddleware.area.AreaUnavailableException;
+import uk.ac.newcastle.enterprisemiddleware.util.CircuitBreaker;
+
+import javax.inject.Inject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@QuarkusTest
+@TestProfile(AreaCircuitBreakerIntegrationTest.FailingAreaApi.class)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class AreaCircuitBreakerIntegrationTest {
+
+    private static final int FAILURE_THRESHOLD = 3;
+
+    /**
+     * <p>Every answer of the stub area API is 503 SERVICE_UNAVAILABLE, and the circuit stays open for the whole
+     * test once it opens.</p>
+     */
+    public static class FailingAreaApi implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            Map<String, String> overrides = new HashMap<>();
+            overrides.put("area.stub.failure-percent", "100");
+            overrides.put("area.stub.latency-ms", "0");
+            overrides.put("area.circuit.failure-threshold", String.valueOf(FAILURE_THRESHOLD));
+            overrides.put("area.circuit.open-ms", "600000");
+            overrides.put("area.degraded-mode", "true");
+            return overrides;
+        }
+    }
+
+    @Inject
+    AreaClient areaClient;
+
+    @Inject
+    AreaStubServer areaStub;
+
+    @Test
+    @Order(1)
+    public void testCircuitOpensAfterTheFailureThreshold() throws InterruptedException {
+        // The area code table is fetched in the background at startup, which is the first failure
+        for (int attempt = 0; attempt < 50 && areaStub.getRequests() == 0; attempt++) {
+            Thread.sleep(100);
+        }
+
+        int failures = 1;
+        while (areaClient.getState() == CircuitBreaker.State.CLOSED && failures < FAILURE_THRESHOLD + 1) {
+            int code = 200 + failures;
+            assertThrows(AreaUnavailableException.class, () -> areaClient.getAreaById(code));
+            failures++;
+        }
+        assertEquals(CircuitBreaker.State.OPEN, areaClient.getState());
+        assertEquals(FAILURE_THRESHOLD, failures);
+    }
+
+    @Test
+    @Order(2)
+    public void testOpenCircuitRefusesCalls() {
+        long requests = areaStub.getRequests();
+
+        assertThrows(AreaUnavailableException.class, () -> areaClient.getAreaById(250));
+
+        assertEquals(requests, areaStub.getRequests());
+        assertEquals(CircuitBreaker.State.OPEN, areaClient.getState());
+    }
+
+    @Test
+    @Order(3)
+    public void testDegradedModeAcceptsContactWithoutState() {
+        Map<String, Object> contact = new HashMap<>();
+        contact.put("firstName", "Breaker");
+        contact.put("lastName", "Tester");
+        contact.put("email", "breaker.tester@email.com");
+        contact.put("phoneNumber", "(251) 123-4567");
+        contact.put("birthDate", "1990-01-01");
+
+        given().
+                contentType(ContentType.JSON).
+                body(contact).
+        when().
+                post("/contacts").
+        then().
+                statusCode(201).
+                body("state", nullValue());
+
+        given().
+                queryParam("firstname", "Breaker").
+        when().
+                get("/contacts").
+        then().
+                statusCode(200).
+                body("size()", equalTo(1));
+    }
+}
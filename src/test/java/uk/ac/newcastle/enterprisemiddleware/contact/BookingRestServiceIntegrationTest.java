@@ -1,151 +1,411 @@
-//package uk.ac.newcastle.enterprisemiddleware.contact;
-//
-//import io.quarkus.test.common.QuarkusTestResource;
-//import io.quarkus.test.common.http.TestHTTPEndpoint;
-//import io.quarkus.test.h2.H2DatabaseTestResource;
-//import io.quarkus.test.junit.QuarkusTest;
-//import io.restassured.http.ContentType;
-//import io.restassured.response.Response;
-//import uk.ac.newcastle.enterprisemiddleware.model.Booking;
-//import uk.ac.newcastle.enterprisemiddleware.model.Customer;
-//import uk.ac.newcastle.enterprisemiddleware.model.Hotel;
-//import uk.ac.newcastle.enterprisemiddleware.restservices.BookingRestService;
-//
-//import org.junit.jupiter.api.*;
-//
-//import java.time.LocalDate;
-//
-//import static io.restassured.RestAssured.given;
-//import static io.restassured.RestAssured.when;
-//import static org.hamcrest.CoreMatchers.containsString;
-//import static org.junit.jupiter.api.Assertions.assertEquals;
-//import static org.junit.jupiter.api.Assertions.assertTrue;
-//
-//@QuarkusTest
-//@TestHTTPEndpoint(BookingRestService.class)
-//@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
-//@QuarkusTestResource(H2DatabaseTestResource.class)
-//class BookingRestServiceIntegrationTest {
-//
-//    private static Booking booking;
-//    private static Customer customer;
-//    private static Hotel hotel;
-//
-//    @BeforeAll
-//    static void setup() {
-//        // Setup a customer object
-//        customer = new Customer();
-//        customer.setFirstName("TestCustomer");
-//        customer.setLastName("Account");
-//        customer.setEmail("testcustomer@email.com");
-//
-//        // Setup a hotel object
-//        hotel = new Hotel();
-//        hotel.setName("TestHotel");
-//        hotel.setLocation("TestCity");
-//
-//        // Initialize booking with customer and hotel
-//        booking = new Booking();
-//        booking.setCustomer(customer);
-//        booking.setHotel(hotel);
-//        booking.setBookingDate(LocalDate.now());
-//        booking.setStatus("Confirmed");
-//    }
-//
-//    @Test
-//    @Order(1)
-//    public void testCanCreateBooking() {
-//        // Create the customer and hotel first if they do not exist
-//        createCustomerIfNotExists(customer);
-//        createHotelIfNotExists(hotel);
-//
-//        given().
-//                contentType(ContentType.JSON).
-//                body(booking).
-//        when().
-//                post().
-//        then().
-//                statusCode(201);
-//    }
-//
-//    @Test
-//    @Order(2)
-//    public void testCanGetBookings() {
-//        Response response = when().
-//                get().
-//        then().
-//                statusCode(200).
-//                extract().response();
-//
-//        Booking[] result = response.body().as(Booking[].class);
-//
-//        System.out.println(result[0]);
-//
-//        assertEquals(1, result.length);
-//        assertTrue(booking.getCustomer().getFirstName().equals(result[0].getCustomer().getFirstName()), "Customer first name not equal");
-//        assertTrue(booking.getHotel().getName().equals(result[0].getHotel().getName()), "Hotel name not equal");
-//        assertTrue(booking.getStatus().equals(result[0].getStatus()), "Status not equal");
-//    }
-//
-//    @Test
-//    @Order(3)
-//    public void testDuplicateBookingCausesError() {
-//        given().
-//                contentType(ContentType.JSON).
-//                body(booking).
-//        when().
-//                post().
-//        then().
-//                statusCode(409).
-//                body("reasons", containsString("already booked this hotel on the specified date"));
-//    }
-//
-//    @Test
-//    @Order(4)
-//    public void testCanDeleteBooking() {
-//        Response response = when().
-//                get().
-//        then().
-//                statusCode(200).
-//                extract().response();
-//
-//        Booking[] result = response.body().as(Booking[].class);
-//
-//        when().
-//                delete(result[0].getId().toString()).
-//        then().
-//                statusCode(204);
-//    }
-//
-//    /**
-//     * Helper method to create a customer if not exists
-//     */
-//    private void createCustomerIfNotExists(Customer customer) {
-//        Response response = given().
-//                contentType(ContentType.JSON).
-//                body(customer).
-//        when().
-//                post("/api/customers").
-//        then().
-//                extract().response();
-//        if (response.statusCode() == 201) {
-//            customer.setId(response.body().as(Customer.class).getId());
-//        }
-//    }
-//
-//    /**
-//     * Helper method to create a hotel if not exists
-//     */
-//    private void createHotelIfNotExists(Hotel hotel) {
-//        Response response = given().
-//                contentType(ContentType.JSON).
-//                body(hotel).
-//        when().
-//                post("/api/hotels").
-//        then().
-//                extract().response();
-//        if (response.statusCode() == 201) {
-//            hotel.setId(response.body().as(Hotel.class).getId());
-//        }
-//    }
-//}
+package uk.ac.newcastle.enterprisemiddleware.contact;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.*;
+import uk.ac.newcastle.enterprisemiddleware.services.BookingKeyFilter;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.transaction.UserTransaction;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static io.restassured.RestAssured.when;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class BookingRestServiceIntegrationTest {
+
+    private static final LocalDate DAY = LocalDate.now().plusDays(30);
+    private static final String DATE = DAY.toString();
+
+    private static Integer hotelId;
+    private static Integer firstCustomerId;
+    private static Integer secondCustomerId;
+
+    @Inject
+    BookingKeyFilter keyFilter;
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    UserTransaction transaction;
+
+    @Test
+    @Order(1)
+    public void testCanBookTheOnlyRoom() {
+        Map<String, Object> hotel = new HashMap<>();
+        hotel.put("name", "Booking Inn");
+        hotel.put("location", "Leeds");
+        hotel.put("totalRooms", 1);
+
+        hotelId = given().
+                contentType(ContentType.JSON).
+                body(hotel).
+        when().
+                post("/hotels").
+        then().
+                statusCode(201).
+                extract().path("id");
+
+        firstCustomerId = createCustomer("booking.first@email.com");
+        secondCustomerId = createCustomer("booking.second@email.com");
+
+        given().
+                contentType(ContentType.JSON).
+                body(booking(secondCustomerId)).
+        when().
+                post("/bookings").
+        then().
+                statusCode(201);
+    }
+
+    @Test
+    @Order(2)
+    public void testBatchReportsTheOutcomeOfEachItem() {
+        Map<String, Object> hotel = new HashMap<>();
+        hotel.put("name", "Batch Inn");
+        hotel.put("location", "Leeds");
+        hotel.put("totalRooms", 2);
+        Integer batchHotelId = given().
+                contentType(ContentType.JSON).
+                body(hotel).
+        when().
+                post("/hotels").
+        then().
+                statusCode(201).
+                extract().path("id");
+        Integer thirdCustomerId = createCustomer("booking.third@email.com");
+
+        LocalDate night = DAY.plusDays(200);
+        Map<String, Object> first = booking(firstCustomerId, batchHotelId, night);
+        Map<String, Object> noHotel = booking(secondCustomerId, batchHotelId, night);
+        noHotel.remove("hotel");
+        Map<String, Object> duplicate = booking(firstCustomerId, batchHotelId, night);
+        Map<String, Object> overlapping = booking(firstCustomerId, batchHotelId, night.minusDays(1));
+        overlapping.put("checkOutDate", night.plusDays(1).toString());
+        Map<String, Object> second = booking(secondCustomerId, batchHotelId, night);
+        Map<String, Object> full = booking(thirdCustomerId, batchHotelId, night);
+
+        given().
+                contentType(ContentType.JSON).
+                body(Arrays.asList(first, noHotel, duplicate, overlapping, second, full)).
+        when().
+                post("/bookings/batch").
+        then().
+                statusCode(200).
+                body("index", equalTo(Arrays.asList(0, 1, 2, 3, 4, 5))).
+                body("status", equalTo(Arrays.asList(201, 400, 409, 409, 201, 409))).
+                body("[0].bookingId", notNullValue()).
+                body("[4].bookingId", notNullValue()).
+                body("[5].error", containsString("No rooms are available"));
+
+        when().
+                get("/hotels/" + batchHotelId + "/inventory?date=" + night).
+        then().
+                statusCode(200).
+                body("bookedRooms", equalTo(2));
+
+        // The two bookings already made are duplicates of this batch, and the hotel-date has no room left
+        given().
+                contentType(ContentType.JSON).
+                body(Arrays.asList(booking(firstCustomerId, batchHotelId, night), full)).
+        when().
+                post("/bookings/batch").
+        then().
+                statusCode(200).
+                body("status", equalTo(Arrays.asList(409, 409)));
+    }
+
+    @Test
+    @Order(3)
+    public void testBatchLargerThanTheLimitIsRejected() {
+        // booking.batch.max-size is 20 in the test profile
+        List<Map<String, Object>> bookings = new ArrayList<>();
+        for (int i = 0; i < 21; i++) {
+            bookings.add(booking(firstCustomerId, hotelId, DAY.plusDays(300 + i)));
+        }
+
+        given().
+                contentType(ContentType.JSON).
+                body(bookings).
+        when().
+                post("/bookings/batch").
+        then().
+                statusCode(400).
+                body("reasons.bookings", containsString("at most 20"));
+
+        given().
+                queryParam("customerId", firstCustomerId).
+        when().
+                get("/bookings").
+        then().
+                statusCode(200).
+                body("bookingDate", not(hasItem(DAY.plusDays(300).toString())));
+    }
+
+    @Test
+    @Order(4)
+    public void testDuplicateCheckOnlyQueriesKeysTheFilterMayHold() {
+        Map<String, Object> booking = booking(firstCustomerId, hotelId, DAY.plusDays(150));
+        long lookups = keyFilter.getLookups();
+
+        // Whether the filter rules the new key out or not, the duplicate check asks it once
+        given().
+                contentType(ContentType.JSON).
+                body(booking).
+        when().
+                post("/bookings").
+        then().
+                statusCode(201);
+        assertEquals(lookups + 1, keyFilter.getLookups());
+        long misses = keyFilter.getMisses();
+
+        // Now the filter holds the key, so it cannot miss; the duplicate is looked up in the database and refused
+        given().
+                contentType(ContentType.JSON).
+                body(booking).
+        when().
+                post("/bookings").
+        then().
+                statusCode(409).
+                body("reasons.bookingDate", containsString("Duplicate Booking"));
+        assertEquals(lookups + 2, keyFilter.getLookups());
+        assertEquals(misses, keyFilter.getMisses());
+    }
+
+    @Test
+    @Order(5)
+    public void testQueuedBookingsAreProcessedInTheBackground() throws InterruptedException {
+        // The hotel's only room on DATE went to the second customer
+        String rejectedId = given().
+                contentType(ContentType.JSON).
+                body(booking(firstCustomerId)).
+        when().
+                post("/bookings/async").
+        then().
+                statusCode(202).
+                body("status", equalTo("QUEUED")).
+                extract().path("requestId");
+
+        Map<String, Object> later = booking(firstCustomerId);
+        later.put("bookingDate", DAY.plusDays(100).toString());
+        String createdId = given().
+                contentType(ContentType.JSON).
+                body(later).
+        when().
+                post("/bookings/async").
+        then().
+                statusCode(202).
+                extract().path("requestId");
+
+        Assertions.assertEquals("REJECTED", awaitRequest(rejectedId));
+        when().
+                get("/bookings/requests/" + rejectedId).
+        then().
+                statusCode(200).
+                body("code", equalTo(409));
+
+        Assertions.assertEquals("CREATED", awaitRequest(createdId));
+        Integer bookingId = when().
+                get("/bookings/requests/" + createdId).
+        then().
+                statusCode(200).
+                body("code", equalTo(201)).
+                extract().path("bookingId");
+
+        when().
+                get("/bookings/" + bookingId).
+        then().
+                statusCode(200);
+    }
+
+    @Test
+    @Order(6)
+    public void testRetryWithIdempotencyKeyReplaysTheResponse() {
+        Map<String, Object> booking = booking(firstCustomerId);
+        booking.put("bookingDate", DAY.plusDays(120).toString());
+
+        Integer bookingId = given().
+                contentType(ContentType.JSON).
+                header("Idempotency-Key", "booking-retry-1").
+                body(booking).
+        when().
+                post("/bookings").
+        then().
+                statusCode(201).
+                extract().path("id");
+
+        given().
+                contentType(ContentType.JSON).
+                header("Idempotency-Key", "booking-retry-1").
+                body(booking).
+        when().
+                post("/bookings").
+        then().
+                statusCode(201).
+                header("Idempotent-Replayed", "true").
+                body("id", equalTo(bookingId));
+
+        booking.put("bookingDate", DAY.plusDays(121).toString());
+        given().
+                contentType(ContentType.JSON).
+                header("Idempotency-Key", "booking-retry-1").
+                body(booking).
+        when().
+                post("/bookings").
+        then().
+                statusCode(400);
+    }
+
+    @Test
+    @Order(7)
+    public void testArchiveMovesOnlyEndedBookings() throws Exception {
+        Map<String, Object> booking = booking(firstCustomerId);
+        booking.put("bookingDate", DAY.plusDays(130).toString());
+        Integer currentId = given().
+                contentType(ContentType.JSON).
+                body(booking).
+        when().
+                post("/bookings").
+        then().
+                statusCode(201).
+                extract().path("id");
+
+        // Bookings cannot be made in the past, so this one is moved back past the horizon once it exists
+        booking.put("bookingDate", DAY.plusDays(140).toString());
+        Integer endedId = given().
+                contentType(ContentType.JSON).
+                body(booking).
+        when().
+                post("/bookings").
+        then().
+                statusCode(201).
+                extract().path("id");
+        backdate(endedId, LocalDate.now().minusDays(400));
+
+        when().
+                post("/bookings/archive").
+        then().
+                statusCode(200).
+                body("archived", equalTo(1));
+
+        when().
+                get("/bookings/" + endedId).
+        then().
+                statusCode(404);
+
+        given().
+                queryParam("includeArchived", true).
+        when().
+                get("/bookings/" + endedId).
+        then().
+                statusCode(200).
+                body("id", equalTo(endedId));
+
+        given().
+                queryParam("customerId", firstCustomerId).
+        when().
+                get("/bookings").
+        then().
+                statusCode(200).
+                body("id", not(hasItem(endedId))).
+                body("id", hasItem(currentId));
+
+        given().
+                queryParam("customerId", firstCustomerId).
+                queryParam("includeArchived", true).
+        when().
+                get("/bookings").
+        then().
+                statusCode(200).
+                body("id", hasItem(endedId)).
+                body("id", hasItem(currentId));
+
+        when().
+                get("/bookings/" + currentId).
+        then().
+                statusCode(200);
+    }
+
+    private String awaitRequest(String requestId) throws InterruptedException {
+        String status = "QUEUED";
+        for (int attempt = 0; attempt < 50 && "QUEUED".equals(status); attempt++) {
+            Thread.sleep(100);
+            status = when().get("/bookings/requests/" + requestId).then().statusCode(200).extract().path("status");
+        }
+        return status;
+    }
+
+    private void backdate(Integer bookingId, LocalDate bookingDate) throws Exception {
+        transaction.begin();
+        try {
+            em.createNativeQuery("UPDATE booking SET booking_date = :date, check_out_date = NULL WHERE id = :id")
+                    .setParameter("date", bookingDate)
+                    .setParameter("id", bookingId.longValue())
+                    .executeUpdate();
+            transaction.commit();
+        } catch (Exception e) {
+            transaction.rollback();
+            throw e;
+        }
+    }
+
+    private Map<String, Object> booking(Integer customerId) {
+        Map<String, Object> customer = new HashMap<>();
+        customer.put("id", customerId);
+        Map<String, Object> hotel = new HashMap<>();
+        hotel.put("id", hotelId);
+
+        Map<String, Object> booking = new HashMap<>();
+        booking.put("customer", customer);
+        booking.put("hotel", hotel);
+        booking.put("bookingDate", DATE);
+        booking.put("status", "Confirmed");
+        return booking;
+    }
+
+    private Map<String, Object> booking(Integer customerId, Integer hotelId, LocalDate date) {
+        Map<String, Object> booking = booking(customerId);
+        Map<String, Object> hotel = new HashMap<>();
+        hotel.put("id", hotelId);
+        booking.put("hotel", hotel);
+        booking.put("bookingDate", date.toString());
+        return booking;
+    }
+
+    private Integer createCustomer(String email) {
+        Map<String, Object> customer = new HashMap<>();
+        customer.put("firstName", "Booking");
+        customer.put("lastName", "Tester");
+        customer.put("email", email);
+        customer.put("phoneNumber", "(201) 123-4567");
+        customer.put("birthDate", "1990-01-01");
+
+        return given().
+                contentType(ContentType.JSON).
+                body(customer).
+        when().
+                post("/customers").
+        then().
+                statusCode(201).
+                extract().path("id");
+    }
+}
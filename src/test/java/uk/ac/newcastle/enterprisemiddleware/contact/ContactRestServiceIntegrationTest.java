@@ -7,13 +7,32 @@ import io.quarkus.test.junit.QuarkusTest;
 import io.restassured.http.ContentType;
 import io.restassured.response.Response;
 import org.junit.jupiter.api.*;
+import uk.ac.newcastle.enterprisemiddleware.area.AreaClient;
+import uk.ac.newcastle.enterprisemiddleware.area.AreaCodeTable;
+import uk.ac.newcastle.enterprisemiddleware.area.AreaStubServer;
+import uk.ac.newcastle.enterprisemiddleware.area.InvalidAreaCodeException;
 
+import javax.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static io.restassured.RestAssured.given;
 import static io.restassured.RestAssured.when;
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @QuarkusTest
@@ -24,6 +43,15 @@ class ContactRestServiceIntegrationTest {
 
     private static Contact contact;
 
+    @Inject
+    AreaCodeTable areaCodes;
+
+    @Inject
+    AreaClient areaClient;
+
+    @Inject
+    AreaStubServer areaStub;
+
     @BeforeAll
     static void setup() {
         contact = new Contact();
@@ -97,4 +125,163 @@ class ContactRestServiceIntegrationTest {
         then().
                 statusCode(204);
     }
-}
\ No newline at end of file
+
+    @Test
+    @Order(5)
+    public void testNameFilterMatchesBothNamesInOneQuery() {
+        Integer noraZed = createContact("Nora", "Zedfilter", "nora.zedfilter@email.com");
+        Integer adamZed = createContact("Adam", "Zedfilter", "adam.zedfilter@email.com");
+        Integer noraAl = createContact("Nora", "Alfilter", "nora.alfilter@email.com");
+
+        given().
+                queryParam("firstname", "Nora").
+                queryParam("lastname", "Zedfilter").
+        when().
+                get().
+        then().
+                statusCode(200).
+                body("id", equalTo(Arrays.asList(noraZed)));
+
+        // Sorted by last name and then first name
+        given().
+                queryParam("lastname", "Zedfilter").
+        when().
+                get().
+        then().
+                statusCode(200).
+                body("id", equalTo(Arrays.asList(adamZed, noraZed)));
+
+        given().
+                queryParam("firstname", "Nora").
+        when().
+                get().
+        then().
+                statusCode(200).
+                body("id", equalTo(Arrays.asList(noraAl, noraZed)));
+
+        given().
+                queryParam("firstname", "Adam").
+                queryParam("lastname", "Alfilter").
+        when().
+                get().
+        then().
+                statusCode(200).
+                body("size()", equalTo(0));
+    }
+
+    @Test
+    @Order(6)
+    public void testAreaCodeTableCallsTheAreaServiceOncePerUnseenCode() {
+        // 208 and 209 are left out of the stub's table, 290 is unknown to it
+        areaCodes.refresh();
+        long requests = areaStub.getRequests();
+
+        assertEquals("New Jersey", areaCodes.get(201).getState());
+        assertEquals(requests, areaStub.getRequests());
+
+        assertEquals("Texas", areaCodes.get(208).getState());
+        assertEquals(requests + 1, areaStub.getRequests());
+        assertEquals("Texas", areaCodes.get(208).getState());
+        assertEquals(requests + 1, areaStub.getRequests());
+
+        assertThrows(InvalidAreaCodeException.class, () -> areaCodes.get(290));
+        assertEquals(requests + 2, areaStub.getRequests());
+        assertThrows(InvalidAreaCodeException.class, () -> areaCodes.get(290));
+        assertEquals(requests + 2, areaStub.getRequests());
+    }
+
+    @Test
+    @Order(7)
+    public void testConcurrentLookupsOfOneCodeShareOneCall() throws Exception {
+        // 209 is left out of the stub's table, so every lookup of it falls back to the AreaClient until one returns
+        areaCodes.refresh();
+        long coalesced = areaClient.stats().getCoalesced();
+        long calls = areaClient.stats().getCalls();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> states = new ArrayList<>();
+        try {
+            for (int i = 0; i < 8; i++) {
+                states.add(executor.submit(() -> {
+                    start.await();
+                    return areaCodes.get(209).getState();
+                }));
+            }
+            start.countDown();
+            for (Future<String> state : states) {
+                assertEquals("Washington", state.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Integer reportedCoalesced = when().
+                get("/area-stats").
+        then().
+                statusCode(200).
+                body("calls", equalTo((int) (calls + 1))).
+                body("circuit", notNullValue()).
+                extract().path("coalesced");
+        assertTrue(reportedCoalesced > coalesced, "Expected lookups joining the call in progress");
+    }
+
+    @Test
+    @Order(8)
+    public void testReactiveCreateResolvesTheState() {
+        Contact reactive = new Contact();
+        reactive.setFirstName("Reactive");
+        reactive.setLastName("Account");
+        reactive.setEmail("reactive@email.com");
+        reactive.setBirthDate(Calendar.getInstance().getTime());
+        reactive.setPhoneNumber("(201) 123-4567");
+
+        given().
+                contentType(ContentType.JSON).
+                body(reactive).
+        when().
+                post("/reactive").
+        then().
+                statusCode(201).
+                body("id", notNullValue()).
+                body("state", equalTo("New Jersey"));
+    }
+
+    @Test
+    @Order(9)
+    public void testReactiveContactCreateRejectsInvalidContacts() {
+        Map<String, Object> contact = new HashMap<>();
+        contact.put("firstName", "Reactive");
+        contact.put("lastName", "Tester");
+        contact.put("email", "not-an-email");
+        contact.put("phoneNumber", "12345");
+        contact.put("birthDate", "1990-01-01");
+
+        given().
+                contentType(ContentType.JSON).
+                body(contact).
+        when().
+                post("/reactive").
+        then().
+                statusCode(400).
+                body("reasons.phoneNumber", notNullValue());
+    }
+
+    private Integer createContact(String firstName, String lastName, String email) {
+        Contact named = new Contact();
+        named.setFirstName(firstName);
+        named.setLastName(lastName);
+        named.setEmail(email);
+        named.setBirthDate(Calendar.getInstance().getTime());
+        named.setPhoneNumber("(201) 123-4567");
+
+        return given().
+                contentType(ContentType.JSON).
+                body(named).
+        when().
+                post().
+        then().
+                statusCode(201).
+                extract().path("id");
+    }
+}
@@ -1,131 +1,381 @@
-//package uk.ac.newcastle.enterprisemiddleware.contact;
-//
-//import io.quarkus.test.common.QuarkusTestResource;
-//import io.quarkus.test.common.http.TestHTTPEndpoint;
-//import io.quarkus.test.h2.H2DatabaseTestResource;
-//import io.quarkus.test.junit.QuarkusTest;
-//import io.restassured.http.ContentType;
-//import io.restassured.response.Response;
-//import uk.ac.newcastle.enterprisemiddleware.model.Customer;
-//import uk.ac.newcastle.enterprisemiddleware.restservices.CustomerRestService;
-//
-//import org.junit.jupiter.api.*;
-//
-//import java.util.Calendar;
-//
-//import static io.restassured.RestAssured.given;
-//import static io.restassured.RestAssured.when;
-////import static org.hamcrest.CoreMatchers.containsString;
-//import static org.junit.jupiter.api.Assertions.assertEquals;
-//import static org.junit.jupiter.api.Assertions.assertTrue;
-//
-///**
-// * Integration tests for the Customer REST service.
-// * This test class ensures the functionality of Customer creation, retrieval, update, and deletion.
-// * The tests utilize an in-memory H2 database for isolated testing.
-// */
-//@QuarkusTest
-//@TestHTTPEndpoint(CustomerRestService.class)
-//@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
-//@QuarkusTestResource(H2DatabaseTestResource.class)
-//class CustomerRestServiceIntegrationTest {
-//
-//    private static Customer customer;
-//
-//    /**
-//     * Set up a sample customer for testing.
-//     */
-//    @BeforeAll
-//    static void setup() {
-//        customer = new Customer();
-//        customer.setFirstName("John");
-//        customer.setLastName("Doe");
-//        customer.setEmail("john.doe@example.com");
-//        customer.setPhoneNumber("1234567890");
-//        customer.setState("Active");
-//        
-//        // Set birth date
-//        Calendar birthDate = Calendar.getInstance();
-//        birthDate.set(1990, Calendar.JANUARY, 1);
-//        customer.setBirthDate(birthDate.getTime());
-//    }
-//
-//    /**
-//     * Test case for creating a new Customer via POST request.
-//     */
-//    @Test
-//    @Order(1)
-//    void testCreateCustomer() {
-//        Response response = given()
-//            .contentType(ContentType.JSON)
-//            .body(customer)
-//            .when().post()
-//            .then()
-//            .extract().response();
-//        
-//        // Log the server's response for debugging if needed
-//        System.out.println("Response Status Code: " + response.getStatusCode());
-//        System.out.println("Response Body: " + response.getBody().asString());
-//
-//        // Check if the customer was created
-//        assertEquals(201, response.getStatusCode(), "Expected status code 201 but got " + response.getStatusCode());
-//    }
-//
-//    /**
-//     * Test case for retrieving an existing Customer via GET request.
-//     */
-//    @Test
-//    @Order(2)
-//    void testRetrieveCustomer() {
-//        Response retrieveResponse = given()
-//            .when().get("/" + customer.getEmail())
-//            .then()
-//            .extract().response();
-//        
-//        // Verify the response code and content
-//        assertEquals(200, retrieveResponse.getStatusCode(), "Expected status code 200 but got " + retrieveResponse.getStatusCode());
-//        assertTrue(retrieveResponse.getBody().asString().contains("john.doe@example.com"), "Expected to find email in response.");
-//    }
-//
-//    /**
-//     * Test case for updating an existing Customer via PUT request.
-//     */
-//    @Test
-//    @Order(3)
-//    void testUpdateCustomer() {
-//        // Update the phone number
-//        customer.setPhoneNumber("0987654321");
-//
-//        Response updateResponse = given()
-//            .contentType(ContentType.JSON)
-//            .body(customer)
-//            .when().put("/" + customer.getEmail())
-//            .then()
-//            .extract().response();
-//
-//        // Verify the response code and updated content
-//        assertEquals(200, updateResponse.getStatusCode(), "Expected status code 200 but got " + updateResponse.getStatusCode());
-//        assertTrue(updateResponse.getBody().asString().contains("0987654321"), "Expected updated phone number in response.");
-//    }
-//
-//    /**
-//     * Test case for deleting an existing Customer via DELETE request.
-//     */
-//    @Test
-//    @Order(4)
-//    void testDeleteCustomer() {
-//        // Delete the customer
-//        Response deleteResponse = when().delete("/" + customer.getEmail())
-//            .then()
-//            .extract().response();
-//
-//        assertEquals(204, deleteResponse.getStatusCode(), "Expected status code 204 but got " + deleteResponse.getStatusCode());
-//
-//        // Verify deletion by attempting to retrieve the customer again
-//        Response verifyDeleteResponse = when().get("/" + customer.getEmail())
-//            .then()
-//            .extract().response();
-//
-//        assertEquals(404, verifyDeleteResponse.getStatusCode(), "Expected status code 404 after deletion but got " + verifyDeleteResponse.getStatusCode());
-//    }
-//}
+package uk.ac.newcastle.enterprisemiddleware.contact;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import org.junit.jupiter.api.*;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.transaction.UserTransaction;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static io.restassured.RestAssured.given;
+import static io.restassured.RestAssured.when;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.everyItem;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class CustomerRestServiceIntegrationTest {
+
+    private static final String DATE = LocalDate.now().plusDays(30).toString();
+
+    private static Integer hotelId;
+    private static Integer firstCustomerId;
+    private static Integer secondCustomerId;
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    UserTransaction transaction;
+
+    @Test
+    @Order(1)
+    public void testCanCreateCustomersWithABooking() {
+        Map<String, Object> hotel = new HashMap<>();
+        hotel.put("name", "Customer Court");
+        hotel.put("location", "Durham");
+        hotel.put("totalRooms", 10);
+
+        hotelId = given().
+                contentType(ContentType.JSON).
+                body(hotel).
+        when().
+                post("/hotels").
+        then().
+                statusCode(201).
+                extract().path("id");
+
+        firstCustomerId = createCustomer("customer.first@email.com");
+        secondCustomerId = createCustomer("customer.second@email.com");
+
+        Map<String, Object> customer = new HashMap<>();
+        customer.put("id", firstCustomerId);
+        Map<String, Object> booked = new HashMap<>();
+        booked.put("id", hotelId);
+        Map<String, Object> booking = new HashMap<>();
+        booking.put("customer", customer);
+        booking.put("hotel", booked);
+        booking.put("bookingDate", DATE);
+        booking.put("status", "Confirmed");
+
+        given().
+                contentType(ContentType.JSON).
+                body(booking).
+        when().
+                post("/bookings").
+        then().
+                statusCode(201);
+    }
+
+    @Test
+    @Order(2)
+    public void testNameFilterMatchesBothNamesInOneQuery() {
+        Integer noraZed = createCustomer("Nora", "Zedfilter", "nora.zedfilter@email.com");
+        Integer adamZed = createCustomer("Adam", "Zedfilter", "adam.zedfilter@email.com");
+        Integer noraAl = createCustomer("Nora", "Alfilter", "nora.alfilter@email.com");
+
+        given().
+                queryParam("firstname", "Nora").
+                queryParam("lastname", "Zedfilter").
+        when().
+                get("/customers").
+        then().
+                statusCode(200).
+                body("id", equalTo(Arrays.asList(noraZed)));
+
+        // Sorted by last name and then first name
+        given().
+                queryParam("lastname", "Zedfilter").
+        when().
+                get("/customers").
+        then().
+                statusCode(200).
+                body("id", equalTo(Arrays.asList(adamZed, noraZed)));
+
+        given().
+                queryParam("firstname", "Nora").
+        when().
+                get("/customers").
+        then().
+                statusCode(200).
+                body("id", equalTo(Arrays.asList(noraAl, noraZed)));
+
+        given().
+                queryParam("firstname", "Adam").
+                queryParam("lastname", "Alfilter").
+        when().
+                get("/customers").
+        then().
+                statusCode(200).
+                body("size()", equalTo(0));
+    }
+
+    @Test
+    @Order(3)
+    public void testCustomerSearchMatchesPrefixAndSubstring() {
+        given().
+                queryParam("q", "custom").
+        when().
+                get("/customers/search").
+        then().
+                statusCode(200).
+                body("id", hasItem(firstCustomerId)).
+                body("id", hasItem(secondCustomerId));
+
+        given().
+                queryParam("q", "tester second@").
+        when().
+                get("/customers/search").
+        then().
+                statusCode(200).
+                body("id", hasItem(secondCustomerId)).
+                body("id", not(hasItem(firstCustomerId)));
+
+        given().
+                queryParam("q", " ").
+        when().
+                get("/customers/search").
+        then().
+                statusCode(400);
+    }
+
+    @Test
+    @Order(4)
+    public void testCustomerListIsPagedWithCursors() {
+        Response first = given().
+                queryParam("limit", 1).
+        when().
+                get("/customers");
+        first.then().
+                statusCode(200).
+                body("size()", equalTo(1));
+        Integer firstId = first.path("[0].id");
+
+        String link = first.header("Link");
+        Matcher cursor = Pattern.compile("cursor=([A-Za-z0-9_-]+)").matcher(link);
+        Assertions.assertTrue(cursor.find(), "Expected a next link but got " + link);
+
+        given().
+                queryParam("limit", 1).
+                queryParam("cursor", cursor.group(1)).
+        when().
+                get("/customers").
+        then().
+                statusCode(200).
+                body("size()", equalTo(1)).
+                body("[0].id", not(equalTo(firstId)));
+
+        given().
+                queryParam("cursor", cursor.group(1)).
+        when().
+                get("/bookings").
+        then().
+                statusCode(400);
+
+        given().
+                queryParam("cursor", "not-a-cursor").
+        when().
+                get("/customers").
+        then().
+                statusCode(400);
+    }
+
+    @Test
+    @Order(5)
+    public void testCustomerImportReportsRejectedRows() {
+        String ndjson = "{\"firstName\":\"Imported\",\"lastName\":\"Tester\",\"email\":\"imported.first@email.com\","
+                + "\"phoneNumber\":\"(201) 123-4567\",\"birthDate\":\"1990-01-01\"}\n"
+                + "{\"firstName\":\"Imported\",\"lastName\":\"Tester\",\"email\":\"customer.first@email.com\","
+                + "\"phoneNumber\":\"(201) 123-4567\",\"birthDate\":\"1990-01-01\"}\n"
+                + "not json\n";
+
+        given().
+                contentType("application/x-ndjson").
+                body(ndjson).
+        when().
+                post("/customers/import").
+        then().
+                statusCode(200).
+                body("imported", equalTo(1)).
+                body("rejected", equalTo(2)).
+                body("rejections.line", hasItem(2)).
+                body("rejections.line", hasItem(3));
+
+        String csv = "firstName,lastName,email,phoneNumber,birthDate\n"
+                + "Imported,Tester,imported.second@email.com,\"(201) 123-4567\",1990-01-01\n"
+                + "Imported,Tester,imported.second@email.com,\"(201) 123-4567\",1990-01-01\n";
+
+        given().
+                contentType("text/csv").
+                body(csv).
+        when().
+                post("/customers/import").
+        then().
+                statusCode(200).
+                body("imported", equalTo(1)).
+                body("rejected", equalTo(1));
+
+        given().
+                queryParam("q", "imported.second").
+        when().
+                get("/customers/search").
+        then().
+                statusCode(200).
+                body("email", hasItem("imported.second@email.com"));
+
+        given().
+                contentType("text/csv").
+                body("name,email\n").
+        when().
+                post("/customers/import").
+        then().
+                statusCode(400);
+    }
+
+    @Test
+    @Order(6)
+    public void testExportsWriteOneObjectPerLine() {
+        String customers = when().
+                get("/customers/export").
+        then().
+                statusCode(200).
+                contentType("application/x-ndjson").
+                extract().asString();
+        String[] lines = customers.split("\n");
+        assertTrue(lines.length >= 2);
+        for (String line : lines) {
+            assertTrue(line.startsWith("{\"id\":") && line.endsWith("}"), line);
+        }
+        assertTrue(customers.contains("\"email\":\"customer.first@email.com\""));
+
+        String bookings = when().
+                get("/bookings/export").
+        then().
+                statusCode(200).
+                extract().asString();
+        for (String line : bookings.split("\n")) {
+            assertTrue(line.isEmpty() || line.contains("\"customerId\":"), line);
+        }
+
+        when().
+                get("/hotels/export").
+        then().
+                statusCode(200).
+                body(containsString("\"id\":" + hotelId));
+    }
+
+    @Test
+    @Order(7)
+    public void testBookingsAreOnlyIncludedInTheBookingsView() {
+        when().
+                get("/customers/" + firstCustomerId).
+        then().
+                statusCode(200).
+                body("bookings", nullValue());
+
+        given().
+                queryParam("view", "bookings").
+        when().
+                get("/customers/" + firstCustomerId).
+        then().
+                statusCode(200).
+                body("bookings", notNullValue());
+
+        given().
+                queryParam("view", "bookings").
+        when().
+                get("/hotels").
+        then().
+                statusCode(200).
+                body("bookings", everyItem(notNullValue()));
+
+        given().
+                queryParam("view", "everything").
+        when().
+                get("/customers").
+        then().
+                statusCode(400);
+    }
+
+    @Test
+    @Order(8)
+    public void testCustomerStateBackfillFillsInMissingStates() throws Exception {
+        // Customers are given a state when they are saved, so one is saved without it as if the area API was down
+        Integer customerId = createCustomer("customer.stateless@email.com");
+        transaction.begin();
+        try {
+            em.createNativeQuery("UPDATE customer SET state = NULL WHERE id = :id")
+                    .setParameter("id", customerId.longValue())
+                    .executeUpdate();
+            transaction.commit();
+        } catch (Exception e) {
+            transaction.rollback();
+            throw e;
+        }
+
+        when().
+                get("/customers/" + customerId).
+        then().
+                statusCode(200).
+                body("state", nullValue());
+
+        Integer updated = when().
+                post("/customers/state-backfill").
+        then().
+                statusCode(200).
+                extract().path("updated");
+        assertTrue(updated >= 1, "Expected the stateless customer to be updated");
+
+        when().
+                get("/customers/" + customerId).
+        then().
+                statusCode(200).
+                body("state", equalTo("New Jersey"));
+
+        when().
+                post("/customers/state-backfill").
+        then().
+                statusCode(200).
+                body("updated", equalTo(0));
+    }
+
+    private Integer createCustomer(String email) {
+        return createCustomer("Customer", "Tester", email);
+    }
+
+    private Integer createCustomer(String firstName, String lastName, String email) {
+        Map<String, Object> customer = new HashMap<>();
+        customer.put("firstName", firstName);
+        customer.put("lastName", lastName);
+        customer.put("email", email);
+        customer.put("phoneNumber", "(201) 123-4567");
+        customer.put("birthDate", "1990-01-01");
+
+        return given().
+                contentType(ContentType.JSON).
+                body(customer).
+        when().
+                post("/customers").
+        then().
+                statusCode(201).
+                extract().path("id");
+    }
+}
@@ -1,106 +1,80 @@
-//package uk.ac.newcastle.enterprisemiddleware.contact;
-//
-////import java.util.Calendar;
-//
-//import static io.restassured.RestAssured.given;
-//import static io.restassured.RestAssured.when;
-//import static org.hamcrest.CoreMatchers.containsString;
-//import static org.junit.jupiter.api.Assertions.assertEquals;
-//import static org.junit.jupiter.api.Assertions.assertTrue;
-//
-//import org.junit.jupiter.api.BeforeAll;
-//import org.junit.jupiter.api.MethodOrderer;
-//import org.junit.jupiter.api.Order;
-//import org.junit.jupiter.api.Test;
-//import org.junit.jupiter.api.TestMethodOrder;
-//
-//import io.quarkus.test.common.QuarkusTestResource;
-//import io.quarkus.test.common.http.TestHTTPEndpoint;
-//import io.quarkus.test.h2.H2DatabaseTestResource;
-//import io.quarkus.test.junit.QuarkusTest;
-//import io.restassured.http.ContentType;
-//import io.restassured.response.Response;
-//import uk.ac.newcastle.enterprisemiddleware.model.Hotel;
-//import uk.ac.newcastle.enterprisemiddleware.restservices.HotelRestService;
-//
-//@QuarkusTest
-//@TestHTTPEndpoint(HotelRestService.class)
-//@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
-//@QuarkusTestResource(H2DatabaseTestResource.class)
-//class HotelRestServiceIntegrationTest {
-//
-//    private static Hotel hotel;
-//
-//    @BeforeAll
-//    static void setup() {
-//        hotel = new Hotel();
-//        hotel.setName("Sample Hotel");
-//        hotel.setLocation("New York");
-//        hotel.setDescription("A sample hotel for testing");
-//        hotel.setTotalRooms(100);
-//        hotel.setAvailableRooms(80);
-//    }
-//
-//    @Test
-//    @Order(1)
-//    public void testCanCreateHotel() {
-//        given().
-//                contentType(ContentType.JSON).
-//                body(hotel).
-//        when().
-//                post().
-//        then().
-//                statusCode(201);
-//    }
-//
-//    @Test
-//    @Order(2)
-//    public void testCanGetHotels() {
-//        Response response = when().
-//                get().
-//        then().
-//                statusCode(200).
-//                extract().response();
-//
-//        Hotel[] result = response.body().as(Hotel[].class);
-//
-//        System.out.println(result[0]);
-//
-//        assertEquals(1, result.length);
-//        assertTrue(hotel.getName().equals(result[0].getName()), "Hotel name not equal");
-//        assertTrue(hotel.getLocation().equals(result[0].getLocation()), "Location not equal");
-//        assertTrue(hotel.getDescription().equals(result[0].getDescription()), "Description not equal");
-//        assertEquals(hotel.getTotalRooms(), result[0].getTotalRooms(), "Total rooms not equal");
-//        assertEquals(hotel.getAvailableRooms(), result[0].getAvailableRooms(), "Available rooms not equal");
-//    }
-//
-//    @Test
-//    @Order(3)
-//    public void testDuplicateHotelCausesError() {
-//        given().
-//                contentType(ContentType.JSON).
-//                body(hotel).
-//        when().
-//                post().
-//        then().
-//                statusCode(409).
-//                body("reasons", containsString("already exists"));
-//    }
-//
-//    @Test
-//    @Order(4)
-//    public void testCanDeleteHotel() {
-//        Response response = when().
-//                get().
-//                then().
-//                statusCode(200).
-//                extract().response();
-//
-//        Hotel[] result = response.body().as(Hotel[].class);
-//
-//        when().
-//                delete(result[0].getId().toString()).
-//        then().
-//                statusCode(204);
-//    }
-//}
+package uk.ac.newcastle.enterprisemiddleware.contact;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static io.restassured.RestAssured.when;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.not;
+
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class HotelRestServiceIntegrationTest {
+
+    private static Integer hotelId;
+
+    @Test
+    @Order(1)
+    public void testCanCreateHotel() {
+        Map<String, Object> hotel = new HashMap<>();
+        hotel.put("name", "Cache Inn");
+        hotel.put("location", "York");
+        hotel.put("totalRooms", 1);
+
+        hotelId = given().
+                contentType(ContentType.JSON).
+                body(hotel).
+        when().
+                post("/hotels").
+        then().
+                statusCode(201).
+                extract().path("id");
+    }
+
+    @Test
+    @Order(2)
+    public void testHotelCacheIsInvalidatedByUpdates() {
+        when().get("/hotels/" + hotelId).then().statusCode(200);
+        when().get("/hotels/" + hotelId).then().statusCode(200);
+
+        when().
+                get("/hotels/cache").
+        then().
+                statusCode(200).
+                body("hits", not(equalTo(0)));
+
+        Map<String, Object> hotel = new HashMap<>();
+        hotel.put("name", "Cache Lodge");
+        hotel.put("location", "York");
+        hotel.put("totalRooms", 1);
+
+        given().
+                contentType(ContentType.JSON).
+                body(hotel).
+        when().
+                put("/hotels/" + hotelId).
+        then().
+                statusCode(200);
+
+        when().
+                get("/hotels/" + hotelId).
+        then().
+                statusCode(200).
+                body("name", equalTo("Cache Lodge"));
+
+        when().
+                get("/hotels").
+        then().
+                statusCode(200).
+                body("name", hasItem("Cache Lodge"));
+    }
+}
@@ -0,0 +1,397 @@
+package uk.ac.newcastle.enterprisemiddleware.contact;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static io.restassured.RestAssured.given;
+import static io.restassured.RestAssured.when;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@QuarkusTestResource(H2DatabaseTestResource.class)
+class RoomInventoryIntegrationTest {
+
+    private static final LocalDate DAY = LocalDate.now().plusDays(30);
+    private static final String DATE = DAY.toString();
+
+    private static Integer hotelId;
+    private static Integer firstCustomerId;
+    private static Integer secondCustomerId;
+
+    @Test
+    @Order(1)
+    public void testCanCreateSingleRoomHotel() {
+        Map<String, Object> hotel = new HashMap<>();
+        hotel.put("name", "Inventory Inn");
+        hotel.put("location", "Newcastle");
+        hotel.put("totalRooms", 1);
+
+        hotelId = given().
+                contentType(ContentType.JSON).
+                body(hotel).
+        when().
+                post("/hotels").
+        then().
+                statusCode(201).
+                extract().path("id");
+
+        firstCustomerId = createCustomer("inventory.first@email.com");
+        secondCustomerId = createCustomer("inventory.second@email.com");
+    }
+
+    @Test
+    @Order(2)
+    public void testBookingTakesTheLastRoom() {
+        given().
+                contentType(ContentType.JSON).
+                body(booking(firstCustomerId)).
+        when().
+                post("/bookings").
+        then().
+                statusCode(201);
+
+        when().
+                get("/hotels/" + hotelId + "/inventory?date=" + DATE).
+        then().
+                statusCode(200).
+                body("bookedRooms", equalTo(1)).
+                body("availableRooms", equalTo(0));
+    }
+
+    @Test
+    @Order(3)
+    public void testFullHotelCausesConflict() {
+        given().
+                contentType(ContentType.JSON).
+                body(booking(secondCustomerId)).
+        when().
+                post("/bookings").
+        then().
+                statusCode(409);
+    }
+
+    @Test
+    @Order(4)
+    public void testConcurrentBookingsNeverExceedCapacity() throws Exception {
+        Map<String, Object> hotel = new HashMap<>();
+        hotel.put("name", "Inventory Annex");
+        hotel.put("location", "Newcastle");
+        hotel.put("totalRooms", 3);
+        Integer annexId = given().
+                contentType(ContentType.JSON).
+                body(hotel).
+        when().
+                post("/hotels").
+        then().
+                statusCode(201).
+                extract().path("id");
+
+        List<Map<String, Object>> bookings = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            Map<String, Object> booking = booking(createCustomer("inventory.concurrent" + i + "@email.com"));
+            Map<String, Object> annex = new HashMap<>();
+            annex.put("id", annexId);
+            booking.put("hotel", annex);
+            bookings.add(booking);
+        }
+
+        // Every request waits at the latch, so they all reach the same hotel-date at once
+        ExecutorService executor = Executors.newFixedThreadPool(bookings.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> statuses = new ArrayList<>();
+        try {
+            for (Map<String, Object> booking : bookings) {
+                statuses.add(executor.submit(() -> {
+                    start.await();
+                    return given().
+                            contentType(ContentType.JSON).
+                            body(booking).
+                    when().
+                            post("/bookings").
+                    then().
+                            extract().response().getStatusCode();
+                }));
+            }
+            start.countDown();
+
+            int created = 0;
+            for (Future<Integer> status : statuses) {
+                int code = status.get(30, TimeUnit.SECONDS);
+                assertTrue(code == 201 || code == 409, "Expected 201 or 409 but got " + code);
+                if (code == 201) {
+                    created++;
+                }
+            }
+            Assertions.assertEquals(3, created);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        when().
+                get("/hotels/" + annexId + "/inventory?date=" + DATE).
+        then().
+                statusCode(200).
+                body("bookedRooms", equalTo(3)).
+                body("availableRooms", equalTo(0));
+
+        given().
+                queryParam("hotelId", annexId).
+        when().
+                get("/bookings").
+        then().
+                statusCode(200).
+                body("size()", equalTo(3));
+    }
+
+    @Test
+    @Order(5)
+    public void testMultiNightStayTakesEveryNight() {
+        Map<String, Object> stay = booking(secondCustomerId);
+        stay.put("bookingDate", DAY.plusDays(1).toString());
+        stay.put("checkOutDate", DAY.plusDays(3).toString());
+
+        given().
+                contentType(ContentType.JSON).
+                body(stay).
+        when().
+                post("/bookings").
+        then().
+                statusCode(201);
+
+        when().
+                get("/hotels/" + hotelId + "/inventory?date=" + DAY.plusDays(2)).
+        then().
+                statusCode(200).
+                body("availableRooms", equalTo(0));
+
+        when().
+                get("/bookings/stays/count?hotelId=" + hotelId + "&from=" + DATE + "&to=" + DAY.plusDays(3)).
+        then().
+                statusCode(200).
+                body("stays", equalTo(2));
+    }
+
+    @Test
+    @Order(6)
+    public void testStayOverAFullNightTakesNoRooms() {
+        Map<String, Object> stay = booking(secondCustomerId);
+        stay.put("bookingDate", DAY.minusDays(1).toString());
+        stay.put("checkOutDate", DAY.plusDays(1).toString());
+
+        given().
+                contentType(ContentType.JSON).
+                body(stay).
+        when().
+                post("/bookings").
+        then().
+                statusCode(409);
+
+        when().
+                get("/hotels/" + hotelId + "/inventory?date=" + DAY.minusDays(1)).
+        then().
+                statusCode(200).
+                body("bookedRooms", equalTo(0));
+    }
+
+    @Test
+    @Order(7)
+    public void testAvailabilitySearchSkipsFullHotels() {
+        when().
+                get("/hotels/availability?location=newcastle&from=" + DATE + "&to=" + DAY.plusDays(1)).
+        then().
+                statusCode(200).
+                body("hotelId", not(hasItem(hotelId)));
+
+        when().
+                get("/hotels/availability?location=newcastle&from=" + DAY.plusDays(5) + "&to=" + DAY.plusDays(7)).
+        then().
+                statusCode(200).
+                body("hotelId", hasItem(hotelId));
+    }
+
+    @Test
+    @Order(8)
+    public void testHoldTakesTheRoomUntilReleasedOrConfirmed() {
+        // The first customer has already booked DATE, which is refused before any room is held
+        given().
+                contentType(ContentType.JSON).
+                body(booking(firstCustomerId)).
+        when().
+                post("/bookings/holds").
+        then().
+                statusCode(409).
+                body("error", containsString("Duplicate Booking"));
+
+        Map<String, Object> booking = booking(firstCustomerId);
+        booking.put("bookingDate", DAY.plusDays(10).toString());
+
+        String holdId = given().
+                contentType(ContentType.JSON).
+                body(booking).
+        when().
+                post("/bookings/holds").
+        then().
+                statusCode(201).
+                extract().path("holdId");
+
+        Map<String, Object> competing = booking(secondCustomerId);
+        competing.put("bookingDate", DAY.plusDays(10).toString());
+        given().
+                contentType(ContentType.JSON).
+                body(competing).
+        when().
+                post("/bookings/holds").
+        then().
+                statusCode(409);
+
+        when().
+                delete("/bookings/holds/" + holdId).
+        then().
+                statusCode(204);
+
+        String secondHoldId = given().
+                contentType(ContentType.JSON).
+                body(competing).
+        when().
+                post("/bookings/holds").
+        then().
+                statusCode(201).
+                extract().path("holdId");
+
+        when().
+                post("/bookings/holds/" + secondHoldId + "/confirm").
+        then().
+                statusCode(201);
+
+        when().
+                get("/bookings/holds/" + secondHoldId).
+        then().
+                statusCode(404);
+    }
+
+    @Test
+    @Order(9)
+    public void testCancellationPromotesTheWaitlist() throws InterruptedException {
+        String entryId = given().
+                contentType(ContentType.JSON).
+                body(booking(secondCustomerId)).
+        when().
+                post("/bookings/waitlist").
+        then().
+                statusCode(201).
+                body("status", equalTo("WAITING")).
+                extract().path("entryId");
+
+        Integer bookingId = when().
+                get("/bookings?customerId=" + firstCustomerId).
+        then().
+                statusCode(200).
+                extract().path("[0].id");
+
+        when().
+                delete("/bookings/" + bookingId).
+        then().
+                statusCode(204);
+
+        // Promotion happens in the background once the cancellation has committed
+        String status = "WAITING";
+        for (int attempt = 0; attempt < 50 && "WAITING".equals(status); attempt++) {
+            Thread.sleep(100);
+            status = when().get("/bookings/waitlist/" + entryId).then().statusCode(200).extract().path("status");
+        }
+        Assertions.assertEquals("PROMOTED", status);
+    }
+
+    @Test
+    @Order(10)
+    public void testDeletingCustomerRemovesBookingsAndFreesRooms() {
+        Integer customerId = createCustomer("inventory.deleted@email.com");
+        Map<String, Object> stay = booking(customerId);
+        stay.put("bookingDate", DAY.plusDays(20).toString());
+        stay.put("checkOutDate", DAY.plusDays(22).toString());
+
+        given().
+                contentType(ContentType.JSON).
+                body(stay).
+        when().
+                post("/bookings").
+        then().
+                statusCode(201);
+
+        when().
+                get("/hotels/" + hotelId + "/inventory?date=" + DAY.plusDays(21)).
+        then().
+                statusCode(200).
+                body("availableRooms", equalTo(0));
+
+        when().
+                delete("/customers/" + customerId).
+        then().
+                statusCode(204);
+
+        when().
+                get("/hotels/" + hotelId + "/inventory?date=" + DAY.plusDays(21)).
+        then().
+                statusCode(200).
+                body("availableRooms", equalTo(1));
+
+        given().
+                queryParam("customerId", customerId).
+        when().
+                get("/bookings").
+        then().
+                statusCode(200).
+                body("size()", equalTo(0));
+    }
+
+    private Map<String, Object> booking(Integer customerId) {
+        Map<String, Object> customer = new HashMap<>();
+        customer.put("id", customerId);
+        Map<String, Object> hotel = new HashMap<>();
+        hotel.put("id", hotelId);
+
+        Map<String, Object> booking = new HashMap<>();
+        booking.put("customer", customer);
+        booking.put("hotel", hotel);
+        booking.put("bookingDate", DATE);
+        booking.put("status", "Confirmed");
+        return booking;
+    }
+
+    private Integer createCustomer(String email) {
+        Map<String, Object> customer = new HashMap<>();
+        customer.put("firstName", "Inventory");
+        customer.put("lastName", "Tester");
+        customer.put("email", email);
+        customer.put("phoneNumber", "(201) 123-4567");
+        customer.put("birthDate", "1990-01-01");
+
+        return given().
+                contentType(ContentType.JSON).
+                body(customer).
+        when().
+                post("/customers").
+        then().
+                statusCode(201).
+                extract().path("id");
+    }
+}